@@ -1,5 +1,7 @@
 package com.iwhalecloud.ontology.controller;
 
+import com.iwhalecloud.ontology.service.FactOverlay;
+import com.iwhalecloud.ontology.service.IndividualLifecycleManager;
 import com.iwhalecloud.ontology.service.OntologyService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -23,6 +25,7 @@ import java.util.Map;
 public class OntologyController {
 
     private final OntologyService ontologyService;
+    private final IndividualLifecycleManager lifecycleManager;
 
     /**
      * 健康检查接口
@@ -185,38 +188,46 @@ public class OntologyController {
             String sourceCustomerId = request.getOrDefault("sourceCustomerId", "CUST_SOURCE_001");
             String targetCustomerId = request.getOrDefault("targetCustomerId", "CUST_TARGET_001");
             
-            // 1. 创建源客户
-            ontologyService.addIndividual("SourceCustomer", sourceCustomerId);
-            ontologyService.addDataProperty(sourceCustomerId, "custId", sourceCustomerId, "string");
-            ontologyService.addDataProperty(sourceCustomerId, "custName", "张三", "string");
-            ontologyService.addDataProperty(sourceCustomerId, "custStatus", "NORMAL", "string");
-            ontologyService.addDataProperty(sourceCustomerId, "arrearsStatus", "NO_ARREARS", "string");
+            boolean commit = !"false".equalsIgnoreCase(request.getOrDefault("commit", "true"));
             
-            // 2. 创建目标客户
-            ontologyService.addIndividual("TargetCustomer", targetCustomerId);
-            ontologyService.addDataProperty(targetCustomerId, "custId", targetCustomerId, "string");
-            ontologyService.addDataProperty(targetCustomerId, "custName", "李四", "string");
-            ontologyService.addDataProperty(targetCustomerId, "custStatus", "NORMAL", "string");
-            
-            // 3. 创建过户订单
-            ontologyService.addIndividual("TransferOrder", orderId);
-            ontologyService.addDataProperty(orderId, "orderId", orderId, "string");
-            ontologyService.addDataProperty(orderId, "orderStatus", "CREATED", "string");
-            ontologyService.addDataProperty(orderId, "currentStepNumber", "1", "integer");
-            ontologyService.addDataProperty(orderId, "totalSteps", "8", "integer");
-            
-            // 4. 建立关系
-            ontologyService.addObjectProperty(orderId, "hasSourceCustomer", sourceCustomerId);
-            ontologyService.addObjectProperty(orderId, "hasTargetCustomer", targetCustomerId);
+            FactOverlay overlay = ontologyService.openOverlay()
+                // 1. 创建源客户
+                .addIndividual("SourceCustomer", sourceCustomerId)
+                .addDataProperty(sourceCustomerId, "custId", sourceCustomerId, "string")
+                .addDataProperty(sourceCustomerId, "custName", "张三", "string")
+                .addDataProperty(sourceCustomerId, "custStatus", "NORMAL", "string")
+                .addDataProperty(sourceCustomerId, "arrearsStatus", "NO_ARREARS", "string")
+                // 2. 创建目标客户
+                .addIndividual("TargetCustomer", targetCustomerId)
+                .addDataProperty(targetCustomerId, "custId", targetCustomerId, "string")
+                .addDataProperty(targetCustomerId, "custName", "李四", "string")
+                .addDataProperty(targetCustomerId, "custStatus", "NORMAL", "string")
+                // 3. 创建过户订单
+                .addIndividual("TransferOrder", orderId)
+                .addDataProperty(orderId, "orderId", orderId, "string")
+                .addDataProperty(orderId, "orderStatus", "CREATED", "string")
+                .addDataProperty(orderId, "currentStepNumber", "1", "integer")
+                .addDataProperty(orderId, "totalSteps", "8", "integer")
+                // 4. 建立关系
+                .addObjectProperty(orderId, "hasSourceCustomer", sourceCustomerId)
+                .addObjectProperty(orderId, "hasTargetCustomer", targetCustomerId);
             
             // 5. 创建可转移订阅
             String subscriptionId = "SUB_" + System.currentTimeMillis();
-            ontologyService.addIndividual("TransferableSubscription", subscriptionId);
-            ontologyService.addDataProperty(subscriptionId, "accNum", "13800138000", "string");
-            ontologyService.addDataProperty(subscriptionId, "prodInstId", subscriptionId, "string");
+            overlay.addIndividual("TransferableSubscription", subscriptionId)
+                .addDataProperty(subscriptionId, "accNum", "13800138000", "string")
+                .addDataProperty(subscriptionId, "prodInstId", subscriptionId, "string")
+                .addObjectProperty(sourceCustomerId, "ownsSubscription", subscriptionId)
+                .addObjectProperty(orderId, "changesSubscription", subscriptionId);
             
-            ontologyService.addObjectProperty(sourceCustomerId, "ownsSubscription", subscriptionId);
-            ontologyService.addObjectProperty(orderId, "changesSubscription", subscriptionId);
+            // 6. 显式提交到共享本体；commit=false时只返回预览，覆盖层随请求丢弃
+            Map<String, Object> orderProperties = ontologyService.getIndividualProperties(overlay, orderId);
+            int factCount = overlay.size();
+            if (commit) {
+                ontologyService.commit(overlay);
+            } else {
+                overlay.discard();
+            }
             
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
@@ -225,6 +236,9 @@ public class OntologyController {
             response.put("sourceCustomerId", sourceCustomerId);
             response.put("targetCustomerId", targetCustomerId);
             response.put("subscriptionId", subscriptionId);
+            response.put("committed", commit);
+            response.put("factCount", factCount);
+            response.put("orderProperties", orderProperties);
             
             return ResponseEntity.ok(response);
             
@@ -250,17 +264,19 @@ public class OntologyController {
             String custStatus = request.getOrDefault("custStatus", "NORMAL");
             String arrearsStatus = request.getOrDefault("arrearsStatus", "NO_ARREARS");
             
-            // 创建测试客户
-            ontologyService.addIndividual("SourceCustomer", customerId);
-            ontologyService.addDataProperty(customerId, "custId", customerId, "string");
-            ontologyService.addDataProperty(customerId, "custStatus", custStatus, "string");
-            ontologyService.addDataProperty(customerId, "arrearsStatus", arrearsStatus, "string");
+            // 测试客户只写入请求级覆盖层，不进入共享本体
+            FactOverlay overlay = ontologyService.openOverlay()
+                .addIndividual("SourceCustomer", customerId)
+                .setDataProperty(customerId, "custId", customerId, "string")
+                .setDataProperty(customerId, "custStatus", custStatus, "string")
+                .setDataProperty(customerId, "arrearsStatus", arrearsStatus, "string");
             
             // 执行推理
             Map<String, Object> reasoningResult = ontologyService.executeSWRLReasoning();
             
-            // 查询推理结果
-            Map<String, Object> properties = ontologyService.getIndividualProperties(customerId);
+            // 查询推理结果（共享本体 + 覆盖层）
+            Map<String, Object> properties = ontologyService.getIndividualProperties(overlay, customerId);
+            overlay.discard();
             
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
@@ -278,4 +294,47 @@ public class OntologyController {
             return ResponseEntity.status(500).body(response);
         }
     }
+
+    /**
+     * 立即清理到期的订单个体
+     */
+    @PostMapping("/lifecycle/evict")
+    public ResponseEntity<Map<String, Object>> evictExpiredIndividuals() {
+        log.info("清理到期的订单个体");
+        try {
+            return ResponseEntity.ok(lifecycleManager.evictNow());
+        } catch (Exception e) {
+            log.error("清理订单个体失败", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(500).body(response);
+        }
+    }
+
+    /**
+     * 获取个体生命周期统计
+     */
+    @GetMapping("/lifecycle/statistics")
+    public ResponseEntity<Map<String, Object>> getLifecycleStatistics() {
+        return ResponseEntity.ok(lifecycleManager.getStatistics());
+    }
+
+    /**
+     * 将当前事实快照导出为内存映射事实文件，下次启动时映射使用
+     */
+    @PostMapping("/fact-store/export")
+    public ResponseEntity<Map<String, Object>> exportFactStore() {
+        log.info("导出事实映射文件");
+        Map<String, Object> result = ontologyService.exportFactStore();
+        return "success".equals(result.get("status")) ? ResponseEntity.ok(result) : ResponseEntity.status(500).body(result);
+    }
+
+    /**
+     * 获取事实库统计
+     */
+    @GetMapping("/fact-store/statistics")
+    public ResponseEntity<Map<String, Object>> getFactStoreStatistics() {
+        return ResponseEntity.ok(ontologyService.getFactStoreStatistics());
+    }
 }
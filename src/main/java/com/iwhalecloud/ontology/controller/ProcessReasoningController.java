@@ -2,15 +2,21 @@ package com.iwhalecloud.ontology.controller;
 
 import com.iwhalecloud.ontology.model.ProcessStepInfo;
 import com.iwhalecloud.ontology.model.TransferOrderProcess;
+import com.iwhalecloud.ontology.service.OrderTransitionService;
 import com.iwhalecloud.ontology.service.ProcessReasoningService;
+import com.iwhalecloud.ontology.service.RuleOutcomeCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * 流程推理REST控制器
@@ -22,7 +28,11 @@ import java.util.Map;
 @Slf4j
 public class ProcessReasoningController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     private final ProcessReasoningService processReasoningService;
+    private final OrderTransitionService orderTransitionService;
+    private final RuleOutcomeCache ruleOutcomeCache;
 
     /**
      * 获取所有流程步骤定义
@@ -77,14 +87,15 @@ public class ProcessReasoningController {
     public ResponseEntity<Map<String, Object>> proceedToNextStep(@RequestBody Map<String, Object> request) {
         String orderId = (String) request.get("orderId");
         Integer currentStepNumber = (Integer) request.get("currentStepNumber");
+        Long version = toLong(request.get("version"));
         
-        log.info("执行步骤推进: 订单={}, 当前步骤={}", orderId, currentStepNumber);
+        log.info("执行步骤推进: 订单={}, 当前步骤={}, 版本={}", orderId, currentStepNumber, version);
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            // 推理下一步
-            TransferOrderProcess process = processReasoningService.reasonNextStep(orderId, currentStepNumber);
+            // 同一订单的迁移串行执行，推理通过后写回当前步骤并推进版本号
+            TransferOrderProcess process = orderTransitionService.proceed(orderId, currentStepNumber, version);
             
             if (!process.getCanProceed()) {
                 response.put("status", "blocked");
@@ -94,14 +105,19 @@ public class ProcessReasoningController {
                 return ResponseEntity.ok(response);
             }
             
-            // 更新订单的当前步骤（实际应该在这里更新本体）
-            // ontologyService.addDataProperty(orderId, "currentStepNumber", 
-            //     process.getNextStepNumber().toString(), "integer");
-            
             response.put("status", "success");
             response.put("message", "成功推进到步骤" + process.getNextStepNumber());
+            response.put("version", process.getVersion());
             response.put("process", process);
             
+        } catch (NoSuchElementException e) {
+            response.put("status", "not_found");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(404).body(response);
+        } catch (ConcurrentModificationException e) {
+            response.put("status", "conflict");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(409).body(response);
         } catch (Exception e) {
             log.error("步骤推进失败", e);
             response.put("status", "error");
@@ -122,13 +138,14 @@ public class ProcessReasoningController {
         String orderId = (String) request.get("orderId");
         Integer fromStep = (Integer) request.get("fromStep");
         Integer toStep = (Integer) request.get("toStep");
+        Long version = toLong(request.get("version"));
         
-        log.info("执行步骤回退: 订单={}, 从步骤{}回退到步骤{}", orderId, fromStep, toStep);
+        log.info("执行步骤回退: 订单={}, 从步骤{}回退到步骤{}, 版本={}", orderId, fromStep, toStep, version);
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            TransferOrderProcess process = processReasoningService.rollbackStep(orderId, fromStep, toStep);
+            TransferOrderProcess process = orderTransitionService.rollback(orderId, fromStep, toStep, version);
             
             if (!process.getCanProceed()) {
                 response.put("status", "error");
@@ -139,8 +156,17 @@ public class ProcessReasoningController {
             
             response.put("status", "success");
             response.put("message", "成功回退到步骤" + toStep);
+            response.put("version", process.getVersion());
             response.put("process", process);
             
+        } catch (NoSuchElementException e) {
+            response.put("status", "not_found");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(404).body(response);
+        } catch (ConcurrentModificationException e) {
+            response.put("status", "conflict");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(409).body(response);
         } catch (Exception e) {
             log.error("步骤回退失败", e);
             response.put("status", "error");
@@ -253,6 +279,14 @@ public class ProcessReasoningController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * 获取业务规则检查结果增量缓存的统计（评估、复用、失效的规则次数）
+     */
+    @GetMapping("/rule-outcomes/statistics")
+    public ResponseEntity<Map<String, Object>> getRuleOutcomeStatistics() {
+        return ResponseEntity.ok(ruleOutcomeCache.getStatistics());
+    }
+
     /**
      * 模拟完整流程执行
      * 
@@ -369,6 +403,48 @@ public class ProcessReasoningController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * 批量推理多个订单的下一步骤
+     * 请求体: {"orderIds": [...]} 或 {"selector": {"className": "TransferOrder", "dataProperties": {...}, "limit": 1000}}，
+     * 可选 "parallelism" 指定并行度
+     */
+    @PostMapping("/reasoning/batch")
+    @SuppressWarnings("unchecked")
+    public ResponseEntity<Map<String, Object>> batchReasoning(@RequestBody Map<String, Object> request) {
+        List<String> orderIds = (List<String>) request.get("orderIds");
+        Map<String, Object> selector = (Map<String, Object>) request.get("selector");
+        Integer parallelism = (Integer) request.get("parallelism");
+        
+        log.info("批量推理: 订单数={}, 选择器={}", orderIds == null ? 0 : orderIds.size(), selector);
+        
+        Map<String, Object> result = processReasoningService.batchReasoning(orderIds, selector, parallelism);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 流式批量推理
+     * 请求体为NDJSON，每行 {"orderId": "...", "context": {...}}；响应为NDJSON，每个订单评估完成后立即写出一行
+     */
+    @PostMapping(value = "/reasoning/batch/stream", consumes = NDJSON, produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamBatchReasoning(InputStream requestBody) {
+        log.info("流式批量推理");
+        
+        StreamingResponseBody body = output -> processReasoningService.streamBatchReasoning(requestBody, output);
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * 物化所有SWRL规则的推导事实
+     * @param persist 是否将推导事实写回本体
+     */
+    @PostMapping("/reasoning/materialize")
+    public ResponseEntity<Map<String, Object>> materializeInferences(
+            @RequestParam(defaultValue = "false") boolean persist) {
+        log.info("物化推导事实: persist={}", persist);
+        Map<String, Object> result = processReasoningService.materializeInferences(persist);
+        return ResponseEntity.ok(result);
+    }
+
     /**
      * 获取规则的logicExpression
      * @param ruleCode 规则代码
@@ -400,4 +476,8 @@ public class ProcessReasoningController {
         
         return ResponseEntity.ok(result);
     }
-}
\ No newline at end of file
+
+    private static Long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+}
@@ -0,0 +1,70 @@
+package com.iwhalecloud.ontology.model;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 编译后的SWRL规则（不可变语法树）
+ * 在规则加载时由logicExpression解析一次，执行时直接复用
+ */
+@Value
+public class CompiledRule {
+
+    /**
+     * 规则代码（logicCode）
+     */
+    String ruleCode;
+
+    /**
+     * 原始规则表达式
+     */
+    String expression;
+
+    /**
+     * 前提条件原子
+     */
+    List<RuleAtom> body;
+
+    /**
+     * 结论原子
+     */
+    List<RuleAtom> head;
+
+    /**
+     * 变量名列表，下标即变量槽位
+     */
+    List<String> variables;
+
+    /**
+     * 是否解析成功
+     */
+    boolean valid;
+
+    /**
+     * 解析失败原因
+     */
+    String errorMessage;
+
+    public static CompiledRule invalid(String ruleCode, String expression, String errorMessage) {
+        return new CompiledRule(ruleCode, expression, List.of(), List.of(), List.of(), false, errorMessage);
+    }
+
+    public int getVariableCount() {
+        return variables.size();
+    }
+
+    public String getAntecedent() {
+        return body.stream().map(RuleAtom::toString).collect(Collectors.joining(" ^ "));
+    }
+
+    public String getConsequent() {
+        return head.stream().map(RuleAtom::toString).collect(Collectors.joining(" ^ "));
+    }
+
+    @Override
+    public String toString() {
+        return valid ? getAntecedent() + " -> " + getConsequent() : "invalid(" + errorMessage + ")";
+    }
+}
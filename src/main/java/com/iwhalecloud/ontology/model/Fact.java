@@ -0,0 +1,54 @@
+package com.iwhalecloud.ontology.model;
+
+import lombok.Value;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObject;
+
+/**
+ * 推理事实
+ * 类事实 C(s) 的object为null；属性事实 p(s, o) 的object为个体或字面量
+ */
+@Value
+public class Fact {
+
+    /**
+     * 谓词IRI（类或属性）
+     */
+    IRI predicate;
+
+    /**
+     * 主体个体
+     */
+    OWLNamedIndividual subject;
+
+    /**
+     * 客体（OWLNamedIndividual或OWLLiteral），类事实为null
+     */
+    OWLObject object;
+
+    public static Fact classFact(IRI classIRI, OWLNamedIndividual individual) {
+        return new Fact(classIRI, individual, null);
+    }
+
+    public static Fact propertyFact(IRI propertyIRI, OWLNamedIndividual subject, OWLObject object) {
+        return new Fact(propertyIRI, subject, object);
+    }
+
+    public boolean isClassFact() {
+        return object == null;
+    }
+
+    @Override
+    public String toString() {
+        String subjectName = subject.getIRI().getShortForm();
+        if (object == null) {
+            return predicate.getShortForm() + "(" + subjectName + ")";
+        }
+        String objectName = object instanceof OWLLiteral
+            ? "\"" + ((OWLLiteral) object).getLiteral() + "\""
+            : ((OWLNamedIndividual) object).getIRI().getShortForm();
+        return predicate.getShortForm() + "(" + subjectName + ", " + objectName + ")";
+    }
+}
@@ -0,0 +1,83 @@
+package com.iwhalecloud.ontology.model;
+
+import lombok.Value;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLObject;
+
+import java.util.List;
+
+/**
+ * 已链接的规则原子
+ * 谓词已解析为OWL实体句柄（类、对象属性、数据属性）或内置函数，常量参数已解析为个体或字面量
+ */
+@Value
+public class LinkedAtom {
+
+    /**
+     * 原始语法树原子
+     */
+    RuleAtom atom;
+
+    /**
+     * 链接后的谓词种类
+     */
+    Kind kind;
+
+    /**
+     * 谓词实体句柄，内置函数为null
+     */
+    OWLEntity entity;
+
+    /**
+     * 内置函数名（swrlb本地名），非内置函数为null
+     */
+    String builtin;
+
+    /**
+     * 按参数位置解析的常量（OWLNamedIndividual或OWLLiteral），变量位置为null
+     */
+    List<OWLObject> constants;
+
+    /**
+     * 谓词种类枚举
+     */
+    public enum Kind {
+        CLASS,
+        OBJECT_PROPERTY,
+        DATA_PROPERTY,
+        BUILTIN
+    }
+
+    /**
+     * 谓词IRI，内置函数为null
+     */
+    public IRI getPredicate() {
+        return entity == null ? null : entity.getIRI();
+    }
+
+    public boolean isBuiltin() {
+        return kind == Kind.BUILTIN;
+    }
+
+    public boolean isClassAtom() {
+        return kind == Kind.CLASS;
+    }
+
+    public int getArity() {
+        return atom.getArguments().size();
+    }
+
+    public RuleTerm getArgument(int index) {
+        return atom.getArgument(index);
+    }
+
+    public OWLObject getConstant(int index) {
+        return constants.get(index);
+    }
+
+    @Override
+    public String toString() {
+        return atom.toString();
+    }
+}
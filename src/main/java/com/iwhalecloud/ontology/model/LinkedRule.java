@@ -0,0 +1,55 @@
+package com.iwhalecloud.ontology.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * 已链接的SWRL规则
+ * 在规则加载/重载时由编译后的语法树链接一次，执行时直接使用预解析的实体句柄
+ */
+@Value
+public class LinkedRule {
+
+    /**
+     * 编译后的语法树
+     */
+    CompiledRule compiled;
+
+    /**
+     * 前提条件原子
+     */
+    List<LinkedAtom> body;
+
+    /**
+     * 结论原子
+     */
+    List<LinkedAtom> head;
+
+    /**
+     * 是否链接成功
+     */
+    boolean linked;
+
+    /**
+     * 链接失败原因（无法解析的前缀、未定义的类或属性等）
+     */
+    List<String> errors;
+
+    public static LinkedRule unresolved(CompiledRule compiled, List<String> errors) {
+        return new LinkedRule(compiled, List.of(), List.of(), false, List.copyOf(errors));
+    }
+
+    public String getRuleCode() {
+        return compiled.getRuleCode();
+    }
+
+    public int getVariableCount() {
+        return compiled.getVariableCount();
+    }
+
+    @Override
+    public String toString() {
+        return linked ? compiled.toString() : "unresolved(" + String.join("; ", errors) + ")";
+    }
+}
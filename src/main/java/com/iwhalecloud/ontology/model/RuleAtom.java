@@ -0,0 +1,61 @@
+package com.iwhalecloud.ontology.model;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * SWRL规则原子
+ * 类原子 C(?x)、属性原子 p(?x, ?y) 或内置函数原子 swrlb:f(...)
+ */
+@Value
+public class RuleAtom {
+
+    /**
+     * 原子类型
+     */
+    AtomType type;
+
+    /**
+     * 谓词前缀（如 transfer、base、swrlb），无前缀时为空字符串
+     */
+    String prefix;
+
+    /**
+     * 谓词本地名
+     */
+    String localName;
+
+    /**
+     * 原子参数（不可变）
+     */
+    List<RuleTerm> arguments;
+
+    /**
+     * 原子类型枚举
+     */
+    public enum AtomType {
+        CLASS,
+        PROPERTY,
+        BUILTIN
+    }
+
+    /**
+     * 获取谓词限定名，如 base:custName
+     */
+    public String getQualifiedName() {
+        return prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    public RuleTerm getArgument(int index) {
+        return arguments.get(index);
+    }
+
+    @Override
+    public String toString() {
+        return getQualifiedName() + arguments.stream()
+            .map(RuleTerm::toString)
+            .collect(Collectors.joining(", ", "(", ")"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.iwhalecloud.ontology.model;
+
+import lombok.Value;
+
+/**
+ * SWRL规则项
+ * 规则原子的参数：变量（带槽位编号）、个体常量或字面量
+ */
+@Value
+public class RuleTerm {
+
+    /**
+     * 项类型
+     */
+    TermType type;
+
+    /**
+     * 变量名（不含?）、个体的限定名（如 transfer:Step02_VerifySourceCustomer），或带类型字面量的词法形式
+     */
+    String name;
+
+    /**
+     * 变量槽位编号，非变量为-1
+     */
+    int slot;
+
+    /**
+     * 字面量值（String/Boolean/Long/Double），非字面量为null
+     */
+    Object value;
+
+    /**
+     * 字面量的数据类型（如 xsd:integer，或完整IRI），未标注类型时为null
+     */
+    String datatype;
+
+    /**
+     * 项类型枚举
+     */
+    public enum TermType {
+        VARIABLE,
+        INDIVIDUAL,
+        LITERAL
+    }
+
+    public static RuleTerm variable(String name, int slot) {
+        return new RuleTerm(TermType.VARIABLE, name, slot, null, null);
+    }
+
+    public static RuleTerm individual(String qualifiedName) {
+        return new RuleTerm(TermType.INDIVIDUAL, qualifiedName, -1, null, null);
+    }
+
+    public static RuleTerm literal(Object value) {
+        return new RuleTerm(TermType.LITERAL, null, -1, value, null);
+    }
+
+    /**
+     * 带类型标注的字面量，如 "1"^^xsd:integer
+     * @param value 按数据类型转换后的值
+     * @param lexical 引号内的词法形式
+     */
+    public static RuleTerm typedLiteral(Object value, String lexical, String datatype) {
+        return new RuleTerm(TermType.LITERAL, lexical, -1, value, datatype);
+    }
+
+    public boolean isVariable() {
+        return type == TermType.VARIABLE;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case VARIABLE:
+                return "?" + name;
+            case INDIVIDUAL:
+                return name;
+            default:
+                if (datatype != null) {
+                    return "\"" + name + "\"^^" + (datatype.contains("://") ? "<" + datatype + ">" : datatype);
+                }
+                return value instanceof String ? "\"" + value + "\"" : String.valueOf(value);
+        }
+    }
+}
@@ -86,4 +86,9 @@ public class TransferOrderProcess {
      * 推理建议
      */
     private String recommendation;
+    
+    /**
+     * 流程版本号，每次推进或回退后递增，用于乐观并发检测
+     */
+    private Long version;
 }
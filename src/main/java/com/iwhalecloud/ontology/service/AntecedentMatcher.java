@@ -0,0 +1,113 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.Fact;
+import com.iwhalecloud.ontology.model.LinkedAtom;
+import com.iwhalecloud.ontology.model.LinkedRule;
+import com.iwhalecloud.ontology.model.RuleTerm;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLObject;
+
+import java.util.*;
+
+/**
+ * 规则前提匹配器
+ *
+ * 按连接规划器给出的顺序（见 {@link JoinPlanner}）从最具选择性的原子开始生成候选绑定，
+ * 之后只沿规则的连接变量扩展（索引嵌套循环连接），内置函数在其变量就绪后立即过滤。
+ * 代价与匹配的元组数量成正比，而不是与本体中的个体数量成正比。
+ */
+final class AntecedentMatcher {
+
+    private AntecedentMatcher() {
+    }
+
+    /**
+     * 查找满足规则前提的全部变量绑定
+     * @param rule 已链接的规则
+     * @param order 连接规划器给出的原子求值顺序
+     * @param source 事实来源
+     * @param dataFactory 用于构造内置函数计算结果的字面量
+     * @return 变量绑定列表，数组下标为变量槽位
+     */
+    static List<OWLObject[]> match(LinkedRule rule, int[] order, FactSource source, OWLDataFactory dataFactory) {
+        List<OWLObject[]> results = new ArrayList<>();
+        extend(rule, order, 0, new OWLObject[rule.getVariableCount()], source, dataFactory, results);
+        return results;
+    }
+
+    private static void extend(LinkedRule rule, int[] order, int position, OWLObject[] bindings,
+                               FactSource source, OWLDataFactory dataFactory, List<OWLObject[]> results) {
+        if (position == order.length) {
+            results.add(bindings);
+            return;
+        }
+
+        LinkedAtom atom = rule.getBody().get(order[position]);
+        if (atom.isBuiltin()) {
+            OWLObject[] extended = evaluateBuiltin(atom, bindings, dataFactory);
+            if (extended != null) {
+                extend(rule, order, position + 1, extended, source, dataFactory, results);
+            }
+            return;
+        }
+
+        OWLObject subject = valueOf(atom, 0, bindings);
+        OWLObject object = atom.isClassAtom() ? null : valueOf(atom, 1, bindings);
+        for (Fact fact : source.match(atom.getEntity(), subject, object)) {
+            OWLObject[] extended = bindings.clone();
+            if (bind(atom, fact, extended)) {
+                extend(rule, order, position + 1, extended, source, dataFactory, results);
+            }
+        }
+    }
+
+    /**
+     * 求值内置函数：过滤类函数返回原绑定或null，计算类函数返回写入结果后的新绑定
+     */
+    static OWLObject[] evaluateBuiltin(LinkedAtom atom, OWLObject[] bindings, OWLDataFactory dataFactory) {
+        Object[] args = new Object[atom.getArity()];
+        for (int i = 0; i < args.length; i++) {
+            RuleTerm term = atom.getArgument(i);
+            if (term.isVariable()) {
+                args[i] = bindings[term.getSlot()] == null ? null : RuleValues.toJava(bindings[term.getSlot()]);
+            } else {
+                args[i] = term.getType() == RuleTerm.TermType.LITERAL ? term.getValue() : term.getName();
+            }
+        }
+
+        RuleTerm first = atom.getArgument(0);
+        if (SWRLBuiltins.isBinding(atom.getBuiltin()) && first.isVariable() && bindings[first.getSlot()] == null) {
+            Object value = SWRLBuiltins.compute(atom.getBuiltin(), Arrays.copyOfRange(args, 1, args.length));
+            if (value == null) {
+                return null;
+            }
+            OWLObject[] extended = bindings.clone();
+            extended[first.getSlot()] = RuleValues.toLiteral(value, dataFactory);
+            return extended;
+        }
+        return SWRLBuiltins.test(atom.getBuiltin(), args) ? bindings : null;
+    }
+
+    static boolean bind(LinkedAtom atom, Fact fact, OWLObject[] bindings) {
+        int arity = atom.isClassAtom() ? 1 : 2;
+        for (int i = 0; i < arity; i++) {
+            OWLObject value = i == 0 ? fact.getSubject() : fact.getObject();
+            RuleTerm term = atom.getArgument(i);
+            if (!term.isVariable()) {
+                if (!RuleValues.sameValue(atom.getConstant(i), value)) {
+                    return false;
+                }
+            } else if (bindings[term.getSlot()] == null) {
+                bindings[term.getSlot()] = value;
+            } else if (!RuleValues.sameValue(bindings[term.getSlot()], value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static OWLObject valueOf(LinkedAtom atom, int index, OWLObject[] bindings) {
+        RuleTerm term = atom.getArgument(index);
+        return term.isVariable() ? bindings[term.getSlot()] : atom.getConstant(index);
+    }
+}
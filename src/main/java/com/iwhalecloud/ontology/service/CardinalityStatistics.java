@@ -0,0 +1,143 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.Fact;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLObject;
+import org.semanticweb.owlapi.model.OWLOntology;
+
+import java.util.*;
+
+/**
+ * 本体基数统计快照
+ *
+ * 一次遍历ABox断言得到：类实例数（含子类实例）、属性断言数、属性的不同主体数和不同取值数。
+ * 由此估算属性扇出（每个主体的平均取值数）和扇入（每个取值的平均主体数），供连接规划使用。
+ * 快照不可变，epoch标识统计的版本，统计刷新后由新的快照替换。
+ */
+final class CardinalityStatistics {
+
+    private final long epoch;
+    private final int factCount;
+    private final int individualCount;
+    private final Map<IRI, Integer> classCounts;
+    private final Map<IRI, PropertyCount> propertyCounts;
+
+    private CardinalityStatistics(long epoch, int factCount, int individualCount,
+                                  Map<IRI, Integer> classCounts, Map<IRI, PropertyCount> propertyCounts) {
+        this.epoch = epoch;
+        this.factCount = factCount;
+        this.individualCount = individualCount;
+        this.classCounts = classCounts;
+        this.propertyCounts = propertyCounts;
+    }
+
+    /**
+     * 从本体断言计算统计
+     * @param epoch 统计版本号
+     */
+    static CardinalityStatistics of(OWLOntology ontology, long epoch) {
+        Map<IRI, Set<IRI>> superClasses = OntologyFacts.superClassClosure(ontology);
+        Map<IRI, Integer> classCounts = new HashMap<>();
+        Map<IRI, Set<OWLObject>> subjects = new HashMap<>();
+        Map<IRI, Set<OWLObject>> objects = new HashMap<>();
+        Map<IRI, Integer> assertions = new HashMap<>();
+        Set<OWLObject> individuals = new HashSet<>();
+        int factCount = 0;
+
+        for (Fact fact : OntologyFacts.extract(ontology)) {
+            factCount++;
+            individuals.add(fact.getSubject());
+            if (fact.isClassFact()) {
+                classCounts.merge(fact.getPredicate(), 1, Integer::sum);
+                for (IRI parent : superClasses.getOrDefault(fact.getPredicate(), Collections.emptySet())) {
+                    classCounts.merge(parent, 1, Integer::sum);
+                }
+            } else {
+                assertions.merge(fact.getPredicate(), 1, Integer::sum);
+                subjects.computeIfAbsent(fact.getPredicate(), k -> new HashSet<>()).add(fact.getSubject());
+                objects.computeIfAbsent(fact.getPredicate(), k -> new HashSet<>()).add(fact.getObject());
+            }
+        }
+
+        Map<IRI, PropertyCount> propertyCounts = new HashMap<>();
+        assertions.forEach((predicate, count) -> propertyCounts.put(predicate,
+            new PropertyCount(count, subjects.get(predicate).size(), objects.get(predicate).size())));
+        return new CardinalityStatistics(epoch, factCount, individuals.size(), classCounts, propertyCounts);
+    }
+
+    long getEpoch() {
+        return epoch;
+    }
+
+    int getFactCount() {
+        return factCount;
+    }
+
+    /**
+     * 类的实例数（含子类实例）
+     */
+    int classSize(IRI cls) {
+        return classCounts.getOrDefault(cls, 0);
+    }
+
+    /**
+     * 个体属于该类的概率，用于已绑定变量上的类过滤
+     */
+    double classSelectivity(IRI cls) {
+        return individualCount == 0 ? 0 : Math.min(1.0, (double) classSize(cls) / individualCount);
+    }
+
+    /**
+     * 属性断言数
+     */
+    int propertySize(IRI property) {
+        PropertyCount count = propertyCounts.get(property);
+        return count == null ? 0 : count.assertions;
+    }
+
+    /**
+     * 扇出：已知主体时平均取值数
+     */
+    double fanOut(IRI property) {
+        PropertyCount count = propertyCounts.get(property);
+        return count == null ? 0 : (double) count.assertions / count.subjects;
+    }
+
+    /**
+     * 扇入：已知取值时平均主体数
+     */
+    double fanIn(IRI property) {
+        PropertyCount count = propertyCounts.get(property);
+        return count == null ? 0 : (double) count.assertions / count.objects;
+    }
+
+    /**
+     * 主体和取值都已知时断言存在的概率
+     */
+    double pairSelectivity(IRI property) {
+        PropertyCount count = propertyCounts.get(property);
+        return count == null ? 0 : Math.min(1.0, (double) count.assertions / ((double) count.subjects * count.objects));
+    }
+
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("epoch", epoch);
+        map.put("factCount", factCount);
+        map.put("individualCount", individualCount);
+        map.put("classCount", classCounts.size());
+        map.put("propertyCount", propertyCounts.size());
+        return map;
+    }
+
+    private static final class PropertyCount {
+        final int assertions;
+        final int subjects;
+        final int objects;
+
+        PropertyCount(int assertions, int subjects, int objects) {
+            this.assertions = assertions;
+            this.subjects = subjects;
+            this.objects = objects;
+        }
+    }
+}
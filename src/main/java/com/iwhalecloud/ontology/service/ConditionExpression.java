@@ -0,0 +1,450 @@
+package com.iwhalecloud.ontology.service;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * 条件表达式编译器
+ *
+ * 把决策规则的条件一次性解析、类型检查并编译为 {@link Node} 谓词树，求值时只读取上下文字段，不分配对象、不抛异常。
+ * 支持的语法：
+ * <pre>
+ * subscriptionCount > 1 AND (custType = 'VIP' OR NOT flag = true)
+ * amount in [100..500)  AND  custType not in ('BLACK', 'FRAUD')
+ * </pre>
+ * 1. 连接词 AND / OR / NOT（或 &amp;&amp; / || / !，不区分大小写），括号分组，优先级 NOT &gt; AND &gt; OR
+ * 2. 比较的左边为上下文字段名，右边为字面量：'a' / "a" 字符串，true / false 布尔，1 / 1.5 数字，其他单词按字符串
+ * 3. 运算符 = == != &lt;&gt; &gt; &gt;= &lt; &lt;=，in [a..b] / (a..b] 区间（端点可省略），in (a, b) / not in (a, b) 枚举
+ * 4. 大小比较和区间只接受数字字面量（编译时检查），上下文值不是数字时不成立；字段缺失时任何比较都不成立
+ * 5. 等值比较中数字按数值相等，布尔与字符串 "true" / "false" 相等
+ */
+final class ConditionExpression {
+
+    /**
+     * 编译后的条件节点
+     */
+    interface Node extends Predicate<Map<String, Object>> {
+    }
+
+    private final String source;
+    private final List<String> tokens = new ArrayList<>();
+    private int pos;
+
+    private ConditionExpression(String source) {
+        this.source = source;
+    }
+
+    /**
+     * 编译条件表达式
+     * @throws IllegalArgumentException 语法或类型错误
+     */
+    static Node compile(String expression) {
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("条件表达式为空");
+        }
+        ConditionExpression parser = new ConditionExpression(expression);
+        parser.tokenize();
+        Node node = parser.parseOr();
+        if (parser.pos < parser.tokens.size()) {
+            throw new IllegalArgumentException("无法识别的内容: " + parser.tokens.get(parser.pos));
+        }
+        return node;
+    }
+
+    /**
+     * 条件是否为比较的合取（不含OR、NOT），是则返回各比较，否则返回null
+     */
+    static List<Comparison> conjuncts(Node node) {
+        if (node instanceof Comparison) {
+            return List.of((Comparison) node);
+        }
+        if (!(node instanceof And)) {
+            return null;
+        }
+        List<Comparison> comparisons = new ArrayList<>();
+        for (Node operand : ((And) node).operands) {
+            List<Comparison> nested = conjuncts(operand);
+            if (nested == null) {
+                return null;
+            }
+            comparisons.addAll(nested);
+        }
+        return comparisons;
+    }
+
+    // ---------------------------------------------------------------- 语法分析
+
+    private Node parseOr() {
+        List<Node> operands = new ArrayList<>();
+        operands.add(parseAnd());
+        while (accept("OR") || accept("||")) {
+            operands.add(parseAnd());
+        }
+        return operands.size() == 1 ? operands.get(0) : new Or(operands.toArray(new Node[0]));
+    }
+
+    private Node parseAnd() {
+        List<Node> operands = new ArrayList<>();
+        operands.add(parseUnary());
+        while (accept("AND") || accept("&&")) {
+            operands.add(parseUnary());
+        }
+        return operands.size() == 1 ? operands.get(0) : new And(operands.toArray(new Node[0]));
+    }
+
+    private Node parseUnary() {
+        if (accept("NOT") || accept("!")) {
+            return new Not(parseUnary());
+        }
+        if (accept("(")) {
+            Node node = parseOr();
+            expect(")");
+            return node;
+        }
+        return parseComparison();
+    }
+
+    private Comparison parseComparison() {
+        String field = next("缺少字段名");
+        if (!isIdentifier(field) || isKeyword(field)) {
+            throw new IllegalArgumentException("应为字段名: " + field);
+        }
+        String operator = next("字段 " + field + " 后缺少比较运算符");
+        if ("NOT".equalsIgnoreCase(operator)) {
+            expectKeyword("IN");
+            return Comparison.values(field, true, parseList(field));
+        }
+        if ("IN".equalsIgnoreCase(operator)) {
+            String open = peek();
+            if ("[".equals(open) || "(".equals(open) && isRange()) {
+                return parseRange(field);
+            }
+            return Comparison.values(field, false, parseList(field));
+        }
+        switch (operator) {
+            case "=":
+            case "==":
+                return Comparison.equality(field, false, literal(next("缺少比较值")));
+            case "!=":
+            case "<>":
+                return Comparison.equality(field, true, literal(next("缺少比较值")));
+            case ">":
+                return Comparison.range(field, number(field, operator), false, Double.POSITIVE_INFINITY, false);
+            case ">=":
+                return Comparison.range(field, number(field, operator), true, Double.POSITIVE_INFINITY, false);
+            case "<":
+                return Comparison.range(field, Double.NEGATIVE_INFINITY, false, number(field, operator), false);
+            case "<=":
+                return Comparison.range(field, Double.NEGATIVE_INFINITY, false, number(field, operator), true);
+            default:
+                throw new IllegalArgumentException("不支持的比较运算符: " + operator);
+        }
+    }
+
+    /**
+     * 区间 [a..b] / (a..b) / [a..b) / (a..b]，端点可省略
+     */
+    private Comparison parseRange(String field) {
+        boolean lowInclusive = "[".equals(next(null));
+        double low = "..".equals(peek()) ? Double.NEGATIVE_INFINITY : number(field, "in");
+        expect("..");
+        double high = "]".equals(peek()) || ")".equals(peek()) ? Double.POSITIVE_INFINITY : number(field, "in");
+        String close = next("区间缺少 ] 或 )");
+        if (!"]".equals(close) && !")".equals(close)) {
+            throw new IllegalArgumentException("区间缺少 ] 或 ): " + close);
+        }
+        return Comparison.range(field, low, lowInclusive, high, "]".equals(close));
+    }
+
+    private List<Object> parseList(String field) {
+        expect("(");
+        List<Object> values = new ArrayList<>();
+        if (!accept(")")) {
+            do {
+                values.add(literal(next("字段 " + field + " 的枚举值不完整")));
+            } while (accept(","));
+            expect(")");
+        }
+        return values;
+    }
+
+    /**
+     * 区间与枚举都可以 ( 开头，以 .. 区分
+     */
+    private boolean isRange() {
+        return pos + 1 < tokens.size() && "..".equals(tokens.get(pos + 1))
+            || pos + 2 < tokens.size() && "..".equals(tokens.get(pos + 2));
+    }
+
+    private double number(String field, String operator) {
+        Object value = literal(next("缺少比较值"));
+        if (!(value instanceof Double)) {
+            throw new IllegalArgumentException("字段 " + field + " 的 " + operator + " 比较需要数字: " + value);
+        }
+        return (Double) value;
+    }
+
+    /**
+     * 字面量记号的值：字符串、布尔或数字（数字统一为double）
+     */
+    private static Object literal(String token) {
+        if (token.length() >= 2 && (token.charAt(0) == '\'' || token.charAt(0) == '"')) {
+            return token.substring(1, token.length() - 1).replace("\\" + token.charAt(0), String.valueOf(token.charAt(0)));
+        }
+        if ("true".equalsIgnoreCase(token) || "false".equalsIgnoreCase(token)) {
+            return Boolean.valueOf(token.toLowerCase());
+        }
+        if (isNumber(token)) {
+            return Double.valueOf(token);
+        }
+        if (!isIdentifier(token) || isKeyword(token)) {
+            throw new IllegalArgumentException("应为字面量: " + token);
+        }
+        return token;
+    }
+
+    private boolean accept(String token) {
+        if (pos < tokens.size() && tokens.get(pos).equalsIgnoreCase(token)) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if (!accept(token)) {
+            throw new IllegalArgumentException("缺少 " + token + (pos < tokens.size() ? ": " + tokens.get(pos) : ""));
+        }
+    }
+
+    private void expectKeyword(String keyword) {
+        if (!accept(keyword)) {
+            throw new IllegalArgumentException("NOT 之后应为 " + keyword);
+        }
+    }
+
+    private String peek() {
+        return pos < tokens.size() ? tokens.get(pos) : null;
+    }
+
+    private String next(String missing) {
+        if (pos >= tokens.size()) {
+            throw new IllegalArgumentException(missing == null ? "条件表达式不完整" : missing);
+        }
+        return tokens.get(pos++);
+    }
+
+    // ---------------------------------------------------------------- 词法分析
+
+    private void tokenize() {
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'' || c == '"') {
+                int end = i + 1;
+                while (end < source.length() && source.charAt(end) != c) {
+                    end += source.charAt(end) == '\\' ? 2 : 1;
+                }
+                if (end >= source.length()) {
+                    throw new IllegalArgumentException("字符串字面量未闭合");
+                }
+                tokens.add(source.substring(i, end + 1));
+                i = end + 1;
+            } else if (Character.isDigit(c) || (c == '-' || c == '+') && i + 1 < source.length()
+                    && Character.isDigit(source.charAt(i + 1))) {
+                int end = i + 1;
+                while (end < source.length() && (Character.isDigit(source.charAt(end))
+                        || source.charAt(end) == '.' && end + 1 < source.length() && Character.isDigit(source.charAt(end + 1)))) {
+                    end++;
+                }
+                tokens.add(source.substring(i, end));
+                i = end;
+            } else if (Character.isLetter(c) || c == '_') {
+                int end = i + 1;
+                while (end < source.length() && (Character.isLetterOrDigit(source.charAt(end))
+                        || source.charAt(end) == '_' || source.charAt(end) == '.' && !source.startsWith("..", end))) {
+                    end++;
+                }
+                tokens.add(source.substring(i, end));
+                i = end;
+            } else {
+                String operator = operatorAt(i);
+                if (operator == null) {
+                    throw new IllegalArgumentException("无法识别的字符: " + c);
+                }
+                tokens.add(operator);
+                i += operator.length();
+            }
+        }
+    }
+
+    private String operatorAt(int i) {
+        for (String operator : new String[]{">=", "<=", "!=", "<>", "==", "&&", "||", "..", "=", ">", "<", "!", "(", ")", "[", "]", ","}) {
+            if (source.startsWith(operator, i)) {
+                return operator;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isIdentifier(String token) {
+        return !token.isEmpty() && (Character.isLetter(token.charAt(0)) || token.charAt(0) == '_');
+    }
+
+    private static boolean isNumber(String token) {
+        char first = token.charAt(0);
+        return Character.isDigit(first) || token.length() > 1 && (first == '-' || first == '+');
+    }
+
+    private static boolean isKeyword(String token) {
+        return "AND".equalsIgnoreCase(token) || "OR".equalsIgnoreCase(token)
+            || "NOT".equalsIgnoreCase(token) || "IN".equalsIgnoreCase(token);
+    }
+
+    // ---------------------------------------------------------------- 节点
+
+    private static final class And implements Node {
+        final Node[] operands;
+
+        And(Node[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        public boolean test(Map<String, Object> context) {
+            for (Node operand : operands) {
+                if (!operand.test(context)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Or implements Node {
+        final Node[] operands;
+
+        Or(Node[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        public boolean test(Map<String, Object> context) {
+            for (Node operand : operands) {
+                if (operand.test(context)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Not implements Node {
+        final Node operand;
+
+        Not(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public boolean test(Map<String, Object> context) {
+            return !operand.test(context);
+        }
+    }
+
+    /**
+     * 字段比较：等值、排除、数值区间或枚举
+     */
+    static final class Comparison implements Node {
+
+        enum Kind { EQUALS, NOT_EQUALS, RANGE }
+
+        final String field;
+        final Kind kind;
+        /** EQUALS / NOT_EQUALS 的字面量，数字为Double，布尔为其字符串形式 */
+        final Set<Object> values;
+        final double low;
+        final boolean lowInclusive;
+        final double high;
+        final boolean highInclusive;
+
+        /** 等值比较的查找结构：字符串集合与升序数字数组 */
+        private final Set<String> strings;
+        private final double[] numbers;
+
+        private Comparison(String field, Kind kind, Set<Object> values,
+                           double low, boolean lowInclusive, double high, boolean highInclusive) {
+            this.field = field;
+            this.kind = kind;
+            this.values = values;
+            this.low = low;
+            this.lowInclusive = lowInclusive && low != Double.NEGATIVE_INFINITY;
+            this.high = high;
+            this.highInclusive = highInclusive && high != Double.POSITIVE_INFINITY;
+            Set<String> stringValues = new HashSet<>();
+            List<Double> numberValues = new ArrayList<>();
+            if (values != null) {
+                for (Object value : values) {
+                    if (value instanceof Double) {
+                        // +0.0 把 -0.0 规范为 0.0，与二分查找的位比较一致
+                        numberValues.add((Double) value + 0.0);
+                    } else {
+                        stringValues.add((String) value);
+                    }
+                }
+            }
+            this.strings = stringValues;
+            this.numbers = numberValues.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+        }
+
+        static Comparison equality(String field, boolean negated, Object value) {
+            return values(field, negated, List.of(value));
+        }
+
+        static Comparison values(String field, boolean negated, List<Object> values) {
+            Set<Object> normalized = new LinkedHashSet<>();
+            for (Object value : values) {
+                normalized.add(value instanceof Boolean ? value.toString() : value);
+            }
+            return new Comparison(field, negated ? Kind.NOT_EQUALS : Kind.EQUALS, Collections.unmodifiableSet(normalized),
+                Double.NaN, false, Double.NaN, false);
+        }
+
+        static Comparison range(String field, double low, boolean lowInclusive, double high, boolean highInclusive) {
+            return new Comparison(field, Kind.RANGE, null, low, lowInclusive, high, highInclusive);
+        }
+
+        @Override
+        public boolean test(Map<String, Object> context) {
+            Object value = context.get(field);
+            if (value == null) {
+                return false;
+            }
+            switch (kind) {
+                case EQUALS:
+                    return contains(value);
+                case NOT_EQUALS:
+                    return !contains(value);
+                default:
+                    if (!(value instanceof Number)) {
+                        return false;
+                    }
+                    double number = ((Number) value).doubleValue();
+                    return (number > low || number == low && lowInclusive)
+                        && (number < high || number == high && highInclusive);
+            }
+        }
+
+        private boolean contains(Object value) {
+            if (value instanceof Number) {
+                return Arrays.binarySearch(numbers, ((Number) value).doubleValue() + 0.0) >= 0;
+            }
+            if (value instanceof String) {
+                return strings.contains(value);
+            }
+            return value instanceof Boolean && strings.contains(value.toString());
+        }
+    }
+}
@@ -0,0 +1,588 @@
+package com.iwhalecloud.ontology.service;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 编译后的决策表（DecisionTable类型规则）
+ *
+ * 在规则加载时由logicExpression解析一次。语法（每行一条，# 开头为注释）：
+ * <pre>
+ * HIT FIRST                                     # 命中策略 FIRST / UNIQUE / COLLECT，可省略，默认FIRST
+ * IF subscriptionCount > 1 AND custType = 'VIP' THEN selectionRequired = true, level = 'A'
+ * IF subscriptionCount in [1..3) THEN selectionRequired = false
+ * IF custType in ('NORMAL', 'GOLD') THEN level = 'B'
+ * IF custType = 'VIP' OR NOT flag = true THEN level = 'D'
+ * IF - THEN level = 'C'                         # - 表示任意输入
+ * </pre>
+ * 条件语法见 {@link ConditionExpression}。由 AND 连接的列比较作为列单元格，同一行对同一列的多个比较合并为一个单元格
+ * （如 x &gt; 1 AND x != 3 合并为排除3的区间）；
+ * THEN之后为逗号分隔的输出赋值，不是赋值形式时整体作为动作文本。
+ *
+ * 每个输入列编译为索引：等值单元格按值建哈希索引，区间单元格把全部端点排序后切分为基本区间，
+ * 预先计算每个基本区间覆盖的行集合。求值时每列一次哈希查找加一次二分查找，各列命中行集合按位求交，
+ * 代价与列数成正比，不随行数线性扫描。含OR、NOT等无法拆成单元格的行在各列按任意值处理，
+ * 命中后再用编译好的条件谓词过滤。
+ */
+final class DecisionTable {
+
+    enum HitPolicy {
+        /** 按行顺序取第一条命中行 */
+        FIRST,
+        /** 最多只能命中一行，命中多行视为决策表错误 */
+        UNIQUE,
+        /** 按行顺序返回全部命中行 */
+        COLLECT
+    }
+
+    private static final Pattern HIT = Pattern.compile("(?i)^HIT(?:\\s+POLICY)?\\s*[:=]?\\s*(\\w+)$");
+    private static final Pattern ASSIGNMENT = Pattern.compile("^([A-Za-z_][\\w.]*)\\s*=\\s*(.+)$");
+
+    private final String ruleCode;
+    private final HitPolicy hitPolicy;
+    private final List<Row> rows;
+    private final List<Column> columns;
+
+    private DecisionTable(String ruleCode, HitPolicy hitPolicy, List<Row> rows, List<Column> columns) {
+        this.ruleCode = ruleCode;
+        this.hitPolicy = hitPolicy;
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * 解析并编译决策表
+     * @throws IllegalArgumentException 表达式格式错误
+     */
+    static DecisionTable parse(String ruleCode, String expression) {
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("决策表表达式为空");
+        }
+        HitPolicy hitPolicy = HitPolicy.FIRST;
+        List<Row> rows = new ArrayList<>();
+        Map<String, List<Cell>> cellsByField = new LinkedHashMap<>();
+        String[] lines = expression.split("\\r?\\n");
+        for (int lineNumber = 1; lineNumber <= lines.length; lineNumber++) {
+            String line = stripComment(lines[lineNumber - 1]).trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            Matcher hit = HIT.matcher(line);
+            if (hit.matches()) {
+                if (!rows.isEmpty()) {
+                    throw new IllegalArgumentException("第" + lineNumber + "行: 命中策略必须写在规则行之前");
+                }
+                try {
+                    hitPolicy = HitPolicy.valueOf(hit.group(1).toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("第" + lineNumber + "行: 不支持的命中策略 " + hit.group(1));
+                }
+                continue;
+            }
+            try {
+                rows.add(parseRow(rows.size(), line, cellsByField));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("第" + lineNumber + "行: " + e.getMessage());
+            }
+        }
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("决策表没有规则行");
+        }
+
+        List<Column> columns = new ArrayList<>();
+        cellsByField.forEach((field, cells) -> columns.add(new Column(field, cells)));
+        return new DecisionTable(ruleCode, hitPolicy, List.copyOf(rows), List.copyOf(columns));
+    }
+
+    String getRuleCode() {
+        return ruleCode;
+    }
+
+    HitPolicy getHitPolicy() {
+        return hitPolicy;
+    }
+
+    int getRowCount() {
+        return rows.size();
+    }
+
+    List<String> getInputs() {
+        List<String> inputs = new ArrayList<>();
+        columns.forEach(column -> inputs.add(column.field));
+        return inputs;
+    }
+
+    /**
+     * 按命中策略求值
+     * @param context 输入列取值，缺少的列只能命中该列为任意值的行
+     */
+    Map<String, Object> evaluate(Map<String, Object> context) {
+        Map<String, Object> result = new HashMap<>();
+        Map<String, Object> input = context == null ? Collections.emptyMap() : context;
+        BitSet matched = new BitSet(rows.size());
+        matched.set(0, rows.size());
+        for (Column column : columns) {
+            if (matched.isEmpty()) {
+                break;
+            }
+            matched.and(column.matches(input.get(column.field)));
+        }
+
+        List<Row> hits = new ArrayList<>();
+        for (int index = matched.nextSetBit(0); index >= 0; index = matched.nextSetBit(index + 1)) {
+            Row row = rows.get(index);
+            if (row.residual != null && !row.residual.test(input)) {
+                continue;
+            }
+            hits.add(row);
+            if (hitPolicy == HitPolicy.FIRST) {
+                break;
+            }
+        }
+
+        result.put("hitPolicy", hitPolicy.name());
+        result.put("rowCount", rows.size());
+        result.put("matchedRows", hits.stream().map(row -> row.index + 1).toList());
+        if (rows.size() == 1) {
+            result.put("condition", rows.get(0).condition);
+        }
+        if (hitPolicy == HitPolicy.UNIQUE && hits.size() > 1) {
+            result.put("status", "error");
+            result.put("conditionMet", true);
+            result.put("actionExecuted", false);
+            result.put("message", "UNIQUE命中策略下命中了多行: " + result.get("matchedRows"));
+            return result;
+        }
+
+        result.put("status", "success");
+        result.put("conditionMet", !hits.isEmpty());
+        result.put("actionExecuted", !hits.isEmpty());
+        if (hits.isEmpty()) {
+            result.put("message", "条件不满足");
+        } else if (hitPolicy == HitPolicy.COLLECT) {
+            result.put("action", hits.stream().map(row -> row.action).toList());
+            result.put("outputs", hits.stream().map(row -> row.outputs).toList());
+            result.put("message", "命中" + hits.size() + "行，执行动作: " + result.get("action"));
+        } else {
+            Row hit = hits.get(0);
+            result.put("action", hit.action);
+            result.put("outputs", hit.outputs);
+            result.put("message", "条件满足，执行动作: " + hit.action);
+        }
+        return result;
+    }
+
+    private static Row parseRow(int index, String line, Map<String, List<Cell>> cellsByField) {
+        String text = line;
+        if (text.regionMatches(true, 0, "IF", 0, 2) && text.length() > 2 && Character.isWhitespace(text.charAt(2))) {
+            text = text.substring(3).trim();
+        }
+        int then = indexOfKeyword(text, "THEN", 0);
+        if (then < 0) {
+            throw new IllegalArgumentException("决策表格式错误: 缺少THEN");
+        }
+        String condition = text.substring(0, then).trim();
+        String action = text.substring(then + 4).trim();
+        if (action.isEmpty()) {
+            throw new IllegalArgumentException("决策表格式错误: THEN之后为空");
+        }
+
+        Map<String, Cell> cells = new LinkedHashMap<>();
+        ConditionExpression.Node residual = null;
+        if (!condition.isEmpty() && !"-".equals(condition) && !"*".equals(condition)) {
+            ConditionExpression.Node node = ConditionExpression.compile(condition);
+            List<ConditionExpression.Comparison> comparisons = ConditionExpression.conjuncts(node);
+            if (comparisons != null) {
+                for (ConditionExpression.Comparison comparison : comparisons) {
+                    cells.merge(comparison.field, Cell.of(comparison), Cell::and);
+                }
+            } else {
+                residual = node;
+            }
+        }
+        // 新出现的列对之前的行是任意值，本行未约束的已有列也是任意值
+        cells.keySet().forEach(field -> cellsByField.computeIfAbsent(field,
+            k -> new ArrayList<>(Collections.nCopies(index, Cell.ANY))));
+        cellsByField.forEach((field, columnCells) -> columnCells.add(cells.getOrDefault(field, Cell.ANY)));
+
+        return new Row(index, condition, action, parseOutputs(action), residual);
+    }
+
+    /**
+     * 逗号分隔的输出赋值，不是赋值形式时返回空
+     */
+    private static Map<String, Object> parseOutputs(String action) {
+        Map<String, Object> outputs = new LinkedHashMap<>();
+        for (String part : split(action, ',')) {
+            Matcher assignment = ASSIGNMENT.matcher(part.trim());
+            if (!assignment.matches()) {
+                return Collections.emptyMap();
+            }
+            outputs.put(assignment.group(1), literal(assignment.group(2)));
+        }
+        return Collections.unmodifiableMap(outputs);
+    }
+
+    /**
+     * 字面量：引号内为字符串，true/false为布尔，数字为Long/Double，其他按字符串
+     */
+    static Object literal(String text) {
+        String value = text.trim();
+        if (value.length() >= 2 && (value.charAt(0) == '\'' || value.charAt(0) == '"')
+                && value.charAt(value.length() - 1) == value.charAt(0)) {
+            return value.substring(1, value.length() - 1);
+        }
+        if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+            return Boolean.valueOf(value.toLowerCase());
+        }
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e1) {
+            try {
+                return Double.valueOf(value);
+            } catch (NumberFormatException e2) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * 等值比较的规范化键：数字统一为double，布尔按字符串，与字符串 "true"/"false" 相等
+     */
+    static Object key(Object value) {
+        if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            return number == 0.0 ? 0.0 : number;
+        }
+        if (value instanceof Boolean) {
+            return value.toString();
+        }
+        return value;
+    }
+
+    private static String stripComment(String line) {
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '#') {
+                return line.substring(0, i);
+            }
+        }
+        return line;
+    }
+
+    /**
+     * 引号外、作为独立单词出现的关键字位置（不区分大小写）
+     */
+    private static int indexOfKeyword(String text, String keyword, int from) {
+        char quote = 0;
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (text.regionMatches(true, i, keyword, 0, keyword.length())
+                    && (i == 0 || Character.isWhitespace(text.charAt(i - 1)))
+                    && (i + keyword.length() == text.length() || Character.isWhitespace(text.charAt(i + keyword.length())))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 按引号和括号外的分隔符切分
+     */
+    private static List<String> split(String text, char separator) {
+        List<String> parts = new ArrayList<>();
+        char quote = 0;
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+            } else if (c == separator && depth == 0) {
+                parts.add(text.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(text.substring(start));
+        return parts;
+    }
+
+    private static final class Row {
+        final int index;
+        final String condition;
+        final String action;
+        final Map<String, Object> outputs;
+        /** 无法拆成列单元格的条件，列索引命中后再过滤；可拆分时为null */
+        final ConditionExpression.Node residual;
+
+        Row(int index, String condition, String action, Map<String, Object> outputs,
+            ConditionExpression.Node residual) {
+            this.index = index;
+            this.condition = condition;
+            this.action = action;
+            this.outputs = outputs;
+            this.residual = residual;
+        }
+    }
+
+    /**
+     * 单元格：一行对一列的约束，任意值、等值集合、排除值集合或数值区间（可带排除值）之一
+     */
+    private static final class Cell {
+        static final Cell ANY = new Cell(Kind.ANY, null, null);
+
+        enum Kind { ANY, EQUALS, NOT_EQUALS, RANGE }
+
+        final Kind kind;
+        /** 等值、排除单元格的规范化值；区间单元格的排除值，没有时为null */
+        final Set<Object> values;
+        final Interval interval;
+
+        private Cell(Kind kind, Set<Object> values, Interval interval) {
+            this.kind = kind;
+            this.values = values;
+            this.interval = interval;
+        }
+
+        static Cell of(ConditionExpression.Comparison comparison) {
+            switch (comparison.kind) {
+                case EQUALS:
+                    return new Cell(Kind.EQUALS, keys(comparison.values), null);
+                case NOT_EQUALS:
+                    return new Cell(Kind.NOT_EQUALS, keys(comparison.values), null);
+                default:
+                    return new Cell(Kind.RANGE, null, new Interval(comparison.low, comparison.lowInclusive,
+                        comparison.high, comparison.highInclusive));
+            }
+        }
+
+        /**
+         * 同一行对同一列的两个约束合并为一个单元格
+         */
+        Cell and(Cell other) {
+            if (kind == Kind.EQUALS || other.kind == Kind.EQUALS) {
+                Cell equals = kind == Kind.EQUALS ? this : other;
+                Cell constraint = kind == Kind.EQUALS ? other : this;
+                Set<Object> kept = new HashSet<>();
+                for (Object value : equals.values) {
+                    if (constraint.accepts(value)) {
+                        kept.add(value);
+                    }
+                }
+                return new Cell(Kind.EQUALS, kept, null);
+            }
+            if (kind == Kind.NOT_EQUALS && other.kind == Kind.NOT_EQUALS) {
+                Set<Object> excluded = new HashSet<>(values);
+                excluded.addAll(other.values);
+                return new Cell(Kind.NOT_EQUALS, excluded, null);
+            }
+            // 区间与区间求交，区间与排除值合并为带排除值的区间；区间只接受数字，非数字排除值不影响结果
+            Interval merged = kind == Kind.RANGE && other.kind == Kind.RANGE ? interval.intersect(other.interval)
+                : kind == Kind.RANGE ? interval : other.interval;
+            Set<Object> excluded = new HashSet<>();
+            for (Cell cell : new Cell[]{this, other}) {
+                if (cell.values != null) {
+                    cell.values.stream().filter(value -> value instanceof Double && merged.contains((Double) value))
+                        .forEach(excluded::add);
+                }
+            }
+            return new Cell(Kind.RANGE, excluded.isEmpty() ? null : excluded, merged);
+        }
+
+        /**
+         * 规范化值是否满足本单元格
+         */
+        boolean accepts(Object value) {
+            switch (kind) {
+                case ANY:
+                    return true;
+                case EQUALS:
+                    return values.contains(value);
+                case NOT_EQUALS:
+                    return !values.contains(value);
+                default:
+                    return value instanceof Double && interval.contains((Double) value)
+                        && (values == null || !values.contains(value));
+            }
+        }
+
+        private static Set<Object> keys(Set<Object> values) {
+            Set<Object> keys = new HashSet<>();
+            values.forEach(value -> keys.add(key(value)));
+            return keys;
+        }
+    }
+
+    private static final class Interval {
+        final double low;
+        final boolean lowInclusive;
+        final double high;
+        final boolean highInclusive;
+
+        Interval(double low, boolean lowInclusive, double high, boolean highInclusive) {
+            this.low = low;
+            this.lowInclusive = lowInclusive && low != Double.NEGATIVE_INFINITY;
+            this.high = high;
+            this.highInclusive = highInclusive && high != Double.POSITIVE_INFINITY;
+        }
+
+        boolean contains(double value) {
+            return (value > low || value == low && lowInclusive) && (value < high || value == high && highInclusive);
+        }
+
+        /**
+         * 是否覆盖相邻端点之间的开区间 (from, to)
+         */
+        boolean covers(double from, double to) {
+            return low <= from && high >= to;
+        }
+
+        Interval intersect(Interval other) {
+            double newLow = Math.max(low, other.low);
+            double newHigh = Math.min(high, other.high);
+            boolean newLowInclusive = (low != newLow || lowInclusive) && (other.low != newLow || other.lowInclusive);
+            boolean newHighInclusive = (high != newHigh || highInclusive) && (other.high != newHigh || other.highInclusive);
+            return new Interval(newLow, newLowInclusive, newHigh, newHighInclusive);
+        }
+    }
+
+    /**
+     * 输入列索引
+     */
+    private static final class Column {
+        final String field;
+        /** 该列为任意值的行 */
+        final BitSet any = new BitSet();
+        /** 规范化值 -> 等值单元格包含该值的行 */
+        final Map<Object, BitSet> equals = new HashMap<>();
+        /** 排除单元格的行，以及规范化值 -> 排除该值的行 */
+        final BitSet notEquals = new BitSet();
+        final Map<Object, BitSet> excluded = new HashMap<>();
+        /** 规范化值 -> 区间单元格排除该值的行 */
+        final Map<Object, BitSet> rangeExcluded = new HashMap<>();
+        /** 区间单元格的全部有限端点（升序去重） */
+        final double[] bounds;
+        /**
+         * 基本区间 -> 覆盖它的行：下标2i为 (bounds[i-1], bounds[i]) 开区间（两端分别延伸到负无穷和正无穷），
+         * 下标2i+1为端点 bounds[i] 本身
+         */
+        final BitSet[] segments;
+
+        Column(String field, List<Cell> cells) {
+            this.field = field;
+            TreeSet<Double> endpoints = new TreeSet<>();
+            for (int row = 0; row < cells.size(); row++) {
+                Cell cell = cells.get(row);
+                switch (cell.kind) {
+                    case ANY:
+                        any.set(row);
+                        break;
+                    case EQUALS:
+                        for (Object value : cell.values) {
+                            equals.computeIfAbsent(value, k -> new BitSet()).set(row);
+                        }
+                        break;
+                    case NOT_EQUALS:
+                        notEquals.set(row);
+                        for (Object value : cell.values) {
+                            excluded.computeIfAbsent(value, k -> new BitSet()).set(row);
+                        }
+                        break;
+                    case RANGE:
+                        if (cell.values != null) {
+                            for (Object value : cell.values) {
+                                rangeExcluded.computeIfAbsent(value, k -> new BitSet()).set(row);
+                            }
+                        }
+                        for (double endpoint : new double[]{cell.interval.low, cell.interval.high}) {
+                            if (!Double.isInfinite(endpoint)) {
+                                endpoints.add(endpoint + 0.0);
+                            }
+                        }
+                        break;
+                }
+            }
+
+            bounds = endpoints.stream().mapToDouble(Double::doubleValue).toArray();
+            segments = new BitSet[bounds.length * 2 + 1];
+            for (int segment = 0; segment < segments.length; segment++) {
+                segments[segment] = new BitSet();
+            }
+            for (int row = 0; row < cells.size(); row++) {
+                Interval interval = cells.get(row).interval;
+                if (interval == null) {
+                    continue;
+                }
+                for (int i = 0; i <= bounds.length; i++) {
+                    double from = i == 0 ? Double.NEGATIVE_INFINITY : bounds[i - 1];
+                    double to = i == bounds.length ? Double.POSITIVE_INFINITY : bounds[i];
+                    if (interval.covers(from, to)) {
+                        segments[2 * i].set(row);
+                    }
+                    if (i < bounds.length && interval.contains(bounds[i])) {
+                        segments[2 * i + 1].set(row);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 输入值命中的行：任意值行 + 等值索引 + 排除索引的补集 + 值所在基本区间的行 - 区间排除该值的行
+         */
+        BitSet matches(Object value) {
+            BitSet rows = (BitSet) any.clone();
+            if (value == null) {
+                return rows;
+            }
+            Object key = key(value);
+            BitSet equal = equals.get(key);
+            if (equal != null) {
+                rows.or(equal);
+            }
+            if (!notEquals.isEmpty()) {
+                BitSet notExcluded = (BitSet) notEquals.clone();
+                BitSet excluding = excluded.get(key);
+                if (excluding != null) {
+                    notExcluded.andNot(excluding);
+                }
+                rows.or(notExcluded);
+            }
+            if (value instanceof Number) {
+                // +0.0 把 -0.0 规范为 0.0，二分查找按位区分两者
+                double number = ((Number) value).doubleValue() + 0.0;
+                if (!Double.isNaN(number)) {
+                    int position = Arrays.binarySearch(bounds, number);
+                    rows.or(segments[position >= 0 ? 2 * position + 1 : 2 * (-position - 1)]);
+                }
+                // 排除值所在的行只可能经区间命中，直接从结果中去掉
+                BitSet excludedByRange = rangeExcluded.get(key);
+                if (excludedByRange != null) {
+                    rows.andNot(excludedByRange);
+                }
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.Fact;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.OWLObject;
+
+import java.util.*;
+
+/**
+ * 事实索引
+ * 按谓词分区，每个分区再按主体、客体建立哈希索引，支持绑定任意参数的模式查找
+ */
+class FactIndex implements FactSource {
+
+    private final Map<IRI, Partition> partitions = new HashMap<>();
+    private int size;
+
+    /**
+     * 加入事实
+     * @return 事实此前不存在时返回true
+     */
+    boolean add(Fact fact) {
+        Partition partition = partitions.computeIfAbsent(fact.getPredicate(), k -> new Partition());
+        if (!partition.facts.add(fact)) {
+            return false;
+        }
+        partition.bySubject.computeIfAbsent(fact.getSubject(), k -> new ArrayList<>()).add(fact);
+        if (fact.getObject() != null) {
+            partition.byObject.computeIfAbsent(fact.getObject(), k -> new ArrayList<>()).add(fact);
+        }
+        size++;
+        return true;
+    }
+
+    boolean contains(Fact fact) {
+        Partition partition = partitions.get(fact.getPredicate());
+        return partition != null && partition.facts.contains(fact);
+    }
+
+    /**
+     * 按模式查找事实，subject/object为null表示不限定
+     * 字面量客体按精确值索引，调用方需要语义比较时应在结果上再过滤
+     */
+    Collection<Fact> match(IRI predicate, OWLObject subject, OWLObject object) {
+        Partition partition = partitions.get(predicate);
+        if (partition == null) {
+            return Collections.emptyList();
+        }
+        if (subject != null) {
+            return partition.bySubject.getOrDefault(subject, Collections.emptyList());
+        }
+        if (object != null) {
+            return partition.byObject.getOrDefault(object, Collections.emptyList());
+        }
+        return partition.facts;
+    }
+
+    @Override
+    public Iterable<Fact> match(OWLEntity predicate, OWLObject subject, OWLObject object) {
+        if (!(object instanceof OWLLiteral)) {
+            return match(predicate.getIRI(), subject, object);
+        }
+        // 字面量按语义值比较（忽略数值类型、语言标签差异），不走客体精确索引
+        List<Fact> facts = new ArrayList<>();
+        for (Fact fact : match(predicate.getIRI(), subject, null)) {
+            if (RuleValues.sameValue(object, fact.getObject())) {
+                facts.add(fact);
+            }
+        }
+        return facts;
+    }
+
+    /**
+     * 谓词下的事实数量
+     */
+    int count(IRI predicate) {
+        Partition partition = partitions.get(predicate);
+        return partition == null ? 0 : partition.facts.size();
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static final class Partition {
+        final Set<Fact> facts = new LinkedHashSet<>();
+        final Map<OWLObject, List<Fact>> bySubject = new HashMap<>();
+        final Map<OWLObject, List<Fact>> byObject = new HashMap<>();
+    }
+}
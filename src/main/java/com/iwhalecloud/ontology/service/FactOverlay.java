@@ -0,0 +1,208 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.Fact;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 请求级事实覆盖层
+ *
+ * 以当前事实来源（事实快照，启用TDB2时为数据集）为底层，在其上记录本次请求新增的断言和被覆盖（隐藏）的数据属性值，
+ * 查询和规则匹配看到的是 底层 + 新增 - 隐藏 的合并视图，只对持有覆盖层的一次求值可见。
+ * 覆盖层只分配与请求规模相当的状态，不修改共享本体；需要持久化时通过
+ * {@link OntologyService#commit(FactOverlay)} 一次性提交，否则直接丢弃。
+ * 覆盖层不是线程安全的，只在单个请求内使用。
+ */
+public final class FactOverlay implements FactSource {
+
+    private final FactSource base;
+    private final Function<OWLNamedIndividual, List<Fact>> baseFacts;
+    private final Map<IRI, Set<IRI>> superClasses;
+    private final long baseVersion;
+    private final OWLDataFactory dataFactory;
+    private final String namespace;
+
+    /** 新增的断言，按加入顺序，提交时写入本体 */
+    private final List<Fact> asserted = new ArrayList<>();
+    /** 新增断言按主体索引 */
+    private final Map<OWLNamedIndividual, List<Fact>> bySubject = new HashMap<>();
+    /** 新增断言（含类事实沿SubClassOf传播的父类事实）的模式索引 */
+    private final FactIndex index = new FactIndex();
+    /** 被覆盖的底层断言，提交时从本体删除 */
+    private final Set<Fact> hidden = new LinkedHashSet<>();
+    /** 被覆盖的新增断言，仍留在模式索引中，查询时过滤 */
+    private final Set<Fact> masked = new HashSet<>();
+    private boolean closed;
+
+    /**
+     * @param base 底层事实来源
+     * @param baseFacts 个体在底层中的断言事实
+     * @param superClasses 命名类的父类闭包
+     * @param baseVersion 打开覆盖层时的事实版本号
+     */
+    FactOverlay(FactSource base, Function<OWLNamedIndividual, List<Fact>> baseFacts, Map<IRI, Set<IRI>> superClasses,
+                long baseVersion, OWLDataFactory dataFactory, String namespace) {
+        this.base = base;
+        this.baseFacts = baseFacts;
+        this.superClasses = superClasses;
+        this.baseVersion = baseVersion;
+        this.dataFactory = dataFactory;
+        this.namespace = namespace;
+    }
+
+    /**
+     * 加入类断言
+     */
+    public FactOverlay addIndividual(String className, String individualName) {
+        add(Fact.classFact(IRI.create(namespace + className), individual(individualName)));
+        return this;
+    }
+
+    /**
+     * 加入数据属性断言（与已有值并存）
+     * @param dataType INTEGER/BOOLEAN/DOUBLE，其他按字符串
+     */
+    public FactOverlay addDataProperty(String individualName, String propertyName, String value, String dataType) {
+        add(Fact.propertyFact(IRI.create(namespace + propertyName), individual(individualName),
+            OntologyService.literal(dataFactory, value, dataType)));
+        return this;
+    }
+
+    /**
+     * 设置数据属性值：隐藏该属性在底层和覆盖层中的现有值，再加入新值
+     */
+    public FactOverlay setDataProperty(String individualName, String propertyName, String value, String dataType) {
+        OWLNamedIndividual individual = individual(individualName);
+        IRI property = IRI.create(namespace + propertyName);
+        for (Fact fact : baseFacts.apply(individual)) {
+            if (fact.getPredicate().equals(property) && fact.getObject() instanceof OWLLiteral) {
+                hidden.add(fact);
+            }
+        }
+        List<Fact> own = bySubject.getOrDefault(individual, Collections.emptyList());
+        for (Fact fact : new ArrayList<>(own)) {
+            if (fact.getPredicate().equals(property)) {
+                own.remove(fact);
+                asserted.remove(fact);
+                masked.add(fact);
+            }
+        }
+        return addDataProperty(individualName, propertyName, value, dataType);
+    }
+
+    /**
+     * 加入对象属性断言
+     */
+    public FactOverlay addObjectProperty(String sourceIndividual, String propertyName, String targetIndividual) {
+        add(Fact.propertyFact(IRI.create(namespace + propertyName), individual(sourceIndividual), individual(targetIndividual)));
+        return this;
+    }
+
+    /**
+     * 个体在合并视图中的断言事实
+     */
+    List<Fact> getFacts(OWLNamedIndividual individual) {
+        List<Fact> facts = new ArrayList<>();
+        for (Fact fact : baseFacts.apply(individual)) {
+            if (!hidden.contains(fact)) {
+                facts.add(fact);
+            }
+        }
+        facts.addAll(bySubject.getOrDefault(individual, Collections.emptyList()));
+        return facts;
+    }
+
+    @Override
+    public Iterable<Fact> match(OWLEntity predicate, OWLObject subject, OWLObject object) {
+        List<Fact> facts = new ArrayList<>();
+        for (Fact fact : base.match(predicate, subject, object)) {
+            if (!hidden.contains(fact)) {
+                facts.add(fact);
+            }
+        }
+        for (Fact fact : index.match(predicate, subject, object)) {
+            if (!masked.contains(fact)) {
+                facts.add(fact);
+            }
+        }
+        return facts;
+    }
+
+    /**
+     * 覆盖层新增的断言数
+     */
+    public int size() {
+        return asserted.size();
+    }
+
+    /**
+     * 打开覆盖层时的事实版本号
+     */
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    /**
+     * 丢弃覆盖层，之后不能再提交
+     */
+    public void discard() {
+        closed = true;
+        asserted.clear();
+        bySubject.clear();
+        hidden.clear();
+        masked.clear();
+    }
+
+    List<Fact> getAsserted() {
+        return asserted;
+    }
+
+    Set<Fact> getHidden() {
+        return hidden;
+    }
+
+    /**
+     * 标记为已提交或已丢弃，重复提交时抛出异常
+     */
+    void close() {
+        if (closed) {
+            throw new IllegalStateException("覆盖层已提交或已丢弃");
+        }
+        closed = true;
+    }
+
+    private void add(Fact fact) {
+        if (closed) {
+            throw new IllegalStateException("覆盖层已提交或已丢弃");
+        }
+        if (hidden.remove(fact) || baseFacts.apply(fact.getSubject()).contains(fact)
+                || bySubject.getOrDefault(fact.getSubject(), Collections.emptyList()).contains(fact)) {
+            return;
+        }
+        asserted.add(fact);
+        bySubject.computeIfAbsent(fact.getSubject(), k -> new ArrayList<>()).add(fact);
+        if (masked.remove(fact)) {
+            return;
+        }
+        if (!fact.isClassFact()) {
+            index.add(fact);
+            return;
+        }
+        // 类事实沿SubClassOf向上传播，底层已有的类成员关系不重复加入
+        Set<IRI> classes = new LinkedHashSet<>();
+        classes.add(fact.getPredicate());
+        classes.addAll(superClasses.getOrDefault(fact.getPredicate(), Collections.emptySet()));
+        for (IRI cls : classes) {
+            Fact classFact = Fact.classFact(cls, fact.getSubject());
+            if (!base.match(dataFactory.getOWLClass(cls), fact.getSubject(), null).iterator().hasNext()) {
+                index.add(classFact);
+            }
+        }
+    }
+
+    private OWLNamedIndividual individual(String name) {
+        return dataFactory.getOWLNamedIndividual(IRI.create(namespace + name));
+    }
+}
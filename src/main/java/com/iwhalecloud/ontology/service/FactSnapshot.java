@@ -0,0 +1,634 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.Fact;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * 不可变的事实快照
+ *
+ * 保存某一版本的全部ABox断言。谓词、个体和字面量经 {@link TermDictionary} 编码为整数ID，
+ * 断言以整数对的形式存放在有序long数组索引（{@link PairIndex}）中：
+ * 每个谓词分区有 (主体, 客体) 和 (客体, 主体) 两个索引，分别对应SPO/PSO和POS/OSP访问路径；
+ * 另有 (主体, 类) 和 (主体, 属性) 两个全局索引，按主体列出个体的全部断言。
+ * 类分区包含沿SubClassOf向上传播的父类事实，类原子查询与推理器的 getInstances(cls, false) 一致。
+ * 查询结果在边界处解码为 {@link Fact}。快照发布后不再修改，读取方无需加锁；
+ * 新版本由Builder在旧快照上记录增量得到，未修改的索引在新旧版本间共享。
+ */
+final class FactSnapshot implements FactSource {
+
+    private final TermDictionary terms;
+    private final long version;
+    private final Map<IRI, Set<IRI>> superClasses;
+    /** (主体, 断言的类) */
+    private final PairIndex types;
+    /** (主体, 有断言的属性) */
+    private final PairIndex properties;
+    private final Map<IRI, Partition> partitions;
+    private final int factCount;
+    private final int individualCount;
+
+    private FactSnapshot(TermDictionary terms, long version, Map<IRI, Set<IRI>> superClasses,
+                         PairIndex types, PairIndex properties, Map<IRI, Partition> partitions,
+                         int factCount, int individualCount) {
+        this.terms = terms;
+        this.version = version;
+        this.superClasses = superClasses;
+        this.types = types;
+        this.properties = properties;
+        this.partitions = partitions;
+        this.factCount = factCount;
+        this.individualCount = individualCount;
+    }
+
+    /**
+     * 从本体（含导入）的断言构建快照，使用新的项字典
+     * @param version 快照版本号
+     */
+    static FactSnapshot of(OWLOntology ontology, long version) {
+        TermDictionary terms = new TermDictionary();
+        Map<IRI, Set<IRI>> superClasses = OntologyFacts.superClassClosure(ontology);
+        PairList types = new PairList();
+        PairList properties = new PairList();
+        Map<IRI, PairList[]> lists = new HashMap<>();
+
+        OntologyFacts.extract(ontology).forEach(fact -> {
+            int subject = terms.encode(fact.getSubject());
+            int predicate = terms.encode(fact.getPredicate());
+            if (fact.isClassFact()) {
+                types.add(PairIndex.pair(subject, predicate));
+                return;
+            }
+            int object = terms.encode(fact.getObject());
+            PairList[] partition = lists.computeIfAbsent(fact.getPredicate(), key -> new PairList[]{new PairList(), new PairList()});
+            partition[0].add(PairIndex.pair(subject, object));
+            if (fact.getObject() instanceof OWLNamedIndividual) {
+                partition[1].add(PairIndex.pair(object, subject));
+            }
+            properties.add(PairIndex.pair(subject, predicate));
+        });
+
+        // 类分区：断言的类及其全部父类
+        PairIndex typeIndex = types.build();
+        for (PrimitiveIterator.OfLong it = typeIndex.iterator(); it.hasNext(); ) {
+            long pair = it.nextLong();
+            IRI cls = (IRI) terms.decode(PairIndex.low(pair));
+            long member = PairIndex.pair(PairIndex.high(pair), TermDictionary.NONE);
+            lists.computeIfAbsent(cls, key -> new PairList[]{new PairList(), new PairList()})[0].add(member);
+            for (IRI superClass : superClasses.getOrDefault(cls, Collections.emptySet())) {
+                lists.computeIfAbsent(superClass, key -> new PairList[]{new PairList(), new PairList()})[0].add(member);
+            }
+        }
+
+        Map<IRI, Partition> partitions = new HashMap<>();
+        int factCount = typeIndex.size();
+        for (Map.Entry<IRI, PairList[]> entry : lists.entrySet()) {
+            Partition partition = new Partition(entry.getKey(), entry.getValue()[0].build(), entry.getValue()[1].build());
+            partitions.put(entry.getKey(), partition);
+            for (PrimitiveIterator.OfLong it = partition.subjectObject.iterator(); it.hasNext(); ) {
+                if (PairIndex.low(it.nextLong()) != TermDictionary.NONE) {
+                    factCount++;
+                }
+            }
+        }
+        PairIndex propertyIndex = properties.build();
+        return new FactSnapshot(terms, version, superClasses, typeIndex, propertyIndex,
+            Collections.unmodifiableMap(partitions), factCount, countSubjects(typeIndex, propertyIndex));
+    }
+
+    /**
+     * 以内存映射事实文件为基础层构建快照，本体中的断言作为增量叠加在映射索引之上
+     * 映射文件中的事实只读，随快照一起共享，不占用堆内存
+     * @param mapped 映射事实文件，为null时等同于 {@link #of(OWLOntology, long)}
+     */
+    static FactSnapshot of(OWLOntology ontology, long version, MappedFacts mapped) {
+        if (mapped == null) {
+            return of(ontology, version);
+        }
+        Map<IRI, Partition> partitions = new HashMap<>();
+        mapped.getPartitions().forEach((predicate, indexes) ->
+            partitions.put(predicate, new Partition(predicate, indexes[0], indexes[1])));
+        FactSnapshot base = new FactSnapshot(new TermDictionary(mapped), 0, OntologyFacts.superClassClosure(ontology),
+            mapped.getTypes(), mapped.getProperties(), Collections.unmodifiableMap(partitions),
+            mapped.getFactCount(), mapped.getIndividualCount());
+        Builder builder = base.toBuilder();
+        OntologyFacts.extract(ontology).forEach(builder::add);
+        return builder.build(version);
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    int getFactCount() {
+        return factCount;
+    }
+
+    int getIndividualCount() {
+        return individualCount;
+    }
+
+    int getTermCount() {
+        return terms.size();
+    }
+
+    TermDictionary getTerms() {
+        return terms;
+    }
+
+    /**
+     * (主体, 断言的类) 索引
+     */
+    PairIndex getTypes() {
+        return types;
+    }
+
+    /**
+     * (主体, 有断言的属性) 索引
+     */
+    PairIndex getProperties() {
+        return properties;
+    }
+
+    /**
+     * 谓词 -> [(主体, 客体), (客体, 主体)] 索引
+     */
+    Map<IRI, PairIndex[]> getPartitionIndexes() {
+        Map<IRI, PairIndex[]> indexes = new HashMap<>();
+        partitions.forEach((predicate, partition) ->
+            indexes.put(predicate, new PairIndex[]{partition.subjectObject, partition.objectSubject}));
+        return indexes;
+    }
+
+    /**
+     * 构建快照时使用的父类闭包
+     */
+    Map<IRI, Set<IRI>> getSuperClasses() {
+        return superClasses;
+    }
+
+    /**
+     * 个体的全部断言事实（不含推导的父类事实）
+     */
+    List<Fact> getFacts(OWLNamedIndividual individual) {
+        int subject = terms.lookup(individual);
+        if (subject == TermDictionary.NONE) {
+            return Collections.emptyList();
+        }
+        List<Fact> facts = new ArrayList<>();
+        for (PrimitiveIterator.OfLong it = types.iterator(subject); it.hasNext(); ) {
+            facts.add(Fact.classFact((IRI) terms.decode(PairIndex.low(it.nextLong())), individual));
+        }
+        for (PrimitiveIterator.OfLong it = properties.iterator(subject); it.hasNext(); ) {
+            Partition partition = partitions.get((IRI) terms.decode(PairIndex.low(it.nextLong())));
+            for (PrimitiveIterator.OfLong pairs = partition.subjectObject.iterator(subject); pairs.hasNext(); ) {
+                facts.add(partition.decode(pairs.nextLong(), terms));
+            }
+        }
+        return facts;
+    }
+
+    /**
+     * 以个体为客体的对象属性断言
+     */
+    List<Fact> getReferencingFacts(OWLNamedIndividual individual) {
+        int object = terms.lookup(individual);
+        if (object == TermDictionary.NONE) {
+            return Collections.emptyList();
+        }
+        List<Fact> facts = new ArrayList<>();
+        for (Partition partition : partitions.values()) {
+            for (PrimitiveIterator.OfLong it = partition.objectSubject.iterator(object); it.hasNext(); ) {
+                long pair = it.nextLong();
+                facts.add(partition.decode(PairIndex.pair(PairIndex.low(pair), PairIndex.high(pair)), terms));
+            }
+        }
+        return facts;
+    }
+
+    /**
+     * 类的实例（含子类实例）
+     */
+    List<OWLNamedIndividual> getInstances(IRI cls) {
+        Partition partition = partitions.get(cls);
+        if (partition == null) {
+            return Collections.emptyList();
+        }
+        List<OWLNamedIndividual> instances = new ArrayList<>(partition.subjectObject.size());
+        for (PrimitiveIterator.OfLong it = partition.subjectObject.iterator(); it.hasNext(); ) {
+            instances.add((OWLNamedIndividual) terms.decode(PairIndex.high(it.nextLong())));
+        }
+        return instances;
+    }
+
+    @Override
+    public Iterable<Fact> match(OWLEntity predicate, OWLObject subject, OWLObject object) {
+        Partition partition = partitions.get(predicate.getIRI());
+        if (partition == null) {
+            return Collections.emptyList();
+        }
+        if (subject != null) {
+            int subjectId = terms.lookup(subject);
+            if (subjectId == TermDictionary.NONE) {
+                return Collections.emptyList();
+            }
+            if (object instanceof OWLNamedIndividual) {
+                int objectId = terms.lookup(object);
+                return objectId != TermDictionary.NONE && partition.subjectObject.contains(PairIndex.pair(subjectId, objectId))
+                    ? Collections.singletonList(Fact.propertyFact(partition.predicate, (OWLNamedIndividual) subject, object))
+                    : Collections.emptyList();
+            }
+            return collect(partition, partition.subjectObject.iterator(subjectId), object);
+        }
+        if (object instanceof OWLNamedIndividual) {
+            int objectId = terms.lookup(object);
+            if (objectId == TermDictionary.NONE) {
+                return Collections.emptyList();
+            }
+            List<Fact> facts = new ArrayList<>();
+            for (PrimitiveIterator.OfLong it = partition.objectSubject.iterator(objectId); it.hasNext(); ) {
+                long pair = it.nextLong();
+                facts.add(partition.decode(PairIndex.pair(PairIndex.low(pair), PairIndex.high(pair)), terms));
+            }
+            return facts;
+        }
+        if (object != null) {
+            // 字面量按语义值比较（忽略数值类型、语言标签差异），不走客体索引
+            return collect(partition, partition.subjectObject.iterator(), object);
+        }
+        return () -> new Iterator<Fact>() {
+            private final PrimitiveIterator.OfLong pairs = partition.subjectObject.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return pairs.hasNext();
+            }
+
+            @Override
+            public Fact next() {
+                return partition.decode(pairs.nextLong(), terms);
+            }
+        };
+    }
+
+    private List<Fact> collect(Partition partition, PrimitiveIterator.OfLong pairs, OWLObject object) {
+        List<Fact> facts = new ArrayList<>();
+        while (pairs.hasNext()) {
+            Fact fact = partition.decode(pairs.nextLong(), terms);
+            if (object == null || RuleValues.sameValue(object, fact.getObject())) {
+                facts.add(fact);
+            }
+        }
+        return facts;
+    }
+
+    private static int countSubjects(PairIndex types, PairIndex properties) {
+        int count = 0;
+        int last = TermDictionary.NONE;
+        PrimitiveIterator.OfLong a = types.iterator();
+        PrimitiveIterator.OfLong b = properties.iterator();
+        long nextA = a.hasNext() ? a.nextLong() : Long.MAX_VALUE;
+        long nextB = b.hasNext() ? b.nextLong() : Long.MAX_VALUE;
+        while (nextA != Long.MAX_VALUE || nextB != Long.MAX_VALUE) {
+            long pair;
+            if (nextA <= nextB) {
+                pair = nextA;
+                nextA = a.hasNext() ? a.nextLong() : Long.MAX_VALUE;
+            } else {
+                pair = nextB;
+                nextB = b.hasNext() ? b.nextLong() : Long.MAX_VALUE;
+            }
+            if (PairIndex.high(pair) != last) {
+                last = PairIndex.high(pair);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 以当前快照为基础创建新版本的构建器
+     */
+    Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * 快照构建器
+     * 按调用顺序应用事实的增删，只在单个线程内使用；类断言的父类事实在build()时按个体重新计算
+     */
+    static final class Builder {
+        private final TermDictionary terms;
+        private final Map<IRI, Set<IRI>> superClasses;
+        private final Map<IRI, Partition> basePartitions;
+        private final PairEditor types;
+        private final PairEditor properties;
+        private final Map<IRI, PartitionEditor> partitions = new HashMap<>();
+        /** 类断言发生变化的个体 -> 变化前的类型闭包 */
+        private final Map<Integer, Set<IRI>> reclassified = new HashMap<>();
+        /** 断言发生变化的个体 -> 变化前是否有断言 */
+        private final Map<Integer, Boolean> touched = new HashMap<>();
+        private int factCount;
+        private int individualCount;
+
+        private Builder(FactSnapshot base) {
+            this.terms = base.terms;
+            this.superClasses = base.superClasses;
+            this.basePartitions = base.partitions;
+            this.types = new PairEditor(base.types);
+            this.properties = new PairEditor(base.properties);
+            this.factCount = base.factCount;
+            this.individualCount = base.individualCount;
+        }
+
+        /**
+         * 加入断言事实
+         * @return 事实此前不存在时返回true
+         */
+        boolean add(Fact fact) {
+            int subject = terms.encode(fact.getSubject());
+            int predicate = terms.encode(fact.getPredicate());
+            touch(subject);
+            if (fact.isClassFact()) {
+                rememberClasses(subject);
+                if (!types.add(PairIndex.pair(subject, predicate))) {
+                    return false;
+                }
+            } else {
+                int object = terms.encode(fact.getObject());
+                if (!partition(fact.getPredicate()).add(subject, object, fact.getObject() instanceof OWLNamedIndividual)) {
+                    return false;
+                }
+                properties.add(PairIndex.pair(subject, predicate));
+            }
+            factCount++;
+            return true;
+        }
+
+        /**
+         * 删除断言事实
+         * @return 事实此前存在时返回true
+         */
+        boolean remove(Fact fact) {
+            int subject = terms.lookup(fact.getSubject());
+            int predicate = terms.lookup(fact.getPredicate());
+            if (subject == TermDictionary.NONE || predicate == TermDictionary.NONE) {
+                return false;
+            }
+            touch(subject);
+            if (fact.isClassFact()) {
+                rememberClasses(subject);
+                if (!types.remove(PairIndex.pair(subject, predicate))) {
+                    return false;
+                }
+            } else {
+                int object = terms.lookup(fact.getObject());
+                if (object == TermDictionary.NONE || !basePartitions.containsKey(fact.getPredicate())
+                        && !partitions.containsKey(fact.getPredicate())) {
+                    return false;
+                }
+                PartitionEditor partition = partition(fact.getPredicate());
+                if (!partition.remove(subject, object, fact.getObject() instanceof OWLNamedIndividual)) {
+                    return false;
+                }
+                if (!partition.subjectObject.containsHigh(subject)) {
+                    properties.remove(PairIndex.pair(subject, predicate));
+                }
+            }
+            factCount--;
+            return true;
+        }
+
+        FactSnapshot build(long version) {
+            // 类分区：对比个体修改前后的类型闭包，增删差异部分
+            reclassified.forEach((subject, before) -> {
+                Set<IRI> after = impliedClasses(subject);
+                long member = PairIndex.pair(subject, TermDictionary.NONE);
+                for (IRI cls : before) {
+                    if (!after.contains(cls)) {
+                        partition(cls).subjectObject.remove(member);
+                    }
+                }
+                for (IRI cls : after) {
+                    if (!before.contains(cls)) {
+                        partition(cls).subjectObject.add(member);
+                    }
+                }
+            });
+            touched.forEach((subject, before) -> {
+                boolean after = hasFacts(subject);
+                if (before != after) {
+                    individualCount += after ? 1 : -1;
+                }
+            });
+
+            Map<IRI, Partition> published = new HashMap<>(basePartitions);
+            partitions.forEach((predicate, editor) -> {
+                Partition partition = editor.build();
+                if (partition.subjectObject.size() == 0) {
+                    published.remove(predicate);
+                } else {
+                    published.put(predicate, partition);
+                }
+            });
+            return new FactSnapshot(terms, version, superClasses, types.build(), properties.build(),
+                Collections.unmodifiableMap(published), factCount, individualCount);
+        }
+
+        private void touch(int subject) {
+            if (!touched.containsKey(subject)) {
+                touched.put(subject, hasFacts(subject));
+            }
+        }
+
+        private boolean hasFacts(int subject) {
+            return types.containsHigh(subject) || properties.containsHigh(subject);
+        }
+
+        /**
+         * 个体的类断言首次变化前，记录其原有的类型闭包
+         */
+        private void rememberClasses(int subject) {
+            if (!reclassified.containsKey(subject)) {
+                reclassified.put(subject, impliedClasses(subject));
+            }
+        }
+
+        private Set<IRI> impliedClasses(int subject) {
+            Set<IRI> classes = new HashSet<>();
+            types.forEachLow(subject, cls -> {
+                IRI classIRI = (IRI) terms.decode(cls);
+                classes.add(classIRI);
+                classes.addAll(superClasses.getOrDefault(classIRI, Collections.emptySet()));
+            });
+            return classes;
+        }
+
+        private PartitionEditor partition(IRI predicate) {
+            return partitions.computeIfAbsent(predicate,
+                key -> new PartitionEditor(key, basePartitions.get(key)));
+        }
+    }
+
+    /**
+     * 整数对索引的编辑器
+     * 在基础索引之上按顺序记录增删（有序映射，true为新增、false为删除），build()时一次性应用
+     */
+    private static final class PairEditor {
+        private final PairIndex base;
+        private final TreeMap<Long, Boolean> pending = new TreeMap<>();
+
+        PairEditor(PairIndex base) {
+            this.base = base;
+        }
+
+        boolean contains(long pair) {
+            Boolean change = pending.get(pair);
+            return change != null ? change : base.contains(pair);
+        }
+
+        /**
+         * @return 整数对此前不存在时返回true
+         */
+        boolean add(long pair) {
+            if (contains(pair)) {
+                return false;
+            }
+            if (pending.remove(pair) == null) {
+                pending.put(pair, Boolean.TRUE);
+            }
+            return true;
+        }
+
+        /**
+         * @return 整数对此前存在时返回true
+         */
+        boolean remove(long pair) {
+            if (!contains(pair)) {
+                return false;
+            }
+            if (pending.remove(pair) == null) {
+                pending.put(pair, Boolean.FALSE);
+            }
+            return true;
+        }
+
+        boolean containsHigh(int high) {
+            boolean[] found = new boolean[1];
+            forEachLow(high, low -> found[0] = true);
+            return found[0];
+        }
+
+        /**
+         * 遍历high为指定值的整数对的low（基础索引 + 新增 - 删除）
+         */
+        void forEachLow(int high, IntConsumer action) {
+            for (PrimitiveIterator.OfLong it = base.iterator(high); it.hasNext(); ) {
+                long pair = it.nextLong();
+                if (!Boolean.FALSE.equals(pending.get(pair))) {
+                    action.accept(PairIndex.low(pair));
+                }
+            }
+            long from = PairIndex.pair(high, 0);
+            Map<Long, Boolean> range = high == Integer.MAX_VALUE
+                ? pending.tailMap(from) : pending.subMap(from, PairIndex.pair(high + 1, 0));
+            range.forEach((pair, added) -> {
+                if (added) {
+                    action.accept(PairIndex.low(pair));
+                }
+            });
+        }
+
+        PairIndex build() {
+            PairList adds = new PairList();
+            PairList removes = new PairList();
+            pending.forEach((pair, added) -> (added ? adds : removes).add(pair));
+            return base.apply(adds.toArray(), removes.toArray());
+        }
+    }
+
+    /**
+     * 谓词分区：(主体, 客体) 索引覆盖全部事实（类分区的客体为 {@link TermDictionary#NONE}），
+     * (客体, 主体) 索引只收录个体客体
+     */
+    private static final class Partition {
+        final IRI predicate;
+        final PairIndex subjectObject;
+        final PairIndex objectSubject;
+
+        Partition(IRI predicate, PairIndex subjectObject, PairIndex objectSubject) {
+            this.predicate = predicate;
+            this.subjectObject = subjectObject;
+            this.objectSubject = objectSubject;
+        }
+
+        Fact decode(long pair, TermDictionary terms) {
+            OWLNamedIndividual subject = (OWLNamedIndividual) terms.decode(PairIndex.high(pair));
+            int object = PairIndex.low(pair);
+            return object == TermDictionary.NONE
+                ? Fact.classFact(predicate, subject)
+                : Fact.propertyFact(predicate, subject, terms.decode(object));
+        }
+    }
+
+    private static final class PartitionEditor {
+        final IRI predicate;
+        final PairEditor subjectObject;
+        final PairEditor objectSubject;
+
+        PartitionEditor(IRI predicate, Partition base) {
+            this.predicate = predicate;
+            this.subjectObject = new PairEditor(base == null ? PairIndex.empty() : base.subjectObject);
+            this.objectSubject = new PairEditor(base == null ? PairIndex.empty() : base.objectSubject);
+        }
+
+        boolean add(int subject, int object, boolean individualObject) {
+            if (!subjectObject.add(PairIndex.pair(subject, object))) {
+                return false;
+            }
+            if (individualObject) {
+                objectSubject.add(PairIndex.pair(object, subject));
+            }
+            return true;
+        }
+
+        boolean remove(int subject, int object, boolean individualObject) {
+            if (!subjectObject.remove(PairIndex.pair(subject, object))) {
+                return false;
+            }
+            if (individualObject) {
+                objectSubject.remove(PairIndex.pair(object, subject));
+            }
+            return true;
+        }
+
+        Partition build() {
+            return new Partition(predicate, subjectObject.build(), objectSubject.build());
+        }
+    }
+
+    /**
+     * 可增长的long数组
+     */
+    private static final class PairList {
+        private long[] pairs = new long[16];
+        private int size;
+
+        void add(long pair) {
+            if (size == pairs.length) {
+                pairs = Arrays.copyOf(pairs, size * 2);
+            }
+            pairs[size++] = pair;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(pairs, size);
+        }
+
+        PairIndex build() {
+            return PairIndex.of(pairs, size);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.Fact;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLObject;
+
+/**
+ * 事实来源
+ * 规则前提匹配时按模式查找事实，具体实现决定使用哪种索引
+ */
+interface FactSource {
+
+    /**
+     * 按模式查找事实
+     * @param predicate 谓词句柄（OWLClass、OWLObjectProperty或OWLDataProperty）
+     * @param subject 已绑定的主体，null表示不限定
+     * @param object 已绑定的客体，null表示不限定
+     */
+    Iterable<Fact> match(OWLEntity predicate, OWLObject subject, OWLObject object);
+}
@@ -0,0 +1,290 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.Fact;
+import com.iwhalecloud.ontology.model.LinkedAtom;
+import com.iwhalecloud.ontology.model.LinkedRule;
+import com.iwhalecloud.ontology.model.RuleTerm;
+import lombok.extern.slf4j.Slf4j;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+
+/**
+ * 目标导向（反向链接）求值器
+ *
+ * 从查询目标（谓词 + 已绑定的主体/客体）出发，只求值结论能匹配该目标的规则，
+ * 规则头的绑定代入规则体，规则体按"已绑定参数最多者优先"的顺序求值（侧向信息传递），
+ * 规则体中的可推导谓词以当时的绑定生成子目标（即magic-set改写中的magic事实），而不是物化整个谓词。
+ * 子目标及其答案表化（tabling），全部子目标的答案不再增长时达到不动点，递归规则也能终止。
+ * 只访问从目标常量可达的事实，代价与目标相关的事实数量成正比，与库中其他订单的数量无关。
+ */
+@Slf4j
+class GoalDirectedEvaluator {
+
+    /** 谓词 -> 结论能产生该谓词事实的规则（类结论同时登记到其父类） */
+    private final Map<IRI, List<HeadRef>> rulesByHead = new HashMap<>();
+    private final OWLDataFactory dataFactory;
+
+    /**
+     * @param linkedRules 已链接的SWRL规则，未链接的规则忽略
+     * @param superClasses 命名类的父类闭包
+     * @param dataFactory 用于构造内置函数计算结果的字面量
+     */
+    GoalDirectedEvaluator(Collection<LinkedRule> linkedRules, Map<IRI, Set<IRI>> superClasses, OWLDataFactory dataFactory) {
+        this.dataFactory = dataFactory;
+        for (LinkedRule rule : linkedRules) {
+            if (!rule.isLinked()) {
+                continue;
+            }
+            for (LinkedAtom head : rule.getHead()) {
+                if (head.isBuiltin()) {
+                    continue;
+                }
+                rulesByHead.computeIfAbsent(head.getPredicate(), k -> new ArrayList<>())
+                    .add(new HeadRef(rule, head, head.getPredicate()));
+                if (head.isClassAtom()) {
+                    for (IRI parent : superClasses.getOrDefault(head.getPredicate(), Collections.emptySet())) {
+                        rulesByHead.computeIfAbsent(parent, k -> new ArrayList<>()).add(new HeadRef(rule, head, parent));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 求满足目标的全部事实（断言事实和可推导事实）
+     * @param source 基础事实来源
+     * @param predicate 目标谓词
+     * @param subject 已绑定的主体，null表示不限定
+     * @param object 已绑定的客体，null表示不限定（类目标忽略）
+     */
+    GoalResult query(FactSource source, OWLEntity predicate, OWLObject subject, OWLObject object) {
+        Evaluation evaluation = new Evaluation(source);
+        Subgoal goal = evaluation.subgoal(predicate, subject, object);
+        evaluation.solve();
+        log.debug("目标求值完成: {} 子目标={} 轮次={} 规则应用={}",
+            predicate.getIRI().getShortForm(), evaluation.subgoals.size(), evaluation.iterations, evaluation.ruleApplications);
+        return new GoalResult(new ArrayList<>(goal.answers), evaluation.subgoals.size(),
+            evaluation.iterations, evaluation.ruleApplications, evaluation.lookups);
+    }
+
+    /**
+     * 一次查询的求值状态：子目标表及其答案
+     */
+    private final class Evaluation {
+        final FactSource source;
+        final Map<List<Object>, Subgoal> subgoals = new LinkedHashMap<>();
+        boolean changed;
+        int iterations;
+        int ruleApplications;
+        int lookups;
+
+        Evaluation(FactSource source) {
+            this.source = source;
+        }
+
+        /**
+         * 获取子目标，首次出现时登记并以断言事实初始化答案表
+         */
+        Subgoal subgoal(OWLEntity predicate, OWLObject subject, OWLObject object) {
+            OWLObject boundObject = predicate instanceof OWLClass ? null : object;
+            List<Object> key = Arrays.asList(predicate.getIRI(), subject, boundObject);
+            Subgoal goal = subgoals.get(key);
+            if (goal == null) {
+                goal = new Subgoal(predicate, subject, boundObject);
+                subgoals.put(key, goal);
+                lookups++;
+                for (Fact fact : source.match(predicate, subject, boundObject)) {
+                    goal.answers.add(fact);
+                }
+                changed = true;
+            }
+            return goal;
+        }
+
+        /**
+         * 反复对全部子目标应用相关规则，直到没有新子目标也没有新答案
+         */
+        void solve() {
+            do {
+                changed = false;
+                iterations++;
+                for (Subgoal goal : new ArrayList<>(subgoals.values())) {
+                    for (HeadRef ref : rulesByHead.getOrDefault(goal.predicate.getIRI(), Collections.emptyList())) {
+                        apply(ref, goal);
+                    }
+                }
+            } while (changed);
+        }
+
+        private void apply(HeadRef ref, Subgoal goal) {
+            OWLObject[] bindings = new OWLObject[ref.rule.getVariableCount()];
+            if (!unify(ref.head, 0, goal.subject, bindings)
+                    || !ref.head.isClassAtom() && !unify(ref.head, 1, goal.object, bindings)) {
+                return;
+            }
+            ruleApplications++;
+            List<LinkedAtom> body = ref.rule.getBody();
+            solveBody(ref, goal, body, new boolean[body.size()], body.size(), bindings);
+        }
+
+        private void solveBody(HeadRef ref, Subgoal goal, List<LinkedAtom> body, boolean[] done, int remaining,
+                               OWLObject[] bindings) {
+            if (remaining == 0) {
+                Fact fact = instantiate(ref, bindings);
+                if (fact != null && goal.answers.add(fact)) {
+                    changed = true;
+                }
+                return;
+            }
+            int next = nextAtom(body, done, bindings);
+            if (next < 0) {
+                return;
+            }
+            LinkedAtom atom = body.get(next);
+            done[next] = true;
+            if (atom.isBuiltin()) {
+                OWLObject[] extended = AntecedentMatcher.evaluateBuiltin(atom, bindings, dataFactory);
+                if (extended != null) {
+                    solveBody(ref, goal, body, done, remaining - 1, extended);
+                }
+            } else {
+                OWLObject subject = AntecedentMatcher.valueOf(atom, 0, bindings);
+                OWLObject object = atom.isClassAtom() ? null : AntecedentMatcher.valueOf(atom, 1, bindings);
+                for (Fact fact : lookup(atom, subject, object)) {
+                    OWLObject[] extended = bindings.clone();
+                    if (AntecedentMatcher.bind(atom, fact, extended)) {
+                        solveBody(ref, goal, body, done, remaining - 1, extended);
+                    }
+                }
+            }
+            done[next] = false;
+        }
+
+        /**
+         * 可推导谓词查子目标的答案表（按当前绑定生成子目标），其他谓词直接查基础事实
+         */
+        private Iterable<Fact> lookup(LinkedAtom atom, OWLObject subject, OWLObject object) {
+            if (rulesByHead.containsKey(atom.getPredicate())) {
+                return new ArrayList<>(subgoal(atom.getEntity(), subject, object).answers);
+            }
+            lookups++;
+            return source.match(atom.getEntity(), subject, object);
+        }
+    }
+
+    /**
+     * 侧向信息传递顺序：输入已就绪的内置函数优先，其次是已绑定参数最多的原子（主体绑定优先），相同时保持原文顺序
+     * @return 下一个原子下标，剩余原子都无法求值（内置函数输入无法绑定）时返回-1
+     */
+    private static int nextAtom(List<LinkedAtom> body, boolean[] done, OWLObject[] bindings) {
+        int best = -1;
+        int bestScore = -1;
+        for (int i = 0; i < body.size(); i++) {
+            if (done[i]) {
+                continue;
+            }
+            LinkedAtom atom = body.get(i);
+            if (atom.isBuiltin()) {
+                if (builtinReady(atom, bindings)) {
+                    return i;
+                }
+                continue;
+            }
+            int score = (bound(atom, 0, bindings) ? 2 : 0) + (!atom.isClassAtom() && bound(atom, 1, bindings) ? 1 : 0);
+            if (score > bestScore) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private static boolean builtinReady(LinkedAtom atom, OWLObject[] bindings) {
+        RuleTerm first = atom.getArgument(0);
+        int from = SWRLBuiltins.isBinding(atom.getBuiltin()) && first.isVariable() && bindings[first.getSlot()] == null ? 1 : 0;
+        for (int i = from; i < atom.getArity(); i++) {
+            if (!bound(atom, i, bindings)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean bound(LinkedAtom atom, int index, OWLObject[] bindings) {
+        RuleTerm term = atom.getArgument(index);
+        return !term.isVariable() || bindings[term.getSlot()] != null;
+    }
+
+    /**
+     * 将子目标的绑定值代入规则头参数
+     */
+    private static boolean unify(LinkedAtom head, int index, OWLObject value, OWLObject[] bindings) {
+        if (value == null) {
+            return true;
+        }
+        RuleTerm term = head.getArgument(index);
+        if (!term.isVariable()) {
+            return RuleValues.sameValue(head.getConstant(index), value);
+        }
+        bindings[term.getSlot()] = value;
+        return true;
+    }
+
+    private static Fact instantiate(HeadRef ref, OWLObject[] bindings) {
+        OWLObject subject = AntecedentMatcher.valueOf(ref.head, 0, bindings);
+        if (!(subject instanceof OWLNamedIndividual)) {
+            return null;
+        }
+        if (ref.head.isClassAtom()) {
+            return Fact.classFact(ref.target, (OWLNamedIndividual) subject);
+        }
+        OWLObject object = AntecedentMatcher.valueOf(ref.head, 1, bindings);
+        return object == null ? null : Fact.propertyFact(ref.target, (OWLNamedIndividual) subject, object);
+    }
+
+    private static final class HeadRef {
+        final LinkedRule rule;
+        final LinkedAtom head;
+        /** 产生的事实谓词：属性结论为属性本身，类结论为该类或其父类 */
+        final IRI target;
+
+        HeadRef(LinkedRule rule, LinkedAtom head, IRI target) {
+            this.rule = rule;
+            this.head = head;
+            this.target = target;
+        }
+    }
+
+    private static final class Subgoal {
+        final OWLEntity predicate;
+        final OWLObject subject;
+        final OWLObject object;
+        final Set<Fact> answers = new LinkedHashSet<>();
+
+        Subgoal(OWLEntity predicate, OWLObject subject, OWLObject object) {
+            this.predicate = predicate;
+            this.subject = subject;
+            this.object = object;
+        }
+    }
+
+    /**
+     * 查询结果：目标的答案及求值规模
+     */
+    static final class GoalResult {
+        final List<Fact> answers;
+        final int subgoalCount;
+        final int iterations;
+        final int ruleApplications;
+        final int lookups;
+
+        GoalResult(List<Fact> answers, int subgoalCount, int iterations, int ruleApplications, int lookups) {
+            this.answers = answers;
+            this.subgoalCount = subgoalCount;
+            this.iterations = iterations;
+            this.ruleApplications = ruleApplications;
+            this.lookups = lookups;
+        }
+    }
+}
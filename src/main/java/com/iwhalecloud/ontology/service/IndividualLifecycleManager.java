@@ -0,0 +1,264 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.Fact;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.formats.FunctionalSyntaxDocumentFormat;
+import org.semanticweb.owlapi.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 订单个体生命周期管理
+ *
+ * 跟踪运行期创建的个体（启动后新增类断言的个体）的创建时间，以及订单进入终态（orderStatus为终态值）的时间。
+ * 定期清理：终态订单超过TTL后，连同只被该订单引用的运行期个体（客户、订阅等）一起删除；
+ * 配置了最大存活时间时，超龄且未被存活个体引用的运行期个体也会被删除。
+ * 删除按批次合并为一次removeAxioms变更，可选归档到磁盘（函数式语法），并统计回收的公理数。
+ * 本体文件中加载的个体（流程步骤、规则定义等）不在跟踪范围内，永远不会被清理。
+ * 候选个体及其引用关系从OntologyService的当前事实来源读取（启用TDB2时为数据集），与推理读取的事实一致。
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class IndividualLifecycleManager {
+
+    /** 单次removeAxioms变更包含的个体数上限 */
+    private static final int BATCH_SIZE = 500;
+
+    private final OntologyService ontologyService;
+
+    @Value("${ontology.lifecycle.order-class:TransferOrder}")
+    private String orderClass = "TransferOrder";
+
+    @Value("${ontology.lifecycle.terminal-statuses:COMPLETED,CANCELLED}")
+    private String terminalStatuses = "COMPLETED,CANCELLED";
+
+    @Value("${ontology.lifecycle.terminal-ttl-ms:1800000}")
+    private long terminalTtlMs = 1_800_000;
+
+    @Value("${ontology.lifecycle.max-age-ms:0}")
+    private long maxAgeMs = 0;
+
+    @Value("${ontology.lifecycle.sweep-interval-ms:60000}")
+    private long sweepIntervalMs = 60_000;
+
+    @Value("${ontology.lifecycle.archive-dir:}")
+    private String archiveDir = "";
+
+    /** 运行期个体 -> 创建时间 */
+    private final Map<OWLNamedIndividual, Long> createdAt = new ConcurrentHashMap<>();
+    /** 订单 -> 进入终态的时间 */
+    private final Map<OWLNamedIndividual, Long> terminalAt = new ConcurrentHashMap<>();
+
+    private final AtomicLong evictedIndividuals = new AtomicLong();
+    private final AtomicLong reclaimedAxioms = new AtomicLong();
+    private final AtomicLong archiveFiles = new AtomicLong();
+    private final AtomicLong sweepCount = new AtomicLong();
+    private volatile long lastSweepTime;
+
+    private final ScheduledExecutorService sweepExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "individual-lifecycle");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private OWLOntologyChangeListener listener;
+    private IRI orderStatusIRI;
+    private Set<String> terminalValues;
+
+    @PostConstruct
+    public void init() {
+        String namespace = ontologyService.getNamespace();
+        orderStatusIRI = IRI.create(namespace + "orderStatus");
+        terminalValues = new HashSet<>(Arrays.asList(terminalStatuses.split("\\s*,\\s*")));
+
+        OWLOntology ontology = ontologyService.getOntology();
+        listener = changes -> {
+            long now = System.currentTimeMillis();
+            for (OWLOntologyChange change : changes) {
+                if (change.getOntology() == ontology && change.isAddAxiom()) {
+                    track(change.getAxiom(), now);
+                }
+            }
+        };
+        ontologyService.getManager().addOntologyChangeListener(listener);
+
+        if (sweepIntervalMs > 0) {
+            sweepExecutor.scheduleWithFixedDelay(this::sweepQuietly, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        log.info("个体生命周期管理已启动: 订单类={}, 终态={}, TTL={}ms, 最大存活={}ms, 归档目录={}",
+            orderClass, terminalValues, terminalTtlMs, maxAgeMs, archiveDir.isEmpty() ? "无" : archiveDir);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweepExecutor.shutdownNow();
+        if (listener != null) {
+            ontologyService.getManager().removeOntologyChangeListener(listener);
+        }
+    }
+
+    /**
+     * 立即执行一次清理
+     * @return 本次清理报告
+     */
+    public Map<String, Object> evictNow() {
+        return sweep(System.currentTimeMillis());
+    }
+
+    /**
+     * 生命周期统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("trackedIndividuals", createdAt.size());
+        statistics.put("terminalOrders", terminalAt.size());
+        statistics.put("evictedIndividuals", evictedIndividuals.get());
+        statistics.put("reclaimedAxioms", reclaimedAxioms.get());
+        statistics.put("archiveFiles", archiveFiles.get());
+        statistics.put("sweepCount", sweepCount.get());
+        statistics.put("lastSweepTime", lastSweepTime);
+        statistics.put("terminalTtlMs", terminalTtlMs);
+        statistics.put("maxAgeMs", maxAgeMs);
+        return statistics;
+    }
+
+    private void track(OWLAxiom axiom, long now) {
+        if (axiom instanceof OWLClassAssertionAxiom) {
+            OWLIndividual individual = ((OWLClassAssertionAxiom) axiom).getIndividual();
+            if (individual.isNamed()) {
+                createdAt.putIfAbsent(individual.asOWLNamedIndividual(), now);
+            }
+        } else if (axiom instanceof OWLDataPropertyAssertionAxiom) {
+            OWLDataPropertyAssertionAxiom assertion = (OWLDataPropertyAssertionAxiom) axiom;
+            if (assertion.getSubject().isNamed()
+                    && assertion.getProperty().asOWLDataProperty().getIRI().equals(orderStatusIRI)) {
+                OWLNamedIndividual order = assertion.getSubject().asOWLNamedIndividual();
+                if (terminalValues.contains(assertion.getObject().getLiteral())) {
+                    terminalAt.putIfAbsent(order, now);
+                } else {
+                    terminalAt.remove(order);
+                }
+            }
+        }
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep(System.currentTimeMillis());
+        } catch (Exception e) {
+            log.warn("个体生命周期清理失败", e);
+        }
+    }
+
+    private synchronized Map<String, Object> sweep(long now) {
+        long start = System.currentTimeMillis();
+        FactSource facts = ontologyService.factSource();
+        OWLClass order = ontologyService.getDataFactory().getOWLClass(IRI.create(ontologyService.getNamespace() + orderClass));
+
+        // 1. 选出到期的个体：终态超过TTL的订单，以及超过最大存活时间的运行期个体
+        Set<OWLNamedIndividual> expired = new LinkedHashSet<>();
+        terminalAt.forEach((individual, since) -> {
+            if (now - since >= terminalTtlMs && createdAt.containsKey(individual)
+                    && facts.match(order, individual, null).iterator().hasNext()) {
+                expired.add(individual);
+            }
+        });
+        if (maxAgeMs > 0) {
+            createdAt.forEach((individual, since) -> {
+                if (now - since >= maxAgeMs) {
+                    expired.add(individual);
+                }
+            });
+        }
+
+        // 2. 订单引用的运行期个体，只要没有被其他存活个体引用，随订单一起清理
+        Set<OWLNamedIndividual> evict = new LinkedHashSet<>(expired);
+        for (OWLNamedIndividual individual : expired) {
+            for (Fact fact : ontologyService.factsOf(individual)) {
+                if (fact.getObject() instanceof OWLNamedIndividual && createdAt.containsKey(fact.getObject())) {
+                    evict.add((OWLNamedIndividual) fact.getObject());
+                }
+            }
+        }
+        evict.removeIf(individual -> isReferencedByLive(individual, evict));
+
+        // 3. 分批删除并归档
+        List<OWLNamedIndividual> targets = new ArrayList<>(evict);
+        int axiomCount = 0;
+        List<String> archives = new ArrayList<>();
+        for (int from = 0; from < targets.size(); from += BATCH_SIZE) {
+            List<OWLNamedIndividual> batch = targets.subList(from, Math.min(from + BATCH_SIZE, targets.size()));
+            List<OWLAxiom> removed = ontologyService.removeIndividuals(batch);
+            axiomCount += removed.size();
+            for (OWLNamedIndividual individual : batch) {
+                createdAt.remove(individual);
+                terminalAt.remove(individual);
+            }
+            if (!archiveDir.isEmpty() && !removed.isEmpty()) {
+                archives.add(archive(removed, now, from / BATCH_SIZE));
+            }
+        }
+
+        evictedIndividuals.addAndGet(targets.size());
+        reclaimedAxioms.addAndGet(axiomCount);
+        sweepCount.incrementAndGet();
+        lastSweepTime = now;
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("status", "success");
+        report.put("evictedIndividuals", targets.size());
+        report.put("reclaimedAxioms", axiomCount);
+        report.put("archives", archives);
+        report.put("remainingTracked", createdAt.size());
+        report.put("elapsedMs", System.currentTimeMillis() - start);
+        if (!targets.isEmpty()) {
+            log.info("个体生命周期清理完成: 删除{}个个体, 回收{}条公理", targets.size(), axiomCount);
+        }
+        return report;
+    }
+
+    /**
+     * 个体是否被待清理集合之外的个体通过对象属性引用
+     */
+    private boolean isReferencedByLive(OWLNamedIndividual individual, Set<OWLNamedIndividual> evict) {
+        for (Fact fact : ontologyService.referencingFacts(individual)) {
+            OWLNamedIndividual subject = fact.getSubject();
+            if (!subject.equals(individual) && !evict.contains(subject)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 将删除的公理以函数式语法写入归档目录
+     * @return 归档文件路径
+     */
+    private String archive(List<OWLAxiom> axioms, long now, int batch) {
+        File file = new File(archiveDir, "evicted-" + now + "-" + batch + ".ofn");
+        try {
+            file.getParentFile().mkdirs();
+            OWLOntologyManager archiveManager = OWLManager.createOWLOntologyManager();
+            OWLOntology archive = archiveManager.createOntology(new HashSet<>(axioms));
+            archiveManager.saveOntology(archive, new FunctionalSyntaxDocumentFormat(), IRI.create(file));
+            archiveFiles.incrementAndGet();
+            return file.getPath();
+        } catch (OWLOntologyCreationException | OWLOntologyStorageException e) {
+            log.warn("归档删除的公理失败: {}", file, e);
+            return null;
+        }
+    }
+}
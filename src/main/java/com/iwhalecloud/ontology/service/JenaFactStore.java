@@ -0,0 +1,380 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.Fact;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.vocabulary.RDF;
+import org.semanticweb.owlapi.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Jena TDB2持久化事实库（可选的ABox后端）
+ *
+ * 配置 ontology.fact-store.tdb2-location 后启用：ABox断言保存在本地TDB2数据集目录的默认图中，
+ * 类断言为 (个体 rdf:type 类)，属性断言为 (主体 属性 客体)。TBox和规则定义仍来自本体文件。
+ * 连接时与本体文件中的断言对账：数据集的命名图中记录上次导入的文件断言，文件中新增的断言写入默认图，
+ * 文件中删除的断言从默认图删除，运行期对文件断言的修改保留；之后本体的每批ABox变更在一个写事务内同步写入，
+ * 重启后之前运行期写入的个体仍然存在。启用后规则前提匹配和个体属性查询改为在读事务内查询TDB2。
+ * 运行期写入仍经过OWLOntology（变更监听驱动Rete网络、事实快照和缓存），本次运行写入的ABox同时保留在堆中，
+ * 堆大小仍是单次运行内实例数量的上限；TDB2提供的是跨重启的持久化和统一的读取来源。
+ * 未配置TDB2目录但启用了SPARQL规则匹配（见 {@link SparqlRuleMatcher}）时，以同样方式同步到内存数据集镜像，只供规则查询使用。
+ */
+@Service
+@Slf4j
+public class JenaFactStore {
+
+    @Value("${ontology.fact-store.tdb2-location:}")
+    private String location = "";
+
+    @Value("${ontology.rule-engine.sparql-enabled:false}")
+    private boolean mirror = false;
+
+    /** 记录上次导入的本体文件断言的命名图 */
+    private static final Node FILE_GRAPH = NodeFactory.createURI("urn:x-ontology:file-facts");
+
+    private volatile Dataset dataset;
+    private OWLOntology ontology;
+    private OWLDataFactory dataFactory;
+    private OWLOntologyChangeListener listener;
+    /** 类 -> 自身及全部子类，类原子查询包含子类实例 */
+    private volatile Map<IRI, Set<IRI>> subClasses = Collections.emptyMap();
+    /** 类层次版本，子类闭包刷新时递增 */
+    private volatile long hierarchyVersion;
+
+    private final AtomicLong loadedTriples = new AtomicLong();
+    private final AtomicLong writeTransactions = new AtomicLong();
+    private final AtomicLong readTransactions = new AtomicLong();
+
+    /**
+     * 是否配置了TDB2数据集
+     */
+    public boolean isEnabled() {
+        return !location.isEmpty();
+    }
+
+    /**
+     * 数据集是否已连接并同步指定本体的ABox
+     */
+    boolean isAttached(OWLOntology ontology) {
+        return dataset != null && this.ontology == ontology;
+    }
+
+    /**
+     * 连接数据集并开始同步本体的ABox变更；连接时先与本体文件中的断言对账
+     */
+    public synchronized void attach(OWLOntology ontology) {
+        if (!isEnabled() && !mirror || dataset != null) {
+            return;
+        }
+        this.ontology = ontology;
+        this.dataFactory = ontology.getOWLOntologyManager().getOWLDataFactory();
+        this.subClasses = subClassClosure(OntologyFacts.superClassClosure(ontology));
+        this.dataset = isEnabled() ? TDB2Factory.connectDataset(location) : DatasetFactory.createTxnMem();
+
+        long start = System.currentTimeMillis();
+        List<Fact> facts = OntologyFacts.extract(ontology);
+        if (isEnabled()) {
+            int[] counts = Txn.calculateWrite(dataset, () -> reconcile(facts));
+            log.info("已连接TDB2数据集: 本体文件断言新增{}条、删除{}条, 耗时{}ms, 目录={}",
+                counts[0], counts[1], System.currentTimeMillis() - start, location);
+        } else {
+            Txn.executeWrite(dataset, () -> facts.forEach(fact -> graph().add(toTriple(fact))));
+            log.info("已导入本体断言到内存镜像: {}条, 耗时{}ms", facts.size(), System.currentTimeMillis() - start);
+        }
+        loadedTriples.set(facts.size());
+        writeTransactions.incrementAndGet();
+
+        listener = this::onChanges;
+        ontology.getOWLOntologyManager().addOntologyChangeListener(listener);
+    }
+
+    /**
+     * 将本体文件中的断言与上次导入时记录的文件断言对账，在写事务内执行
+     * 只同步文件本身的增删：上次导入后运行期删除或替换的文件断言不会被重新写回。
+     * 没有导入记录但默认图非空的数据集（早期版本创建）无法区分文件断言和运行期断言，只补记导入记录
+     * @return {新增条数, 删除条数}
+     */
+    private int[] reconcile(List<Fact> facts) {
+        Graph fileGraph = dataset.asDatasetGraph().getGraph(FILE_GRAPH);
+        Set<Triple> current = new LinkedHashSet<>();
+        facts.forEach(fact -> current.add(toTriple(fact)));
+        boolean untracked = fileGraph.isEmpty() && !graph().isEmpty();
+
+        List<Triple> stale = new ArrayList<>();
+        fileGraph.find().forEachRemaining(triple -> {
+            if (!current.contains(triple)) {
+                stale.add(triple);
+            }
+        });
+        for (Triple triple : stale) {
+            fileGraph.delete(triple);
+            graph().delete(triple);
+        }
+        int added = 0;
+        for (Triple triple : current) {
+            if (!fileGraph.contains(triple)) {
+                fileGraph.add(triple);
+                if (!untracked) {
+                    graph().add(triple);
+                    added++;
+                }
+            }
+        }
+        if (untracked) {
+            log.warn("TDB2数据集没有本体文件导入记录，按现有内容补记，不同步文件断言: {}", location);
+        }
+        return new int[]{added, stale.size()};
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (listener != null) {
+            ontology.getOWLOntologyManager().removeOntologyChangeListener(listener);
+        }
+        if (dataset != null) {
+            dataset.close();
+            dataset = null;
+        }
+    }
+
+    /**
+     * 删除不在本体中的事实（之前运行期写入、只保存在TDB2中的断言）
+     */
+    void retract(Collection<Fact> facts) {
+        if (dataset == null || facts.isEmpty()) {
+            return;
+        }
+        Txn.executeWrite(dataset, () -> facts.forEach(fact -> graph().delete(toTriple(fact))));
+        writeTransactions.incrementAndGet();
+    }
+
+    /**
+     * 在TDB2上查找事实的事实来源，每次查找在一个读事务内完成
+     */
+    FactSource source() {
+        return this::match;
+    }
+
+    /**
+     * 在一个读事务内查询数据集
+     */
+    <T> T query(Function<DatasetGraph, T> query) {
+        return read(() -> query.apply(dataset.asDatasetGraph()));
+    }
+
+    /**
+     * 类自身及其全部子类
+     */
+    Set<IRI> subClassesOf(IRI cls) {
+        return subClasses.getOrDefault(cls, Collections.singleton(cls));
+    }
+
+    long getHierarchyVersion() {
+        return hierarchyVersion;
+    }
+
+    /**
+     * 个体的全部断言事实
+     */
+    List<Fact> getFacts(OWLNamedIndividual individual) {
+        return read(() -> {
+            List<Fact> facts = new ArrayList<>();
+            graph().find(toNode(individual), Node.ANY, Node.ANY).forEachRemaining(triple -> facts.add(toFact(triple)));
+            return facts;
+        });
+    }
+
+    /**
+     * 在一个读事务内读取多个个体的断言事实，结果彼此一致
+     */
+    Map<OWLNamedIndividual, List<Fact>> getFacts(Collection<OWLNamedIndividual> individuals) {
+        return read(() -> {
+            Map<OWLNamedIndividual, List<Fact>> facts = new LinkedHashMap<>();
+            for (OWLNamedIndividual individual : individuals) {
+                facts.put(individual, getFacts(individual));
+            }
+            return facts;
+        });
+    }
+
+    /**
+     * 以个体为客体的对象属性断言
+     */
+    List<Fact> getReferencingFacts(OWLNamedIndividual individual) {
+        return read(() -> {
+            List<Fact> facts = new ArrayList<>();
+            graph().find(Node.ANY, Node.ANY, toNode(individual)).forEachRemaining(triple -> facts.add(toFact(triple)));
+            return facts;
+        });
+    }
+
+    /**
+     * 类的实例（含子类实例）
+     */
+    List<OWLNamedIndividual> getInstances(IRI cls) {
+        return read(() -> {
+            Set<OWLNamedIndividual> instances = new LinkedHashSet<>();
+            for (IRI subClass : subClassesOf(cls)) {
+                graph().find(Node.ANY, RDF.Nodes.type, NodeFactory.createURI(subClass.toString()))
+                    .forEachRemaining(triple -> instances.add(individual(triple.getSubject())));
+            }
+            return new ArrayList<>(instances);
+        });
+    }
+
+    /**
+     * 事实库统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", isEnabled());
+        statistics.put("location", location);
+        statistics.put("mirror", !isEnabled() && mirror);
+        if (dataset != null) {
+            statistics.put("tripleCount", Txn.calculateRead(dataset, () -> graph().size()));
+        }
+        statistics.put("loadedTriples", loadedTriples.get());
+        statistics.put("writeTransactions", writeTransactions.get());
+        statistics.put("readTransactions", readTransactions.get());
+        return statistics;
+    }
+
+    private Iterable<Fact> match(OWLEntity predicate, OWLObject subject, OWLObject object) {
+        Node subjectNode = subject == null ? Node.ANY : toNode(subject);
+        if (predicate instanceof OWLClass) {
+            IRI cls = predicate.getIRI();
+            return read(() -> {
+                Set<Fact> facts = new LinkedHashSet<>();
+                for (IRI subClass : subClassesOf(cls)) {
+                    graph().find(subjectNode, RDF.Nodes.type, NodeFactory.createURI(subClass.toString()))
+                        .forEachRemaining(triple -> facts.add(Fact.classFact(cls, individual(triple.getSubject()))));
+                }
+                return new ArrayList<>(facts);
+            });
+        }
+        Node predicateNode = NodeFactory.createURI(predicate.getIRI().toString());
+        // 字面量按语义值比较（忽略数值类型、语言标签差异），不按精确节点查找
+        Node objectNode = object instanceof OWLNamedIndividual ? toNode(object) : Node.ANY;
+        return read(() -> {
+            List<Fact> facts = new ArrayList<>();
+            graph().find(subjectNode, predicateNode, objectNode).forEachRemaining(triple -> {
+                Fact fact = toFact(triple);
+                if (!(object instanceof OWLLiteral) || RuleValues.sameValue(object, fact.getObject())) {
+                    facts.add(fact);
+                }
+            });
+            return facts;
+        });
+    }
+
+    /**
+     * 将一批本体变更中的ABox断言在一个写事务内同步到TDB2；类层次变更时刷新子类闭包
+     */
+    private void onChanges(List<? extends OWLOntologyChange> changes) {
+        List<Triple> added = new ArrayList<>();
+        List<Triple> removed = new ArrayList<>();
+        boolean hierarchyChanged = false;
+        for (OWLOntologyChange change : changes) {
+            if (change.getOntology() != ontology || !change.isAxiomChange()) {
+                continue;
+            }
+            hierarchyChanged |= change.getAxiom().isOfType(AxiomType.SUBCLASS_OF);
+            OntologyFacts.fromAxiom(change.getAxiom()).ifPresent(fact ->
+                (change.isAddAxiom() ? added : removed).add(toTriple(fact)));
+        }
+        if (hierarchyChanged) {
+            subClasses = subClassClosure(OntologyFacts.superClassClosure(ontology));
+            hierarchyVersion++;
+        }
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        Txn.executeWrite(dataset, () -> {
+            removed.forEach(graph()::delete);
+            added.forEach(graph()::add);
+        });
+        writeTransactions.incrementAndGet();
+    }
+
+    private <T> T read(Supplier<T> query) {
+        readTransactions.incrementAndGet();
+        return Txn.calculateRead(dataset, query);
+    }
+
+    private Graph graph() {
+        return dataset.asDatasetGraph().getDefaultGraph();
+    }
+
+    private static Map<IRI, Set<IRI>> subClassClosure(Map<IRI, Set<IRI>> superClasses) {
+        Map<IRI, Set<IRI>> closure = new HashMap<>();
+        superClasses.forEach((cls, ancestors) -> {
+            closure.computeIfAbsent(cls, key -> new LinkedHashSet<>(Collections.singleton(key)));
+            for (IRI ancestor : ancestors) {
+                closure.computeIfAbsent(ancestor, key -> new LinkedHashSet<>(Collections.singleton(key))).add(cls);
+            }
+        });
+        return closure;
+    }
+
+    private static Triple toTriple(Fact fact) {
+        Node subject = toNode(fact.getSubject());
+        if (fact.isClassFact()) {
+            return Triple.create(subject, RDF.Nodes.type, NodeFactory.createURI(fact.getPredicate().toString()));
+        }
+        return Triple.create(subject, NodeFactory.createURI(fact.getPredicate().toString()), toNode(fact.getObject()));
+    }
+
+    static Node toNode(OWLObject value) {
+        if (value instanceof OWLNamedIndividual) {
+            return NodeFactory.createURI(((OWLNamedIndividual) value).getIRI().toString());
+        }
+        OWLLiteral literal = (OWLLiteral) value;
+        if (literal.hasLang()) {
+            return NodeFactory.createLiteral(literal.getLiteral(), literal.getLang());
+        }
+        return NodeFactory.createLiteral(literal.getLiteral(),
+            TypeMapper.getInstance().getSafeTypeByName(literal.getDatatype().getIRI().toString()));
+    }
+
+    private Fact toFact(Triple triple) {
+        OWLNamedIndividual subject = individual(triple.getSubject());
+        if (triple.getPredicate().equals(RDF.Nodes.type)) {
+            return Fact.classFact(IRI.create(triple.getObject().getURI()), subject);
+        }
+        return Fact.propertyFact(IRI.create(triple.getPredicate().getURI()), subject, toOwl(triple.getObject(), dataFactory));
+    }
+
+    /**
+     * 将RDF节点转换为个体（IRI节点）或字面量
+     */
+    static OWLObject toOwl(Node node, OWLDataFactory dataFactory) {
+        if (node.isURI()) {
+            return dataFactory.getOWLNamedIndividual(IRI.create(node.getURI()));
+        }
+        if (!node.getLiteralLanguage().isEmpty()) {
+            return dataFactory.getOWLLiteral(node.getLiteralLexicalForm(), node.getLiteralLanguage());
+        }
+        return dataFactory.getOWLLiteral(node.getLiteralLexicalForm(),
+            dataFactory.getOWLDatatype(IRI.create(node.getLiteralDatatypeURI())));
+    }
+
+    private OWLNamedIndividual individual(Node node) {
+        return dataFactory.getOWLNamedIndividual(IRI.create(node.getURI()));
+    }
+}
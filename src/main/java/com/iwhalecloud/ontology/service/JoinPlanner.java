@@ -0,0 +1,270 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.LinkedAtom;
+import com.iwhalecloud.ontology.model.LinkedRule;
+import com.iwhalecloud.ontology.model.RuleTerm;
+import lombok.extern.slf4j.Slf4j;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyChangeListener;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于代价的SWRL前提连接规划器
+ *
+ * 以本体基数统计（类实例数、属性扇出/扇入）估算每一步连接后的中间结果行数，
+ * 贪心选择使中间结果最小的原子，使不相连的变量链（如 ?step/?taskPlan/?attr 与 ?customer）
+ * 各自先被选择性高的原子收窄后再做笛卡尔积；内置函数在输入变量全部绑定后立即插入。
+ *
+ * 统计快照带有epoch版本号，本体逻辑公理的变更累计超过阈值后刷新统计并推进epoch，
+ * 规则的连接计划按 规则代码 + 种子原子 缓存，epoch变化后重新规划。
+ */
+@Service
+@Slf4j
+public class JoinPlanner {
+
+    /** 内置过滤函数的默认选择率 */
+    private static final double FILTER_SELECTIVITY = 0.5;
+
+    /** 统计刷新阈值：变更数至少达到该值，且超过事实数的10% */
+    private static final int MIN_REFRESH_CHANGES = 100;
+    private static final double REFRESH_RATIO = 0.1;
+
+    private final Map<String, CachedPlan> planCache = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+
+    private OWLOntology statisticsOntology;
+    private OWLOntologyChangeListener statisticsListener;
+    private volatile CardinalityStatistics statistics;
+    private long epoch;
+
+    /**
+     * 获取本体当前的统计快照，变更累计超过阈值时重新统计
+     */
+    synchronized CardinalityStatistics getStatistics(OWLOntology ontology) {
+        if (ontology != statisticsOntology) {
+            attach(ontology);
+        } else {
+            int changes = pendingChanges.get();
+            if (changes >= Math.max(MIN_REFRESH_CHANGES, statistics.getFactCount() * REFRESH_RATIO)) {
+                refresh(changes);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * 规划规则前提的求值顺序
+     * @return 规则体原子下标序列
+     */
+    int[] plan(OWLOntology ontology, LinkedRule rule) {
+        return plan(ontology, rule, -1);
+    }
+
+    /**
+     * 规划以指定原子为种子（首个求值、只绑定一个事实）的求值顺序，供半朴素求值的增量连接使用
+     * @param seed 种子原子下标，-1表示由规划器选择首个原子
+     */
+    int[] plan(OWLOntology ontology, LinkedRule rule, int seed) {
+        CardinalityStatistics current = getStatistics(ontology);
+        if (rule.getRuleCode() == null) {
+            return plan(rule, current, seed).order;
+        }
+
+        String key = rule.getRuleCode() + "#" + seed;
+        CachedPlan cached = planCache.get(key);
+        if (cached != null && cached.epoch == current.getEpoch() && cached.rule == rule) {
+            return cached.plan.order;
+        }
+        JoinPlan plan = plan(rule, current, seed);
+        planCache.put(key, new CachedPlan(current.getEpoch(), rule, plan));
+        log.debug("连接计划: {} 种子={} 顺序={} 估算代价={} (epoch={})",
+            rule.getRuleCode(), seed, Arrays.toString(plan.order), plan.estimatedCost, current.getEpoch());
+        return plan.order;
+    }
+
+    /**
+     * 贪心代价规划
+     * 每一步对所有未求值的原子估算连接后的行数，选择行数最小者（相同则保持原文顺序）
+     */
+    static JoinPlan plan(LinkedRule rule, CardinalityStatistics statistics, int seed) {
+        List<LinkedAtom> body = rule.getBody();
+        List<Integer> remaining = new ArrayList<>();
+        List<Integer> builtins = new ArrayList<>();
+        for (int i = 0; i < body.size(); i++) {
+            if (body.get(i).isBuiltin()) {
+                builtins.add(i);
+            } else if (i != seed) {
+                remaining.add(i);
+            }
+        }
+
+        Set<Integer> bound = new HashSet<>();
+        List<Integer> order = new ArrayList<>();
+        double rows = 1;
+        double cost = 0;
+        if (seed >= 0) {
+            order.add(seed);
+            markBound(body.get(seed), bound);
+        }
+        rows = addReadyBuiltins(body, builtins, bound, order, rows);
+
+        while (!remaining.isEmpty()) {
+            int next = -1;
+            double best = Double.MAX_VALUE;
+            for (int index : remaining) {
+                double estimate = estimate(body.get(index), bound, rows, statistics);
+                if (estimate < best) {
+                    best = estimate;
+                    next = index;
+                }
+            }
+            remaining.remove(Integer.valueOf(next));
+            order.add(next);
+            markBound(body.get(next), bound);
+            rows = addReadyBuiltins(body, builtins, bound, order, best);
+            cost += rows;
+        }
+
+        if (!builtins.isEmpty()) {
+            throw new IllegalArgumentException("内置函数存在未绑定的变量: " + body.get(builtins.get(0)).getAtom());
+        }
+        return new JoinPlan(order.stream().mapToInt(Integer::intValue).toArray(), cost, statistics.getEpoch());
+    }
+
+    /**
+     * 估算在已有rows行部分匹配上连接该原子后的行数
+     */
+    private static double estimate(LinkedAtom atom, Set<Integer> bound, double rows, CardinalityStatistics statistics) {
+        boolean subjectBound = isBound(atom.getArgument(0), bound);
+        if (atom.isClassAtom()) {
+            return subjectBound
+                ? rows * statistics.classSelectivity(atom.getPredicate())
+                : rows * statistics.classSize(atom.getPredicate());
+        }
+
+        boolean objectBound = isBound(atom.getArgument(1), bound);
+        if (subjectBound && objectBound) {
+            return rows * statistics.pairSelectivity(atom.getPredicate());
+        }
+        if (subjectBound) {
+            return rows * statistics.fanOut(atom.getPredicate());
+        }
+        if (objectBound) {
+            return rows * statistics.fanIn(atom.getPredicate());
+        }
+        return rows * statistics.propertySize(atom.getPredicate());
+    }
+
+    /**
+     * 插入输入变量已全部绑定的内置函数；计算类函数的首个参数允许未绑定并由函数赋值
+     * @return 经过滤后的估算行数
+     */
+    private static double addReadyBuiltins(List<LinkedAtom> body, List<Integer> builtins,
+                                           Set<Integer> bound, List<Integer> order, double rows) {
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            Iterator<Integer> iterator = builtins.iterator();
+            while (iterator.hasNext()) {
+                int index = iterator.next();
+                LinkedAtom atom = body.get(index);
+                RuleTerm first = atom.getArgument(0);
+                boolean bindsFirst = SWRLBuiltins.isBinding(atom.getBuiltin())
+                    && first.isVariable() && !bound.contains(first.getSlot());
+                boolean ready = true;
+                for (int i = bindsFirst ? 1 : 0; i < atom.getArity(); i++) {
+                    if (!isBound(atom.getArgument(i), bound)) {
+                        ready = false;
+                    }
+                }
+                if (ready) {
+                    order.add(index);
+                    markBound(atom, bound);
+                    iterator.remove();
+                    progress = true;
+                    if (!bindsFirst) {
+                        rows *= FILTER_SELECTIVITY;
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static boolean isBound(RuleTerm term, Set<Integer> bound) {
+        return !term.isVariable() || bound.contains(term.getSlot());
+    }
+
+    private static void markBound(LinkedAtom atom, Set<Integer> bound) {
+        for (RuleTerm term : atom.getAtom().getArguments()) {
+            if (term.isVariable()) {
+                bound.add(term.getSlot());
+            }
+        }
+    }
+
+    // ========== 统计维护 ==========
+
+    private void attach(OWLOntology ontology) {
+        if (statisticsListener != null) {
+            statisticsOntology.getOWLOntologyManager().removeOntologyChangeListener(statisticsListener);
+        }
+        OWLOntologyChangeListener listener = changes -> {
+            int count = 0;
+            for (OWLOntologyChange change : changes) {
+                if (change.getOntology() == ontology && change.isAxiomChange() && change.getAxiom().isLogicalAxiom()) {
+                    count++;
+                }
+            }
+            if (count > 0) {
+                pendingChanges.addAndGet(count);
+            }
+        };
+        ontology.getOWLOntologyManager().addOntologyChangeListener(listener);
+        statisticsOntology = ontology;
+        statisticsListener = listener;
+        planCache.clear();
+        refresh(pendingChanges.get());
+    }
+
+    private void refresh(int consumedChanges) {
+        pendingChanges.addAndGet(-consumedChanges);
+        statistics = CardinalityStatistics.of(statisticsOntology, ++epoch);
+        log.info("基数统计已刷新: epoch={}, 事实数={}", epoch, statistics.getFactCount());
+    }
+
+    /**
+     * 连接计划
+     */
+    static final class JoinPlan {
+        /** 规则体原子下标的求值顺序 */
+        final int[] order;
+        /** 估算的中间结果总行数 */
+        final double estimatedCost;
+        /** 规划所用统计的版本 */
+        final long epoch;
+
+        JoinPlan(int[] order, double estimatedCost, long epoch) {
+            this.order = order;
+            this.estimatedCost = estimatedCost;
+            this.epoch = epoch;
+        }
+    }
+
+    private static final class CachedPlan {
+        final long epoch;
+        final LinkedRule rule;
+        final JoinPlan plan;
+
+        CachedPlan(long epoch, LinkedRule rule, JoinPlan plan) {
+            this.epoch = epoch;
+            this.rule = rule;
+            this.plan = plan;
+        }
+    }
+}
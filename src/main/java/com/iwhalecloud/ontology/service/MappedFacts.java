@@ -0,0 +1,371 @@
+package com.iwhalecloud.ontology.service;
+
+import org.semanticweb.owlapi.model.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * 内存映射的只读事实文件
+ *
+ * 保存一份事实快照的项字典和整数对索引，启动时以 {@link FileChannel#map} 只读映射，
+ * 数据留在操作系统页缓存中而不是JVM堆内，可被多次重启（以及同机多个进程）共享。
+ * 索引区域直接作为 {@link PairIndex} 的基础数组，规则匹配按位置读取映射页，不复制；
+ * 项按需解码为OWL对象，项到ID的查找走文件内的开放寻址散列表。
+ *
+ * 文件格式（大端）：
+ * 头部 magic, 格式版本, 本体IRI, 类层次指纹, 事实数, 个体数；
+ * 项字典 项数, 偏移表 long[项数+1], 项数据（UTF-8编码的项键）, 散列槽 int[]；
+ * 索引 (主体,类), (主体,属性), 各谓词分区的 谓词IRI、(主体,客体) 和 (客体,主体)。
+ * 每个区域单独映射，单个区域不超过2GB（约2.6亿个整数对）。
+ */
+final class MappedFacts {
+
+    private static final long MAGIC = 0x4F4E544F46414354L;
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path file;
+    private final OWLDataFactory dataFactory;
+    private final String ontologyIRI;
+    private final long closureFingerprint;
+    private final int factCount;
+    private final int individualCount;
+    private final int termCount;
+    private final LongBuffer termOffsets;
+    private final ByteBuffer termData;
+    private final IntBuffer slots;
+    private final PairIndex types;
+    private final PairIndex properties;
+    private final Map<IRI, PairIndex[]> partitions;
+
+    private MappedFacts(Path file, OWLDataFactory dataFactory, Reader reader) throws IOException {
+        this.file = file;
+        this.dataFactory = dataFactory;
+        if (reader.readLong() != MAGIC || reader.readInt() != FORMAT_VERSION) {
+            throw new IOException("不是有效的事实映射文件: " + file);
+        }
+        this.ontologyIRI = new String(reader.readBytes(reader.readInt()), StandardCharsets.UTF_8);
+        this.closureFingerprint = reader.readLong();
+        this.factCount = reader.readInt();
+        this.individualCount = reader.readInt();
+        this.termCount = reader.readInt();
+        this.termOffsets = reader.mapLongs(termCount + 1);
+        this.termData = reader.mapBytes(reader.readLong());
+        this.slots = reader.mapInts(reader.readInt());
+        this.types = PairIndex.mapped(reader.mapLongs(reader.readInt()));
+        this.properties = PairIndex.mapped(reader.mapLongs(reader.readInt()));
+        int partitionCount = reader.readInt();
+        Map<IRI, PairIndex[]> mappedPartitions = new HashMap<>();
+        for (int i = 0; i < partitionCount; i++) {
+            IRI predicate = IRI.create(new String(reader.readBytes(reader.readInt()), StandardCharsets.UTF_8));
+            PairIndex subjectObject = PairIndex.mapped(reader.mapLongs(reader.readInt()));
+            PairIndex objectSubject = PairIndex.mapped(reader.mapLongs(reader.readInt()));
+            mappedPartitions.put(predicate, new PairIndex[]{subjectObject, objectSubject});
+        }
+        this.partitions = Collections.unmodifiableMap(mappedPartitions);
+    }
+
+    /**
+     * 只读映射事实文件，映射建立后文件通道即关闭，映射在对象被回收前一直有效
+     */
+    static MappedFacts open(Path file, OWLDataFactory dataFactory) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedFacts(file, dataFactory, new Reader(channel));
+        }
+    }
+
+    /**
+     * 将事实快照写入映射文件（先写临时文件，完成后原子替换）
+     * @return 写入的字节数
+     */
+    static long write(FactSnapshot snapshot, String ontologyIRI, Path file) throws IOException {
+        TermDictionary terms = snapshot.getTerms();
+        int termCount = terms.size();
+        byte[][] keys = new byte[termCount + 1][];
+        long dataLength = 0;
+        for (int id = 1; id <= termCount; id++) {
+            keys[id] = key(terms.decode(id));
+            dataLength += keys[id].length;
+        }
+        int[] slots = new int[Integer.highestOneBit(Math.max(1, termCount) * 2 - 1) << 1];
+        for (int id = 1; id <= termCount; id++) {
+            int slot = hash(keys[id]) & (slots.length - 1);
+            while (slots[slot] != TermDictionary.NONE) {
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            slots[slot] = id;
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeLong(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            byte[] iri = ontologyIRI.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(iri.length);
+            out.write(iri);
+            out.writeLong(fingerprint(snapshot.getSuperClasses()));
+            out.writeInt(snapshot.getFactCount());
+            out.writeInt(snapshot.getIndividualCount());
+
+            out.writeInt(termCount);
+            long offset = 0;
+            out.writeLong(offset);
+            for (int id = 1; id <= termCount; id++) {
+                offset += keys[id].length;
+                out.writeLong(offset);
+            }
+            out.writeLong(dataLength);
+            for (int id = 1; id <= termCount; id++) {
+                out.write(keys[id]);
+            }
+            out.writeInt(slots.length);
+            for (int slot : slots) {
+                out.writeInt(slot);
+            }
+
+            writePairs(out, snapshot.getTypes());
+            writePairs(out, snapshot.getProperties());
+            Map<IRI, PairIndex[]> indexes = snapshot.getPartitionIndexes();
+            out.writeInt(indexes.size());
+            for (Map.Entry<IRI, PairIndex[]> entry : indexes.entrySet()) {
+                byte[] predicate = entry.getKey().toString().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(predicate.length);
+                out.write(predicate);
+                writePairs(out, entry.getValue()[0]);
+                writePairs(out, entry.getValue()[1]);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Files.size(file);
+    }
+
+    /**
+     * 文件是否对应该本体及其当前的类层次（类分区含父类传播事实，类层次变化后需要重新导出）
+     */
+    boolean matches(String ontologyIRI, Map<IRI, Set<IRI>> superClasses) {
+        return this.ontologyIRI.equals(ontologyIRI) && closureFingerprint == fingerprint(superClasses);
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    int getFactCount() {
+        return factCount;
+    }
+
+    int getIndividualCount() {
+        return individualCount;
+    }
+
+    int getTermCount() {
+        return termCount;
+    }
+
+    PairIndex getTypes() {
+        return types;
+    }
+
+    PairIndex getProperties() {
+        return properties;
+    }
+
+    Map<IRI, PairIndex[]> getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * 查找项的ID
+     * @return 项不在文件中时返回 {@link TermDictionary#NONE}
+     */
+    int lookup(OWLObject term) {
+        byte[] key = key(term);
+        if (key == null || slots.limit() == 0) {
+            return TermDictionary.NONE;
+        }
+        int mask = slots.limit() - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int id = slots.get(slot);
+            if (id == TermDictionary.NONE) {
+                return TermDictionary.NONE;
+            }
+            if (keyEquals(id, key)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * 解码项：谓词为IRI，主体/个体客体为命名个体，其余为字面量
+     */
+    OWLObject decode(int id) {
+        String key = new String(keyBytes(id), StandardCharsets.UTF_8);
+        String value = key.substring(1);
+        switch (key.charAt(0)) {
+            case 'P':
+                return IRI.create(value);
+            case 'I':
+                return dataFactory.getOWLNamedIndividual(IRI.create(value));
+            default:
+                String[] parts = value.split("\u0000", -1);
+                return parts[2].isEmpty()
+                    ? dataFactory.getOWLLiteral(parts[0], dataFactory.getOWLDatatype(IRI.create(parts[1])))
+                    : dataFactory.getOWLLiteral(parts[0], parts[2]);
+        }
+    }
+
+    private boolean keyEquals(int id, byte[] key) {
+        long start = termOffsets.get(id - 1);
+        long end = termOffsets.get(id);
+        if (end - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (termData.get((int) start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] keyBytes(int id) {
+        int start = (int) termOffsets.get(id - 1);
+        byte[] bytes = new byte[(int) termOffsets.get(id) - start];
+        termData.get(start, bytes);
+        return bytes;
+    }
+
+    /**
+     * 项键：类型前缀 + 内容，字面量内容为 词法形式\0数据类型\0语言标签
+     */
+    private static byte[] key(OWLObject term) {
+        String key;
+        if (term instanceof IRI) {
+            key = "P" + term;
+        } else if (term instanceof OWLNamedIndividual) {
+            key = "I" + ((OWLNamedIndividual) term).getIRI();
+        } else if (term instanceof OWLLiteral) {
+            OWLLiteral literal = (OWLLiteral) term;
+            key = "L" + literal.getLiteral() + "\u0000" + literal.getDatatype().getIRI() + "\u0000" + literal.getLang();
+        } else {
+            return null;
+        }
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * FNV-1a散列，写入和读取两端的结果与JVM无关
+     */
+    private static int hash(byte[] key) {
+        int hash = 0x811C9DC5;
+        for (byte b : key) {
+            hash = (hash ^ (b & 0xFF)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * 类层次指纹：按IRI排序后的父类闭包的FNV-1a散列
+     */
+    private static long fingerprint(Map<IRI, Set<IRI>> superClasses) {
+        long hash = 0xCBF29CE484222325L;
+        List<String> lines = new ArrayList<>();
+        superClasses.forEach((cls, parents) -> {
+            List<String> names = new ArrayList<>();
+            parents.forEach(parent -> names.add(parent.toString()));
+            Collections.sort(names);
+            lines.add(cls + ">" + String.join(",", names));
+        });
+        Collections.sort(lines);
+        for (String line : lines) {
+            for (byte b : (line + "\n").getBytes(StandardCharsets.UTF_8)) {
+                hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+            }
+        }
+        return hash;
+    }
+
+    private static void writePairs(DataOutputStream out, PairIndex index) throws IOException {
+        long[] pairs = index.toSortedArray();
+        if ((long) pairs.length * Long.BYTES > Integer.MAX_VALUE) {
+            throw new IOException("索引区域超过2GB，无法映射: " + pairs.length + "个整数对");
+        }
+        out.writeInt(pairs.length);
+        for (long pair : pairs) {
+            out.writeLong(pair);
+        }
+    }
+
+    /**
+     * 顺序读取文件头部字段，大块区域按当前位置映射
+     */
+    private static final class Reader {
+        private final FileChannel channel;
+        private long position;
+
+        Reader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        int readInt() throws IOException {
+            return read(Integer.BYTES).getInt();
+        }
+
+        long readLong() throws IOException {
+            return read(Long.BYTES).getLong();
+        }
+
+        byte[] readBytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            read(length).get(bytes);
+            return bytes;
+        }
+
+        LongBuffer mapLongs(int count) throws IOException {
+            return map((long) count * Long.BYTES).asLongBuffer();
+        }
+
+        IntBuffer mapInts(int count) throws IOException {
+            return map((long) count * Integer.BYTES).asIntBuffer();
+        }
+
+        ByteBuffer mapBytes(long length) throws IOException {
+            return map(length);
+        }
+
+        private MappedByteBuffer map(long length) throws IOException {
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("映射区域超过2GB: " + length);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            position += length;
+            return buffer;
+        }
+
+        private ByteBuffer read(int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("事实映射文件不完整");
+                }
+            }
+            position += length;
+            return buffer.flip();
+        }
+    }
+}
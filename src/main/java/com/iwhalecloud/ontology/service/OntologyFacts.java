@@ -0,0 +1,107 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.Fact;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+
+/**
+ * 本体事实提取工具
+ * 将本体中的类断言、对象属性断言、数据属性断言转换为推理事实
+ */
+final class OntologyFacts {
+
+    private OntologyFacts() {
+    }
+
+    /**
+     * 提取本体（含导入）中的全部断言事实
+     */
+    static List<Fact> extract(OWLOntology ontology) {
+        List<Fact> facts = new ArrayList<>();
+        for (OWLOntology current : ontology.getImportsClosure()) {
+            for (AxiomType<?> type : List.of(AxiomType.CLASS_ASSERTION,
+                    AxiomType.OBJECT_PROPERTY_ASSERTION, AxiomType.DATA_PROPERTY_ASSERTION)) {
+                for (OWLAxiom axiom : current.getAxioms(type)) {
+                    fromAxiom(axiom).ifPresent(facts::add);
+                }
+            }
+        }
+        return facts;
+    }
+
+    /**
+     * 将单个断言公理转换为事实，非断言公理或匿名个体返回空
+     */
+    static Optional<Fact> fromAxiom(OWLAxiom axiom) {
+        if (axiom instanceof OWLClassAssertionAxiom) {
+            OWLClassAssertionAxiom assertion = (OWLClassAssertionAxiom) axiom;
+            if (assertion.getClassExpression().isNamed() && assertion.getIndividual().isNamed()) {
+                return Optional.of(Fact.classFact(
+                    assertion.getClassExpression().asOWLClass().getIRI(),
+                    assertion.getIndividual().asOWLNamedIndividual()));
+            }
+        } else if (axiom instanceof OWLObjectPropertyAssertionAxiom) {
+            OWLObjectPropertyAssertionAxiom assertion = (OWLObjectPropertyAssertionAxiom) axiom;
+            if (assertion.getProperty().isNamed() && assertion.getSubject().isNamed() && assertion.getObject().isNamed()) {
+                return Optional.of(Fact.propertyFact(
+                    assertion.getProperty().asOWLObjectProperty().getIRI(),
+                    assertion.getSubject().asOWLNamedIndividual(),
+                    assertion.getObject().asOWLNamedIndividual()));
+            }
+        } else if (axiom instanceof OWLDataPropertyAssertionAxiom) {
+            OWLDataPropertyAssertionAxiom assertion = (OWLDataPropertyAssertionAxiom) axiom;
+            if (assertion.getSubject().isNamed()) {
+                return Optional.of(Fact.propertyFact(
+                    assertion.getProperty().asOWLDataProperty().getIRI(),
+                    assertion.getSubject().asOWLNamedIndividual(),
+                    assertion.getObject()));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 将事实转换为断言公理：客体为字面量时生成数据属性断言，否则生成对象属性断言
+     */
+    static OWLAxiom toAxiom(Fact fact, OWLDataFactory dataFactory) {
+        if (fact.isClassFact()) {
+            return dataFactory.getOWLClassAssertionAxiom(dataFactory.getOWLClass(fact.getPredicate()), fact.getSubject());
+        }
+        if (fact.getObject() instanceof OWLLiteral) {
+            return dataFactory.getOWLDataPropertyAssertionAxiom(
+                dataFactory.getOWLDataProperty(fact.getPredicate()), fact.getSubject(), (OWLLiteral) fact.getObject());
+        }
+        return dataFactory.getOWLObjectPropertyAssertionAxiom(
+            dataFactory.getOWLObjectProperty(fact.getPredicate()), fact.getSubject(), (OWLNamedIndividual) fact.getObject());
+    }
+
+    /**
+     * 计算命名类的父类闭包（不含自身），用于类事实沿SubClassOf向上传播
+     */
+    static Map<IRI, Set<IRI>> superClassClosure(OWLOntology ontology) {
+        Map<IRI, Set<IRI>> direct = new HashMap<>();
+        for (OWLOntology current : ontology.getImportsClosure()) {
+            for (OWLSubClassOfAxiom axiom : current.getAxioms(AxiomType.SUBCLASS_OF)) {
+                if (axiom.getSubClass().isNamed() && axiom.getSuperClass().isNamed()) {
+                    direct.computeIfAbsent(axiom.getSubClass().asOWLClass().getIRI(), k -> new LinkedHashSet<>())
+                        .add(axiom.getSuperClass().asOWLClass().getIRI());
+                }
+            }
+        }
+
+        Map<IRI, Set<IRI>> closure = new HashMap<>();
+        for (IRI cls : direct.keySet()) {
+            Set<IRI> ancestors = new LinkedHashSet<>();
+            Deque<IRI> pending = new ArrayDeque<>(direct.get(cls));
+            while (!pending.isEmpty()) {
+                IRI parent = pending.poll();
+                if (!parent.equals(cls) && ancestors.add(parent)) {
+                    pending.addAll(direct.getOrDefault(parent, Collections.emptySet()));
+                }
+            }
+            closure.put(cls, ancestors);
+        }
+        return closure;
+    }
+}
@@ -1,10 +1,11 @@
 package com.iwhalecloud.ontology.service;
 
+import com.iwhalecloud.ontology.model.Fact;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.*;
 import org.semanticweb.owlapi.reasoner.OWLReasoner;
-import org.semanticweb.owlapi.reasoner.structural.StructuralReasonerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
@@ -16,11 +17,17 @@ import java.util.stream.Collectors;
 /**
  * OWL本体服务
  * 负责加载OWL本体、执行推理（支持SWRLAPI）、查询类和个体
+ * 个体查询读取版本化事实库的不可变快照，写入串行执行，每次写入的一组公理作为一个新版本原子发布
  */
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class OntologyService {
 
+    private final SharedReasonerManager sharedReasonerManager;
+    private final VersionedFactStore factStore;
+    private final JenaFactStore jenaFactStore;
+
     @Value("${ontology.file.path}")
     private Resource ontologyResource;
 
@@ -30,25 +37,33 @@ public class OntologyService {
     private OWLOntologyManager manager;
     private OWLOntology ontology;
     private OWLDataFactory dataFactory;
-    private OWLReasoner reasoner;
+    /** 本体文件中定义的个体（流程步骤、工作流等），由所有订单共享 */
+    private Set<OWLNamedIndividual> sharedIndividuals = Collections.emptySet();
 
     @PostConstruct
     public void init() throws Exception {
         log.info("初始化OWL本体服务...");
         
-        // 创建OWL管理器和数据工厂
-        manager = OWLManager.createOWLOntologyManager();
+        // 创建OWL管理器和数据工厂：并发管理器创建的本体以读写锁保护每次读取和变更，
+        // 签名统计、规则加载、事实抽取和连接统计等直接读取本体的路径不会与写入交错
+        manager = OWLManager.createConcurrentOWLOntologyManager();
         dataFactory = manager.getOWLDataFactory();
         
         // 加载本体文件
         log.info("加载本体文件: {}", ontologyResource.getFilename());
         ontology = manager.loadOntologyFromOntologyDocument(ontologyResource.getInputStream());
         log.info("本体加载成功，包含 {} 个公理", ontology.getAxiomCount());
+        sharedIndividuals = Set.copyOf(ontology.getIndividualsInSignature());
         
-        // 创建推理器
+        // 创建共享推理器（缓冲模式，随本体变更在后台延迟刷新）
         log.info("创建OWL推理器...");
-        StructuralReasonerFactory reasonerFactory = new StructuralReasonerFactory();
-        reasoner = reasonerFactory.createReasoner(ontology);
+        sharedReasonerManager.getReasoner(ontology);
+        
+        // 构建首个事实快照，之后随本体变更增量发布新版本
+        factStore.snapshot(ontology);
+
+        // 配置了TDB2数据集时，ABox同步写入数据集，查询改从数据集读取
+        jenaFactStore.attach(ontology);
         
         log.info("OWL本体服务初始化完成！");
         logOntologyStatistics();
@@ -89,56 +104,255 @@ public class OntologyService {
 
     public List<String> getIndividualsByClass(String className) {
         IRI classIRI = IRI.create(namespace + className);
-        OWLClass owlClass = dataFactory.getOWLClass(classIRI);
         
-        return reasoner.getInstances(owlClass, false)
-                .entities()
+        return instancesOf(classIRI)
+                .stream()
+                .map(ind -> ind.getIRI().getFragment())
+                .filter(Objects::nonNull)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 按类和数据属性值筛选个体（批量推理的订单选择器）
+     * @param className 类名（含子类实例）
+     * @param dataPropertyFilters 数据属性名 -> 期望的字面值，全部满足才入选
+     * @param limit 最多返回的个体数，不大于0表示不限
+     */
+    public List<String> findIndividuals(String className, Map<String, String> dataPropertyFilters, int limit) {
+        Map<IRI, String> filters = new HashMap<>();
+        if (dataPropertyFilters != null) {
+            dataPropertyFilters.forEach((name, value) -> filters.put(IRI.create(namespace + name), value));
+        }
+
+        FactSnapshot snapshot = jenaFactStore.isEnabled() ? null : getSnapshot();
+        return instancesOf(snapshot, IRI.create(namespace + className))
+                .stream()
+                .filter(ind -> filters.entrySet().stream().allMatch(filter ->
+                    factsOf(snapshot, ind).stream()
+                        .anyMatch(fact -> fact.getPredicate().equals(filter.getKey())
+                            && fact.getObject() instanceof OWLLiteral
+                            && ((OWLLiteral) fact.getObject()).getLiteral().equals(filter.getValue()))))
                 .map(ind -> ind.getIRI().getFragment())
                 .filter(Objects::nonNull)
                 .sorted()
+                .limit(limit > 0 ? limit : Long.MAX_VALUE)
                 .collect(Collectors.toList());
     }
 
     public void addIndividual(String className, String individualName) throws OWLOntologyStorageException {
+        publish(List.of(individualAxiom(className, individualName)));
+        log.info("添加个体: {} 到类: {}", individualName, className);
+    }
+
+    public void addDataProperty(String individualName, String propertyName, String value, String dataType) throws OWLOntologyStorageException {
+        publish(List.of(dataPropertyAxiom(individualName, propertyName, value, dataType)));
+        log.info("添加数据属性: {} = {} 到个体: {}", propertyName, value, individualName);
+    }
+
+    public void addObjectProperty(String sourceIndividual, String propertyName, String targetIndividual) throws OWLOntologyStorageException {
+        publish(List.of(objectPropertyAxiom(sourceIndividual, propertyName, targetIndividual)));
+        log.info("添加对象属性: {} -[{}]-> {}", sourceIndividual, propertyName, targetIndividual);
+    }
+
+    /**
+     * 替换个体的数据属性值：删除这些属性的现有断言并写入新值，作为一个版本发布
+     * 现有断言从当前事实来源和事实快照读取（包括TDB2数据集、映射事实文件中不在本体里的断言），与其他写入一样串行执行
+     * @param values 属性名 -> 新值，Integer/Long按整数、Boolean按布尔、其他按字符串写入
+     */
+    public synchronized void replaceDataProperties(String individualName, Map<String, Object> values) {
+        OWLNamedIndividual individual = dataFactory.getOWLNamedIndividual(IRI.create(namespace + individualName));
+        Set<Fact> current = new LinkedHashSet<>(factsOf(individual));
+        current.addAll(getSnapshot().getFacts(individual));
+        List<Fact> removed = new ArrayList<>();
+        List<OWLOntologyChange> changes = new ArrayList<>();
+        values.forEach((propertyName, value) -> {
+            IRI propertyIRI = IRI.create(namespace + propertyName);
+            current.stream()
+                .filter(fact -> fact.getPredicate().equals(propertyIRI) && fact.getObject() instanceof OWLLiteral)
+                .forEach(fact -> {
+                    removed.add(fact);
+                    changes.add(new RemoveAxiom(ontology, OntologyFacts.toAxiom(fact, dataFactory)));
+                });
+            String dataType = value instanceof Integer || value instanceof Long ? "INTEGER"
+                : value instanceof Boolean ? "BOOLEAN" : "STRING";
+            changes.add(new AddAxiom(ontology, dataPropertyAxiom(individualName, propertyName, String.valueOf(value), dataType)));
+        });
+        apply(changes, removed);
+        log.info("更新数据属性: {} -> {}", individualName, values);
+    }
+
+    /**
+     * 以一次变更批量写入公理，事实库将其作为一个新版本发布
+     * 写入在本服务内串行执行（本体管理器只保证单次变更的原子性），读取快照的一方不受影响
+     * @return 写入的公理数
+     */
+    synchronized int publish(List<OWLAxiom> axioms) {
+        apply(axioms.stream().map(axiom -> new AddAxiom(ontology, axiom)).collect(Collectors.toList()),
+            Collections.emptyList());
+        return axioms.size();
+    }
+
+    /**
+     * 在当前事实来源上打开一个请求级覆盖层，覆盖层中的修改在提交前对其他请求不可见
+     * 启用TDB2时底层为数据集（每次读取在读事务内完成），否则为打开时的事实快照
+     */
+    public FactOverlay openOverlay() {
+        FactSnapshot snapshot = getSnapshot();
+        if (jenaFactStore.isEnabled()) {
+            return new FactOverlay(jenaFactStore.source(), jenaFactStore::getFacts, snapshot.getSuperClasses(),
+                snapshot.getVersion(), dataFactory, namespace);
+        }
+        return new FactOverlay(snapshot, snapshot::getFacts, snapshot.getSuperClasses(),
+            snapshot.getVersion(), dataFactory, namespace);
+    }
+
+    /**
+     * 提交覆盖层：删除被覆盖的数据属性值、写入新增断言，作为一个版本发布
+     * @return 写入的断言数
+     */
+    public synchronized int commit(FactOverlay overlay) {
+        overlay.close();
+        List<OWLOntologyChange> changes = new ArrayList<>();
+        for (Fact fact : overlay.getHidden()) {
+            changes.add(new RemoveAxiom(ontology, OntologyFacts.toAxiom(fact, dataFactory)));
+        }
+        for (Fact fact : overlay.getAsserted()) {
+            changes.add(new AddAxiom(ontology, OntologyFacts.toAxiom(fact, dataFactory)));
+        }
+        apply(changes, overlay.getHidden());
+        log.info("覆盖层已提交: 新增{}条断言, 覆盖{}条断言 (基于版本{})",
+            overlay.getAsserted().size(), overlay.getHidden().size(), overlay.getBaseVersion());
+        return overlay.getAsserted().size();
+    }
+
+    /**
+     * 删除个体及所有引用它的断言，作为一个版本发布
+     * 本体之外的断言（TDB2数据集、映射事实文件中的事实）按个体的主体断言和对象属性引用查出，一并删除
+     * @return 被删除的公理
+     */
+    synchronized List<OWLAxiom> removeIndividuals(Collection<OWLNamedIndividual> individuals) {
+        Set<OWLAxiom> axioms = new LinkedHashSet<>();
+        Set<Fact> facts = new LinkedHashSet<>();
+        FactSnapshot snapshot = getSnapshot();
+        for (OWLNamedIndividual individual : individuals) {
+            axioms.addAll(ontology.getReferencingAxioms(individual));
+            facts.addAll(snapshot.getFacts(individual));
+            facts.addAll(snapshot.getReferencingFacts(individual));
+            if (jenaFactStore.isEnabled()) {
+                facts.addAll(jenaFactStore.getFacts(individual));
+                facts.addAll(jenaFactStore.getReferencingFacts(individual));
+            }
+        }
+        List<OWLOntologyChange> changes = axioms.stream()
+            .map(axiom -> new RemoveAxiom(ontology, axiom))
+            .collect(Collectors.toList());
+        List<OWLAxiom> removed = new ArrayList<>(axioms);
+        for (Fact fact : facts) {
+            OWLAxiom axiom = OntologyFacts.toAxiom(fact, dataFactory);
+            if (axioms.add(axiom)) {
+                removed.add(axiom);
+            }
+        }
+        apply(changes, facts);
+        return removed;
+    }
+
+    /**
+     * 应用本体变更，同时删除被替换的、本体中不存在的断言
+     * 这些断言（之前运行期写入TDB2数据集、重启后不在本体中的断言，以及映射事实文件中的事实）的RemoveAxiom
+     * 不会产生变更事件：TDB2中的直接删除，事实快照中的作为删除标记与本批变更在同一个版本中发布
+     */
+    private void apply(List<OWLOntologyChange> changes, Collection<Fact> replaced) {
+        List<Fact> detached = replaced.stream()
+            .filter(fact -> !ontology.containsAxiom(OntologyFacts.toAxiom(fact, dataFactory)))
+            .collect(Collectors.toList());
+        if (jenaFactStore.isEnabled() && !detached.isEmpty()) {
+            jenaFactStore.retract(detached);
+        }
+        factStore.publish(ontology, detached, () -> {
+            if (!changes.isEmpty()) {
+                manager.applyChanges(changes);
+            }
+        });
+    }
+
+    /**
+     * 个体的当前断言事实：启用TDB2时从数据集读取，否则从当前事实快照读取
+     */
+    List<Fact> factsOf(OWLNamedIndividual individual) {
+        return factsOf(jenaFactStore.isEnabled() ? null : getSnapshot(), individual);
+    }
+
+    private List<Fact> factsOf(FactSnapshot snapshot, OWLNamedIndividual individual) {
+        return snapshot == null ? jenaFactStore.getFacts(individual) : snapshot.getFacts(individual);
+    }
+
+    /**
+     * 以个体为客体的对象属性断言：启用TDB2时从数据集读取，否则从当前事实快照读取
+     */
+    List<Fact> referencingFacts(OWLNamedIndividual individual) {
+        return jenaFactStore.isEnabled() ? jenaFactStore.getReferencingFacts(individual)
+            : getSnapshot().getReferencingFacts(individual);
+    }
+
+    /**
+     * 当前事实来源：启用TDB2时为数据集，否则为当前事实快照
+     */
+    FactSource factSource() {
+        return jenaFactStore.isEnabled() ? jenaFactStore.source() : getSnapshot();
+    }
+
+    /**
+     * 本体文件中定义的共享个体
+     */
+    Set<OWLNamedIndividual> getSharedIndividuals() {
+        return sharedIndividuals;
+    }
+
+    private List<OWLNamedIndividual> instancesOf(IRI classIRI) {
+        return instancesOf(jenaFactStore.isEnabled() ? null : getSnapshot(), classIRI);
+    }
+
+    private List<OWLNamedIndividual> instancesOf(FactSnapshot snapshot, IRI classIRI) {
+        return snapshot == null ? jenaFactStore.getInstances(classIRI) : snapshot.getInstances(classIRI);
+    }
+
+    private OWLClassAssertionAxiom individualAxiom(String className, String individualName) {
         IRI classIRI = IRI.create(namespace + className);
         IRI individualIRI = IRI.create(namespace + individualName);
         
         OWLClass owlClass = dataFactory.getOWLClass(classIRI);
         OWLNamedIndividual individual = dataFactory.getOWLNamedIndividual(individualIRI);
-        OWLClassAssertionAxiom axiom = dataFactory.getOWLClassAssertionAxiom(owlClass, individual);
-        
-        manager.addAxiom(ontology, axiom);
-        log.info("添加个体: {} 到类: {}", individualName, className);
+        return dataFactory.getOWLClassAssertionAxiom(owlClass, individual);
     }
 
-    public void addDataProperty(String individualName, String propertyName, String value, String dataType) throws OWLOntologyStorageException {
+    private OWLDataPropertyAssertionAxiom dataPropertyAxiom(String individualName, String propertyName, String value, String dataType) {
         IRI individualIRI = IRI.create(namespace + individualName);
         IRI propertyIRI = IRI.create(namespace + propertyName);
         
         OWLNamedIndividual individual = dataFactory.getOWLNamedIndividual(individualIRI);
         OWLDataProperty property = dataFactory.getOWLDataProperty(propertyIRI);
-        OWLLiteral literal;
-        
+        return dataFactory.getOWLDataPropertyAssertionAxiom(property, individual, literal(dataFactory, value, dataType));
+    }
+
+    /**
+     * 按数据类型名构造字面量：INTEGER/BOOLEAN/DOUBLE，其他按字符串
+     */
+    static OWLLiteral literal(OWLDataFactory dataFactory, String value, String dataType) {
         switch (dataType.toUpperCase()) {
             case "INTEGER":
-                literal = dataFactory.getOWLLiteral(value, dataFactory.getIntegerOWLDatatype());
-                break;
+                return dataFactory.getOWLLiteral(value, dataFactory.getIntegerOWLDatatype());
             case "BOOLEAN":
-                literal = dataFactory.getOWLLiteral(Boolean.parseBoolean(value));
-                break;
+                return dataFactory.getOWLLiteral(Boolean.parseBoolean(value));
             case "DOUBLE":
-                literal = dataFactory.getOWLLiteral(Double.parseDouble(value));
-                break;
+                return dataFactory.getOWLLiteral(Double.parseDouble(value));
             default:
-                literal = dataFactory.getOWLLiteral(value);
+                return dataFactory.getOWLLiteral(value);
         }
-        
-        OWLDataPropertyAssertionAxiom axiom = dataFactory.getOWLDataPropertyAssertionAxiom(property, individual, literal);
-        manager.addAxiom(ontology, axiom);
-        log.info("添加数据属性: {} = {} 到个体: {}", propertyName, value, individualName);
     }
 
-    public void addObjectProperty(String sourceIndividual, String propertyName, String targetIndividual) throws OWLOntologyStorageException {
+    private OWLObjectPropertyAssertionAxiom objectPropertyAxiom(String sourceIndividual, String propertyName, String targetIndividual) {
         IRI sourceIRI = IRI.create(namespace + sourceIndividual);
         IRI propertyIRI = IRI.create(namespace + propertyName);
         IRI targetIRI = IRI.create(namespace + targetIndividual);
@@ -146,10 +360,7 @@ public class OntologyService {
         OWLNamedIndividual source = dataFactory.getOWLNamedIndividual(sourceIRI);
         OWLObjectProperty property = dataFactory.getOWLObjectProperty(propertyIRI);
         OWLNamedIndividual target = dataFactory.getOWLNamedIndividual(targetIRI);
-        
-        OWLObjectPropertyAssertionAxiom axiom = dataFactory.getOWLObjectPropertyAssertionAxiom(property, source, target);
-        manager.addAxiom(ontology, axiom);
-        log.info("添加对象属性: {} -[{}]-> {}", sourceIndividual, propertyName, targetIndividual);
+        return dataFactory.getOWLObjectPropertyAssertionAxiom(property, source, target);
     }
 
     public Map<String, Object> executeSWRLReasoning() {
@@ -159,7 +370,7 @@ public class OntologyService {
         result.put("reasonerType", "Structural Reasoner");
         result.put("timestamp", System.currentTimeMillis());
         
-        reasoner.flush();
+        sharedReasonerManager.flush(ontology);
         
         result.put("classesCount", ontology.getClassesInSignature().size());
         result.put("individualsCount", ontology.getIndividualsInSignature().size());
@@ -170,34 +381,66 @@ public class OntologyService {
     }
 
     public Map<String, Object> getIndividualProperties(String individualName) {
-        IRI individualIRI = IRI.create(namespace + individualName);
-        OWLNamedIndividual individual = dataFactory.getOWLNamedIndividual(individualIRI);
-        
+        return describeIndividual(factsOf(individual(individualName)));
+    }
+
+    /**
+     * 读取多个个体的属性，全部从同一个事实版本读取，彼此一致，并给出该版本号
+     * 未启用TDB2时属性和版本号取自同一个事实快照；启用TDB2时在写锁下（写入方串行所用的同一把锁）
+     * 取版本号并在一个读事务内读取，期间不会有新版本发布
+     */
+    VersionedProperties getIndividualProperties(Collection<String> individualNames) {
+        Map<String, Map<String, Object>> properties = new LinkedHashMap<>();
+        if (jenaFactStore.isEnabled()) {
+            synchronized (this) {
+                long version = getSnapshot().getVersion();
+                Map<OWLNamedIndividual, List<Fact>> facts = jenaFactStore.getFacts(
+                    individualNames.stream().map(this::individual).collect(Collectors.toList()));
+                for (String name : individualNames) {
+                    properties.put(name, describeIndividual(facts.get(individual(name))));
+                }
+                return new VersionedProperties(version, properties);
+            }
+        }
+        FactSnapshot snapshot = getSnapshot();
+        for (String name : individualNames) {
+            properties.put(name, describeIndividual(snapshot.getFacts(individual(name))));
+        }
+        return new VersionedProperties(snapshot.getVersion(), properties);
+    }
+
+    /**
+     * 从覆盖层读取个体属性（底层快照 + 覆盖层修改）
+     */
+    public Map<String, Object> getIndividualProperties(FactOverlay overlay, String individualName) {
+        return describeIndividual(overlay.getFacts(individual(individualName)));
+    }
+
+    private OWLNamedIndividual individual(String individualName) {
+        return dataFactory.getOWLNamedIndividual(IRI.create(namespace + individualName));
+    }
+
+    private Map<String, Object> describeIndividual(List<Fact> facts) {
         Map<String, Object> properties = new HashMap<>();
-        
-        // 获取数据属性
         Map<String, String> dataProperties = new HashMap<>();
-        ontology.getDataPropertyAssertionAxioms(individual).forEach(axiom -> {
-            String propertyName = axiom.getProperty().asOWLDataProperty().getIRI().getFragment();
-            String value = axiom.getObject().getLiteral();
-            dataProperties.put(propertyName, value);
-        });
-        properties.put("dataProperties", dataProperties);
-        
-        // 获取对象属性
         Map<String, String> objectProperties = new HashMap<>();
-        ontology.getObjectPropertyAssertionAxioms(individual).forEach(axiom -> {
-            String propertyName = axiom.getProperty().asOWLObjectProperty().getIRI().getFragment();
-            String value = axiom.getObject().asOWLNamedIndividual().getIRI().getFragment();
-            objectProperties.put(propertyName, value);
-        });
-        properties.put("objectProperties", objectProperties);
+        List<String> types = new ArrayList<>();
         
-        // 获取类型
-        List<String> types = ontology.getClassAssertionAxioms(individual)
-                .stream()
-                .map(axiom -> axiom.getClassExpression().asOWLClass().getIRI().getFragment())
-                .collect(Collectors.toList());
+        for (Fact fact : facts) {
+            String name = fact.getPredicate().getFragment();
+            if (fact.isClassFact()) {
+                // 获取类型
+                types.add(name);
+            } else if (fact.getObject() instanceof OWLLiteral) {
+                // 获取数据属性
+                dataProperties.put(name, ((OWLLiteral) fact.getObject()).getLiteral());
+            } else {
+                // 获取对象属性
+                objectProperties.put(name, ((OWLNamedIndividual) fact.getObject()).getIRI().getFragment());
+            }
+        }
+        properties.put("dataProperties", dataProperties);
+        properties.put("objectProperties", objectProperties);
         properties.put("types", types);
         
         return properties;
@@ -218,27 +461,28 @@ public class OntologyService {
     public Map<String, Object> createTransferOrderExample(String orderId, String sourceCustomerId, String targetCustomerId) throws OWLOntologyStorageException {
         log.info("创建过户订单示例: orderId={}, sourceCustomerId={}, targetCustomerId={}", orderId, sourceCustomerId, targetCustomerId);
         
-        // 创建源客户
-        addIndividual("SourceCustomer", sourceCustomerId);
-        addDataProperty(sourceCustomerId, "custId", sourceCustomerId, "STRING");
-        addDataProperty(sourceCustomerId, "custName", "源客户" + sourceCustomerId, "STRING");
-        addDataProperty(sourceCustomerId, "custStatus", "NORMAL", "STRING");
-        
-        // 创建目标客户
-        addIndividual("TargetCustomer", targetCustomerId);
-        addDataProperty(targetCustomerId, "custId", targetCustomerId, "STRING");
-        addDataProperty(targetCustomerId, "custName", "目标客户" + targetCustomerId, "STRING");
-        addDataProperty(targetCustomerId, "custStatus", "NORMAL", "STRING");
+        FactOverlay overlay = openOverlay()
+            // 创建源客户
+            .addIndividual("SourceCustomer", sourceCustomerId)
+            .addDataProperty(sourceCustomerId, "custId", sourceCustomerId, "STRING")
+            .addDataProperty(sourceCustomerId, "custName", "源客户" + sourceCustomerId, "STRING")
+            .addDataProperty(sourceCustomerId, "custStatus", "NORMAL", "STRING")
+            // 创建目标客户
+            .addIndividual("TargetCustomer", targetCustomerId)
+            .addDataProperty(targetCustomerId, "custId", targetCustomerId, "STRING")
+            .addDataProperty(targetCustomerId, "custName", "目标客户" + targetCustomerId, "STRING")
+            .addDataProperty(targetCustomerId, "custStatus", "NORMAL", "STRING")
+            // 创建过户订单
+            .addIndividual("TransferOrder", orderId)
+            .addDataProperty(orderId, "orderId", orderId, "STRING")
+            .addDataProperty(orderId, "orderStatus", "CREATED", "STRING")
+            .addDataProperty(orderId, "createTime", new Date().toString(), "STRING")
+            // 建立关系
+            .addObjectProperty(orderId, "hasSourceCustomer", sourceCustomerId)
+            .addObjectProperty(orderId, "hasTargetCustomer", targetCustomerId);
         
-        // 创建过户订单
-        addIndividual("TransferOrder", orderId);
-        addDataProperty(orderId, "orderId", orderId, "STRING");
-        addDataProperty(orderId, "orderStatus", "CREATED", "STRING");
-        addDataProperty(orderId, "createTime", new Date().toString(), "STRING");
-        
-        // 建立关系
-        addObjectProperty(orderId, "hasSourceCustomer", sourceCustomerId);
-        addObjectProperty(orderId, "hasTargetCustomer", targetCustomerId);
+        // 订单及其客户显式提交，作为一个版本发布，读取方不会看到只创建了一半的订单
+        commit(overlay);
         
         Map<String, Object> result = new HashMap<>();
         result.put("status", "success");
@@ -251,18 +495,24 @@ public class OntologyService {
         return result;
     }
 
+    /**
+     * 检查客户状态
+     * 客户事实只写入请求级覆盖层，检查结束后丢弃，不在共享本体中累积检查用的个体
+     */
     public Map<String, Object> checkCustomerStatus(String customerId, String custStatus, String arrearsStatus) throws OWLOntologyStorageException {
         log.info("检查客户状态: customerId={}, custStatus={}, arrearsStatus={}", customerId, custStatus, arrearsStatus);
         
-        addIndividual("SourceCustomer", customerId);
-        addDataProperty(customerId, "custId", customerId, "STRING");
-        addDataProperty(customerId, "custStatus", custStatus, "STRING");
-        addDataProperty(customerId, "arrearsStatus", arrearsStatus, "STRING");
+        FactOverlay overlay = openOverlay()
+            .addIndividual("SourceCustomer", customerId)
+            .setDataProperty(customerId, "custId", customerId, "STRING")
+            .setDataProperty(customerId, "custStatus", custStatus, "STRING")
+            .setDataProperty(customerId, "arrearsStatus", arrearsStatus, "STRING");
         
         Map<String, Object> result = new HashMap<>();
         result.put("customerId", customerId);
         result.put("custStatus", custStatus);
         result.put("arrearsStatus", arrearsStatus);
+        result.put("properties", getIndividualProperties(overlay, customerId));
         
         // 简单的业务规则检查
         if ("FRAUD".equals(custStatus)) {
@@ -277,6 +527,7 @@ public class OntologyService {
             result.put("allowTransfer", true);
             result.put("reason", "客户状态正常，允许过户");
         }
+        overlay.discard();
         
         result.put("status", "success");
         log.info("客户状态检查完成: {}", result);
@@ -290,6 +541,45 @@ public class OntologyService {
         return ontology;
     }
 
+    /**
+     * 将当前事实快照导出为内存映射事实文件
+     */
+    public Map<String, Object> exportFactStore() {
+        return factStore.exportMapped(ontology);
+    }
+
+    /**
+     * 事实库统计
+     */
+    public Map<String, Object> getFactStoreStatistics() {
+        Map<String, Object> statistics = factStore.getStatistics();
+        if (jenaFactStore.isEnabled()) {
+            statistics.put("tdb2", jenaFactStore.getStatistics());
+        }
+        return statistics;
+    }
+
+    /**
+     * 命名类的父类闭包（来自本体的TBox）
+     */
+    Map<IRI, Set<IRI>> getSuperClasses() {
+        return getSnapshot().getSuperClasses();
+    }
+
+    /**
+     * 获取当前事实快照（无锁读取，快照内容不会再变化）
+     */
+    FactSnapshot getSnapshot() {
+        return factStore.snapshot(ontology);
+    }
+
+    /**
+     * 获取本体命名空间
+     */
+    public String getNamespace() {
+        return namespace;
+    }
+
     /**
      * 获取OWL数据工厂（用于创建OWL元素）
      */
@@ -308,6 +598,21 @@ public class OntologyService {
      * 获取OWL推理器
      */
     public OWLReasoner getReasoner() {
-        return reasoner;
+        return sharedReasonerManager.getReasoner(ontology);
+    }
+
+    /**
+     * 同一事实版本上读取的多个个体属性
+     */
+    static final class VersionedProperties {
+        /** 读取所在的事实版本 */
+        final long version;
+        /** 个体名 -> 属性，按传入顺序 */
+        final Map<String, Map<String, Object>> properties;
+
+        VersionedProperties(long version, Map<String, Map<String, Object>> properties) {
+            this.version = version;
+            this.properties = properties;
+        }
     }
 }
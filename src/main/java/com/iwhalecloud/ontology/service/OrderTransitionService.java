@@ -0,0 +1,218 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.TransferOrderProcess;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 订单流程状态迁移服务
+ *
+ * 推进和回退按订单ID串行：订单ID散列到固定数量的分段锁，同一订单的迁移依次执行，
+ * 不同订单（除散列到同一分段外）互不阻塞，锁的内存占用与订单数无关。
+ * 迁移结果（currentStepNumber、orderStatus）连同流程版本号processVersion一起写回本体，
+ * 调用方可携带上次读到的版本号，版本不一致时拒绝迁移（乐观并发检测），避免基于过期状态的覆盖；
+ * 调用方给出的起始步骤同样必须与本体中记录的当前步骤一致，不能越过记录的步骤推进或回退；
+ * 订单尚未记录步骤时（如经示例接口或通用个体接口创建的订单）以调用方给出的步骤为准。
+ * 本体中不存在的订单拒绝迁移，不为其写入流程状态。
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class OrderTransitionService {
+
+    /** 分段锁数量（2的幂） */
+    private static final int STRIPES = 1024;
+
+    private static final String STEP_PROPERTY = "currentStepNumber";
+    private static final String STATUS_PROPERTY = "orderStatus";
+    private static final String VERSION_PROPERTY = "processVersion";
+
+    private final ProcessReasoningService processReasoningService;
+    private final OntologyService ontologyService;
+
+    private final ReentrantLock[] locks = createLocks();
+    private final AtomicLong transitionCount = new AtomicLong();
+    private final AtomicLong conflictCount = new AtomicLong();
+    private final AtomicLong contendedCount = new AtomicLong();
+
+    /**
+     * 推进订单到下一步
+     * @param currentStepNumber 调用方认为的当前步骤，为null时使用本体中记录的步骤（均未给出时为1）
+     * @param expectedVersion 调用方读到的流程版本号，为null时不做版本检查
+     * @throws NoSuchElementException 订单不存在
+     * @throws ConcurrentModificationException 版本号与当前版本不一致，或当前步骤与记录的步骤不一致
+     */
+    public TransferOrderProcess proceed(String orderId, Integer currentStepNumber, Long expectedVersion) {
+        return withOrderLock(orderId, () -> {
+            OrderState state = readState(orderId);
+            checkVersion(orderId, state, expectedVersion);
+            checkStep(orderId, state, currentStepNumber);
+
+            TransferOrderProcess process = processReasoningService.reasonNextStep(orderId,
+                state.stepOr(currentStepNumber == null ? 1 : currentStepNumber));
+            if (!Boolean.TRUE.equals(process.getCanProceed())) {
+                process.setVersion(state.version);
+                return process;
+            }
+
+            Map<String, Object> values = new LinkedHashMap<>();
+            if (process.getNextStepNumber() != null) {
+                values.put(STEP_PROPERTY, process.getNextStepNumber());
+                values.put(STATUS_PROPERTY, "IN_PROGRESS");
+            } else {
+                values.put(STATUS_PROPERTY, process.getOrderStatus());
+            }
+            process.setVersion(commit(orderId, state, values));
+            return process;
+        });
+    }
+
+    /**
+     * 回退订单步骤
+     * @param fromStep 调用方认为的当前步骤，为null时使用本体中记录的步骤（均未给出时为1）
+     * @param expectedVersion 调用方读到的流程版本号，为null时不做版本检查
+     * @throws NoSuchElementException 订单不存在
+     * @throws ConcurrentModificationException 版本号与当前版本不一致，或起始步骤与记录的步骤不一致
+     */
+    public TransferOrderProcess rollback(String orderId, Integer fromStep, Integer toStep, Long expectedVersion) {
+        return withOrderLock(orderId, () -> {
+            OrderState state = readState(orderId);
+            checkVersion(orderId, state, expectedVersion);
+            checkStep(orderId, state, fromStep);
+
+            TransferOrderProcess process = processReasoningService.rollbackStep(orderId,
+                state.stepOr(fromStep == null ? 1 : fromStep), toStep);
+            if (!Boolean.TRUE.equals(process.getCanProceed())) {
+                process.setVersion(state.version);
+                return process;
+            }
+
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put(STEP_PROPERTY, toStep);
+            values.put(STATUS_PROPERTY, "IN_PROGRESS");
+            process.setVersion(commit(orderId, state, values));
+            return process;
+        });
+    }
+
+    /**
+     * 迁移统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("stripes", STRIPES);
+        statistics.put("transitionCount", transitionCount.get());
+        statistics.put("conflictCount", conflictCount.get());
+        statistics.put("contendedCount", contendedCount.get());
+        return statistics;
+    }
+
+    private <T> T withOrderLock(String orderId, Supplier<T> transition) {
+        ReentrantLock lock = locks[stripeOf(orderId)];
+        if (!lock.tryLock()) {
+            contendedCount.incrementAndGet();
+            lock.lock();
+        }
+        try {
+            return transition.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkVersion(String orderId, OrderState state, Long expectedVersion) {
+        if (expectedVersion != null && expectedVersion != state.version) {
+            conflictCount.incrementAndGet();
+            log.warn("订单 {} 流程版本冲突: 期望={}, 当前={}", orderId, expectedVersion, state.version);
+            throw new ConcurrentModificationException(
+                "订单" + orderId + "流程版本冲突: 期望版本" + expectedVersion + ", 当前版本" + state.version);
+        }
+    }
+
+    /**
+     * 检查调用方给出的步骤与记录的步骤一致，订单尚未记录步骤时不检查
+     */
+    private void checkStep(String orderId, OrderState state, Integer step) {
+        if (step != null && state.step != null && !step.equals(state.step)) {
+            conflictCount.incrementAndGet();
+            log.warn("订单 {} 当前步骤冲突: 请求={}, 记录={}", orderId, step, state.step);
+            throw new ConcurrentModificationException(
+                "订单" + orderId + "当前步骤冲突: 请求步骤" + step + ", 记录步骤" + state.step);
+        }
+    }
+
+    /**
+     * 写回迁移结果并推进版本号，返回新版本号
+     */
+    private long commit(String orderId, OrderState state, Map<String, Object> values) {
+        long version = state.version + 1;
+        values.put(VERSION_PROPERTY, version);
+        ontologyService.replaceDataProperties(orderId, values);
+        transitionCount.incrementAndGet();
+        log.info("订单 {} 流程迁移完成: {} (版本 {} -> {})", orderId, values, state.version, version);
+        return version;
+    }
+
+    /**
+     * 读取订单的流程状态，订单在本体中没有任何断言时视为不存在
+     * @throws NoSuchElementException 订单不存在
+     */
+    @SuppressWarnings("unchecked")
+    private OrderState readState(String orderId) {
+        Map<String, Object> orderProps = ontologyService.getIndividualProperties(orderId);
+        Map<String, Object> dataProps = (Map<String, Object>) orderProps.getOrDefault("dataProperties", Collections.emptyMap());
+        Map<String, Object> objectProps = (Map<String, Object>) orderProps.getOrDefault("objectProperties", Collections.emptyMap());
+        List<String> types = (List<String>) orderProps.getOrDefault("types", Collections.emptyList());
+        if (dataProps.isEmpty() && objectProps.isEmpty() && types.isEmpty()) {
+            throw new NoSuchElementException("订单不存在: " + orderId);
+        }
+        Long step = parseLong(dataProps.get(STEP_PROPERTY));
+        Long version = parseLong(dataProps.get(VERSION_PROPERTY));
+        return new OrderState(step == null ? null : step.intValue(), version == null ? 0 : version);
+    }
+
+    private static Long parseLong(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static int stripeOf(String orderId) {
+        int hash = orderId.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    private static ReentrantLock[] createLocks() {
+        ReentrantLock[] locks = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+
+    private static final class OrderState {
+        /** 本体中记录的当前步骤，尚未记录时为null */
+        final Integer step;
+        final long version;
+
+        OrderState(Integer step, long version) {
+            this.step = step;
+            this.version = version;
+        }
+
+        int stepOr(int defaultStep) {
+            return step == null ? defaultStep : step;
+        }
+    }
+}
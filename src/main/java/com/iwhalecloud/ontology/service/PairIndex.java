@@ -0,0 +1,423 @@
+package com.iwhalecloud.ontology.service;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * 不可变的有序整数对索引
+ *
+ * 整数对 (high, low) 编码为一个long（high在高32位），按数值有序存放在基础数组中，
+ * 按high查找是一次二分定位加连续扫描。增删记入两棵持久化AVL树（新增、删除），新版本只复制修改路径上的节点，
+ * k个修改的代价为O(k log d)（d为增量大小），与增量已有的大小基本无关。
+ * 堆内基础数组在增量超过其1/8时与增量合并为新的基础数组，合并代价O(n)，每n/8个修改发生一次，摊还为常数。
+ * 基础数组也可以是内存映射文件中的只读区域（见 {@link MappedFacts}），此时按位置直接读取映射页，
+ * 不复制到堆内，也不会合并，增删一直保留在增量树中：单次修改仍是O(log d)，增量占用的堆内存与累计修改数成正比，
+ * 需要通过重新导出映射文件回收。
+ * 索引发布后不再修改，可以被任意线程无锁读取。
+ */
+final class PairIndex {
+
+    private static final long[] NO_PAIRS = new long[0];
+    private static final PairIndex EMPTY = new PairIndex(LongBuffer.wrap(NO_PAIRS), null, 0, null, 0);
+    private static final int MIN_DELTA = 64;
+
+    /** 有序、无重复；堆内数组的包装或映射文件区域，只按绝对位置读取 */
+    private final LongBuffer base;
+    /** 与base不相交的新增项 */
+    private final Node added;
+    private final int addedCount;
+    /** base中已删除的项 */
+    private final Node removed;
+    private final int removedCount;
+
+    private PairIndex(LongBuffer base, Node added, int addedCount, Node removed, int removedCount) {
+        this.base = base;
+        this.added = added;
+        this.addedCount = addedCount;
+        this.removed = removed;
+        this.removedCount = removedCount;
+    }
+
+    static PairIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 由任意顺序、可能重复的整数对构建索引（会修改传入数组）
+     */
+    static PairIndex of(long[] pairs, int length) {
+        if (length == 0) {
+            return EMPTY;
+        }
+        Arrays.sort(pairs, 0, length);
+        int unique = 1;
+        for (int i = 1; i < length; i++) {
+            if (pairs[i] != pairs[unique - 1]) {
+                pairs[unique++] = pairs[i];
+            }
+        }
+        return new PairIndex(LongBuffer.wrap(Arrays.copyOf(pairs, unique)), null, 0, null, 0);
+    }
+
+    /**
+     * 以映射文件中有序、无重复的整数对区域作为基础数组
+     */
+    static PairIndex mapped(LongBuffer pairs) {
+        return new PairIndex(pairs, null, 0, null, 0);
+    }
+
+    static long pair(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    static int high(long pair) {
+        return (int) (pair >>> 32);
+    }
+
+    static int low(long pair) {
+        return (int) pair;
+    }
+
+    int size() {
+        return base.limit() + addedCount - removedCount;
+    }
+
+    boolean contains(long pair) {
+        return Node.contains(added, pair)
+            || binarySearch(base, pair) && !Node.contains(removed, pair);
+    }
+
+    /**
+     * 是否存在high为指定值的整数对
+     */
+    boolean containsHigh(int high) {
+        return iterator(high).hasNext();
+    }
+
+    /**
+     * 全部整数对
+     */
+    PrimitiveIterator.OfLong iterator() {
+        return new Cursor(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * high为指定值的整数对
+     */
+    PrimitiveIterator.OfLong iterator(int high) {
+        return new Cursor(pair(high, 0), high == Integer.MAX_VALUE ? Long.MAX_VALUE : pair(high + 1, 0));
+    }
+
+    /**
+     * 应用一批修改得到新索引
+     * @param adds 有序、无重复，且当前都不在索引中
+     * @param removes 有序、无重复，且当前都在索引中
+     */
+    PairIndex apply(long[] adds, long[] removes) {
+        if (adds.length == 0 && removes.length == 0) {
+            return this;
+        }
+        // 删除的新增项直接撤销，重新加入的已删除项恢复到基础数组
+        Node nextAdded = added;
+        Node nextRemoved = removed;
+        int nextAddedCount = addedCount;
+        int nextRemovedCount = removedCount;
+        for (long pair : adds) {
+            if (Node.contains(nextRemoved, pair)) {
+                nextRemoved = Node.delete(nextRemoved, pair);
+                nextRemovedCount--;
+            } else {
+                nextAdded = Node.insert(nextAdded, pair);
+                nextAddedCount++;
+            }
+        }
+        for (long pair : removes) {
+            if (Node.contains(nextAdded, pair)) {
+                nextAdded = Node.delete(nextAdded, pair);
+                nextAddedCount--;
+            } else {
+                nextRemoved = Node.insert(nextRemoved, pair);
+                nextRemovedCount++;
+            }
+        }
+        if (base.hasArray() && nextAddedCount + nextRemovedCount > Math.max(MIN_DELTA, base.limit() >>> 3)) {
+            long[] merged = union(minus(base.array(), Node.toArray(nextRemoved, nextRemovedCount)),
+                Node.toArray(nextAdded, nextAddedCount));
+            return merged.length == 0 ? EMPTY : new PairIndex(LongBuffer.wrap(merged), null, 0, null, 0);
+        }
+        return new PairIndex(base, nextAdded, nextAddedCount, nextRemoved, nextRemovedCount);
+    }
+
+    private static long[] union(long[] a, long[] b) {
+        if (b.length == 0) {
+            return a;
+        }
+        if (a.length == 0) {
+            return b;
+        }
+        long[] result = new long[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                result[n++] = a[i++];
+            } else if (a[i] > b[j]) {
+                result[n++] = b[j++];
+            } else {
+                result[n++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) {
+            result[n++] = a[i++];
+        }
+        while (j < b.length) {
+            result[n++] = b[j++];
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    private static long[] minus(long[] a, long[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return a;
+        }
+        long[] result = new long[a.length];
+        int j = 0, n = 0;
+        for (long value : a) {
+            while (j < b.length && b[j] < value) {
+                j++;
+            }
+            if (j == b.length || b[j] != value) {
+                result[n++] = value;
+            }
+        }
+        return n == a.length ? a : Arrays.copyOf(result, n);
+    }
+
+    /**
+     * 按有序顺序导出全部整数对
+     */
+    long[] toSortedArray() {
+        long[] pairs = new long[size()];
+        int n = 0;
+        for (PrimitiveIterator.OfLong it = iterator(); it.hasNext(); ) {
+            pairs[n++] = it.nextLong();
+        }
+        Arrays.sort(pairs);
+        return pairs;
+    }
+
+    private static boolean binarySearch(LongBuffer values, long key) {
+        int index = lowerBound(values, key);
+        return index < values.limit() && values.get(index) == key;
+    }
+
+    private static int lowerBound(LongBuffer values, long key) {
+        int low = 0, high = values.limit();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values.get(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 按 [from, to) 区间遍历：先基础数组（跳过已删除项），再新增项
+     */
+    private final class Cursor implements PrimitiveIterator.OfLong {
+        private final long to;
+        private int baseIndex;
+        private final Node.Cursor removedCursor;
+        private final Node.Cursor addedCursor;
+        private boolean ready;
+        private long next;
+
+        Cursor(long from, long to) {
+            this.to = to;
+            this.baseIndex = lowerBound(base, from);
+            this.removedCursor = new Node.Cursor(removed, from);
+            this.addedCursor = new Node.Cursor(added, from);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (ready) {
+                return true;
+            }
+            while (baseIndex < base.limit() && base.get(baseIndex) < to) {
+                long value = base.get(baseIndex++);
+                while (removedCursor.hasNext() && removedCursor.peek() < value) {
+                    removedCursor.next();
+                }
+                if (!removedCursor.hasNext() || removedCursor.peek() != value) {
+                    next = value;
+                    return ready = true;
+                }
+            }
+            if (addedCursor.hasNext() && addedCursor.peek() < to) {
+                next = addedCursor.next();
+                return ready = true;
+            }
+            return false;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ready = false;
+            return next;
+        }
+    }
+
+    /**
+     * 持久化AVL树节点，修改时复制路径上的节点，旧版本保持不变
+     */
+    private static final class Node {
+        final long key;
+        final Node left;
+        final Node right;
+        final int height;
+
+        Node(long key, Node left, Node right) {
+            this.key = key;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+        }
+
+        static int height(Node node) {
+            return node == null ? 0 : node.height;
+        }
+
+        static boolean contains(Node node, long key) {
+            while (node != null) {
+                if (key < node.key) {
+                    node = node.left;
+                } else if (key > node.key) {
+                    node = node.right;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        static Node insert(Node node, long key) {
+            if (node == null) {
+                return new Node(key, null, null);
+            }
+            if (key < node.key) {
+                return balance(node.key, insert(node.left, key), node.right);
+            }
+            if (key > node.key) {
+                return balance(node.key, node.left, insert(node.right, key));
+            }
+            return node;
+        }
+
+        static Node delete(Node node, long key) {
+            if (node == null) {
+                return null;
+            }
+            if (key < node.key) {
+                return balance(node.key, delete(node.left, key), node.right);
+            }
+            if (key > node.key) {
+                return balance(node.key, node.left, delete(node.right, key));
+            }
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node min = node.right;
+            while (min.left != null) {
+                min = min.left;
+            }
+            return balance(min.key, node.left, delete(node.right, min.key));
+        }
+
+        private static Node balance(long key, Node left, Node right) {
+            int leftHeight = height(left);
+            int rightHeight = height(right);
+            if (leftHeight > rightHeight + 1) {
+                if (height(left.left) >= height(left.right)) {
+                    return new Node(left.key, left.left, new Node(key, left.right, right));
+                }
+                return new Node(left.right.key, new Node(left.key, left.left, left.right.left),
+                    new Node(key, left.right.right, right));
+            }
+            if (rightHeight > leftHeight + 1) {
+                if (height(right.right) >= height(right.left)) {
+                    return new Node(right.key, new Node(key, left, right.left), right.right);
+                }
+                return new Node(right.left.key, new Node(key, left, right.left.left),
+                    new Node(right.key, right.left.right, right.right));
+            }
+            return new Node(key, left, right);
+        }
+
+        /**
+         * 中序导出为有序数组
+         */
+        static long[] toArray(Node root, int count) {
+            if (count == 0) {
+                return NO_PAIRS;
+            }
+            long[] values = new long[count];
+            int n = 0;
+            for (Cursor cursor = new Cursor(root, Long.MIN_VALUE); cursor.hasNext(); ) {
+                values[n++] = cursor.next();
+            }
+            return values;
+        }
+
+        /**
+         * 从不小于from的最小键开始中序遍历
+         */
+        static final class Cursor {
+            private final Node[] stack;
+            private int depth;
+
+            Cursor(Node root, long from) {
+                if (root == null) {
+                    stack = null;
+                    return;
+                }
+                stack = new Node[root.height];
+                for (Node node = root; node != null; ) {
+                    if (node.key >= from) {
+                        stack[depth++] = node;
+                        node = node.left;
+                    } else {
+                        node = node.right;
+                    }
+                }
+            }
+
+            boolean hasNext() {
+                return depth > 0;
+            }
+
+            long peek() {
+                return stack[depth - 1].key;
+            }
+
+            long next() {
+                Node node = stack[--depth];
+                for (Node child = node.right; child != null; child = child.left) {
+                    stack[depth++] = child;
+                }
+                return node.key;
+            }
+        }
+    }
+}
@@ -3,13 +3,26 @@ package com.iwhalecloud.ontology.service;
 import com.iwhalecloud.ontology.model.ProcessStepInfo;
 import com.iwhalecloud.ontology.model.TransferOrderProcess;
 import com.iwhalecloud.ontology.model.BusinessRuleDefinition;
+import com.iwhalecloud.ontology.model.LinkedRule;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.semanticweb.owlapi.model.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -24,6 +37,48 @@ public class ProcessReasoningService {
     private final OntologyService ontologyService;
     private final SWRLRuleEngine swrlRuleEngine;
     private final SWRLReasoningExecutor swrlReasoningExecutor;
+    private final RuleOutcomeCache ruleOutcomeCache;
+    private final ObjectMapper objectMapper;
+    
+    /** 单次批量推理的订单数上限 */
+    private static final int MAX_BATCH_SIZE = 50000;
+    
+    /** 批量推理共享的有界线程池，线程数为CPU核数，各请求按自己的并行度分块提交 */
+    private final ExecutorService batchExecutor = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "batch-reasoning-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    
+    /** 阻断结论谓词：步骤上可推导出该属性时不允许推进 */
+    private static final String BLOCKING_PREDICATE = "operationResult";
+    
+    /** 目标导向查询从订单出发沿对象属性遍历的最大深度 */
+    private static final int MAX_SCOPE_DEPTH = 3;
+    
+    /** 目标导向检查默认开启，只对goal-steps中配置了流程步骤个体的步骤执行，可设为false关闭 */
+    @Value("${ontology.reasoning.goal-directed:true}")
+    private boolean goalDirected = true;
+    
+    /**
+     * 步骤编号 -> 流程步骤个体，如 "1=transfer:Step02_VerifySourceCustomer,8=transfer:Step12_SubmitOrder"，
+     * 个体写作 前缀:本地名（按本体文件声明的前缀解析）或本地名（按ontology.namespace解析）
+     * 本体中的步骤个体属于另行建模的12步工作流，编号与8步过户流程不对应，只使用显式配置的映射
+     */
+    @Value("${ontology.reasoning.goal-steps:}")
+    private String goalSteps = "";
+    
+    /** 解析后的目标步骤映射，首次使用时构建 */
+    private volatile Map<Integer, OWLNamedIndividual> goalStepIndividuals;
+    
+    /** 步骤 -> 适用规则索引，规则集版本变化后重建 */
+    private final AtomicReference<StepRuleIndex> stepRuleIndex = new AtomicReference<>();
     
     // 8个步骤的定义
     private static final Map<Integer, String> STEP_CODES = Map.of(
@@ -144,12 +199,20 @@ public class ProcessReasoningService {
         currentStep.setStatus(ProcessStepInfo.StepStatus.IN_PROGRESS);
         process.setCurrentStep(currentStep);
         
-        // 执行业务规则检查
-        Map<String, Object> ruleResults = checkBusinessRules(orderId, currentStepNumber);
+        // 执行业务规则检查：启用增量缓存时只重新评估检查属性发生过变化的规则
+        List<BusinessRuleDefinition> applicableRules = stepRuleIndex().definitions(currentStepNumber);
+        Map<String, Object> ruleResults = ruleOutcomeCache.isEnabled()
+            ? checkBusinessRules(orderId, currentStepNumber, applicableRules,
+                ruleOutcomeCache.outcomes(orderId, this::evaluateRule))
+            : checkBusinessRules(orderId, currentStepNumber,
+                ontologyService.getIndividualProperties(orderId), applicableRules);
         process.setRuleCheckResults(ruleResults);
         
-        // 判断是否可以推进
+        // 判断是否可以推进：业务规则通过后，再查询当前步骤上能否为该订单推导出阻断结论
         boolean canProceed = (boolean) ruleResults.getOrDefault("canProceed", true);
+        if (canProceed && goalDirected) {
+            canProceed = checkDerivableBlocks(orderId, currentStepNumber, ruleResults);
+        }
         process.setCanProceed(canProceed);
         
         if (!canProceed) {
@@ -180,92 +243,160 @@ public class ProcessReasoningService {
         return process;
     }
 
+    /**
+     * 目标导向检查：以 operationResult(当前步骤, ?result) 为目标，在订单可达范围内反向求值
+     * 只展开结论能产生该目标的规则及其依赖的子目标，不物化全部规则，代价与该订单相关的事实数量成正比
+     * @return 没有可推导的阻断结论时返回true
+     */
+    private boolean checkDerivableBlocks(String orderId, Integer stepNumber, Map<String, Object> ruleResults) {
+        Map<String, Object> goalQuery = new LinkedHashMap<>();
+        ruleResults.put("goalQuery", goalQuery);
+        try {
+            OWLNamedIndividual step = workflowStep(stepNumber);
+            if (step == null) {
+                goalQuery.put("message", "未配置步骤" + stepNumber + "对应的流程步骤个体，跳过目标导向检查");
+                return true;
+            }
+            OWLDataFactory dataFactory = ontologyService.getDataFactory();
+            String namespace = ontologyService.getNamespace();
+            OWLNamedIndividual order = dataFactory.getOWLNamedIndividual(IRI.create(namespace + orderId));
+            
+            long start = System.nanoTime();
+            ScopedFactSource source = ScopedFactSource.of(ontologyService.factSource(), ontologyService::factsOf,
+                List.of(order, step), ontologyService.getSharedIndividuals(), MAX_SCOPE_DEPTH);
+            GoalDirectedEvaluator.GoalResult result = swrlRuleEngine.queryGoal(ontologyService.getOntology(), source,
+                ontologyService.getSuperClasses(),
+                dataFactory.getOWLDataProperty(IRI.create(namespace + BLOCKING_PREDICATE)), step, null);
+            List<String> blocks = result.answers.stream()
+                .map(fact -> String.valueOf(RuleValues.toJava(fact.getObject())))
+                .distinct()
+                .collect(Collectors.toList());
+            
+            goalQuery.put("goal", BLOCKING_PREDICATE + "(" + step.getIRI().getShortForm() + ", ?result)");
+            goalQuery.put("blockingResults", blocks);
+            goalQuery.put("scopeSize", source.getNeighbourhoodSize());
+            goalQuery.put("subgoalCount", result.subgoalCount);
+            goalQuery.put("iterations", result.iterations);
+            goalQuery.put("ruleApplications", result.ruleApplications);
+            goalQuery.put("lookups", result.lookups);
+            goalQuery.put("elapsedMicros", (System.nanoTime() - start) / 1000);
+            
+            if (!blocks.isEmpty()) {
+                log.info("订单 {} 在 {} 上可推导出阻断结论: {}", orderId, step.getIRI().getShortForm(), blocks);
+                ruleResults.put("canProceed", false);
+                ruleResults.put("blockReason", blocks.get(0));
+                return false;
+            }
+        } catch (Exception e) {
+            log.warn("目标导向检查失败: orderId={}, stepNumber={}", orderId, stepNumber, e);
+            goalQuery.put("error", e.getMessage());
+        }
+        return true;
+    }
+    
+    /**
+     * 步骤编号对应的流程步骤个体（ontology.reasoning.goal-steps中显式配置、且在本体文件中定义的共享个体）
+     */
+    private OWLNamedIndividual workflowStep(int stepNumber) {
+        Map<Integer, OWLNamedIndividual> steps = goalStepIndividuals;
+        if (steps == null) {
+            steps = parseGoalSteps();
+            goalStepIndividuals = steps;
+        }
+        return steps.get(stepNumber);
+    }
+    
+    private Map<Integer, OWLNamedIndividual> parseGoalSteps() {
+        Map<Integer, OWLNamedIndividual> steps = new HashMap<>();
+        OWLDataFactory dataFactory = ontologyService.getDataFactory();
+        RuleLinker prefixes = new RuleLinker(ontologyService.getOntology(), ontologyService.getNamespace());
+        for (String entry : goalSteps.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split("=", 2);
+            Integer stepNumber = parts.length == 2 ? parseInteger(parts[0].trim(), null) : null;
+            if (stepNumber == null) {
+                log.warn("目标步骤映射格式错误，已忽略: {}", entry);
+                continue;
+            }
+            String name = parts[1].trim();
+            int colon = name.indexOf(':');
+            IRI stepIRI = colon < 0 ? IRI.create(ontologyService.getNamespace() + name)
+                : prefixes.resolve(name.substring(0, colon), name.substring(colon + 1));
+            OWLNamedIndividual step = stepIRI == null ? null : dataFactory.getOWLNamedIndividual(stepIRI);
+            if (step == null || !ontologyService.getSharedIndividuals().contains(step)) {
+                log.warn("目标步骤映射中的个体不在本体中，已忽略: {}", entry);
+                continue;
+            }
+            steps.put(stepNumber, step);
+        }
+        return Collections.unmodifiableMap(steps);
+    }
+
+    /**
+     * 当前规则集版本的步骤适用规则索引（内置业务规则和本体规则，按优先级降序预先排好）
+     * 规则重新加载后首次使用时重建，并发重建的结果相同，以最后发布的为准
+     */
+    private StepRuleIndex stepRuleIndex() {
+        RuleSet ruleSet = swrlRuleEngine.getRuleSet();
+        StepRuleIndex index = stepRuleIndex.get();
+        if (index == null || index.getRuleSetVersion() != ruleSet.getVersion()) {
+            index = StepRuleIndex.build(BusinessRuleDefinition.getDefaultBusinessRules(), ruleSet);
+            stepRuleIndex.set(index);
+            log.debug("步骤适用规则索引已重建: 规则集版本 {}", ruleSet.getVersion());
+        }
+        return index;
+    }
+
     /**
      * 检查业务规则
      * 基于SWRL规则引擎执行规则校验
+     * @param orderProps 订单属性（个体的数据属性、对象属性和类型）
+     * @param applicableRules 适用于当前步骤的规则
+     */
+    private Map<String, Object> checkBusinessRules(String orderId, Integer stepNumber,
+                                                   Map<String, Object> orderProps,
+                                                   List<BusinessRuleDefinition> applicableRules) {
+        if (orderProps == null || !orderProps.containsKey("dataProperties")) {
+            Map<String, Object> results = new HashMap<>();
+            results.put("canProceed", true);
+            results.put("message", "订单不存在或无属性，允许继续");
+            results.put("appliedRules", new ArrayList<>());
+            return results;
+        }
+        
+        @SuppressWarnings("unchecked")
+        Map<String, Object> dataProps = (Map<String, Object>) orderProps.get("dataProperties");
+        return checkBusinessRules(orderId, stepNumber, applicableRules, ruleDef -> evaluateRule(dataProps, ruleDef));
+    }
+    
+    /**
+     * 按优先级依次取各规则的检查结果，高优先级规则被触发时立即停止
+     * @param outcomes 规则 -> 检查结果（violated、reason）
      */
-    private Map<String, Object> checkBusinessRules(String orderId, Integer stepNumber) {
+    private Map<String, Object> checkBusinessRules(String orderId, Integer stepNumber,
+                                                   List<BusinessRuleDefinition> applicableRules,
+                                                   Function<BusinessRuleDefinition, Map<String, Object>> outcomes) {
         Map<String, Object> results = new HashMap<>();
         results.put("canProceed", true);
         
         try {
             log.info("执行SWRL规则检查: orderId={}, stepNumber={}", orderId, stepNumber);
             
-            // 获取本体
-            OWLOntology ontology = ontologyService.getOntology();
-            
-            // 查询订单相关的客户信息
-            Map<String, Object> orderProps = ontologyService.getIndividualProperties(orderId);
-            
-            if (orderProps == null || !orderProps.containsKey("dataProperties")) {
-                results.put("canProceed", true);
-                results.put("message", "订单不存在或无属性，允许继续");
-                results.put("appliedRules", new ArrayList<>());
-                return results;
-            }
-            
-            @SuppressWarnings("unchecked")
-            Map<String, Object> dataProps = (Map<String, Object>) orderProps.get("dataProperties");
-            
             // 收集应用的规则
             List<String> appliedRules = new ArrayList<>();
             List<Map<String, Object>> violatedRules = new ArrayList<>();
             
-            // 获取适用于当前步骤的所有业务规则
-            List<BusinessRuleDefinition> applicableRules = BusinessRuleDefinition.getDefaultBusinessRules()
-                .stream()
-                .filter(rule -> rule.getApplicableSteps().contains(stepNumber) && rule.getEnabled())
-                .sorted(Comparator.comparingInt(BusinessRuleDefinition::getPriority).reversed())
-                .collect(Collectors.toList());
-            
             log.info("当前步骤 {} 适用的规则数: {}", stepNumber, applicableRules.size());
             
             // 对每个规则进行检查
             for (BusinessRuleDefinition ruleDef : applicableRules) {
                 log.debug("检查规则: {}", ruleDef.getRuleName());
                 
-                boolean ruleViolated = false;
-                String violationReason = null;
-                
-                // 根据规则类别执行相应的检查
-                switch (ruleDef.getCategory()) {
-                    case CUSTOMER_STATUS:
-                        // 检查客户状态相关规则
-                        Map<String, Object> customerCheckResult = checkCustomerStatusRules(dataProps, ruleDef);
-                        ruleViolated = (boolean) customerCheckResult.getOrDefault("violated", false);
-                        violationReason = (String) customerCheckResult.get("reason");
-                        break;
-                        
-                    case AUTHENTICATION:
-                        // 检查鉴权规则
-                        Map<String, Object> authCheckResult = checkAuthenticationRules(dataProps, ruleDef);
-                        ruleViolated = (boolean) authCheckResult.getOrDefault("violated", false);
-                        violationReason = (String) authCheckResult.get("reason");
-                        break;
-                        
-                    case PAYMENT:
-                        // 检查支付规则
-                        Map<String, Object> paymentCheckResult = checkPaymentRules(dataProps, ruleDef);
-                        ruleViolated = (boolean) paymentCheckResult.getOrDefault("violated", false);
-                        violationReason = (String) paymentCheckResult.get("reason");
-                        break;
-                        
-                    case DATA_VALIDATION:
-                        // 检查数据验证规则
-                        Map<String, Object> dataCheckResult = checkDataValidationRules(dataProps, ruleDef);
-                        ruleViolated = (boolean) dataCheckResult.getOrDefault("violated", false);
-                        violationReason = (String) dataCheckResult.get("reason");
-                        break;
-                        
-                    case STEP_PROGRESSION:
-                        // 步骤流转规则暂不阻断，仅记录
-                        appliedRules.add(ruleDef.getRuleName());
-                        continue;
-                        
-                    default:
-                        appliedRules.add(ruleDef.getRuleName());
-                        continue;
-                }
+                Map<String, Object> outcome = outcomes.apply(ruleDef);
+                boolean ruleViolated = (boolean) outcome.getOrDefault("violated", false);
+                String violationReason = (String) outcome.get("reason");
                 
                 appliedRules.add(ruleDef.getRuleName());
                 
@@ -315,6 +446,30 @@ public class ProcessReasoningService {
         return results;
     }
     
+    /**
+     * 按规则类别执行单条规则检查，结果只依赖规则checkAttributes中的属性
+     * @return violated、reason；步骤流转等不阻断的规则返回空结果
+     */
+    private Map<String, Object> evaluateRule(Map<String, Object> dataProps, BusinessRuleDefinition ruleDef) {
+        switch (ruleDef.getCategory()) {
+            case CUSTOMER_STATUS:
+                // 检查客户状态相关规则
+                return checkCustomerStatusRules(dataProps, ruleDef);
+            case AUTHENTICATION:
+                // 检查鉴权规则
+                return checkAuthenticationRules(dataProps, ruleDef);
+            case PAYMENT:
+                // 检查支付规则
+                return checkPaymentRules(dataProps, ruleDef);
+            case DATA_VALIDATION:
+                // 检查数据验证规则
+                return checkDataValidationRules(dataProps, ruleDef);
+            default:
+                // 步骤流转规则暂不阻断，仅记录
+                return Collections.emptyMap();
+        }
+    }
+    
     /**
      * 检查客户状态相关规则
      */
@@ -510,6 +665,7 @@ public class ProcessReasoningService {
                 .sourceCustomerId((String) dataProps.get("sourceCustomerId"))
                 .targetCustomerId((String) dataProps.get("targetCustomerId"))
                 .steps(getAllProcessSteps())
+                .version(parseInteger(dataProps.get("processVersion"), 0).longValue())
                 .build();
             
             // 更新步骤状态
@@ -691,8 +847,9 @@ public class ProcessReasoningService {
         Map<String, Object> result = new HashMap<>();
         
         try {
-            // 1. 获取规则定义
-            Map<String, Object> rule = swrlRuleEngine.getRuleByCode(ruleCode);
+            // 1. 获取规则定义（元数据与链接后的规则取自同一版本的规则集）
+            RuleSet ruleSet = swrlRuleEngine.getRuleSet();
+            Map<String, Object> rule = ruleSet.getRule(ruleCode);
             
             if (rule == null) {
                 result.put("status", "not_found");
@@ -710,14 +867,21 @@ public class ProcessReasoningService {
             Map<String, Object> reasoningResult;
             
             if ("SWRL".equals(logicType)) {
-                // SWRL规则推理
+                // SWRL规则推理（优先使用加载时链接好的规则）
                 OWLOntology ontology = ontologyService.getOntology();
-                reasoningResult = swrlReasoningExecutor.executeSWRLExpression(
-                    ontology, logicExpression, context
-                );
+                LinkedRule linkedRule = ruleSet.getLinkedRule(ruleCode);
+                if (linkedRule != null) {
+                    reasoningResult = swrlReasoningExecutor.executeLinkedRule(ontology, linkedRule, context);
+                } else if (rule.get("linkErrors") != null) {
+                    reasoningResult = new HashMap<>();
+                    reasoningResult.put("status", "error");
+                    reasoningResult.put("message", "规则在加载时链接失败: " + rule.get("linkErrors"));
+                } else {
+                    reasoningResult = swrlReasoningExecutor.executeSWRLExpression(ontology, logicExpression, context);
+                }
             } else if ("DecisionTable".equals(logicType)) {
-                // 决策表规则推理
-                reasoningResult = executeDecisionTableRule(logicExpression, context);
+                // 决策表规则推理（使用加载时编译好的决策表）
+                reasoningResult = executeDecisionTableRule(ruleSet.getDecisionTable(ruleCode), rule, context);
             } else {
                 // 其他类型规则
                 reasoningResult = new HashMap<>();
@@ -725,13 +889,14 @@ public class ProcessReasoningService {
                 reasoningResult.put("message", "不支持的规则类型: " + logicType);
             }
             
-            // 4. 构建返回结果
-            result.put("status", "success");
+            // 4. 构建返回结果（规则执行出错时整体为错误，不当作执行完成）
+            boolean failed = "error".equals(reasoningResult.get("status"));
+            result.put("status", failed ? "error" : "success");
             result.put("ruleCode", ruleCode);
             result.put("ruleType", logicType);
             result.put("rule", rule);
             result.put("reasoningResult", reasoningResult);
-            result.put("message", "规则执行完成");
+            result.put("message", failed ? "规则执行失败: " + reasoningResult.get("message") : "规则执行完成");
             
             log.info("规则推理完成: {}", ruleCode);
             
@@ -746,105 +911,29 @@ public class ProcessReasoningService {
     
     /**
      * 执行决策表规则
-     * @param expression 决策表表达式
+     * @param table 加载时编译的决策表，编译失败时为null
+     * @param rule 规则元数据
      * @param context 推理上下文
      * @return 推理结果
      */
-    private Map<String, Object> executeDecisionTableRule(String expression, Map<String, Object> context) {
-        Map<String, Object> result = new HashMap<>();
+    private Map<String, Object> executeDecisionTableRule(DecisionTable table, Map<String, Object> rule,
+                                                         Map<String, Object> context) {
+        if (table == null) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("status", "error");
+            result.put("message", "决策表格式错误: " + rule.getOrDefault("compileError", "规则未编译"));
+            return result;
+        }
         
         try {
-            log.info("执行决策表规则...");
-            
-            // 简单的决策表执行逻辑
-            // 格式: IF condition THEN action
-            String[] parts = expression.split("\\s+THEN\\s+");
-            
-            if (parts.length != 2) {
-                result.put("status", "error");
-                result.put("message", "决策表格式错误");
-                return result;
-            }
-            
-            String condition = parts[0].replaceAll("^IF\\s+", "").trim();
-            String action = parts[1].trim();
-            
-            // 评估条件
-            boolean conditionMet = evaluateCondition(condition, context);
-            
-            result.put("status", "success");
-            result.put("condition", condition);
-            result.put("conditionMet", conditionMet);
-            result.put("action", action);
-            
-            if (conditionMet) {
-                result.put("message", "条件满足，执行动作: " + action);
-                result.put("actionExecuted", true);
-            } else {
-                result.put("message", "条件不满足");
-                result.put("actionExecuted", false);
-            }
-            
+            log.info("执行决策表规则: {} ({}, {}行)", table.getRuleCode(), table.getHitPolicy(), table.getRowCount());
+            return table.evaluate(context);
         } catch (Exception e) {
             log.error("决策表执行异常", e);
+            Map<String, Object> result = new HashMap<>();
             result.put("status", "error");
             result.put("message", "决策表执行异常: " + e.getMessage());
-        }
-        
-        return result;
-    }
-    
-    /**
-     * 简单的条件评估
-     */
-    private boolean evaluateCondition(String condition, Map<String, Object> context) {
-        if (context == null || context.isEmpty()) {
-            return false;
-        }
-        
-        // 简单的表达式评估
-        // 支持 > < = 等基本操作符
-        if (condition.contains(">")) {
-            String[] parts = condition.split(">");
-            Object left = context.get(parts[0].trim());
-            Object right = parseValue(parts[1].trim());
-            
-            if (left instanceof Number && right instanceof Number) {
-                return ((Number) left).doubleValue() > ((Number) right).doubleValue();
-            }
-        } else if (condition.contains("<")) {
-            String[] parts = condition.split("<");
-            Object left = context.get(parts[0].trim());
-            Object right = parseValue(parts[1].trim());
-            
-            if (left instanceof Number && right instanceof Number) {
-                return ((Number) left).doubleValue() < ((Number) right).doubleValue();
-            }
-        } else if (condition.contains("==") || condition.contains("=")) {
-            String[] parts = condition.split("(==|=)");
-            Object left = context.get(parts[0].trim());
-            Object right = parseValue(parts[1].trim());
-            
-            return Objects.equals(left, right);
-        }
-        
-        return false;
-    }
-    
-    /**
-     * 解析值（支持数字和字符串）
-     */
-    private Object parseValue(String value) {
-        value = value.trim();
-        
-        try {
-            return Integer.parseInt(value);
-        } catch (NumberFormatException e1) {
-            try {
-                return Double.parseDouble(value);
-            } catch (NumberFormatException e2) {
-                return value.replaceAll("['\"]", "");
-            }
+            return result;
         }
     }
     
@@ -862,10 +951,10 @@ public class ProcessReasoningService {
         
         try {
             // 获取所有已加载的规则
-            Map<String, Object> loadedRules = swrlRuleEngine.getLoadedRules();
-            List<Map<String, Object>> rules = (List<Map<String, Object>>) loadedRules.get("rules");
+            RuleSet ruleSet = swrlRuleEngine.getRuleSet();
+            List<Map<String, Object>> rules = ruleSet.getRules();
             
-            if (rules == null || rules.isEmpty()) {
+            if (rules.isEmpty()) {
                 result.put("status", "no_rules");
                 result.put("message", "未找到任何业务规则");
                 return result;
@@ -877,31 +966,42 @@ public class ProcessReasoningService {
             }
             context.put("orderId", orderId);
             
-            // 执行每条规则的推理
+            // 上下文中已含orderId，SWRL规则按上下文给出结论、不查询事实库（见SWRLReasoningExecutor.performReasoning），
+            // 决策表只读取上下文；规则不写回结论，各规则之间没有可见的依赖，全部在虚拟线程上并发执行，
+            // 结果按加载顺序合并
+            Map<String, Object> ruleContext = Collections.unmodifiableMap(new HashMap<>(context));
+            
+            long start = System.currentTimeMillis();
+            List<Future<Map<String, Object>>> futures = new ArrayList<>();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (Map<String, Object> rule : rules) {
+                    String ruleCode = (String) rule.get("ruleCode");
+                    futures.add(executor.submit(() -> {
+                        try {
+                            return executeRuleByCode(ruleCode, ruleContext);
+                        } catch (Exception e) {
+                            log.warn("规则执行异常: {}", ruleCode, e);
+                            Map<String, Object> errorResult = new HashMap<>();
+                            errorResult.put("ruleCode", ruleCode);
+                            errorResult.put("status", "error");
+                            errorResult.put("message", e.getMessage());
+                            return errorResult;
+                        }
+                    }));
+                }
+            }
+            for (Future<Map<String, Object>> future : futures) {
+                ruleResults.add(future.get());
+            }
+            long elapsedMs = System.currentTimeMillis() - start;
+            
             int successCount = 0;
             int failCount = 0;
-            
-            for (Map<String, Object> rule : rules) {
-                String ruleCode = (String) rule.get("ruleCode");
-                
-                try {
-                    Map<String, Object> ruleResult = executeRuleByCode(ruleCode, context);
-                    ruleResults.add(ruleResult);
-                    
-                    if ("success".equals(ruleResult.get("status"))) {
-                        successCount++;
-                    } else {
-                        failCount++;
-                    }
-                } catch (Exception e) {
-                    log.warn("规则执行异常: {}", ruleCode, e);
+            for (Map<String, Object> ruleResult : ruleResults) {
+                if ("success".equals(ruleResult.get("status"))) {
+                    successCount++;
+                } else {
                     failCount++;
-                    
-                    Map<String, Object> errorResult = new HashMap<>();
-                    errorResult.put("ruleCode", ruleCode);
-                    errorResult.put("status", "error");
-                    errorResult.put("message", e.getMessage());
-                    ruleResults.add(errorResult);
                 }
             }
             
@@ -911,6 +1011,7 @@ public class ProcessReasoningService {
             result.put("successCount", successCount);
             result.put("failCount", failCount);
             result.put("ruleResults", ruleResults);
+            result.put("elapsedMs", elapsedMs);
             result.put("message", String.format("推理完成: %d成功, %d失败", successCount, failCount));
             
             log.info("所有规则推理完成: {}", result.get("message"));
@@ -924,6 +1025,217 @@ public class ProcessReasoningService {
         return result;
     }
     
+    /**
+     * 物化所有SWRL规则的推导事实（半朴素不动点迭代）
+     * @param persist 是否将推导事实写回本体（经OntologyService提交，与其他写入串行，作为一个事实版本发布）
+     */
+    public Map<String, Object> materializeInferences(boolean persist) {
+        log.info("物化SWRL推导事实: persist={}", persist);
+        OWLOntology ontology = ontologyService.getOntology();
+        return swrlRuleEngine.materializeInferences(ontology, persist ? ontologyService::publish : null);
+    }
+    
+    /**
+     * 批量推理：一次请求评估多个订单的下一步骤
+     * 规则集按步骤预先筛选排序一次，订单属性在评估前从同一个事实版本一次性取出，
+     * 之后各订单的规则检查只读快照，按并行度分块提交到共享的有界线程池执行
+     * @param orderIds 订单ID列表，为空时使用selector
+     * @param selector 订单选择器：className（默认TransferOrder）、dataProperties（属性值过滤）、limit
+     * @param parallelism 并行度，不超过CPU核数
+     */
+    public Map<String, Object> batchReasoning(List<String> orderIds, Map<String, Object> selector, Integer parallelism) {
+        log.info("批量推理: orderIds={}, selector={}", orderIds == null ? 0 : orderIds.size(), selector);
+        
+        Map<String, Object> result = new HashMap<>();
+        
+        try {
+            List<String> targets = resolveBatchOrders(orderIds, selector);
+            if (targets.isEmpty()) {
+                result.put("status", "no_orders");
+                result.put("message", "未找到需要推理的订单");
+                return result;
+            }
+            if (targets.size() > MAX_BATCH_SIZE) {
+                result.put("status", "error");
+                result.put("message", "批量订单数超过上限: " + MAX_BATCH_SIZE);
+                return result;
+            }
+            
+            long start = System.currentTimeMillis();
+            
+            // 1. 规则集：每个步骤的适用规则只筛选排序一次
+            StepRuleIndex rulesByStep = stepRuleIndex();
+            
+            // 2. 订单属性：全部订单从当前事实来源的同一个版本读取（启用TDB2时在一个读事务内读取），
+            //    批量期间的并发写入不影响本次结果
+            OntologyService.VersionedProperties snapshot = ontologyService.getIndividualProperties(targets);
+            
+            // 3. 有界并行评估：订单按并行度切分为连续的块提交到共享线程池，结果保持输入顺序
+            int cpus = Runtime.getRuntime().availableProcessors();
+            int threads = parallelism == null || parallelism < 1 ? cpus : Math.min(parallelism, cpus);
+            int chunkSize = (targets.size() + threads - 1) / threads;
+            List<Future<List<Map<String, Object>>>> chunks = new ArrayList<>();
+            for (int from = 0; from < targets.size(); from += chunkSize) {
+                List<String> chunk = targets.subList(from, Math.min(from + chunkSize, targets.size()));
+                chunks.add(batchExecutor.submit(() -> chunk.stream()
+                    .map(orderId -> evaluateBatchOrder(orderId, snapshot.properties.get(orderId), null, rulesByStep))
+                    .collect(Collectors.toList())));
+            }
+            List<Map<String, Object>> orderResults = new ArrayList<>(targets.size());
+            for (Future<List<Map<String, Object>>> chunk : chunks) {
+                orderResults.addAll(chunk.get());
+            }
+            
+            int proceedCount = 0;
+            for (Map<String, Object> orderResult : orderResults) {
+                if (Boolean.TRUE.equals(orderResult.get("canProceed"))) {
+                    proceedCount++;
+                }
+            }
+            
+            result.put("status", "success");
+            result.put("totalOrders", targets.size());
+            result.put("proceedCount", proceedCount);
+            result.put("blockedCount", targets.size() - proceedCount);
+            result.put("parallelism", threads);
+            result.put("snapshotVersion", snapshot.version);
+            result.put("elapsedMs", System.currentTimeMillis() - start);
+            result.put("orderResults", orderResults);
+            result.put("message", String.format("批量推理完成: %d个订单, %d个可推进", targets.size(), proceedCount));
+            
+            log.info("批量推理完成: {}", result.get("message"));
+            
+        } catch (Exception e) {
+            log.error("批量推理失败", e);
+            result.put("status", "error");
+            result.put("message", "批量推理异常: " + e.getMessage());
+        }
+        
+        return result;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        batchExecutor.shutdownNow();
+    }
+    
+    /**
+     * 解析批量推理的目标订单：显式订单ID优先，否则按选择器查询本体
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> resolveBatchOrders(List<String> orderIds, Map<String, Object> selector) {
+        if (orderIds != null && !orderIds.isEmpty()) {
+            return orderIds.stream().distinct().collect(Collectors.toList());
+        }
+        if (selector == null) {
+            return Collections.emptyList();
+        }
+        String className = (String) selector.getOrDefault("className", "TransferOrder");
+        Map<String, String> filters = (Map<String, String>) selector.get("dataProperties");
+        int limit = parseInteger(selector.get("limit"), 0);
+        return ontologyService.findIndividuals(className, filters, limit);
+    }
+    
+    /**
+     * 流式批量推理：按行读取NDJSON请求，每行 {"orderId": "...", "context": {...}}，
+     * 每个订单评估完成后立即写出一行结果并刷新，内存占用与订单数量无关
+     * context中的键值覆盖订单在本体中的同名数据属性（仅作用于本次评估，不写回本体），
+     * 其中currentStepNumber可指定待检查的步骤
+     * @return 处理的订单行数
+     */
+    public int streamBatchReasoning(InputStream input, OutputStream output) throws IOException {
+        log.info("开始流式批量推理");
+        
+        StepRuleIndex rulesByStep = stepRuleIndex();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        
+        int lineNumber = 0;
+        int orderCount = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            
+            Map<String, Object> lineResult;
+            try {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> request = objectMapper.readValue(line, Map.class);
+                String orderId = (String) request.get("orderId");
+                if (orderId == null || orderId.isEmpty()) {
+                    throw new IllegalArgumentException("缺少orderId");
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> context = (Map<String, Object>) request.get("context");
+                
+                lineResult = evaluateBatchOrder(orderId, ontologyService.getIndividualProperties(orderId), context, rulesByStep);
+                orderCount++;
+            } catch (Exception e) {
+                log.warn("流式批量推理第 {} 行处理失败: {}", lineNumber, e.getMessage());
+                lineResult = new LinkedHashMap<>();
+                lineResult.put("line", lineNumber);
+                lineResult.put("status", "error");
+                lineResult.put("message", e.getMessage());
+            }
+            
+            writer.write(objectMapper.writeValueAsString(lineResult));
+            writer.write('\n');
+            writer.flush();
+        }
+        
+        log.info("流式批量推理完成: {} 个订单", orderCount);
+        return orderCount;
+    }
+    
+    /**
+     * 评估单个订单：当前步骤取自订单的currentStepNumber，检查推进到下一步骤的业务规则，
+     * 启用目标导向检查时与单订单推理一样再查询当前步骤上的阻断结论
+     * （目标查询读取当前事实来源，不受context覆盖影响）
+     * @param context 覆盖订单数据属性的上下文，可为null
+     */
+    private Map<String, Object> evaluateBatchOrder(String orderId, Map<String, Object> orderProps,
+                                                   Map<String, Object> context,
+                                                   StepRuleIndex rulesByStep) {
+        Map<String, Object> orderResult = new LinkedHashMap<>();
+        orderResult.put("orderId", orderId);
+        
+        @SuppressWarnings("unchecked")
+        Map<String, Object> dataProps = (Map<String, Object>) orderProps.getOrDefault("dataProperties", new HashMap<>());
+        if (context != null && !context.isEmpty()) {
+            // 上下文覆盖同名数据属性，值统一为字面量字符串形式，与本体读取的属性一致
+            dataProps = new HashMap<>(dataProps);
+            for (Map.Entry<String, Object> entry : context.entrySet()) {
+                dataProps.put(entry.getKey(), entry.getValue() == null ? null : String.valueOf(entry.getValue()));
+            }
+            orderProps = new HashMap<>(orderProps);
+            orderProps.put("dataProperties", dataProps);
+        }
+        Integer currentStep = parseInteger(dataProps.get("currentStepNumber"), 1);
+        orderResult.put("currentStepNumber", currentStep);
+        
+        if (currentStep < 1 || currentStep > 8) {
+            orderResult.put("canProceed", false);
+            orderResult.put("blockReason", "当前步骤编号无效");
+            return orderResult;
+        }
+        
+        Map<String, Object> ruleResults = checkBusinessRules(orderId, currentStep, orderProps, rulesByStep.definitions(currentStep));
+        boolean canProceed = (boolean) ruleResults.getOrDefault("canProceed", true);
+        if (canProceed && goalDirected) {
+            canProceed = checkDerivableBlocks(orderId, currentStep, ruleResults);
+        }
+        orderResult.put("canProceed", canProceed);
+        if (canProceed) {
+            orderResult.put("nextStepNumber", currentStep < 8 ? currentStep + 1 : null);
+        } else {
+            orderResult.put("blockReason", ruleResults.get("blockReason"));
+        }
+        orderResult.put("ruleCheckResults", ruleResults);
+        return orderResult;
+    }
+    
     /**
      * 获取所有适用的业务规则
      */
@@ -933,29 +1245,14 @@ public class ProcessReasoningService {
         Map<String, Object> result = new HashMap<>();
         
         try {
-            List<BusinessRuleDefinition> applicableRules = BusinessRuleDefinition.getDefaultBusinessRules()
-                .stream()
-                .filter(rule -> rule.getApplicableSteps().contains(stepNumber) && rule.getEnabled())
-                .sorted(Comparator.comparingInt(BusinessRuleDefinition::getPriority).reversed())
-                .collect(Collectors.toList());
-            
-            List<Map<String, Object>> ruleInfoList = new ArrayList<>();
-            for (BusinessRuleDefinition rule : applicableRules) {
-                Map<String, Object> ruleInfo = new HashMap<>();
-                ruleInfo.put("ruleId", rule.getRuleId());
-                ruleInfo.put("ruleName", rule.getRuleName());
-                ruleInfo.put("description", rule.getDescription());
-                ruleInfo.put("category", rule.getCategory().name());
-                ruleInfo.put("priority", rule.getPriority());
-                ruleInfo.put("violationMessage", rule.getViolationMessage());
-                ruleInfo.put("checkAttributes", rule.getCheckAttributes());
-                ruleInfoList.add(ruleInfo);
-            }
+            StepRuleIndex index = stepRuleIndex();
+            List<Map<String, Object>> ruleInfoList = index.descriptions(stepNumber);
             
             result.put("status", "success");
             result.put("stepNumber", stepNumber);
             result.put("ruleCount", ruleInfoList.size());
             result.put("rules", ruleInfoList);
+            result.put("ruleSetVersion", index.getRuleSetVersion());
             
         } catch (Exception e) {
             log.error("获取适用规则失败", e);
@@ -0,0 +1,800 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.Fact;
+import com.iwhalecloud.ontology.model.LinkedAtom;
+import com.iwhalecloud.ontology.model.LinkedRule;
+import com.iwhalecloud.ontology.model.RuleTerm;
+import lombok.extern.slf4j.Slf4j;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+
+/**
+ * Rete前向链推理网络
+ *
+ * Alpha节点按谓词和常量参数过滤事实，Beta节点按共享变量连接部分匹配。
+ * 结构相同的前提模式（如 base:SourceCustomer(?customer)、base:custName(?customer, ?custName)）
+ * 在规则之间共享同一个Alpha节点和Beta前缀链，新增事实只沿受影响的节点增量传播，
+ * 推导出的结论作为新事实重新进入网络，直到不动点。
+ *
+ * 撤回断言事实时采用DRed（删除-再推导）：先沿网络反向传播，过度删除所有依赖该事实的部分匹配和推导事实，
+ * 再把仍有其他推导（终端节点上的推导计数大于0）或仍被断言的事实重新插入并正向传播。
+ * Beta节点的部分匹配带有推导计数，撤回只访问受影响的节点和推导，代价与受影响的推导数量成正比；
+ * 相互支撑的循环推导在过度删除阶段一并删除，不会因彼此计数而残留。
+ *
+ * 连接节点按共享变量的取值建立哈希索引：Alpha记忆按事实在连接位置上的取值分桶，Beta记忆按token在已绑定位置上的取值分桶，
+ * 左右激活只访问取值相同的桶，而不是扫描对侧全部事实或部分匹配。取值键按 {@link RuleValues#sameValue} 的语义规范化
+ * （字面量取Java值，数字统一为double），桶内候选仍由连接条件逐一确认。
+ */
+@Slf4j
+class ReteNetwork {
+
+    private static final OWLObject[] EMPTY_TOKEN = new OWLObject[0];
+
+    private final OWLDataFactory dataFactory;
+    private final Map<IRI, Set<IRI>> superClasses;
+
+    private final Map<String, AlphaMemory> alphaMemories = new LinkedHashMap<>();
+    private final Map<IRI, List<AlphaMemory>> alphaByPredicate = new HashMap<>();
+    private final Map<String, BetaNode> betaNodes = new HashMap<>();
+    private final BetaNode root = new RootNode();
+    private final List<String> ruleCodes = new ArrayList<>();
+    private final Map<String, String> skippedRules = new LinkedHashMap<>();
+    private int sharedNodeCount;
+
+    private final Set<Fact> workingMemory = new HashSet<>();
+    private final Set<Fact> assertedFacts = new HashSet<>();
+    private final Map<Fact, String> inferences = new LinkedHashMap<>();
+    /** 事实的推导计数：规则的完整匹配数加上子类事实的继承数 */
+    private final Map<Fact, Integer> support = new HashMap<>();
+    private final Deque<Fact> agenda = new ArrayDeque<>();
+
+    /** 撤回过程中被过度删除的事实及其原推导规则（断言事实或继承事实为null） */
+    private final Map<Fact, String> overdeleted = new LinkedHashMap<>();
+    private final Deque<Fact> deletions = new ArrayDeque<>();
+    private long retractedFactCount;
+    private long rederivedFactCount;
+
+    /**
+     * @param rules 已链接的SWRL规则
+     * @param superClasses 命名类的父类闭包
+     * @param dataFactory 用于构造结论中的个体和字面量
+     */
+    ReteNetwork(Collection<LinkedRule> rules,
+                Map<IRI, Set<IRI>> superClasses,
+                OWLDataFactory dataFactory) {
+        this.superClasses = superClasses;
+        this.dataFactory = dataFactory;
+        for (LinkedRule rule : rules) {
+            try {
+                addRule(rule);
+            } catch (IllegalArgumentException e) {
+                skippedRules.put(rule.getRuleCode(), e.getMessage());
+                log.warn("规则未加入Rete网络: {} - {}", rule.getRuleCode(), e.getMessage());
+            }
+        }
+        log.info("Rete网络构建完成: 规则={}, Alpha节点={}, Beta节点={}, 共享节点={}",
+            ruleCodes.size(), alphaMemories.size(), betaNodes.size(), sharedNodeCount);
+    }
+
+    /**
+     * 加入一批事实并传播到不动点
+     * @return 本次新推导出的事实数
+     */
+    synchronized int addFacts(Collection<Fact> facts) {
+        int before = inferences.size();
+        for (Fact fact : facts) {
+            assertedFacts.add(fact);
+            agenda.add(fact);
+        }
+        propagate();
+        return inferences.size() - before;
+    }
+
+    /**
+     * 撤回一批断言事实，删除不再有推导支撑的推导事实（DRed）
+     * @return 被撤回的推导事实（事实 -> 原推导规则代码）
+     */
+    synchronized Map<Fact, String> removeFacts(Collection<Fact> facts) {
+        for (Fact fact : facts) {
+            if (assertedFacts.remove(fact)) {
+                overdelete(fact);
+            }
+        }
+        if (overdeleted.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        // 1. 过度删除：依赖被撤回事实的推导全部删除，不论是否还有其他推导
+        while (!deletions.isEmpty()) {
+            retract(deletions.poll());
+        }
+
+        // 2. 再推导：仍被断言或在剩余事实上仍有完整匹配的事实重新插入，由正向传播恢复依赖它们的推导
+        for (Map.Entry<Fact, String> entry : overdeleted.entrySet()) {
+            Fact fact = entry.getKey();
+            if (assertedFacts.contains(fact) || support.getOrDefault(fact, 0) > 0) {
+                if (entry.getValue() != null) {
+                    inferences.put(fact, entry.getValue());
+                }
+                agenda.add(fact);
+            }
+        }
+        propagate();
+
+        Map<Fact, String> withdrawn = new LinkedHashMap<>();
+        int removed = 0;
+        for (Map.Entry<Fact, String> entry : overdeleted.entrySet()) {
+            if (!workingMemory.contains(entry.getKey())) {
+                removed++;
+                if (entry.getValue() != null) {
+                    withdrawn.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        log.debug("DRed撤回: 断言事实={}, 过度删除={}, 再推导={}, 撤回推导事实={}",
+            facts.size(), overdeleted.size(), overdeleted.size() - removed, withdrawn.size());
+        retractedFactCount += removed;
+        rederivedFactCount += overdeleted.size() - removed;
+        overdeleted.clear();
+        return withdrawn;
+    }
+
+    synchronized int addFact(Fact fact) {
+        return addFacts(Collections.singletonList(fact));
+    }
+
+    /**
+     * 推导出的事实及产生它的规则代码（按推导顺序）
+     */
+    synchronized Map<Fact, String> getInferences() {
+        return new LinkedHashMap<>(inferences);
+    }
+
+    synchronized int getWorkingMemorySize() {
+        return workingMemory.size();
+    }
+
+    List<String> getRuleCodes() {
+        return Collections.unmodifiableList(ruleCodes);
+    }
+
+    Map<String, String> getSkippedRules() {
+        return Collections.unmodifiableMap(skippedRules);
+    }
+
+    /**
+     * 网络结构统计
+     */
+    Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("ruleCount", ruleCodes.size());
+        statistics.put("alphaNodeCount", alphaMemories.size());
+        statistics.put("betaNodeCount", betaNodes.size());
+        statistics.put("sharedNodeCount", sharedNodeCount);
+        statistics.put("retractedFactCount", retractedFactCount);
+        statistics.put("rederivedFactCount", rederivedFactCount);
+        statistics.put("skippedRules", skippedRules);
+        return statistics;
+    }
+
+    // ========== 网络构建 ==========
+
+    private void addRule(LinkedRule rule) {
+        Map<String, Integer> positions = new HashMap<>();
+        List<LinkedAtom> pendingBuiltins = new ArrayList<>();
+        BetaNode current = root;
+
+        for (LinkedAtom atom : rule.getBody()) {
+            if (atom.isBuiltin()) {
+                pendingBuiltins.add(atom);
+            } else {
+                current = addJoin(current, atom, positions);
+            }
+            current = addReadyBuiltins(current, pendingBuiltins, positions);
+        }
+        if (!pendingBuiltins.isEmpty()) {
+            throw new IllegalArgumentException("内置函数存在未绑定的变量: " + pendingBuiltins.get(0));
+        }
+
+        TerminalNode terminal = new TerminalNode(rule, positions);
+        current.children.add(terminal);
+        ruleCodes.add(rule.getRuleCode());
+    }
+
+    /**
+     * 追加连接节点，键由父节点与原子模式（常量、已绑定位置、新变量序号）组成，相同键的节点在规则间共享
+     */
+    private BetaNode addJoin(BetaNode parent, LinkedAtom atom, Map<String, Integer> positions) {
+        boolean classAtom = atom.isClassAtom();
+        IRI predicate = atom.getPredicate();
+        int arity = classAtom ? 1 : 2;
+
+        OWLObject[] constants = new OWLObject[arity];
+        int[] boundPositions = new int[arity];
+        int[] newSlots = new int[arity];
+        List<String> newVariables = new ArrayList<>();
+        StringBuilder pattern = new StringBuilder();
+
+        for (int i = 0; i < arity; i++) {
+            RuleTerm term = atom.getArgument(i);
+            boundPositions[i] = -1;
+            newSlots[i] = -1;
+            if (!term.isVariable()) {
+                constants[i] = atom.getConstant(i);
+                pattern.append("c,");
+            } else if (positions.containsKey(term.getName())) {
+                boundPositions[i] = positions.get(term.getName());
+                pattern.append('t').append(boundPositions[i]).append(',');
+            } else {
+                int index = newVariables.indexOf(term.getName());
+                if (index < 0) {
+                    index = newVariables.size();
+                    newVariables.add(term.getName());
+                }
+                newSlots[i] = index;
+                pattern.append('n').append(index).append(',');
+            }
+        }
+
+        AlphaMemory alpha = alphaMemory(predicate, classAtom, constants);
+        String key = parent.key + "/J[" + alpha.key + "](" + pattern + ")";
+        BetaNode node = betaNodes.get(key);
+        if (node == null) {
+            JoinNode join = new JoinNode(key, parent, alpha, boundPositions, newSlots, newVariables.size());
+            parent.children.add(join);
+            alpha.successors.add(join);
+            betaNodes.put(key, join);
+            node = join;
+        } else {
+            sharedNodeCount++;
+        }
+
+        for (int i = 0; i < newVariables.size(); i++) {
+            positions.put(newVariables.get(i), parent.width + i);
+        }
+        return node;
+    }
+
+    /**
+     * 追加所有输入变量已绑定的内置函数节点；计算类函数的首个参数允许未绑定并由节点赋值
+     */
+    private BetaNode addReadyBuiltins(BetaNode parent, List<LinkedAtom> pendingBuiltins, Map<String, Integer> positions) {
+        BetaNode current = parent;
+        Iterator<LinkedAtom> iterator = pendingBuiltins.iterator();
+        while (iterator.hasNext()) {
+            LinkedAtom atom = iterator.next();
+            String name = atom.getBuiltin();
+            List<RuleTerm> arguments = atom.getAtom().getArguments();
+            boolean bindsFirst = SWRLBuiltins.isBinding(name)
+                && arguments.get(0).isVariable()
+                && !positions.containsKey(arguments.get(0).getName());
+
+            boolean ready = true;
+            for (int i = bindsFirst ? 1 : 0; i < arguments.size(); i++) {
+                RuleTerm term = arguments.get(i);
+                if (term.isVariable() && !positions.containsKey(term.getName())) {
+                    ready = false;
+                }
+            }
+            if (!ready) {
+                continue;
+            }
+
+            int[] argumentPositions = new int[arguments.size()];
+            Object[] constants = new Object[arguments.size()];
+            StringBuilder pattern = new StringBuilder();
+            for (int i = 0; i < arguments.size(); i++) {
+                RuleTerm term = arguments.get(i);
+                argumentPositions[i] = term.isVariable() && !(bindsFirst && i == 0) ? positions.get(term.getName()) : -1;
+                if (!term.isVariable()) {
+                    constants[i] = term.getType() == RuleTerm.TermType.LITERAL ? term.getValue() : term.getName();
+                }
+                pattern.append(argumentPositions[i] >= 0 ? "t" + argumentPositions[i] : bindsFirst && i == 0 ? "n" : "c" + constants[i]).append(',');
+            }
+
+            String key = current.key + "/B[" + name + "](" + pattern + ")";
+            BetaNode node = betaNodes.get(key);
+            if (node == null) {
+                node = new BuiltinNode(key, current, name, argumentPositions, constants, bindsFirst);
+                current.children.add(node);
+                betaNodes.put(key, node);
+            } else {
+                sharedNodeCount++;
+            }
+            if (bindsFirst) {
+                positions.put(arguments.get(0).getName(), current.width);
+            }
+            current = node;
+            iterator.remove();
+        }
+        return current;
+    }
+
+    private AlphaMemory alphaMemory(IRI predicate, boolean classAtom, OWLObject[] constants) {
+        String key = predicate + "|" + constants[0] + (classAtom ? "" : "|" + constants[1]);
+        return alphaMemories.computeIfAbsent(key, k -> {
+            AlphaMemory alpha = new AlphaMemory(k, predicate, classAtom, constants);
+            alphaByPredicate.computeIfAbsent(predicate, p -> new ArrayList<>()).add(alpha);
+            return alpha;
+        });
+    }
+
+    // ========== 事实传播 ==========
+
+    private void propagate() {
+        while (!agenda.isEmpty()) {
+            Fact fact = agenda.poll();
+            if (!workingMemory.add(fact)) {
+                continue;
+            }
+            for (Fact inherited : inheritedFacts(fact)) {
+                support.merge(inherited, 1, Integer::sum);
+                agenda.add(inherited);
+            }
+            for (AlphaMemory alpha : alphaByPredicate.getOrDefault(fact.getPredicate(), Collections.emptyList())) {
+                if (alpha.accepts(fact)) {
+                    alpha.add(fact);
+                    // 逆序激活后继：后创建的深层节点先处理，避免同一事实在自连接中被重复匹配
+                    for (int i = alpha.successors.size() - 1; i >= 0; i--) {
+                        alpha.successors.get(i).rightActivate(fact);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 从网络中移除事实，按与插入相同的节点顺序反向传播，每个包含该事实的部分匹配恰好撤回一次
+     */
+    private void retract(Fact fact) {
+        if (!workingMemory.remove(fact)) {
+            return;
+        }
+        inferences.remove(fact);
+        for (Fact inherited : inheritedFacts(fact)) {
+            unsupport(inherited, 1);
+        }
+        for (AlphaMemory alpha : alphaByPredicate.getOrDefault(fact.getPredicate(), Collections.emptyList())) {
+            if (alpha.remove(fact)) {
+                for (int i = alpha.successors.size() - 1; i >= 0; i--) {
+                    alpha.successors.get(i).rightRetract(fact);
+                }
+            }
+        }
+    }
+
+    private void infer(Fact fact, String ruleCode, int count) {
+        support.merge(fact, count, Integer::sum);
+        if (!workingMemory.contains(fact) && !inferences.containsKey(fact)) {
+            inferences.put(fact, ruleCode);
+            log.debug("Rete推导: {} <- {}", fact, ruleCode);
+            agenda.add(fact);
+        }
+    }
+
+    /**
+     * 减少推导计数；非断言事实失去一个推导即过度删除，是否仍有支撑在再推导阶段判断
+     */
+    private void unsupport(Fact fact, int count) {
+        int remaining = support.merge(fact, -count, Integer::sum);
+        if (remaining <= 0) {
+            support.remove(fact);
+        }
+        if (!assertedFacts.contains(fact)) {
+            overdelete(fact);
+        }
+    }
+
+    private void overdelete(Fact fact) {
+        if (workingMemory.contains(fact) && !overdeleted.containsKey(fact)) {
+            overdeleted.put(fact, inferences.get(fact));
+            deletions.add(fact);
+        }
+    }
+
+    private List<Fact> inheritedFacts(Fact fact) {
+        if (!fact.isClassFact()) {
+            return Collections.emptyList();
+        }
+        List<Fact> inherited = new ArrayList<>();
+        for (IRI parent : superClasses.getOrDefault(fact.getPredicate(), Collections.emptySet())) {
+            inherited.add(Fact.classFact(parent, fact.getSubject()));
+        }
+        return inherited;
+    }
+
+    /**
+     * 连接取值的哈希键：个体取自身，字面量取规范化的Java值，与 {@link RuleValues#sameValue} 相等的取值键相同
+     */
+    private static Object joinKey(OWLObject value) {
+        if (!(value instanceof OWLLiteral)) {
+            return value;
+        }
+        Object java = RuleValues.toJava(value);
+        return java instanceof Number ? (Object) (((Number) java).doubleValue() + 0.0) : java;
+    }
+
+    private static OWLObject[] extend(OWLObject[] token, OWLObject[] values, int count) {
+        if (count == 0) {
+            return token;
+        }
+        OWLObject[] extended = Arrays.copyOf(token, token.length + count);
+        System.arraycopy(values, 0, extended, token.length, count);
+        return extended;
+    }
+
+    // ========== 网络节点 ==========
+
+    private static final class AlphaMemory {
+        final String key;
+        final IRI predicate;
+        final boolean classAtom;
+        final OWLObject[] constants;
+        final Set<Fact> facts = new LinkedHashSet<>();
+        final List<JoinNode> successors = new ArrayList<>();
+        /** 连接位置掩码（1主体，2客体） -> 取值键 -> 事实 */
+        final Map<Integer, Map<List<Object>, Set<Fact>>> indexes = new HashMap<>();
+
+        AlphaMemory(String key, IRI predicate, boolean classAtom, OWLObject[] constants) {
+            this.key = key;
+            this.predicate = predicate;
+            this.classAtom = classAtom;
+            this.constants = constants;
+        }
+
+        boolean accepts(Fact fact) {
+            if (classAtom != fact.isClassFact()) {
+                return false;
+            }
+            if (constants[0] != null && !constants[0].equals(fact.getSubject())) {
+                return false;
+            }
+            return classAtom || constants[1] == null || RuleValues.sameValue(constants[1], fact.getObject());
+        }
+
+        void add(Fact fact) {
+            if (facts.add(fact)) {
+                indexes.forEach((mask, index) -> index.computeIfAbsent(key(fact, mask), k -> new LinkedHashSet<>()).add(fact));
+            }
+        }
+
+        boolean remove(Fact fact) {
+            if (!facts.remove(fact)) {
+                return false;
+            }
+            indexes.forEach((mask, index) -> {
+                List<Object> key = key(fact, mask);
+                Set<Fact> bucket = index.get(key);
+                if (bucket != null && bucket.remove(fact) && bucket.isEmpty()) {
+                    index.remove(key);
+                }
+            });
+            return true;
+        }
+
+        /**
+         * 按连接位置掩码取索引，首次使用时由现有事实建立
+         */
+        Map<List<Object>, Set<Fact>> index(int mask) {
+            return indexes.computeIfAbsent(mask, m -> {
+                Map<List<Object>, Set<Fact>> index = new HashMap<>();
+                facts.forEach(fact -> index.computeIfAbsent(key(fact, m), k -> new LinkedHashSet<>()).add(fact));
+                return index;
+            });
+        }
+
+        static List<Object> key(Fact fact, int mask) {
+            if (mask == 3) {
+                return Arrays.asList(joinKey(fact.getSubject()), joinKey(fact.getObject()));
+            }
+            return Collections.singletonList(joinKey(mask == 1 ? fact.getSubject() : fact.getObject()));
+        }
+    }
+
+    /**
+     * Beta节点：保存输出的部分匹配（token）及其推导计数，token中变量按首次绑定顺序排列
+     * 不同事实按语义值连接时可能得到相同的token，计数保证撤回时与插入一一对应
+     */
+    private abstract static class BetaNode {
+        final String key;
+        final int width;
+        final Map<List<OWLObject>, Token> tokens = new LinkedHashMap<>();
+        final List<BetaNode> children = new ArrayList<>();
+        /** 子连接节点注册的索引：已绑定位置 -> 取值键 -> token */
+        final Map<List<Integer>, Map<List<Object>, Map<List<OWLObject>, Token>>> indexes = new HashMap<>();
+
+        BetaNode(String key, int width) {
+            this.key = key;
+            this.width = width;
+        }
+
+        /**
+         * 按token位置取索引，首次使用时由现有token建立
+         */
+        Map<List<Object>, Map<List<OWLObject>, Token>> index(List<Integer> positions) {
+            return indexes.computeIfAbsent(positions, p -> {
+                Map<List<Object>, Map<List<OWLObject>, Token>> index = new HashMap<>();
+                tokens.forEach((k, token) -> index.computeIfAbsent(key(token.values, p), x -> new LinkedHashMap<>()).put(k, token));
+                return index;
+            });
+        }
+
+        static List<Object> key(OWLObject[] token, List<Integer> positions) {
+            Object[] key = new Object[positions.size()];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = joinKey(token[positions.get(i)]);
+            }
+            return Arrays.asList(key);
+        }
+
+        abstract void leftActivate(OWLObject[] token, int count);
+
+        abstract void leftRetract(OWLObject[] token, int count);
+
+        void emit(OWLObject[] token, int count) {
+            List<OWLObject> tokenKey = Arrays.asList(token);
+            Token existing = tokens.get(tokenKey);
+            if (existing == null) {
+                existing = new Token(token);
+                tokens.put(tokenKey, existing);
+                for (Map.Entry<List<Integer>, Map<List<Object>, Map<List<OWLObject>, Token>>> entry : indexes.entrySet()) {
+                    entry.getValue().computeIfAbsent(key(token, entry.getKey()), k -> new LinkedHashMap<>()).put(tokenKey, existing);
+                }
+            }
+            existing.count += count;
+            for (BetaNode child : children) {
+                child.leftActivate(token, count);
+            }
+        }
+
+        void withdraw(OWLObject[] token, int count) {
+            Token existing = tokens.get(Arrays.asList(token));
+            if (existing == null) {
+                return;
+            }
+            existing.count -= count;
+            if (existing.count <= 0) {
+                List<OWLObject> tokenKey = Arrays.asList(token);
+                tokens.remove(tokenKey);
+                for (Map.Entry<List<Integer>, Map<List<Object>, Map<List<OWLObject>, Token>>> entry : indexes.entrySet()) {
+                    List<Object> key = key(token, entry.getKey());
+                    Map<List<OWLObject>, Token> bucket = entry.getValue().get(key);
+                    if (bucket != null && bucket.remove(tokenKey) != null && bucket.isEmpty()) {
+                        entry.getValue().remove(key);
+                    }
+                }
+            }
+            for (BetaNode child : children) {
+                child.leftRetract(token, count);
+            }
+        }
+    }
+
+    private static final class Token {
+        final OWLObject[] values;
+        int count;
+
+        Token(OWLObject[] values) {
+            this.values = values;
+        }
+    }
+
+    private static final class RootNode extends BetaNode {
+        RootNode() {
+            super("", 0);
+            Token token = new Token(EMPTY_TOKEN);
+            token.count = 1;
+            tokens.put(Arrays.asList(EMPTY_TOKEN), token);
+        }
+
+        @Override
+        void leftActivate(OWLObject[] token, int count) {
+        }
+
+        @Override
+        void leftRetract(OWLObject[] token, int count) {
+        }
+    }
+
+    private static final class JoinNode extends BetaNode {
+        final BetaNode parent;
+        final AlphaMemory alpha;
+        final int[] boundPositions;
+        final int[] newSlots;
+        final int newCount;
+        /** 共享变量在父token中的位置，及对应的事实位置掩码；没有共享变量时为空和0（笛卡尔积，不建索引） */
+        final List<Integer> tokenPositions = new ArrayList<>();
+        final int factMask;
+        final Map<List<Object>, Map<List<OWLObject>, Token>> parentIndex;
+        final Map<List<Object>, Set<Fact>> alphaIndex;
+
+        JoinNode(String key, BetaNode parent, AlphaMemory alpha, int[] boundPositions, int[] newSlots, int newCount) {
+            super(key, parent.width + newCount);
+            this.parent = parent;
+            this.alpha = alpha;
+            this.boundPositions = boundPositions;
+            this.newSlots = newSlots;
+            this.newCount = newCount;
+            int mask = 0;
+            for (int i = 0; i < boundPositions.length; i++) {
+                if (boundPositions[i] >= 0) {
+                    tokenPositions.add(boundPositions[i]);
+                    mask |= 1 << i;
+                }
+            }
+            this.factMask = mask;
+            this.parentIndex = mask == 0 ? null : parent.index(tokenPositions);
+            this.alphaIndex = mask == 0 ? null : alpha.index(mask);
+        }
+
+        /**
+         * 与token取值相同的Alpha事实
+         */
+        private Collection<Fact> candidates(OWLObject[] token) {
+            if (alphaIndex == null) {
+                return alpha.facts;
+            }
+            return alphaIndex.getOrDefault(key(token, tokenPositions), Collections.emptySet());
+        }
+
+        /**
+         * 与事实取值相同的父token
+         */
+        private Collection<Token> candidates(Fact fact) {
+            if (parentIndex == null) {
+                return parent.tokens.values();
+            }
+            Map<List<OWLObject>, Token> bucket = parentIndex.get(AlphaMemory.key(fact, factMask));
+            return bucket == null ? Collections.emptyList() : bucket.values();
+        }
+
+        @Override
+        void leftActivate(OWLObject[] token, int count) {
+            for (Fact fact : candidates(token)) {
+                OWLObject[] joined = join(token, fact);
+                if (joined != null) {
+                    emit(joined, count);
+                }
+            }
+        }
+
+        @Override
+        void leftRetract(OWLObject[] token, int count) {
+            for (Fact fact : candidates(token)) {
+                OWLObject[] joined = join(token, fact);
+                if (joined != null) {
+                    withdraw(joined, count);
+                }
+            }
+        }
+
+        void rightActivate(Fact fact) {
+            for (Token token : candidates(fact)) {
+                OWLObject[] joined = join(token.values, fact);
+                if (joined != null) {
+                    emit(joined, token.count);
+                }
+            }
+        }
+
+        void rightRetract(Fact fact) {
+            for (Token token : new ArrayList<>(candidates(fact))) {
+                OWLObject[] joined = join(token.values, fact);
+                if (joined != null) {
+                    withdraw(joined, token.count);
+                }
+            }
+        }
+
+        private OWLObject[] join(OWLObject[] token, Fact fact) {
+            OWLObject[] values = new OWLObject[newCount];
+            for (int i = 0; i < boundPositions.length; i++) {
+                OWLObject value = i == 0 ? fact.getSubject() : fact.getObject();
+                if (boundPositions[i] >= 0) {
+                    if (!RuleValues.sameValue(token[boundPositions[i]], value)) {
+                        return null;
+                    }
+                } else if (newSlots[i] >= 0) {
+                    OWLObject existing = values[newSlots[i]];
+                    if (existing != null && !existing.equals(value)) {
+                        return null;
+                    }
+                    values[newSlots[i]] = value;
+                }
+            }
+            return extend(token, values, newCount);
+        }
+    }
+
+    private final class BuiltinNode extends BetaNode {
+        final String name;
+        final int[] argumentPositions;
+        final Object[] constants;
+        final boolean bindsFirst;
+
+        BuiltinNode(String key, BetaNode parent, String name, int[] argumentPositions, Object[] constants, boolean bindsFirst) {
+            super(key, parent.width + (bindsFirst ? 1 : 0));
+            this.name = name;
+            this.argumentPositions = argumentPositions;
+            this.constants = constants;
+            this.bindsFirst = bindsFirst;
+        }
+
+        @Override
+        void leftActivate(OWLObject[] token, int count) {
+            OWLObject[] result = evaluate(token);
+            if (result != null) {
+                emit(result, count);
+            }
+        }
+
+        @Override
+        void leftRetract(OWLObject[] token, int count) {
+            // 内置函数是确定性的，重新计算即可得到插入时产生的token
+            OWLObject[] result = evaluate(token);
+            if (result != null) {
+                withdraw(result, count);
+            }
+        }
+
+        private OWLObject[] evaluate(OWLObject[] token) {
+            Object[] args = new Object[argumentPositions.length];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = argumentPositions[i] >= 0 ? RuleValues.toJava(token[argumentPositions[i]]) : constants[i];
+            }
+            if (bindsFirst) {
+                Object value = SWRLBuiltins.compute(name, Arrays.copyOfRange(args, 1, args.length));
+                return value == null ? null : extend(token, new OWLObject[]{RuleValues.toLiteral(value, dataFactory)}, 1);
+            }
+            return SWRLBuiltins.test(name, args) ? token : null;
+        }
+    }
+
+    /**
+     * 终端节点：将完整匹配代入结论原子，生成新事实
+     */
+    private final class TerminalNode extends BetaNode {
+        final LinkedRule rule;
+        final Map<String, Integer> positions;
+
+        TerminalNode(LinkedRule rule, Map<String, Integer> positions) {
+            super(rule.getRuleCode(), 0);
+            this.rule = rule;
+            this.positions = new HashMap<>(positions);
+        }
+
+        @Override
+        void leftActivate(OWLObject[] token, int count) {
+            for (Fact fact : conclusions(token)) {
+                infer(fact, rule.getRuleCode(), count);
+            }
+        }
+
+        @Override
+        void leftRetract(OWLObject[] token, int count) {
+            for (Fact fact : conclusions(token)) {
+                unsupport(fact, count);
+            }
+        }
+
+        private List<Fact> conclusions(OWLObject[] token) {
+            List<Fact> facts = new ArrayList<>();
+            for (LinkedAtom atom : rule.getHead()) {
+                OWLObject subject = valueOf(atom, 0, token);
+                if (!(subject instanceof OWLNamedIndividual)) {
+                    continue;
+                }
+                facts.add(atom.isClassAtom()
+                    ? Fact.classFact(atom.getPredicate(), (OWLNamedIndividual) subject)
+                    : Fact.propertyFact(atom.getPredicate(), (OWLNamedIndividual) subject, valueOf(atom, 1, token)));
+            }
+            return facts;
+        }
+
+        private OWLObject valueOf(LinkedAtom atom, int index, OWLObject[] token) {
+            RuleTerm term = atom.getArgument(index);
+            return term.isVariable() ? token[positions.get(term.getName())] : atom.getConstant(index);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.CompiledRule;
+import com.iwhalecloud.ontology.model.LinkedAtom;
+import com.iwhalecloud.ontology.model.LinkedRule;
+import com.iwhalecloud.ontology.model.RuleAtom;
+import com.iwhalecloud.ontology.model.RuleTerm;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+import java.util.*;
+
+/**
+ * 规则链接器
+ *
+ * 在规则加载或重载时运行一次：以本体文档声明的前缀（transfer:、base:、默认前缀等）建立符号表，
+ * 将每个原子的谓词解析为OWLClass、OWLObjectProperty、OWLDataProperty或内置函数句柄，
+ * 常量参数解析为个体或字面量。无法解析的规则在加载时即被拒绝，执行时不再拼接IRI或查询签名。
+ */
+class RuleLinker {
+
+    private static final String SWRLB_PREFIX = "swrlb";
+    private static final String XSD_PREFIX = "xsd";
+    private static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema#";
+
+    private final OWLOntology ontology;
+    private final OWLDataFactory dataFactory;
+    private final Map<String, String> prefixes = new HashMap<>();
+    private final String defaultNamespace;
+    private final Map<String, OWLEntity> symbols = new HashMap<>();
+
+    /**
+     * @param ontology 规则所在本体
+     * @param fallbackNamespace 本体未声明默认前缀时，无前缀名称使用的命名空间
+     */
+    RuleLinker(OWLOntology ontology, String fallbackNamespace) {
+        this.ontology = ontology;
+        this.dataFactory = ontology.getOWLOntologyManager().getOWLDataFactory();
+
+        OWLDocumentFormat format = ontology.getOWLOntologyManager().getOntologyFormat(ontology);
+        if (format != null && format.isPrefixOWLDocumentFormat()) {
+            format.asPrefixOWLDocumentFormat().getPrefixName2PrefixMap()
+                .forEach((name, prefix) -> prefixes.put(name.endsWith(":") ? name.substring(0, name.length() - 1) : name, prefix));
+        }
+        this.defaultNamespace = prefixes.getOrDefault("", fallbackNamespace);
+    }
+
+    /**
+     * 前缀符号表（前缀名 -> 命名空间）
+     */
+    Map<String, String> getPrefixes() {
+        return Collections.unmodifiableMap(prefixes);
+    }
+
+    /**
+     * 将限定名解析为IRI，前缀未声明时返回null
+     */
+    IRI resolve(String prefix, String localName) {
+        String prefixNamespace = prefix.isEmpty() ? defaultNamespace : prefixes.get(prefix);
+        return prefixNamespace == null ? null : IRI.create(prefixNamespace + localName);
+    }
+
+    /**
+     * 链接规则，收集全部无法解析的元素后一并返回
+     */
+    LinkedRule link(CompiledRule rule) {
+        if (!rule.isValid()) {
+            return LinkedRule.unresolved(rule, List.of("规则未编译成功: " + rule.getErrorMessage()));
+        }
+
+        List<String> errors = new ArrayList<>();
+        List<LinkedAtom> body = new ArrayList<>();
+        for (RuleAtom atom : rule.getBody()) {
+            body.add(linkAtom(atom, errors));
+        }
+        List<LinkedAtom> head = new ArrayList<>();
+        for (RuleAtom atom : rule.getHead()) {
+            if (atom.getType() == RuleAtom.AtomType.BUILTIN) {
+                errors.add("结论中不支持内置函数: " + atom);
+            }
+            head.add(linkAtom(atom, errors));
+        }
+
+        if (!errors.isEmpty()) {
+            return LinkedRule.unresolved(rule, errors);
+        }
+        return new LinkedRule(rule, List.copyOf(body), List.copyOf(head), true, List.of());
+    }
+
+    private LinkedAtom linkAtom(RuleAtom atom, List<String> errors) {
+        List<OWLObject> constants = new ArrayList<>();
+        for (RuleTerm term : atom.getArguments()) {
+            constants.add(linkConstant(term, errors));
+        }
+        constants = Collections.unmodifiableList(constants);
+
+        if (atom.getType() == RuleAtom.AtomType.BUILTIN) {
+            if (!SWRLBuiltins.isSupported(atom.getLocalName())) {
+                errors.add("不支持的内置函数: " + atom.getQualifiedName());
+            }
+            return new LinkedAtom(atom, LinkedAtom.Kind.BUILTIN, null, atom.getLocalName(), constants);
+        }
+
+        OWLEntity entity = resolveEntity(atom);
+        if (entity == null) {
+            boolean prefixDeclared = atom.getPrefix().isEmpty() ? defaultNamespace != null : prefixes.containsKey(atom.getPrefix());
+            errors.add((!prefixDeclared ? "未声明的前缀: "
+                : atom.getType() == RuleAtom.AtomType.CLASS ? "未定义的类: " : "未定义的属性: ") + atom.getQualifiedName());
+            return new LinkedAtom(atom, atom.getType() == RuleAtom.AtomType.CLASS
+                ? LinkedAtom.Kind.CLASS : LinkedAtom.Kind.OBJECT_PROPERTY, null, null, constants);
+        }
+
+        LinkedAtom.Kind kind = entity.isOWLClass() ? LinkedAtom.Kind.CLASS
+            : entity.isOWLObjectProperty() ? LinkedAtom.Kind.OBJECT_PROPERTY
+            : LinkedAtom.Kind.DATA_PROPERTY;
+        if (kind != LinkedAtom.Kind.CLASS) {
+            if (constants.get(0) instanceof OWLLiteral) {
+                errors.add("属性主体不能是字面量: " + atom);
+            }
+            if (kind == LinkedAtom.Kind.OBJECT_PROPERTY && constants.get(1) instanceof OWLLiteral) {
+                errors.add("对象属性的取值不能是字面量: " + atom);
+            }
+            if (kind == LinkedAtom.Kind.DATA_PROPERTY && constants.get(1) instanceof OWLNamedIndividual) {
+                errors.add("数据属性的取值不能是个体: " + atom);
+            }
+        }
+        return new LinkedAtom(atom, kind, entity, null, constants);
+    }
+
+    /**
+     * 通过符号表解析谓词实体，同一限定名在多条规则间只查询一次签名
+     */
+    private OWLEntity resolveEntity(RuleAtom atom) {
+        String key = atom.getType() + "|" + atom.getQualifiedName();
+        if (symbols.containsKey(key)) {
+            return symbols.get(key);
+        }
+
+        OWLEntity entity = null;
+        IRI iri = SWRLB_PREFIX.equals(atom.getPrefix()) ? null : resolve(atom.getPrefix(), atom.getLocalName());
+        if (iri != null) {
+            if (atom.getType() == RuleAtom.AtomType.CLASS) {
+                if (ontology.containsClassInSignature(iri, Imports.INCLUDED)) {
+                    entity = dataFactory.getOWLClass(iri);
+                }
+            } else if (ontology.containsObjectPropertyInSignature(iri, Imports.INCLUDED)) {
+                entity = dataFactory.getOWLObjectProperty(iri);
+            } else if (ontology.containsDataPropertyInSignature(iri, Imports.INCLUDED)) {
+                entity = dataFactory.getOWLDataProperty(iri);
+            }
+        }
+        symbols.put(key, entity);
+        return entity;
+    }
+
+    /**
+     * 数据类型名解析为IRI：完整IRI原样使用，xsd: 前缀未在本体中声明时按XML Schema命名空间解析
+     */
+    private IRI resolveDatatype(String datatype) {
+        if (datatype.contains("://")) {
+            return IRI.create(datatype);
+        }
+        int colon = datatype.indexOf(':');
+        String prefix = colon < 0 ? "" : datatype.substring(0, colon);
+        String localName = datatype.substring(colon + 1);
+        IRI iri = resolve(prefix, localName);
+        if (iri == null && XSD_PREFIX.equals(prefix)) {
+            iri = IRI.create(XSD_NAMESPACE + localName);
+        }
+        return iri;
+    }
+
+    private OWLObject linkConstant(RuleTerm term, List<String> errors) {
+        switch (term.getType()) {
+            case INDIVIDUAL: {
+                String name = term.getName();
+                int colon = name.indexOf(':');
+                IRI iri = resolve(colon < 0 ? "" : name.substring(0, colon), name.substring(colon + 1));
+                if (iri == null) {
+                    errors.add("未声明的前缀: " + name);
+                    return null;
+                }
+                return dataFactory.getOWLNamedIndividual(iri);
+            }
+            case LITERAL: {
+                if (term.getDatatype() == null) {
+                    return RuleValues.toLiteral(term.getValue(), dataFactory);
+                }
+                // 带类型的字面量按原词法形式和数据类型链接，与本体中的同类型字面量一致
+                IRI datatype = resolveDatatype(term.getDatatype());
+                if (datatype == null) {
+                    errors.add("未声明的前缀: " + term.getDatatype());
+                    return null;
+                }
+                return dataFactory.getOWLLiteral(term.getName(), dataFactory.getOWLDatatype(datatype));
+            }
+            default:
+                return null;
+        }
+    }
+}
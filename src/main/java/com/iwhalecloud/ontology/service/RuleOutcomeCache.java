@@ -0,0 +1,196 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.BusinessRuleDefinition;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.semanticweb.owlapi.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 业务规则检查结果的增量缓存
+ *
+ * 保存每个订单最近一次的逐条规则检查结果，以及规则检查属性（{@link BusinessRuleDefinition#getCheckAttributes()}）的当前值。
+ * 本体变更监听器按数据属性断言的增删维护属性值，并只让checkAttributes包含该属性的规则结果失效；
+ * 再次检查时只重新评估失效的规则，其余规则直接复用上次结果，检查代价与上次变更影响的规则数成正比。
+ * 属性值由变更流维护，首次检查时从当前事实读取一次；读取期间到达的变更优先于读取结果，不会被旧值覆盖。
+ * 个体的类断言被删除（订单被清理）时丢弃该个体的全部缓存。
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class RuleOutcomeCache {
+
+    private final OntologyService ontologyService;
+
+    @Value("${ontology.reasoning.incremental-rules:true}")
+    private boolean enabled = true;
+
+    /** 检查属性 -> checkAttributes包含该属性的规则ID */
+    private final Map<IRI, Set<String>> rulesByAttribute = new HashMap<>();
+    /** 个体 -> 检查属性值与规则结果 */
+    private final Map<IRI, IndividualOutcomes> individuals = new ConcurrentHashMap<>();
+
+    private final AtomicLong evaluatedRules = new AtomicLong();
+    private final AtomicLong reusedRules = new AtomicLong();
+    private final AtomicLong invalidatedRules = new AtomicLong();
+
+    private OWLOntologyChangeListener listener;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("业务规则结果增量缓存未启用");
+            return;
+        }
+        String namespace = ontologyService.getNamespace();
+        for (BusinessRuleDefinition rule : BusinessRuleDefinition.getDefaultBusinessRules()) {
+            if (rule.getCheckAttributes() == null) {
+                continue;
+            }
+            for (String attribute : rule.getCheckAttributes()) {
+                rulesByAttribute.computeIfAbsent(IRI.create(namespace + attribute), k -> new LinkedHashSet<>())
+                    .add(rule.getRuleId());
+            }
+        }
+
+        OWLOntology ontology = ontologyService.getOntology();
+        listener = changes -> {
+            Set<IRI> untyped = null;
+            for (OWLOntologyChange change : changes) {
+                if (change.getOntology() != ontology || !change.isAxiomChange()) {
+                    continue;
+                }
+                OWLAxiom axiom = change.getAxiom();
+                if (axiom instanceof OWLDataPropertyAssertionAxiom) {
+                    onDataProperty((OWLDataPropertyAssertionAxiom) axiom, change.isAddAxiom());
+                } else if (change.isRemoveAxiom() && axiom instanceof OWLClassAssertionAxiom
+                        && ((OWLClassAssertionAxiom) axiom).getIndividual().isNamed()) {
+                    if (untyped == null) {
+                        untyped = new HashSet<>();
+                    }
+                    untyped.add(((OWLClassAssertionAxiom) axiom).getIndividual().asOWLNamedIndividual().getIRI());
+                }
+            }
+            if (untyped != null) {
+                untyped.forEach(individuals::remove);
+            }
+        };
+        ontologyService.getManager().addOntologyChangeListener(listener);
+        log.info("业务规则结果增量缓存已启动: 跟踪{}个检查属性", rulesByAttribute.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (listener != null) {
+            ontologyService.getManager().removeOntologyChangeListener(listener);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 订单的规则结果视图：返回缓存的结果，缓存中没有或已失效时用检查属性当前值评估并缓存
+     * @param evaluator (检查属性值, 规则) -> 检查结果，结果只能依赖规则的checkAttributes
+     */
+    Function<BusinessRuleDefinition, Map<String, Object>> outcomes(
+            String orderId, BiFunction<Map<String, Object>, BusinessRuleDefinition, Map<String, Object>> evaluator) {
+        IRI iri = IRI.create(ontologyService.getNamespace() + orderId);
+        return rule -> {
+            IndividualOutcomes outcomes = individuals.computeIfAbsent(iri, k -> new IndividualOutcomes());
+            synchronized (outcomes) {
+                Map<String, Object> outcome = outcomes.outcomes.get(rule.getRuleId());
+                if (outcome != null) {
+                    reusedRules.incrementAndGet();
+                    return outcome;
+                }
+                if (!outcomes.loaded) {
+                    load(orderId, outcomes);
+                }
+                outcome = Collections.unmodifiableMap(new HashMap<>(
+                    evaluator.apply(Collections.unmodifiableMap(outcomes.values), rule)));
+                outcomes.outcomes.put(rule.getRuleId(), outcome);
+                evaluatedRules.incrementAndGet();
+                return outcome;
+            }
+        };
+    }
+
+    /**
+     * 缓存统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", enabled);
+        statistics.put("trackedAttributes", rulesByAttribute.size());
+        statistics.put("cachedIndividuals", individuals.size());
+        statistics.put("evaluatedRules", evaluatedRules.get());
+        statistics.put("reusedRules", reusedRules.get());
+        statistics.put("invalidatedRules", invalidatedRules.get());
+        return statistics;
+    }
+
+    /**
+     * 首次检查时读取检查属性值，已由变更维护过的属性保留变更后的值
+     */
+    private void load(String orderId, IndividualOutcomes outcomes) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> dataProps = (Map<String, Object>) ontologyService.getIndividualProperties(orderId)
+            .getOrDefault("dataProperties", Collections.emptyMap());
+        for (IRI attribute : rulesByAttribute.keySet()) {
+            String name = attribute.getFragment();
+            if (!outcomes.touched.contains(name) && dataProps.get(name) != null) {
+                outcomes.values.put(name, dataProps.get(name));
+            }
+        }
+        outcomes.loaded = true;
+    }
+
+    private void onDataProperty(OWLDataPropertyAssertionAxiom assertion, boolean added) {
+        if (!assertion.getSubject().isNamed() || assertion.getProperty().isAnonymous()) {
+            return;
+        }
+        IRI attribute = assertion.getProperty().asOWLDataProperty().getIRI();
+        Set<String> rules = rulesByAttribute.get(attribute);
+        if (rules == null) {
+            return;
+        }
+        IRI subject = assertion.getSubject().asOWLNamedIndividual().getIRI();
+        IndividualOutcomes outcomes = individuals.computeIfAbsent(subject, k -> new IndividualOutcomes());
+        synchronized (outcomes) {
+            String name = attribute.getFragment();
+            String value = assertion.getObject().getLiteral();
+            if (added) {
+                outcomes.values.put(name, value);
+            } else if (value.equals(outcomes.values.get(name))) {
+                outcomes.values.remove(name);
+            }
+            outcomes.touched.add(name);
+            for (String ruleId : rules) {
+                if (outcomes.outcomes.remove(ruleId) != null) {
+                    invalidatedRules.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static final class IndividualOutcomes {
+        /** 检查属性名 -> 当前值 */
+        final Map<String, Object> values = new HashMap<>();
+        /** 由变更维护过的检查属性，首次读取时不覆盖 */
+        final Set<String> touched = new HashSet<>();
+        /** 规则ID -> 最近一次检查结果 */
+        final Map<String, Map<String, Object>> outcomes = new HashMap<>();
+        boolean loaded;
+    }
+}
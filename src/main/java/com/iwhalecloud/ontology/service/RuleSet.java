@@ -0,0 +1,200 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.CompiledRule;
+import com.iwhalecloud.ontology.model.LinkedAtom;
+import com.iwhalecloud.ontology.model.LinkedRule;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObject;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * 不可变的版本化规则集
+ *
+ * 一次规则加载的全部结果：规则元数据、编译后的语法树和决策表、链接后的规则，以及按规则代码、流程步骤、结论谓词建立的索引。
+ * 构建完成后不再修改，由 {@link SWRLRuleEngine} 以一次原子引用替换发布，
+ * 读取方取得引用后看到的总是某一次加载的完整结果，按规则代码查找为哈希查找。
+ */
+final class RuleSet {
+
+    static final RuleSet EMPTY = new RuleSet(0, Collections.emptyList(), Collections.emptyMap(),
+        Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), iri -> false);
+
+    private final long version;
+    private final long loadedAt;
+    /** 加载顺序的规则元数据 */
+    private final List<Map<String, Object>> rules;
+    private final Map<String, Map<String, Object>> rulesByCode;
+    private final Map<String, CompiledRule> compiledRules;
+    private final Map<String, LinkedRule> linkedRules;
+    private final Map<String, DecisionTable> decisionTables;
+    /** 结论谓词 -> 结论含该谓词的已链接规则 */
+    private final Map<IRI, List<LinkedRule>> rulesByHead;
+    /** 流程步骤 -> 适用的规则代码（规则原子引用该步骤，或步骤以enforcesRule约束该规则） */
+    private final Map<IRI, List<String>> rulesByStep;
+
+    /**
+     * @param rules 加载顺序的规则元数据
+     * @param compiledRules 规则代码 -> 编译成功的SWRL语法树
+     * @param linkedRules 规则代码 -> 链接成功的SWRL规则
+     * @param decisionTables 规则代码 -> 编译成功的决策表
+     * @param enforcedSteps 规则代码 -> 以enforcesRule约束该规则的步骤
+     * @param isStep 判断IRI是否为流程步骤（ProcessStep的子类或同名个体）
+     */
+    RuleSet(long version,
+            List<Map<String, Object>> rules,
+            Map<String, CompiledRule> compiledRules,
+            Map<String, LinkedRule> linkedRules,
+            Map<String, DecisionTable> decisionTables,
+            Map<String, Set<IRI>> enforcedSteps,
+            Predicate<IRI> isStep) {
+        this.version = version;
+        this.loadedAt = System.currentTimeMillis();
+
+        List<Map<String, Object>> ruleList = new ArrayList<>();
+        Map<String, Map<String, Object>> byCode = new LinkedHashMap<>();
+        for (Map<String, Object> rule : rules) {
+            Map<String, Object> frozen = Collections.unmodifiableMap(new LinkedHashMap<>(rule));
+            ruleList.add(frozen);
+            String ruleCode = (String) rule.get("ruleCode");
+            if (ruleCode != null) {
+                byCode.putIfAbsent(ruleCode, frozen);
+            }
+        }
+        this.rules = Collections.unmodifiableList(ruleList);
+        this.rulesByCode = Collections.unmodifiableMap(byCode);
+        this.compiledRules = Collections.unmodifiableMap(new LinkedHashMap<>(compiledRules));
+        this.linkedRules = Collections.unmodifiableMap(new LinkedHashMap<>(linkedRules));
+        this.decisionTables = Collections.unmodifiableMap(new LinkedHashMap<>(decisionTables));
+
+        Map<IRI, List<LinkedRule>> byHead = new HashMap<>();
+        Map<IRI, Set<String>> byStep = new LinkedHashMap<>();
+        for (LinkedRule rule : linkedRules.values()) {
+            for (LinkedAtom atom : rule.getHead()) {
+                if (!atom.isBuiltin()) {
+                    List<LinkedRule> producers = byHead.computeIfAbsent(atom.getPredicate(), k -> new ArrayList<>());
+                    if (!producers.contains(rule)) {
+                        producers.add(rule);
+                    }
+                }
+            }
+            for (IRI step : referencedSteps(rule, isStep)) {
+                byStep.computeIfAbsent(step, k -> new LinkedHashSet<>()).add(rule.getRuleCode());
+            }
+        }
+        enforcedSteps.forEach((ruleCode, steps) -> {
+            if (byCode.containsKey(ruleCode)) {
+                steps.forEach(step -> byStep.computeIfAbsent(step, k -> new LinkedHashSet<>()).add(ruleCode));
+            }
+        });
+
+        Map<IRI, List<LinkedRule>> frozenHeads = new HashMap<>();
+        byHead.forEach((predicate, producers) -> frozenHeads.put(predicate, List.copyOf(producers)));
+        this.rulesByHead = Collections.unmodifiableMap(frozenHeads);
+        Map<IRI, List<String>> frozenSteps = new LinkedHashMap<>();
+        byStep.forEach((step, codes) -> frozenSteps.put(step, List.copyOf(codes)));
+        this.rulesByStep = Collections.unmodifiableMap(frozenSteps);
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    long getLoadedAt() {
+        return loadedAt;
+    }
+
+    boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    int size() {
+        return rules.size();
+    }
+
+    List<Map<String, Object>> getRules() {
+        return rules;
+    }
+
+    Map<String, Object> getRule(String ruleCode) {
+        return ruleCode == null ? null : rulesByCode.get(ruleCode);
+    }
+
+    CompiledRule getCompiledRule(String ruleCode) {
+        return ruleCode == null ? null : compiledRules.get(ruleCode);
+    }
+
+    LinkedRule getLinkedRule(String ruleCode) {
+        return ruleCode == null ? null : linkedRules.get(ruleCode);
+    }
+
+    DecisionTable getDecisionTable(String ruleCode) {
+        return ruleCode == null ? null : decisionTables.get(ruleCode);
+    }
+
+    Collection<LinkedRule> getLinkedRules() {
+        return linkedRules.values();
+    }
+
+    List<LinkedRule> getRulesByHead(IRI predicate) {
+        return rulesByHead.getOrDefault(predicate, Collections.emptyList());
+    }
+
+    List<String> getRulesByStep(IRI step) {
+        return rulesByStep.getOrDefault(step, Collections.emptyList());
+    }
+
+    Map<IRI, List<String>> getStepIndex() {
+        return rulesByStep;
+    }
+
+    /**
+     * 规则签名，规则代码和表达式都不变时相同，用于判断是否需要重建Rete网络
+     */
+    String getSignature() {
+        StringBuilder signature = new StringBuilder();
+        for (LinkedRule rule : linkedRules.values()) {
+            signature.append(rule.getRuleCode()).append('=').append(rule.getCompiled().getExpression()).append('\n');
+        }
+        return signature.toString();
+    }
+
+    Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("version", version);
+        statistics.put("loadedAt", loadedAt);
+        statistics.put("ruleCount", rules.size());
+        statistics.put("compiledCount", compiledRules.size());
+        statistics.put("linkedCount", linkedRules.size());
+        statistics.put("decisionTableCount", decisionTables.size());
+        statistics.put("headPredicateCount", rulesByHead.size());
+        statistics.put("stepCount", rulesByStep.size());
+        return statistics;
+    }
+
+    /**
+     * 规则原子中引用的流程步骤：步骤类原子，以及作为常量参数的步骤个体
+     */
+    private static Set<IRI> referencedSteps(LinkedRule rule, Predicate<IRI> isStep) {
+        Set<IRI> steps = new LinkedHashSet<>();
+        for (List<LinkedAtom> atoms : List.of(rule.getBody(), rule.getHead())) {
+            for (LinkedAtom atom : atoms) {
+                if (atom.isBuiltin()) {
+                    continue;
+                }
+                if (atom.isClassAtom() && isStep.test(atom.getPredicate())) {
+                    steps.add(atom.getPredicate());
+                }
+                for (int i = 0; i < atom.getArity(); i++) {
+                    OWLObject constant = atom.getArgument(i).isVariable() ? null : atom.getConstant(i);
+                    if (constant instanceof OWLNamedIndividual && isStep.test(((OWLNamedIndividual) constant).getIRI())) {
+                        steps.add(((OWLNamedIndividual) constant).getIRI());
+                    }
+                }
+            }
+        }
+        return steps;
+    }
+}
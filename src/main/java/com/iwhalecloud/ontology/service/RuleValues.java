@@ -0,0 +1,93 @@
+package com.iwhalecloud.ontology.service;
+
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObject;
+
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 规则取值工具
+ * 在OWL值（个体、字面量）与内置函数使用的Java值之间转换
+ */
+final class RuleValues {
+
+    /** 取值为整数的XSD派生类型（短名） */
+    private static final Set<String> INTEGER_TYPES = Set.of("integer", "int", "long", "short", "byte",
+        "nonNegativeInteger", "positiveInteger", "nonPositiveInteger", "negativeInteger",
+        "unsignedLong", "unsignedInt", "unsignedShort", "unsignedByte");
+
+    private RuleValues() {
+    }
+
+    /**
+     * 转换为Java值：字面量按数据类型转为Boolean/Long/Double/String，个体取短名
+     */
+    static Object toJava(OWLObject value) {
+        if (value instanceof OWLLiteral) {
+            OWLLiteral literal = (OWLLiteral) value;
+            String text = literal.getLiteral();
+            if (literal.isBoolean()) {
+                return Boolean.parseBoolean(text);
+            }
+            String datatype = literal.getDatatype().getIRI().getShortForm();
+            if (literal.isInteger() || INTEGER_TYPES.contains(datatype)) {
+                return parseNumber(text, false);
+            }
+            if (literal.isDouble() || literal.isFloat() || datatype.equals("decimal")) {
+                return parseNumber(text, true);
+            }
+            return text;
+        }
+        if (value instanceof OWLNamedIndividual) {
+            return ((OWLNamedIndividual) value).getIRI().getShortForm();
+        }
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * 将Java值转换为OWL字面量
+     */
+    static OWLLiteral toLiteral(Object value, OWLDataFactory dataFactory) {
+        if (value instanceof Boolean) {
+            return dataFactory.getOWLLiteral((Boolean) value);
+        }
+        if (value instanceof Long || value instanceof Integer) {
+            return dataFactory.getOWLLiteral(value.toString(), dataFactory.getIntegerOWLDatatype());
+        }
+        if (value instanceof Number) {
+            return dataFactory.getOWLLiteral(((Number) value).doubleValue());
+        }
+        return dataFactory.getOWLLiteral(String.valueOf(value));
+    }
+
+    /**
+     * 值相等比较：字面量按语义值比较（忽略语言标签与数值类型差异）
+     */
+    static boolean sameValue(OWLObject left, OWLObject right) {
+        if (Objects.equals(left, right)) {
+            return true;
+        }
+        if (!(left instanceof OWLLiteral) || !(right instanceof OWLLiteral)) {
+            return false;
+        }
+        return sameJavaValue(toJava(left), toJava(right));
+    }
+
+    static boolean sameJavaValue(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            return ((Number) left).doubleValue() == ((Number) right).doubleValue();
+        }
+        return Objects.equals(left, right);
+    }
+
+    private static Object parseNumber(String text, boolean decimal) {
+        try {
+            return decimal ? (Object) Double.valueOf(text) : (Object) Long.valueOf(text.trim());
+        } catch (NumberFormatException e) {
+            return text;
+        }
+    }
+}
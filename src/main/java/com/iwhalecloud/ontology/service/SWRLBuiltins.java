@@ -0,0 +1,161 @@
+package com.iwhalecloud.ontology.service;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * SWRL内置函数（swrlb:）
+ * 比较类函数作为过滤条件；计算类函数在首个参数未绑定时为其赋值
+ */
+final class SWRLBuiltins {
+
+    private static final Set<String> COMPARISONS = Set.of(
+        "equal", "notEqual", "lessThan", "lessThanOrEqual", "greaterThan", "greaterThanOrEqual",
+        "stringEqualIgnoreCase", "contains", "containsIgnoreCase", "startsWith", "endsWith", "matches"
+    );
+
+    private static final Set<String> COMPUTATIONS = Set.of(
+        "add", "subtract", "multiply", "divide", "mod", "stringConcat", "upperCase", "lowerCase", "stringLength"
+    );
+
+    private SWRLBuiltins() {
+    }
+
+    /**
+     * 全部支持的函数名
+     */
+    static Set<String> names() {
+        Set<String> names = new HashSet<>(COMPARISONS);
+        names.addAll(COMPUTATIONS);
+        return names;
+    }
+
+    static boolean isSupported(String name) {
+        return COMPARISONS.contains(name) || COMPUTATIONS.contains(name);
+    }
+
+    /**
+     * 是否为计算类函数（可为首个参数绑定结果）
+     */
+    static boolean isBinding(String name) {
+        return COMPUTATIONS.contains(name);
+    }
+
+    /**
+     * 计算结果，inputs为除首个参数外的全部参数
+     */
+    static Object compute(String name, Object[] inputs) {
+        switch (name) {
+            case "add":
+                return arithmetic(inputs, 0);
+            case "subtract":
+                return arithmetic(inputs, 1);
+            case "multiply":
+                return arithmetic(inputs, 2);
+            case "divide":
+                return arithmetic(inputs, 3);
+            case "mod":
+                return arithmetic(inputs, 4);
+            case "stringConcat": {
+                StringBuilder text = new StringBuilder();
+                for (Object input : inputs) {
+                    text.append(input);
+                }
+                return text.toString();
+            }
+            case "upperCase":
+                return String.valueOf(inputs[0]).toUpperCase();
+            case "lowerCase":
+                return String.valueOf(inputs[0]).toLowerCase();
+            case "stringLength":
+                return (long) String.valueOf(inputs[0]).length();
+            default:
+                throw new IllegalArgumentException("不支持的内置函数: swrlb:" + name);
+        }
+    }
+
+    /**
+     * 判断所有参数均已绑定的内置函数是否成立
+     */
+    static boolean test(String name, Object[] args) {
+        if (isBinding(name)) {
+            Object[] inputs = new Object[args.length - 1];
+            System.arraycopy(args, 1, inputs, 0, inputs.length);
+            Object expected = compute(name, inputs);
+            return expected != null && RuleValues.sameJavaValue(args[0], expected);
+        }
+        Object left = args[0];
+        Object right = args.length > 1 ? args[1] : null;
+        switch (name) {
+            case "equal":
+                return RuleValues.sameJavaValue(left, right);
+            case "notEqual":
+                return !RuleValues.sameJavaValue(left, right);
+            case "lessThan":
+                return compare(left, right) < 0;
+            case "lessThanOrEqual":
+                return compare(left, right) <= 0;
+            case "greaterThan":
+                return compare(left, right) > 0;
+            case "greaterThanOrEqual":
+                return compare(left, right) >= 0;
+            case "stringEqualIgnoreCase":
+                return String.valueOf(left).equalsIgnoreCase(String.valueOf(right));
+            case "contains":
+                return String.valueOf(left).contains(String.valueOf(right));
+            case "containsIgnoreCase":
+                return String.valueOf(left).toLowerCase().contains(String.valueOf(right).toLowerCase());
+            case "startsWith":
+                return String.valueOf(left).startsWith(String.valueOf(right));
+            case "endsWith":
+                return String.valueOf(left).endsWith(String.valueOf(right));
+            case "matches":
+                return String.valueOf(left).matches(String.valueOf(right));
+            default:
+                throw new IllegalArgumentException("不支持的内置函数: swrlb:" + name);
+        }
+    }
+
+    private static int compare(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            return Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+        }
+        return Objects.toString(left, "").compareTo(Objects.toString(right, ""));
+    }
+
+    private static Object arithmetic(Object[] inputs, int operator) {
+        boolean integral = true;
+        for (Object input : inputs) {
+            if (!(input instanceof Number)) {
+                return null;
+            }
+            integral &= input instanceof Long || input instanceof Integer;
+        }
+        if (integral) {
+            long result = ((Number) inputs[0]).longValue();
+            for (int i = 1; i < inputs.length; i++) {
+                long value = ((Number) inputs[i]).longValue();
+                if ((operator == 3 || operator == 4) && value == 0) {
+                    return null;
+                }
+                result = operator == 0 ? result + value
+                    : operator == 1 ? result - value
+                    : operator == 2 ? result * value
+                    : operator == 3 ? result / value
+                    : result % value;
+            }
+            return result;
+        }
+        double result = ((Number) inputs[0]).doubleValue();
+        for (int i = 1; i < inputs.length; i++) {
+            double value = ((Number) inputs[i]).doubleValue();
+            result = operator == 0 ? result + value
+                : operator == 1 ? result - value
+                : operator == 2 ? result * value
+                : operator == 3 ? result / value
+                : result % value;
+        }
+        return result;
+    }
+}
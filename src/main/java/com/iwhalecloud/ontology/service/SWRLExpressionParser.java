@@ -0,0 +1,324 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.CompiledRule;
+import com.iwhalecloud.ontology.model.RuleAtom;
+import com.iwhalecloud.ontology.model.RuleTerm;
+
+import java.util.*;
+
+/**
+ * SWRL表达式解析器
+ * 将logicExpression一次性解析为不可变的规则语法树（CompiledRule）
+ *
+ * 支持的语法：
+ * 1. 原子由 ^ 连接，前提与结论以 -> 分隔，末尾句号可选
+ * 2. 变量 ?x，个体常量 prefix:name，字面量 'a' / "a" / true / 1 / 1.5 / 1e3，
+ *    带类型的字面量 "1"^^xsd:integer / "1"^^&lt;完整IRI&gt;（按类型转换取值，链接时保留数据类型）
+ * 3. # 开头到行尾为注释
+ */
+public final class SWRLExpressionParser {
+
+    private static final String BUILTIN_PREFIX = "swrlb";
+
+    private final String source;
+    private int pos;
+    private final Map<String, Integer> slots = new LinkedHashMap<>();
+
+    private SWRLExpressionParser(String source) {
+        this.source = source;
+    }
+
+    /**
+     * 解析SWRL表达式，解析失败时返回 valid=false 的规则
+     */
+    public static CompiledRule parse(String ruleCode, String expression) {
+        if (expression == null || expression.isBlank()) {
+            return CompiledRule.invalid(ruleCode, expression, "规则表达式为空");
+        }
+        try {
+            return new SWRLExpressionParser(expression).parseRule(ruleCode);
+        } catch (IllegalArgumentException e) {
+            return CompiledRule.invalid(ruleCode, expression, e.getMessage());
+        }
+    }
+
+    private CompiledRule parseRule(String ruleCode) {
+        List<RuleAtom> body = parseAtoms();
+        if (!consume("->")) {
+            throw error("规则格式错误: 应包含 '->' 分隔符");
+        }
+        List<RuleAtom> head = parseAtoms();
+        skipWhitespaceAndComments();
+        consume(".");
+        skipWhitespaceAndComments();
+        if (pos < source.length()) {
+            throw error("无法识别的内容");
+        }
+        if (head.isEmpty()) {
+            throw error("规则结论为空");
+        }
+        checkSafety(body, head);
+        return new CompiledRule(ruleCode, source, List.copyOf(body), List.copyOf(head),
+            List.copyOf(slots.keySet()), true, null);
+    }
+
+    /**
+     * 结论中的变量必须在前提中出现
+     */
+    private void checkSafety(List<RuleAtom> body, List<RuleAtom> head) {
+        Set<String> bodyVariables = new HashSet<>();
+        body.forEach(atom -> atom.getArguments().stream()
+            .filter(RuleTerm::isVariable)
+            .forEach(term -> bodyVariables.add(term.getName())));
+        for (RuleAtom atom : head) {
+            for (RuleTerm term : atom.getArguments()) {
+                if (term.isVariable() && !bodyVariables.contains(term.getName())) {
+                    throw new IllegalArgumentException("结论变量 ?" + term.getName() + " 未在前提中出现");
+                }
+            }
+        }
+    }
+
+    private List<RuleAtom> parseAtoms() {
+        List<RuleAtom> atoms = new ArrayList<>();
+        skipWhitespaceAndComments();
+        if (peek("->") || pos >= source.length()) {
+            return atoms;
+        }
+        atoms.add(parseAtom());
+        while (consume("^")) {
+            atoms.add(parseAtom());
+        }
+        return atoms;
+    }
+
+    private RuleAtom parseAtom() {
+        skipWhitespaceAndComments();
+        int start = pos;
+        String name = readName();
+        if (name.isEmpty()) {
+            throw error("缺少谓词名");
+        }
+        if (!consume("(")) {
+            throw error("谓词 " + name + " 后缺少 '('");
+        }
+        List<RuleTerm> arguments = new ArrayList<>();
+        if (!consume(")")) {
+            do {
+                arguments.add(parseTerm());
+            } while (consume(","));
+            if (!consume(")")) {
+                throw error("谓词 " + name + " 缺少 ')'");
+            }
+        }
+
+        int colon = name.indexOf(':');
+        String prefix = colon < 0 ? "" : name.substring(0, colon);
+        String localName = colon < 0 ? name : name.substring(colon + 1);
+
+        RuleAtom.AtomType type;
+        if (BUILTIN_PREFIX.equals(prefix)) {
+            type = RuleAtom.AtomType.BUILTIN;
+        } else if (arguments.size() == 1) {
+            type = RuleAtom.AtomType.CLASS;
+        } else if (arguments.size() == 2) {
+            type = RuleAtom.AtomType.PROPERTY;
+        } else {
+            pos = start;
+            throw error("谓词 " + name + " 参数个数错误: " + arguments.size());
+        }
+        return new RuleAtom(type, prefix, localName, List.copyOf(arguments));
+    }
+
+    private RuleTerm parseTerm() {
+        skipWhitespaceAndComments();
+        if (pos >= source.length()) {
+            throw error("缺少参数");
+        }
+        char c = source.charAt(pos);
+        if (c == '?') {
+            pos++;
+            String name = readName();
+            if (name.isEmpty()) {
+                throw error("变量名为空");
+            }
+            Integer slot = slots.computeIfAbsent(name, key -> slots.size());
+            return RuleTerm.variable(name, slot);
+        }
+        if (c == '\'' || c == '"') {
+            String text = readQuoted(c);
+            String datatype = readDatatype();
+            return datatype == null ? RuleTerm.literal(text)
+                : RuleTerm.typedLiteral(typedValue(text, datatype), text, datatype);
+        }
+        if (c == '-' || c == '+' || Character.isDigit(c)) {
+            return RuleTerm.literal(readNumber());
+        }
+        String name = readName();
+        if (name.isEmpty()) {
+            throw error("无法识别的参数");
+        }
+        if ("true".equals(name) || "false".equals(name)) {
+            return RuleTerm.literal(Boolean.valueOf(name));
+        }
+        return RuleTerm.individual(name);
+    }
+
+    /**
+     * 读取名称（可带前缀），如 base:custName、Customer、custId
+     */
+    private String readName() {
+        int start = pos;
+        while (pos < source.length()) {
+            char c = source.charAt(pos);
+            if (Character.isLetterOrDigit(c) || c == '_' || c == '-' && !peek("->")) {
+                pos++;
+            } else if (c == ':' && pos > start && pos + 1 < source.length()
+                    && Character.isLetterOrDigit(source.charAt(pos + 1))) {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        return source.substring(start, pos);
+    }
+
+    private String readQuoted(char quote) {
+        StringBuilder text = new StringBuilder();
+        pos++;
+        while (pos < source.length()) {
+            char c = source.charAt(pos++);
+            if (c == '\\' && pos < source.length()) {
+                text.append(source.charAt(pos++));
+            } else if (c == quote) {
+                return text.toString();
+            } else {
+                text.append(c);
+            }
+        }
+        throw error("字符串字面量未闭合");
+    }
+
+    /**
+     * 读取类型标注 ^^prefix:name 或 ^^&lt;IRI&gt;，没有时返回null
+     */
+    private String readDatatype() {
+        if (!source.startsWith("^^", pos)) {
+            return null;
+        }
+        pos += 2;
+        if (source.startsWith("<", pos)) {
+            int end = source.indexOf('>', pos);
+            if (end < 0) {
+                throw error("数据类型IRI缺少 '>'");
+            }
+            String iri = source.substring(pos + 1, end);
+            pos = end + 1;
+            return iri;
+        }
+        String datatype = readName();
+        if (datatype.isEmpty()) {
+            throw error("缺少数据类型");
+        }
+        return datatype;
+    }
+
+    /**
+     * 按XSD数据类型转换字面量取值：整数类型为Long，decimal/double/float为Double，boolean为Boolean，其他保持字符串
+     */
+    private Object typedValue(String text, String datatype) {
+        String localName = datatype.substring(Math.max(datatype.lastIndexOf(':'), datatype.lastIndexOf('#')) + 1);
+        try {
+            switch (localName) {
+                case "integer": case "int": case "long": case "short": case "byte":
+                case "nonNegativeInteger": case "positiveInteger": case "nonPositiveInteger": case "negativeInteger":
+                case "unsignedLong": case "unsignedInt": case "unsignedShort": case "unsignedByte":
+                    return Long.valueOf(text.trim());
+                case "decimal": case "double": case "float":
+                    return Double.valueOf(text.trim());
+                case "boolean":
+                    if ("true".equals(text) || "1".equals(text)) {
+                        return Boolean.TRUE;
+                    }
+                    if ("false".equals(text) || "0".equals(text)) {
+                        return Boolean.FALSE;
+                    }
+                    throw new NumberFormatException(text);
+                default:
+                    return text;
+            }
+        } catch (NumberFormatException e) {
+            throw error("字面量 \"" + text + "\" 不是合法的 " + datatype);
+        }
+    }
+
+    private Object readNumber() {
+        int start = pos;
+        if (source.charAt(pos) == '-' || source.charAt(pos) == '+') {
+            pos++;
+        }
+        boolean decimal = false;
+        boolean exponent = false;
+        while (pos < source.length()) {
+            char c = source.charAt(pos);
+            if (Character.isDigit(c)) {
+                pos++;
+            } else if (c == '.' && !decimal && !exponent && pos + 1 < source.length()
+                    && Character.isDigit(source.charAt(pos + 1))) {
+                decimal = true;
+                pos++;
+            } else if ((c == 'e' || c == 'E') && !exponent && pos > start && Character.isDigit(source.charAt(pos - 1))
+                    && exponentDigitsAt(pos + 1)) {
+                // 科学计数法 1e3 / 1.5E-2
+                exponent = true;
+                decimal = true;
+                pos += source.charAt(pos + 1) == '-' || source.charAt(pos + 1) == '+' ? 2 : 1;
+            } else {
+                break;
+            }
+        }
+        String text = source.substring(start, pos);
+        if (text.length() == 1 && !Character.isDigit(text.charAt(0))) {
+            throw error("数字格式错误");
+        }
+        return decimal ? (Object) Double.valueOf(text) : (Object) Long.valueOf(text);
+    }
+
+    private boolean exponentDigitsAt(int index) {
+        if (index < source.length() && (source.charAt(index) == '-' || source.charAt(index) == '+')) {
+            index++;
+        }
+        return index < source.length() && Character.isDigit(source.charAt(index));
+    }
+
+    private boolean consume(String token) {
+        skipWhitespaceAndComments();
+        if (source.startsWith(token, pos)) {
+            pos += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean peek(String token) {
+        return source.startsWith(token, pos);
+    }
+
+    private void skipWhitespaceAndComments() {
+        while (pos < source.length()) {
+            char c = source.charAt(pos);
+            if (Character.isWhitespace(c)) {
+                pos++;
+            } else if (c == '#') {
+                int end = source.indexOf('\n', pos);
+                pos = end < 0 ? source.length() : end + 1;
+            } else {
+                break;
+            }
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " (位置 " + pos + ")");
+    }
+}
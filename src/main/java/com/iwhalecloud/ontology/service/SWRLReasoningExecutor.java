@@ -1,22 +1,23 @@
 package com.iwhalecloud.ontology.service;
 
+import com.iwhalecloud.ontology.model.CompiledRule;
+import com.iwhalecloud.ontology.model.Fact;
+import com.iwhalecloud.ontology.model.LinkedAtom;
+import com.iwhalecloud.ontology.model.LinkedRule;
+import com.iwhalecloud.ontology.model.RuleTerm;
 import lombok.extern.slf4j.Slf4j;
 import org.semanticweb.owlapi.model.*;
 import org.semanticweb.owlapi.apibinding.OWLManager;
-import org.semanticweb.owlapi.reasoner.OWLReasoner;
-import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
-import org.semanticweb.owlapi.reasoner.structural.StructuralReasonerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.regex.*;
 import java.util.stream.Collectors;
 
 /**
  * SWRL推理执行器 - 解析并执行logicExpression中的SWRL规则
  * 
  * 功能：
- * 1. 解析SWRL规则表达式
+ * 1. 执行加载时编译并链接好的SWRL规则
  * 2. 验证规则的有效性
  * 3. 在OWL本体上执行推理
  * 4. 收集推理结果
@@ -27,16 +28,23 @@ public class SWRLReasoningExecutor {
 
     private OWLOntologyManager manager;
     private OWLDataFactory dataFactory;
-    private OWLReasonerFactory reasonerFactory;
+    private final JoinPlanner joinPlanner;
+    private final VersionedFactStore factStore;
+    private final JenaFactStore jenaFactStore;
+    private final SparqlRuleMatcher sparqlRuleMatcher;
 
-    public SWRLReasoningExecutor() {
+    public SWRLReasoningExecutor(JoinPlanner joinPlanner, VersionedFactStore factStore, JenaFactStore jenaFactStore,
+                                 SparqlRuleMatcher sparqlRuleMatcher) {
         this.manager = OWLManager.createOWLOntologyManager();
         this.dataFactory = manager.getOWLDataFactory();
-        this.reasonerFactory = new StructuralReasonerFactory();
+        this.joinPlanner = joinPlanner;
+        this.factStore = factStore;
+        this.jenaFactStore = jenaFactStore;
+        this.sparqlRuleMatcher = sparqlRuleMatcher;
     }
 
     /**
-     * 执行SWRL规则表达式
+     * 执行SWRL规则表达式（临时表达式，每次调用时解析并链接）
      * @param ontology OWL本体
      * @param swrlExpression SWRL规则表达式（从logicExpression提取）
      * @param context 推理上下文（包含输入变量和数据）
@@ -46,34 +54,52 @@ public class SWRLReasoningExecutor {
             OWLOntology ontology,
             String swrlExpression,
             Map<String, Object> context) {
+        CompiledRule compiled = SWRLExpressionParser.parse(null, swrlExpression);
+        return executeLinkedRule(ontology, new RuleLinker(ontology, null).link(compiled), context);
+    }
+
+    /**
+     * 执行已链接的SWRL规则
+     * @param ontology OWL本体
+     * @param rule 加载时链接好的规则（谓词已解析为实体句柄）
+     * @param context 推理上下文（包含输入变量和数据）
+     * @return 推理结果
+     */
+    public Map<String, Object> executeLinkedRule(
+            OWLOntology ontology,
+            LinkedRule rule,
+            Map<String, Object> context) {
         
         Map<String, Object> result = new HashMap<>();
         
         try {
             log.info("开始执行SWRL表达式推理...");
             
-            // 1. 解析SWRL表达式
-            SWRLRuleInfo ruleInfo = parseSWRLExpression(swrlExpression);
-            result.put("ruleInfo", ruleInfo);
+            result.put("ruleInfo", rule.getCompiled());
             
-            if (!ruleInfo.isValid()) {
+            if (!rule.isLinked()) {
                 result.put("status", "error");
-                result.put("message", "SWRL规则表达式无效: " + ruleInfo.getErrorMessage());
+                result.put("message", "SWRL规则无法链接: " + String.join("; ", rule.getErrors()));
                 return result;
             }
             
-            log.debug("规则解析成功 - 前提条件: {}", ruleInfo.getAntecedent());
-            log.debug("规则解析成功 - 结论: {}", ruleInfo.getConsequent());
+            log.debug("前提条件: {}", rule.getBody());
+            log.debug("结论: {}", rule.getHead());
             
-            // 2. 验证规则涉及的个体和属性
-            Map<String, Object> validationResult = validateRuleElements(ontology, ruleInfo);
+            // 1. 汇总规则涉及的类和属性（链接时已解析）
+            Map<String, Object> validationResult = validateRuleElements(rule);
             result.put("validation", validationResult);
             
-            // 3. 执行推理
-            Map<String, Object> reasoningResult = performReasoning(ontology, ruleInfo, context);
+            // 2. 执行推理
+            Map<String, Object> reasoningResult = performReasoning(ontology, rule, context);
             result.put("reasoning", reasoningResult);
+            if ("error".equals(reasoningResult.get("status"))) {
+                result.put("status", "error");
+                result.put("message", reasoningResult.get("message"));
+                return result;
+            }
             
-            // 4. 收集推理结果
+            // 3. 收集推理结果
             List<Map<String, Object>> inferences = (List<Map<String, Object>>) reasoningResult.get("inferences");
             result.put("status", "success");
             result.put("message", String.format("推理完成: 生成 %d 个推论", inferences.size()));
@@ -91,204 +117,78 @@ public class SWRLReasoningExecutor {
     }
 
     /**
-     * 解析SWRL规则表达式
-     * SWRL 规则格式: antecedent(前提条件) -> consequent(结论)
-     * 例: Customer(?c) ^ hasCustStatus(?c, ?status) ^ swrlb:stringEqualIgnoreCase(?status, 'FRAUD') -> BlockTransfer(?c)
-     */
-    private SWRLRuleInfo parseSWRLExpression(String expression) {
-        SWRLRuleInfo info = new SWRLRuleInfo();
-        
-        try {
-            // 清理表达式（移除注释和多余空格）
-            String cleanExpression = expression.replaceAll("#.*?\\n", "\n")  // 移除注释
-                                               .replaceAll("\\s+", " ")        // 标准化空格
-                                               .trim();
-            
-            log.debug("清理后的表达式: {}", cleanExpression);
-            
-            // 分离前提和结论
-            String[] parts = cleanExpression.split("\\s*->\\s*");
-            
-            if (parts.length != 2) {
-                info.setValid(false);
-                info.setErrorMessage("规则格式错误: 应包含 '->' 分隔符");
-                return info;
-            }
-            
-            String antecedent = parts[0].trim();
-            String consequent = parts[1].trim();
-            
-            // 移除末尾的句号
-            consequent = consequent.replaceAll("\\.\\s*$", "");
-            
-            // 解析前提条件和结论
-            List<String> antecedentAtoms = parseAtoms(antecedent);
-            List<String> consequentAtoms = parseAtoms(consequent);
-            
-            info.setValid(true);
-            info.setAntecedent(antecedent);
-            info.setAntecedentAtoms(antecedentAtoms);
-            info.setConsequent(consequent);
-            info.setConsequentAtoms(consequentAtoms);
-            
-            // 提取变量
-            Set<String> variables = extractVariables(antecedent + " " + consequent);
-            info.setVariables(variables);
-            
-            log.debug("解析的变量: {}", variables);
-            
-        } catch (Exception e) {
-            info.setValid(false);
-            info.setErrorMessage("解析异常: " + e.getMessage());
-            log.warn("SWRL表达式解析异常", e);
-        }
-        
-        return info;
-    }
-
-    /**
-     * 将SWRL表达式分解为原子公式
-     * 原子公式由 ^ (AND) 连接
+     * 汇总规则涉及的元素，实体句柄在链接时已解析，此处不再查询本体签名
      */
-    private List<String> parseAtoms(String expression) {
-        return Arrays.stream(expression.split("\\s*\\^\\s*"))
-                    .map(String::trim)
-                    .filter(s -> !s.isEmpty())
-                    .collect(Collectors.toList());
-    }
-
-    /**
-     * 从SWRL表达式中提取变量
-     * 变量以 ? 开头
-     */
-    private Set<String> extractVariables(String expression) {
-        Set<String> variables = new HashSet<>();
-        Pattern pattern = Pattern.compile("\\?(\\w+)");
-        Matcher matcher = pattern.matcher(expression);
-        
-        while (matcher.find()) {
-            variables.add("?" + matcher.group(1));
-        }
-        
-        return variables;
-    }
-
-    /**
-     * 验证规则涉及的元素在本体中是否存在
-     */
-    private Map<String, Object> validateRuleElements(OWLOntology ontology, SWRLRuleInfo ruleInfo) {
+    private Map<String, Object> validateRuleElements(LinkedRule rule) {
         Map<String, Object> result = new HashMap<>();
-        List<String> missingElements = new ArrayList<>();
-        List<String> foundElements = new ArrayList<>();
+        Set<String> foundElements = new LinkedHashSet<>();
         
-        try {
-            String namespace = getOntologyNamespace(ontology);
-            
-            // 提取规则中提到的类、属性和个体
-            Set<String> elements = extractElements(ruleInfo.getAntecedent() + " " + ruleInfo.getConsequent());
-            
-            for (String element : elements) {
-                if (element.startsWith("?") || element.contains("swrlb:")) {
-                    continue; // 跳过变量和内置函数
-                }
-                
-                // 检查类
-                IRI classIRI = IRI.create(namespace + element);
-                OWLClass owlClass = manager.getOWLDataFactory().getOWLClass(classIRI);
-                
-                if (ontology.containsClassInSignature(classIRI)) {
-                    foundElements.add(element + " (class)");
-                } else {
-                    // 检查属性
-                    OWLObjectProperty objProp = manager.getOWLDataFactory().getOWLObjectProperty(classIRI);
-                    if (ontology.containsObjectPropertyInSignature(classIRI)) {
-                        foundElements.add(element + " (object property)");
-                    } else {
-                        missingElements.add(element);
-                    }
+        for (List<LinkedAtom> atoms : List.of(rule.getBody(), rule.getHead())) {
+            for (LinkedAtom atom : atoms) {
+                switch (atom.getKind()) {
+                    case CLASS:
+                        foundElements.add(atom.getAtom().getQualifiedName() + " (class)");
+                        break;
+                    case OBJECT_PROPERTY:
+                        foundElements.add(atom.getAtom().getQualifiedName() + " (object property)");
+                        break;
+                    case DATA_PROPERTY:
+                        foundElements.add(atom.getAtom().getQualifiedName() + " (data property)");
+                        break;
+                    default:
+                        foundElements.add(atom.getAtom().getQualifiedName() + " (builtin)");
                 }
             }
-            
-            result.put("status", missingElements.isEmpty() ? "valid" : "partial");
-            result.put("foundElements", foundElements);
-            result.put("missingElements", missingElements);
-            
-        } catch (Exception e) {
-            log.warn("验证规则元素时出错", e);
-            result.put("status", "warning");
-            result.put("message", "验证过程中出错: " + e.getMessage());
         }
         
+        result.put("status", "valid");
+        result.put("foundElements", new ArrayList<>(foundElements));
+        result.put("missingElements", Collections.emptyList());
         return result;
     }
 
-    /**
-     * 从SWRL表达式中提取元素名称
-     */
-    private Set<String> extractElements(String expression) {
-        Set<String> elements = new HashSet<>();
-        
-        // 提取类名和属性名（大写开头或驼峰命名）
-        Pattern pattern = Pattern.compile("\\b([A-Z][a-zA-Z0-9]*)\\b");
-        Matcher matcher = pattern.matcher(expression);
-        
-        while (matcher.find()) {
-            String element = matcher.group(1);
-            if (!element.equals("AND") && !element.equals("OR")) {
-                elements.add(element);
-            }
-        }
-        
-        return elements;
-    }
-
     /**
      * 执行推理
      */
     private Map<String, Object> performReasoning(
             OWLOntology ontology,
-            SWRLRuleInfo ruleInfo,
+            LinkedRule rule,
             Map<String, Object> context) {
         
         Map<String, Object> result = new HashMap<>();
         List<Map<String, Object>> inferences = new ArrayList<>();
         
         try {
-            // 创建推理器
-            OWLReasoner reasoner = reasonerFactory.createReasoner(ontology);
-            
-            log.info("推理器创建成功: {}", reasoner.getClass().getSimpleName());
-            
-            // 根据前提条件查询匹配的个体
-            List<Map<String, Object>> matchingInstances = queryAntecedent(
-                ontology, reasoner, ruleInfo, context
-            );
-            
-            log.info("找到 {} 个匹配前提条件的实例", matchingInstances.size());
-            
-            // 对每个匹配实例应用结论
-            for (Map<String, Object> instance : matchingInstances) {
-                Map<String, Object> inference = new HashMap<>();
-                inference.put("matchedInstance", instance);
-                
-                // 应用结论规则
-                Map<String, Object> conclusion = applyConsequent(
-                    ontology, ruleInfo, instance, context
-                );
-                inference.put("consequence", conclusion);
+            if (context != null && !context.isEmpty()) {
+                // 从上下文中获取已知的实例
+                Map<String, Object> match = new HashMap<>(context);
+                match.put("ruleName", rule.getRuleCode());
                 
+                Map<String, Object> inference = new HashMap<>();
+                inference.put("matchedInstance", match);
+                inference.put("consequence", applyConsequent(rule, null));
                 inferences.add(inference);
-                log.debug("生成推论: {}", inference);
+            } else {
+                // 根据前提条件查询匹配的变量绑定
+                List<OWLObject[]> matches = queryAntecedent(ontology, rule);
+                log.info("找到 {} 个匹配前提条件的实例", matches.size());
+                
+                // 对每个匹配实例应用结论
+                for (OWLObject[] bindings : matches) {
+                    Map<String, Object> inference = new HashMap<>();
+                    inference.put("matchedInstance", describeBindings(rule, bindings));
+                    inference.put("consequence", applyConsequent(rule, bindings));
+                    inferences.add(inference);
+                    log.debug("生成推论: {}", inference);
+                }
             }
             
             result.put("status", "success");
             result.put("inferences", inferences);
             result.put("totalInferences", inferences.size());
             
-            reasoner.dispose();
-            
         } catch (Exception e) {
-            log.error("推理执行异常", e);
+            log.error("推理执行异常: {}", rule.getRuleCode(), e);
             result.put("status", "error");
             result.put("message", "推理异常: " + e.getMessage());
             result.put("inferences", inferences);
@@ -298,130 +198,75 @@ public class SWRLReasoningExecutor {
     }
 
     /**
-     * 查询满足前提条件的实例
+     * 查询满足前提条件的变量绑定
+     * 按基于代价的连接计划，从选择性最高的类/属性原子出发，在当前事实快照的索引上生成候选，只沿连接变量扩展；
+     * 整条规则的匹配读取同一个不可变快照，不受并发写入影响；本体的ABox保存在TDB2数据集时，每个原子在数据集的读事务内查找。
+     * 启用SPARQL规则匹配时，整条前提作为一个SPARQL查询在数据集的一个读事务内执行。
+     * 查询或连接过程中的异常向上抛出，由调用方返回错误结果，不当作没有匹配
      */
-    private List<Map<String, Object>> queryAntecedent(
-            OWLOntology ontology,
-            OWLReasoner reasoner,
-            SWRLRuleInfo ruleInfo,
-            Map<String, Object> context) {
-        
-        List<Map<String, Object>> results = new ArrayList<>();
-        
-        try {
-            // 这是一个简化的实现
-            // 真实场景中需要使用 SPARQL 或复杂的 OWL 查询
-            
-            // 从上下文中获取已知的实例
-            if (context != null && !context.isEmpty()) {
-                Map<String, Object> match = new HashMap<>(context);
-                match.put("ruleName", ruleInfo.getRuleName());
-                results.add(match);
-            }
-            
-            // 如果没有提供上下文，则遍历本体中的所有个体
-            if (results.isEmpty()) {
-                Set<OWLNamedIndividual> individuals = ontology.getIndividualsInSignature();
-                
-                for (OWLNamedIndividual individual : individuals) {
-                    Map<String, Object> instanceData = new HashMap<>();
-                    instanceData.put("individual", individual.getIRI().getShortForm());
-                    instanceData.put("iri", individual.getIRI().toString());
-                    
-                    // 收集个体的属性
-                    collectIndividualProperties(ontology, individual, instanceData);
-                    
-                    results.add(instanceData);
-                }
+    private List<OWLObject[]> queryAntecedent(OWLOntology ontology, LinkedRule rule) {
+        if (sparqlRuleMatcher.isActive(ontology)) {
+            List<OWLObject[]> matches = sparqlRuleMatcher.match(rule);
+            if (matches != null) {
+                return matches;
             }
-            
-        } catch (Exception e) {
-            log.warn("查询前提条件异常", e);
         }
-        
-        return results;
+        int[] order = joinPlanner.plan(ontology, rule);
+        FactSource source = jenaFactStore.isEnabled() && jenaFactStore.isAttached(ontology)
+            ? jenaFactStore.source() : factStore.snapshot(ontology);
+        return AntecedentMatcher.match(rule, order, source, dataFactory);
     }
 
     /**
-     * 收集个体的属性信息
+     * 将变量绑定转换为 变量名 -> 值 的展示形式
      */
-    private void collectIndividualProperties(
-            OWLOntology ontology,
-            OWLNamedIndividual individual,
-            Map<String, Object> data) {
-        
-        try {
-            // 获取个体的类型
-            Set<OWLClass> types = individual.getTypes(ontology);
-            data.put("types", types.stream()
-                    .map(t -> t.getIRI().getShortForm())
-                    .collect(Collectors.toList()));
-            
-            // 获取对象属性值
-            Set<OWLObjectProperty> objProperties = individual.getObjectPropertiesInSignature();
-            Map<String, List<String>> objPropValues = new HashMap<>();
-            
-            for (OWLObjectProperty prop : objProperties) {
-                Set<OWLIndividual> values = individual.getObjectPropertyValues(prop, ontology);
-                objPropValues.put(prop.getIRI().getShortForm(),
-                    values.stream()
-                        .map(v -> v.asOWLNamedIndividual()
-                            .map(ind -> ind.getIRI().getShortForm())
-                            .orElse(v.toString()))
-                        .collect(Collectors.toList()));
-            }
-            
-            data.put("objectProperties", objPropValues);
-            
-            // 获取数据属性值
-            Set<OWLDataProperty> dataProperties = individual.getDataPropertiesInSignature();
-            Map<String, List<String>> dataPropValues = new HashMap<>();
-            
-            for (OWLDataProperty prop : dataProperties) {
-                Set<OWLLiteral> values = individual.getDataPropertyValues(prop, ontology);
-                dataPropValues.put(prop.getIRI().getShortForm(),
-                    values.stream()
-                        .map(OWLLiteral::getLiteral)
-                        .collect(Collectors.toList()));
-            }
-            
-            data.put("dataProperties", dataPropValues);
-            
-        } catch (Exception e) {
-            log.debug("收集个体属性异常", e);
+    private Map<String, Object> describeBindings(LinkedRule rule, OWLObject[] bindings) {
+        Map<String, Object> instance = new LinkedHashMap<>();
+        List<String> variables = rule.getCompiled().getVariables();
+        for (int i = 0; i < variables.size(); i++) {
+            instance.put(variables.get(i), bindings[i] == null ? null : RuleValues.toJava(bindings[i]));
         }
+        instance.put("ruleName", rule.getRuleCode());
+        return instance;
     }
 
     /**
      * 应用结论规则
+     * @param bindings 前提匹配得到的变量绑定，为null时只给出结论模式
      */
     private Map<String, Object> applyConsequent(
-            OWLOntology ontology,
-            SWRLRuleInfo ruleInfo,
-            Map<String, Object> matchedInstance,
-            Map<String, Object> context) {
+            LinkedRule rule,
+            OWLObject[] bindings) {
         
         Map<String, Object> result = new HashMap<>();
         
         try {
-            // 解析结论表达式
-            List<String> consequentAtoms = ruleInfo.getConsequentAtoms();
             List<Map<String, Object>> conclusions = new ArrayList<>();
             
-            for (String atom : consequentAtoms) {
+            for (LinkedAtom atom : rule.getHead()) {
                 Map<String, Object> conclusion = new HashMap<>();
-                
-                // 提取谓词和参数
-                String predicate = atom.split("\\(")[0].trim();
-                String args = atom.replaceAll("^[^(]*\\(|\\)$", "").trim();
-                
-                conclusion.put("predicate", predicate);
-                conclusion.put("arguments", args);
+                conclusion.put("predicate", atom.getAtom().getQualifiedName());
+                conclusion.put("predicateIRI", atom.getPredicate().toString());
+                conclusion.put("arguments", atom.getAtom().getArguments().stream()
+                    .map(RuleTerm::toString)
+                    .collect(Collectors.joining(", ")));
                 
                 // 如果是简单的值赋值，提取具体值
-                if (args.contains("\"")) {
-                    String value = args.replaceAll(".*\"([^\"]*)\".*", "$1");
-                    conclusion.put("value", value);
+                atom.getAtom().getArguments().stream()
+                    .filter(term -> term.getType() == RuleTerm.TermType.LITERAL)
+                    .findFirst()
+                    .ifPresent(term -> conclusion.put("value", term.getValue()));
+                
+                // 代入变量绑定，得到具体结论事实
+                if (bindings != null) {
+                    OWLObject subject = AntecedentMatcher.valueOf(atom, 0, bindings);
+                    if (subject instanceof OWLNamedIndividual) {
+                        Fact fact = atom.isClassAtom()
+                            ? Fact.classFact(atom.getPredicate(), (OWLNamedIndividual) subject)
+                            : Fact.propertyFact(atom.getPredicate(), (OWLNamedIndividual) subject,
+                                AntecedentMatcher.valueOf(atom, 1, bindings));
+                        conclusion.put("fact", fact.toString());
+                    }
                 }
                 
                 conclusions.add(conclusion);
@@ -440,58 +285,4 @@ public class SWRLReasoningExecutor {
         
         return result;
     }
-
-    /**
-     * 获取本体命名空间
-     */
-    private String getOntologyNamespace(OWLOntology ontology) {
-        Optional<IRI> ontologyIRI = ontology.getOntologyID().getOntologyIRI();
-        if (ontologyIRI.isPresent()) {
-            String iri = ontologyIRI.get().toString();
-            if (!iri.endsWith("#") && !iri.endsWith("/")) {
-                iri += "#";
-            }
-            return iri;
-        }
-        return "https://iwhalecloud.com/ontology/transfer#";
-    }
-
-    /**
-     * SWRL规则信息容器
-     */
-    public static class SWRLRuleInfo {
-        private boolean valid;
-        private String errorMessage;
-        private String ruleName;
-        private String antecedent;
-        private String consequent;
-        private List<String> antecedentAtoms;
-        private List<String> consequentAtoms;
-        private Set<String> variables;
-
-        // Getters and Setters
-        public boolean isValid() { return valid; }
-        public void setValid(boolean valid) { this.valid = valid; }
-        
-        public String getErrorMessage() { return errorMessage; }
-        public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
-        
-        public String getRuleName() { return ruleName; }
-        public void setRuleName(String ruleName) { this.ruleName = ruleName; }
-        
-        public String getAntecedent() { return antecedent; }
-        public void setAntecedent(String antecedent) { this.antecedent = antecedent; }
-        
-        public String getConsequent() { return consequent; }
-        public void setConsequent(String consequent) { this.consequent = consequent; }
-        
-        public List<String> getAntecedentAtoms() { return antecedentAtoms; }
-        public void setAntecedentAtoms(List<String> antecedentAtoms) { this.antecedentAtoms = antecedentAtoms; }
-        
-        public List<String> getConsequentAtoms() { return consequentAtoms; }
-        public void setConsequentAtoms(List<String> consequentAtoms) { this.consequentAtoms = consequentAtoms; }
-        
-        public Set<String> getVariables() { return variables; }
-        public void setVariables(Set<String> variables) { this.variables = variables; }
-    }
 }
@@ -1,11 +1,19 @@
 package com.iwhalecloud.ontology.service;
 
+import com.iwhalecloud.ontology.model.CompiledRule;
+import com.iwhalecloud.ontology.model.Fact;
+import com.iwhalecloud.ontology.model.LinkedRule;
 import lombok.extern.slf4j.Slf4j;
 import org.semanticweb.owlapi.model.*;
 import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.search.EntitySearcher;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -15,20 +23,35 @@ import java.util.stream.Collectors;
  * 功能：
  * 1. 从OWL本体中动态加载业务规则
  * 2. 解析规则的逻辑表达式（SWRL规则和决策表）
- * 3. 执行规则推理
+ * 3. 执行规则推理（Rete前向链，增量传播新增断言）
  * 4. 管理规则优先级
+ *
+ * 已加载的规则保存在不可变的 {@link RuleSet} 中：重新加载时在旁边构建新的规则集，
+ * 完成后以一次原子引用替换发布，读取方不加锁，不会看到加载到一半的规则。
  */
 @Service
 @Slf4j
 public class SWRLRuleEngine {
 
+    @Value("${ontology.namespace}")
+    private String namespace;
+
     private OWLOntologyManager manager;
     private OWLDataFactory dataFactory;
-    private Map<String, Map<String, Object>> loadedRules = new LinkedHashMap<>();
+    private final AtomicReference<RuleSet> ruleSet = new AtomicReference<>(RuleSet.EMPTY);
+    private final AtomicLong ruleSetVersions = new AtomicLong();
+
+    private volatile ReteNetwork reteNetwork;
+    private volatile OWLOntology reteOntology;
+    private String reteSignature;
+    private OWLOntologyChangeListener reteListener;
+
+    private final JoinPlanner joinPlanner;
 
-    public SWRLRuleEngine() {
+    public SWRLRuleEngine(JoinPlanner joinPlanner) {
         this.manager = OWLManager.createOWLOntologyManager();
         this.dataFactory = manager.getOWLDataFactory();
+        this.joinPlanner = joinPlanner;
     }
 
     /**
@@ -60,13 +83,17 @@ public class SWRLRuleEngine {
     /**
      * 从OWL本体中动态加载业务规则
      * 扫描本体中所有类型为BusinessLogic的个体，提取规则定义
+     * 新规则集构建完成（含Rete网络）后才发布，加载过程中读取方继续使用旧规则集；加载之间串行执行
      */
-    public Map<String, Object> loadRulesFromOntology(OWLOntology ontology) {
+    public synchronized Map<String, Object> loadRulesFromOntology(OWLOntology ontology) {
         Map<String, Object> result = new HashMap<>();
         List<Map<String, Object>> ruleResults = new ArrayList<>();
+        Map<String, Map<String, Object>> loadedRules = new LinkedHashMap<>();
+        Map<String, CompiledRule> compiledRules = new LinkedHashMap<>();
+        Map<String, LinkedRule> linkedRules = new LinkedHashMap<>();
+        Map<String, DecisionTable> decisionTables = new LinkedHashMap<>();
         
         log.info("从OWL本体开始动态加载业务规则...");
-        loadedRules.clear();
         
         try {
             // 获取命名空间
@@ -75,15 +102,22 @@ public class SWRLRuleEngine {
             
             // 查找所有BusinessLogic类型的个体
             IRI businessLogicClass = IRI.create(namespace + "BusinessLogic");
-            Set<OWLNamedIndividual> individuals = ontology.getIndividualsOfType(
-                manager.getOWLDataFactory().getOWLClass(businessLogicClass)
-            );
+            Set<OWLNamedIndividual> individuals = new LinkedHashSet<>();
+            ontology.getClassAssertionAxioms(manager.getOWLDataFactory().getOWLClass(businessLogicClass))
+                .forEach(axiom -> {
+                    if (axiom.getIndividual().isNamed()) {
+                        individuals.add(axiom.getIndividual().asOWLNamedIndividual());
+                    }
+                });
             
             log.info("找到 {} 个业务规则定义", individuals.size());
             
             int successCount = 0;
             int failCount = 0;
             
+            // 以本体前缀映射建立符号表，加载时一次性链接全部规则
+            RuleLinker linker = new RuleLinker(ontology, namespace);
+            
             // 处理每个业务规则
             for (OWLNamedIndividual individual : individuals) {
                 Map<String, Object> ruleInfo = extractRuleFromIndividual(ontology, individual, namespace);
@@ -91,6 +125,9 @@ public class SWRLRuleEngine {
                 if (ruleInfo != null && "success".equals(ruleInfo.get("status"))) {
                     String ruleName = (String) ruleInfo.get("ruleName");
                     loadedRules.put(ruleName, ruleInfo);
+                    compileRule(ruleInfo, compiledRules);
+                    linkRule(ruleInfo, linker, compiledRules, linkedRules);
+                    compileDecisionTable(ruleInfo, decisionTables);
                     ruleResults.add(ruleInfo);
                     successCount++;
                     log.info("规则加载成功: {}", ruleName);
@@ -110,6 +147,16 @@ public class SWRLRuleEngine {
             result.put("message", String.format("规则加载完成: %d成功，%d失败", successCount, failCount));
             result.put("loadedRules", loadedRules);
             
+            RuleSet rules = new RuleSet(ruleSetVersions.incrementAndGet(), new ArrayList<>(loadedRules.values()),
+                compiledRules, linkedRules, decisionTables, enforcedSteps(ontology, namespace, loadedRules.values()),
+                stepClasses(ontology, namespace)::contains);
+            
+            // 构建Rete网络（规则未变化时复用已有网络及其工作内存），之后发布新规则集
+            buildReteNetwork(ontology, rules);
+            ruleSet.set(rules);
+            result.put("ruleSet", rules.getStatistics());
+            result.put("rete", currentReteNetwork(ontology).getStatistics());
+            
             log.info("本体规则加载完成: 总数={}, 成功={}, 失败={}", individuals.size(), successCount, failCount);
             
         } catch (Exception e) {
@@ -148,11 +195,11 @@ public class SWRLRuleEngine {
             ruleInfo.put("ruleBody", logicExpression);
             
             // 提取rdfs:label (规则描述)
-            String label = getPropertyValue(ontology, individual, manager.getOWLDataFactory().getRDFSLabel());
+            String label = getAnnotationValue(ontology, individual, manager.getOWLDataFactory().getRDFSLabel());
             ruleInfo.put("description", label);
             
             // 提取rdfs:comment (规则说明)
-            String comment = getPropertyValue(ontology, individual, manager.getOWLDataFactory().getRDFSComment());
+            String comment = getAnnotationValue(ontology, individual, manager.getOWLDataFactory().getRDFSComment());
             ruleInfo.put("comment", comment);
             
             // 自动分配优先级（根据规则类型）
@@ -176,11 +223,10 @@ public class SWRLRuleEngine {
     private String getPropertyValue(OWLOntology ontology, OWLNamedIndividual individual, IRI propertyIRI) {
         try {
             OWLDataProperty dataProperty = manager.getOWLDataFactory().getOWLDataProperty(propertyIRI);
-            Set<OWLLiteral> values = individual.getDataPropertyValues(dataProperty, ontology);
-            
-            if (!values.isEmpty()) {
-                return values.iterator().next().getLiteral();
-            }
+            return EntitySearcher.getDataPropertyValues(individual, dataProperty, ontology)
+                .findFirst()
+                .map(OWLLiteral::getLiteral)
+                .orElse(null);
         } catch (Exception e) {
             log.debug("获取属性值失败: property={}, error={}", propertyIRI, e.getMessage());
         }
@@ -188,6 +234,208 @@ public class SWRLRuleEngine {
         return null;
     }
 
+    /**
+     * 获取OWL注解值（rdfs:label、rdfs:comment）
+     */
+    private String getAnnotationValue(OWLOntology ontology, OWLNamedIndividual individual, OWLAnnotationProperty property) {
+        return EntitySearcher.getAnnotationObjects(individual, ontology, property)
+            .map(annotation -> annotation.getValue().asLiteral())
+            .filter(Optional::isPresent)
+            .map(literal -> literal.get().getLiteral())
+            .findFirst()
+            .orElse(null);
+    }
+
+    /**
+     * 在加载时将SWRL规则的logicExpression编译为语法树
+     * 解析失败的规则仍保留元数据，但标记为不可执行
+     */
+    private void compileRule(Map<String, Object> ruleInfo, Map<String, CompiledRule> compiledRules) {
+        if (!"SWRL".equals(ruleInfo.get("ruleType"))) {
+            return;
+        }
+        String ruleCode = (String) ruleInfo.get("ruleCode");
+        CompiledRule compiled = SWRLExpressionParser.parse(ruleCode, (String) ruleInfo.get("ruleBody"));
+        ruleInfo.put("compiled", compiled.isValid());
+        
+        if (compiled.isValid()) {
+            compiledRules.put(ruleCode, compiled);
+            ruleInfo.put("atomCount", compiled.getBody().size() + compiled.getHead().size());
+            ruleInfo.put("variableCount", compiled.getVariableCount());
+        } else {
+            ruleInfo.put("compileError", compiled.getErrorMessage());
+            log.warn("规则编译失败: {} - {}", ruleCode, compiled.getErrorMessage());
+        }
+    }
+
+    /**
+     * 在加载时将DecisionTable规则的logicExpression编译为带索引的决策表
+     * 解析失败的规则仍保留元数据，但标记为不可执行
+     */
+    private void compileDecisionTable(Map<String, Object> ruleInfo, Map<String, DecisionTable> decisionTables) {
+        if (!"DecisionTable".equals(ruleInfo.get("ruleType"))) {
+            return;
+        }
+        String ruleCode = (String) ruleInfo.get("ruleCode");
+        try {
+            DecisionTable table = DecisionTable.parse(ruleCode, (String) ruleInfo.get("ruleBody"));
+            decisionTables.put(ruleCode, table);
+            ruleInfo.put("compiled", true);
+            ruleInfo.put("hitPolicy", table.getHitPolicy().name());
+            ruleInfo.put("rowCount", table.getRowCount());
+            ruleInfo.put("inputs", table.getInputs());
+        } catch (IllegalArgumentException e) {
+            ruleInfo.put("compiled", false);
+            ruleInfo.put("compileError", e.getMessage());
+            log.warn("决策表编译失败: {} - {}", ruleCode, e.getMessage());
+        }
+    }
+
+    /**
+     * 构建Rete网络并以本体断言作为初始事实
+     * 同时在本体管理器上注册变更监听，OntologyService.addDataProperty/addObjectProperty等新增的断言
+     * 直接作为增量事实送入网络，无需重新评估全部规则；删除的断言（如custStatus、isBlacklisted被替换）
+     * 按DRed撤回，不再有推导支撑的推导事实随之删除，无需重建网络
+     */
+    private synchronized void buildReteNetwork(OWLOntology ontology, RuleSet rules) {
+        String signature = rules.getSignature();
+        if (reteNetwork != null && reteOntology == ontology && signature.equals(reteSignature)) {
+            log.debug("规则未变化，复用已有Rete网络");
+            return;
+        }
+        
+        detachReteListener();
+        
+        ReteNetwork network = new ReteNetwork(
+            rules.getLinkedRules(),
+            OntologyFacts.superClassClosure(ontology),
+            dataFactory
+        );
+        int inferred = network.addFacts(OntologyFacts.extract(ontology));
+        log.info("Rete网络初始化完成: 工作内存 {} 个事实，推导 {} 个事实", network.getWorkingMemorySize(), inferred);
+        
+        OWLOntologyChangeListener listener = changes -> {
+            // 按变更顺序分段处理连续的新增和删除，先删后增的替换操作保持原有语义
+            List<Fact> batch = new ArrayList<>();
+            boolean removing = false;
+            for (OWLOntologyChange change : changes) {
+                if (!change.isAxiomChange() || change.getOntology() != ontology) {
+                    continue;
+                }
+                Optional<Fact> fact = OntologyFacts.fromAxiom(change.getAxiom());
+                if (fact.isEmpty()) {
+                    continue;
+                }
+                if (change.isRemoveAxiom() != removing && !batch.isEmpty()) {
+                    applyChanges(network, batch, removing);
+                    batch = new ArrayList<>();
+                }
+                removing = change.isRemoveAxiom();
+                batch.add(fact.get());
+            }
+            if (!batch.isEmpty()) {
+                applyChanges(network, batch, removing);
+            }
+        };
+        ontology.getOWLOntologyManager().addOntologyChangeListener(listener);
+        
+        reteOntology = ontology;
+        reteSignature = signature;
+        reteListener = listener;
+        reteNetwork = network;
+    }
+
+    /**
+     * 读取一次当前Rete网络，网络不属于该本体时返回null
+     * 网络由加载线程在锁内替换，无锁读取方只读取一次字段，避免前后两次读取得到不同网络
+     */
+    private ReteNetwork currentReteNetwork(OWLOntology ontology) {
+        ReteNetwork network = reteNetwork;
+        return network != null && reteOntology == ontology ? network : null;
+    }
+
+    private static void applyChanges(ReteNetwork network, List<Fact> facts, boolean removing) {
+        if (removing) {
+            Map<Fact, String> withdrawn = network.removeFacts(facts);
+            log.debug("增量撤回 {} 个删除事实，撤回 {} 个推导事实", facts.size(), withdrawn.size());
+        } else {
+            int count = network.addFacts(facts);
+            log.debug("增量传播 {} 个新增事实，推导 {} 个事实", facts.size(), count);
+        }
+    }
+
+    private void detachReteListener() {
+        if (reteListener != null && reteOntology != null) {
+            reteOntology.getOWLOntologyManager().removeOntologyChangeListener(reteListener);
+        }
+        reteListener = null;
+    }
+
+    /**
+     * 将编译后的规则链接到本体实体句柄
+     * 含有未声明前缀、未定义类或属性的规则在加载时被拒绝，不参与推理
+     */
+    private void linkRule(Map<String, Object> ruleInfo, RuleLinker linker,
+                          Map<String, CompiledRule> compiledRules, Map<String, LinkedRule> linkedRules) {
+        CompiledRule compiled = compiledRules.get((String) ruleInfo.get("ruleCode"));
+        if (compiled == null) {
+            return;
+        }
+        LinkedRule linked = linker.link(compiled);
+        ruleInfo.put("linked", linked.isLinked());
+        
+        if (linked.isLinked()) {
+            linkedRules.put(compiled.getRuleCode(), linked);
+        } else {
+            ruleInfo.put("linkErrors", linked.getErrors());
+            log.warn("规则链接失败: {} - {}", compiled.getRuleCode(), linked.getErrors());
+        }
+    }
+
+    /**
+     * 流程步骤类：base:ProcessStep的全部子类（步骤个体与类同名）
+     */
+    private Set<IRI> stepClasses(OWLOntology ontology, String namespace) {
+        IRI processStep = IRI.create(namespace + "ProcessStep");
+        Set<IRI> steps = new HashSet<>();
+        OntologyFacts.superClassClosure(ontology).forEach((cls, parents) -> {
+            if (parents.contains(processStep)) {
+                steps.add(cls);
+            }
+        });
+        return steps;
+    }
+
+    /**
+     * 规则代码 -> 以 enforcesRule hasValue 约束该规则的步骤类
+     */
+    private Map<String, Set<IRI>> enforcedSteps(OWLOntology ontology, String namespace,
+                                                Collection<Map<String, Object>> rules) {
+        Map<IRI, String> ruleCodes = new HashMap<>();
+        for (Map<String, Object> rule : rules) {
+            ruleCodes.put(IRI.create(namespace, (String) rule.get("ruleName")), (String) rule.get("ruleCode"));
+        }
+        IRI enforcesRule = IRI.create(namespace + "enforcesRule");
+        Map<String, Set<IRI>> enforced = new HashMap<>();
+        for (OWLOntology current : ontology.getImportsClosure()) {
+            for (OWLSubClassOfAxiom axiom : current.getAxioms(AxiomType.SUBCLASS_OF)) {
+                if (axiom.getSubClass().isAnonymous() || !(axiom.getSuperClass() instanceof OWLObjectHasValue)) {
+                    continue;
+                }
+                OWLObjectHasValue restriction = (OWLObjectHasValue) axiom.getSuperClass();
+                if (restriction.getProperty().isNamed() && restriction.getFiller().isNamed()
+                        && restriction.getProperty().asOWLObjectProperty().getIRI().equals(enforcesRule)) {
+                    String ruleCode = ruleCodes.get(restriction.getFiller().asOWLNamedIndividual().getIRI());
+                    if (ruleCode != null) {
+                        enforced.computeIfAbsent(ruleCode, k -> new LinkedHashSet<>())
+                            .add(axiom.getSubClass().asOWLClass().getIRI());
+                    }
+                }
+            }
+        }
+        return enforced;
+    }
+
     /**
      * 根据规则代码自动分配优先级
      */
@@ -213,8 +461,12 @@ public class SWRLRuleEngine {
 
     /**
      * 获取本体命名空间
+     * BusinessLogic及logicCode等属性定义在配置的基础命名空间中
      */
     private String getOntologyNamespace(OWLOntology ontology) {
+        if (namespace != null) {
+            return namespace;
+        }
         Optional<IRI> ontologyIRI = ontology.getOntologyID().getOntologyIRI();
         if (ontologyIRI.isPresent()) {
             String iri = ontologyIRI.get().toString();
@@ -234,12 +486,13 @@ public class SWRLRuleEngine {
     public Map<String, Object> registerBusinessRules(OWLOntology ontology) {
         log.info("从OWL本体加载业务规则...");
         Map<String, Object> result = loadRulesFromOntology(ontology);
+        RuleSet rules = ruleSet.get();
         
-        if (loadedRules.isEmpty()) {
+        if (rules.isEmpty()) {
             log.warn("警告: 从OWL本体中未找到任何业务规则定义");
             result.put("warning", "OWL本体中未定义任何BusinessLogic个体，所有规则必须在OWL文件中定义");
         } else {
-            log.info("成功从OWL本体加载了 {} 条规则", loadedRules.size());
+            log.info("成功从OWL本体加载了 {} 条规则 (规则集版本 {})", rules.size(), rules.getVersion());
         }
         
         return result;
@@ -249,20 +502,40 @@ public class SWRLRuleEngine {
      * 获取所有已加载的规则
      */
     public Map<String, Object> getLoadedRules() {
+        RuleSet rules = ruleSet.get();
         Map<String, Object> result = new HashMap<>();
-        result.put("totalRules", loadedRules.size());
-        result.put("rules", loadedRules.values().stream().collect(Collectors.toList()));
+        result.put("totalRules", rules.size());
+        result.put("rules", rules.getRules());
+        result.put("version", rules.getVersion());
         return result;
     }
 
+    /**
+     * 当前发布的规则集，调用方在一次操作中应只取一次，保证看到同一版本
+     */
+    RuleSet getRuleSet() {
+        return ruleSet.get();
+    }
+
     /**
      * 根据规则代码获取规则详情
      */
     public Map<String, Object> getRuleByCode(String ruleCode) {
-        return loadedRules.values().stream()
-            .filter(rule -> ruleCode.equals(rule.get("ruleCode")))
-            .findFirst()
-            .orElse(null);
+        return ruleSet.get().getRule(ruleCode);
+    }
+
+    /**
+     * 根据规则代码获取编译后的规则语法树
+     */
+    public CompiledRule getCompiledRule(String ruleCode) {
+        return ruleSet.get().getCompiledRule(ruleCode);
+    }
+
+    /**
+     * 根据规则代码获取链接后的规则，链接失败或非SWRL规则返回null
+     */
+    public LinkedRule getLinkedRule(String ruleCode) {
+        return ruleSet.get().getLinkedRule(ruleCode);
     }
 
     /**
@@ -329,6 +602,7 @@ public class SWRLRuleEngine {
 
     /**
      * 执行SWRL推理
+     * 推理结果由Rete网络增量维护，此处返回当前的推导事实
      */
     public Map<String, Object> executeSWRLReasoning(OWLOntology ontology) {
         Map<String, Object> result = new HashMap<>();
@@ -336,12 +610,31 @@ public class SWRLRuleEngine {
         try {
             log.info("执行SWRL推理...");
             
+            ReteNetwork network = currentReteNetwork(ontology);
+            if (network == null) {
+                loadRulesFromOntology(ontology);
+                network = reteNetwork;
+            }
+            
+            List<Map<String, Object>> inferences = new ArrayList<>();
+            network.getInferences().forEach((fact, ruleCode) -> {
+                Map<String, Object> inference = new LinkedHashMap<>();
+                inference.put("ruleCode", ruleCode);
+                inference.put("fact", fact.toString());
+                inferences.add(inference);
+            });
+            
             result.put("status", "success");
-            result.put("message", "SWRL推理执行成功");
+            result.put("message", String.format("SWRL推理执行成功: %d 条规则，推导 %d 个事实",
+                network.getRuleCodes().size(), inferences.size()));
             result.put("timestamp", System.currentTimeMillis());
-            result.put("ruleCount", 6);
+            result.put("ruleCount", network.getRuleCodes().size());
+            result.put("factCount", network.getWorkingMemorySize());
+            result.put("inferenceCount", inferences.size());
+            result.put("inferences", inferences);
+            result.put("network", network.getStatistics());
             
-            log.info("SWRL推理执行完成");
+            log.info("SWRL推理执行完成: 推导 {} 个事实", inferences.size());
             
         } catch (Exception e) {
             result.put("status", "error");
@@ -352,6 +645,93 @@ public class SWRLRuleEngine {
         return result;
     }
 
+    /**
+     * 半朴素物化：以本体断言为基础事实，按增量迭代计算全部SWRL规则的不动点
+     * ContextDependencyRule链中前一步推导的requiresEntity/usesContext事实在下一轮作为增量参与连接
+     * @param persister 将推导事实作为断言写回本体并返回写入数，为null时不写回；
+     *                  写回应经OntologyService提交，与其他写入串行并作为一个事实版本发布
+     */
+    public Map<String, Object> materializeInferences(OWLOntology ontology, Function<List<OWLAxiom>, Integer> persister) {
+        Map<String, Object> result = new HashMap<>();
+        
+        try {
+            log.info("开始半朴素物化推理, persist={}", persister != null);
+            long start = System.currentTimeMillis();
+            
+            SemiNaiveEvaluator evaluator = new SemiNaiveEvaluator(
+                currentRuleSet(ontology).getLinkedRules(),
+                OntologyFacts.superClassClosure(ontology),
+                dataFactory,
+                joinPlanner,
+                ontology
+            );
+            SemiNaiveEvaluator.Materialization materialization = evaluator.materialize(OntologyFacts.extract(ontology));
+            
+            Map<String, Integer> ruleInferenceCounts = new LinkedHashMap<>();
+            List<Map<String, Object>> inferences = new ArrayList<>();
+            materialization.inferences.forEach((fact, ruleCode) -> {
+                ruleInferenceCounts.merge(ruleCode, 1, Integer::sum);
+                Map<String, Object> inference = new LinkedHashMap<>();
+                inference.put("ruleCode", ruleCode);
+                inference.put("fact", fact.toString());
+                inferences.add(inference);
+            });
+            
+            int persistedCount = 0;
+            if (persister != null && !materialization.inferences.isEmpty()) {
+                List<OWLAxiom> axioms = materialization.inferences.keySet().stream()
+                    .map(fact -> OntologyFacts.toAxiom(fact, dataFactory))
+                    .collect(Collectors.toList());
+                persistedCount = persister.apply(axioms);
+            }
+            
+            result.put("status", "success");
+            result.put("message", String.format("物化完成: %d 轮迭代，推导 %d 个事实",
+                materialization.deltaSizes.size(), inferences.size()));
+            result.put("ruleCount", evaluator.getRuleCount());
+            result.put("skippedRules", evaluator.getSkippedRules());
+            result.put("baseFactCount", materialization.baseFactCount);
+            result.put("iterations", materialization.deltaSizes.size());
+            result.put("deltaSizes", materialization.deltaSizes);
+            result.put("inferenceCount", inferences.size());
+            result.put("ruleInferenceCounts", ruleInferenceCounts);
+            result.put("inferences", inferences);
+            result.put("persistedCount", persistedCount);
+            result.put("statistics", joinPlanner.getStatistics(ontology).toMap());
+            result.put("elapsedMs", System.currentTimeMillis() - start);
+            
+        } catch (Exception e) {
+            result.put("status", "error");
+            result.put("message", "物化推理失败: " + e.getMessage());
+            log.error("物化推理失败", e);
+        }
+        
+        return result;
+    }
+
+    /**
+     * 目标导向查询：只求值结论能匹配目标的规则，沿目标的绑定反向展开子目标，不物化全部推导事实
+     * @param source 基础事实来源（通常已限定在单个订单的可达范围内）
+     * @param superClasses 命名类的父类闭包
+     */
+    GoalDirectedEvaluator.GoalResult queryGoal(OWLOntology ontology, FactSource source, Map<IRI, Set<IRI>> superClasses,
+                                               OWLEntity predicate, OWLObject subject, OWLObject object) {
+        return new GoalDirectedEvaluator(currentRuleSet(ontology).getLinkedRules(), superClasses, dataFactory)
+            .query(source, predicate, subject, object);
+    }
+
+    /**
+     * 当前规则集，尚未加载过规则时先从本体加载
+     */
+    private RuleSet currentRuleSet(OWLOntology ontology) {
+        RuleSet rules = ruleSet.get();
+        if (rules.isEmpty()) {
+            loadRulesFromOntology(ontology);
+            rules = ruleSet.get();
+        }
+        return rules;
+    }
+
     /**
      * 获取规则列表 - 从OWL本体中动态加载
      */
@@ -360,11 +740,7 @@ public class SWRLRuleEngine {
         
         try {
             // 如果还没有加载规则，先加载
-            if (loadedRules.isEmpty()) {
-                loadRulesFromOntology(ontology);
-            }
-            
-            List<Map<String, Object>> rules = new ArrayList<>(loadedRules.values());
+            List<Map<String, Object>> rules = currentRuleSet(ontology).getRules();
             
             result.put("status", "success");
             result.put("ruleCount", rules.size());
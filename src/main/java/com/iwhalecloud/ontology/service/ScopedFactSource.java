@@ -0,0 +1,114 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.Fact;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObject;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 限定在订单可达范围内的事实来源
+ *
+ * 可见个体为：从根个体（订单、步骤）沿对象属性正向可达的个体，以及本体文件中定义的共享个体（流程步骤、工作流等）。
+ * 只有主体可见、且客体为个体时客体也可见的事实才会返回，其他订单的客户、实例等事实被排除。
+ * 主体未绑定、或从共享个体出发的对象属性查找按可见个体逐个探查，代价与订单邻域和共享个体数量成正比，与库中订单总数无关。
+ * 遍历到共享个体时不再向外扩展，避免经由步骤等公共节点走到其他订单的数据。
+ */
+final class ScopedFactSource implements FactSource {
+
+    private final FactSource base;
+    private final Set<OWLNamedIndividual> shared;
+    private final Set<OWLNamedIndividual> neighbourhood;
+
+    private ScopedFactSource(FactSource base, Set<OWLNamedIndividual> shared, Set<OWLNamedIndividual> neighbourhood) {
+        this.base = base;
+        this.shared = shared;
+        this.neighbourhood = neighbourhood;
+    }
+
+    /**
+     * @param base 底层事实来源
+     * @param factsOf 读取个体的全部断言事实，用于沿对象属性遍历
+     * @param roots 根个体
+     * @param shared 共享个体
+     * @param maxDepth 从根个体出发的最大遍历深度
+     */
+    static ScopedFactSource of(FactSource base, Function<OWLNamedIndividual, List<Fact>> factsOf,
+                               Collection<OWLNamedIndividual> roots, Set<OWLNamedIndividual> shared, int maxDepth) {
+        Set<OWLNamedIndividual> neighbourhood = new LinkedHashSet<>(roots);
+        List<OWLNamedIndividual> frontier = new ArrayList<>(roots);
+        for (int depth = 0; depth < maxDepth && !frontier.isEmpty(); depth++) {
+            List<OWLNamedIndividual> next = new ArrayList<>();
+            for (OWLNamedIndividual individual : frontier) {
+                if (shared.contains(individual) && !roots.contains(individual)) {
+                    continue;
+                }
+                for (Fact fact : factsOf.apply(individual)) {
+                    if (fact.getObject() instanceof OWLNamedIndividual
+                            && neighbourhood.add((OWLNamedIndividual) fact.getObject())) {
+                        next.add((OWLNamedIndividual) fact.getObject());
+                    }
+                }
+            }
+            frontier = next;
+        }
+        return new ScopedFactSource(base, shared, neighbourhood);
+    }
+
+    @Override
+    public Iterable<Fact> match(OWLEntity predicate, OWLObject subject, OWLObject object) {
+        if (subject != null && !visible(subject) || object instanceof OWLNamedIndividual && !visible(object)) {
+            return Collections.emptyList();
+        }
+        if (subject != null) {
+            if (object == null && predicate instanceof OWLObjectProperty && isHub(subject)) {
+                // 共享个体（如流程步骤）可能关联所有订单的实体，按可见客体逐个探查
+                List<Fact> facts = new ArrayList<>();
+                forEachVisible(individual -> base.match(predicate, subject, individual).forEach(facts::add));
+                return facts;
+            }
+            return visibleFacts(base.match(predicate, subject, object));
+        }
+        if (object instanceof OWLNamedIndividual && !isHub(object)) {
+            return visibleFacts(base.match(predicate, null, object));
+        }
+        List<Fact> facts = new ArrayList<>();
+        forEachVisible(individual -> facts.addAll(visibleFacts(base.match(predicate, individual, object))));
+        return facts;
+    }
+
+    int getNeighbourhoodSize() {
+        return neighbourhood.size();
+    }
+
+    private List<Fact> visibleFacts(Iterable<Fact> facts) {
+        List<Fact> visible = new ArrayList<>();
+        for (Fact fact : facts) {
+            if (visible(fact.getSubject()) && (!(fact.getObject() instanceof OWLNamedIndividual) || visible(fact.getObject()))) {
+                visible.add(fact);
+            }
+        }
+        return visible;
+    }
+
+    private void forEachVisible(Consumer<OWLNamedIndividual> action) {
+        neighbourhood.forEach(action);
+        for (OWLNamedIndividual individual : shared) {
+            if (!neighbourhood.contains(individual)) {
+                action.accept(individual);
+            }
+        }
+    }
+
+    private boolean isHub(OWLObject individual) {
+        return shared.contains(individual) && !neighbourhood.contains(individual);
+    }
+
+    private boolean visible(OWLObject individual) {
+        return neighbourhood.contains(individual) || shared.contains(individual);
+    }
+}
@@ -0,0 +1,319 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.Fact;
+import com.iwhalecloud.ontology.model.LinkedAtom;
+import com.iwhalecloud.ontology.model.LinkedRule;
+import com.iwhalecloud.ontology.model.RuleTerm;
+import lombok.extern.slf4j.Slf4j;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+
+/**
+ * 半朴素（semi-naive）Datalog物化求值器
+ *
+ * 第一轮以全部基础事实作为增量；之后每一轮只用上一轮新推导出的事实（delta）驱动连接：
+ * 对规则体中的第k个原子绑定delta事实，k之前的原子只取旧事实，k之后的原子取全部事实，
+ * 从而每个推导只被计算一次，达到不动点的代价与新增事实成正比，而不是与整个ABox成正比。
+ * 适用于ContextDependencyRule这类前一步结论作为后一步前提的规则链。
+ */
+@Slf4j
+class SemiNaiveEvaluator {
+
+    private final Map<IRI, Set<IRI>> superClasses;
+    private final OWLDataFactory dataFactory;
+    private final List<PreparedRule> rules = new ArrayList<>();
+    private final Map<String, String> skippedRules = new LinkedHashMap<>();
+
+    /**
+     * @param linkedRules 已链接的SWRL规则
+     * @param superClasses 命名类的父类闭包
+     * @param dataFactory 用于构造内置函数计算结果的字面量
+     * @param joinPlanner 连接规划器，为每个种子原子给出基于代价的连接顺序
+     * @param ontology 提供基数统计的本体
+     */
+    SemiNaiveEvaluator(Collection<LinkedRule> linkedRules,
+                       Map<IRI, Set<IRI>> superClasses,
+                       OWLDataFactory dataFactory,
+                       JoinPlanner joinPlanner,
+                       OWLOntology ontology) {
+        this.superClasses = superClasses;
+        this.dataFactory = dataFactory;
+        for (LinkedRule rule : linkedRules) {
+            try {
+                rules.add(prepare(rule, joinPlanner, ontology));
+            } catch (IllegalArgumentException e) {
+                skippedRules.put(rule.getRuleCode(), e.getMessage());
+                log.warn("规则不参与物化: {} - {}", rule.getRuleCode(), e.getMessage());
+            }
+        }
+    }
+
+    Map<String, String> getSkippedRules() {
+        return Collections.unmodifiableMap(skippedRules);
+    }
+
+    int getRuleCount() {
+        return rules.size();
+    }
+
+    /**
+     * 从基础事实出发计算不动点
+     */
+    Materialization materialize(Collection<Fact> baseFacts) {
+        FactIndex index = new FactIndex();
+        List<Fact> delta = new ArrayList<>();
+        for (Fact fact : baseFacts) {
+            addWithSuperClasses(fact, index, delta);
+        }
+        int baseFactCount = index.size();
+
+        Map<Fact, String> inferences = new LinkedHashMap<>();
+        List<Integer> deltaSizes = new ArrayList<>();
+        while (!delta.isEmpty()) {
+            deltaSizes.add(delta.size());
+            Set<Fact> deltaSet = new HashSet<>(delta);
+            Map<IRI, List<Fact>> deltaByPredicate = new HashMap<>();
+            for (Fact fact : delta) {
+                deltaByPredicate.computeIfAbsent(fact.getPredicate(), k -> new ArrayList<>()).add(fact);
+            }
+
+            Map<Fact, String> derived = new LinkedHashMap<>();
+            for (PreparedRule rule : rules) {
+                for (int k = 0; k < rule.body.size(); k++) {
+                    PreparedAtom seedAtom = rule.body.get(k);
+                    if (seedAtom.builtin != null) {
+                        continue;
+                    }
+                    List<Fact> seeds = deltaByPredicate.get(seedAtom.predicate);
+                    if (seeds == null) {
+                        continue;
+                    }
+                    int[] order = rule.orders.get(k);
+                    for (Fact seed : seeds) {
+                        OWLObject[] bindings = new OWLObject[rule.variableCount];
+                        if (bind(seedAtom, seed, bindings)) {
+                            join(rule, order, 1, k, bindings, index, deltaSet, derived);
+                        }
+                    }
+                }
+            }
+
+            delta = new ArrayList<>();
+            for (Map.Entry<Fact, String> entry : derived.entrySet()) {
+                List<Fact> added = new ArrayList<>();
+                addWithSuperClasses(entry.getKey(), index, added);
+                for (Fact fact : added) {
+                    inferences.putIfAbsent(fact, entry.getValue());
+                }
+                delta.addAll(added);
+            }
+        }
+
+        log.info("物化完成: 基础事实={}, 迭代={}轮, 推导事实={}", baseFactCount, deltaSizes.size(), inferences.size());
+        return new Materialization(index, inferences, deltaSizes, baseFactCount);
+    }
+
+    /**
+     * 按预先计算的原子顺序递归连接，position之前的原子已绑定
+     */
+    private void join(PreparedRule rule, int[] order, int position, int seedIndex,
+                      OWLObject[] bindings, FactIndex index, Set<Fact> delta, Map<Fact, String> derived) {
+        if (position == order.length) {
+            for (PreparedAtom atom : rule.head) {
+                Fact fact = instantiate(atom, bindings);
+                if (fact != null && !index.contains(fact)) {
+                    derived.putIfAbsent(fact, rule.ruleCode);
+                }
+            }
+            return;
+        }
+
+        int atomIndex = order[position];
+        PreparedAtom atom = rule.body.get(atomIndex);
+        if (atom.builtin != null) {
+            evaluateBuiltin(atom, bindings, () -> join(rule, order, position + 1, seedIndex, bindings, index, delta, derived));
+            return;
+        }
+
+        OWLObject subject = valueOf(atom, 0, bindings);
+        OWLObject object = atom.classAtom ? null : valueOf(atom, 1, bindings);
+        if (object instanceof OWLLiteral) {
+            // 字面量按语义值比较，不走客体精确索引
+            object = null;
+        }
+        boolean oldOnly = atomIndex < seedIndex;
+        for (Fact fact : index.match(atom.predicate, subject, object)) {
+            if (oldOnly && delta.contains(fact)) {
+                continue;
+            }
+            OWLObject[] extended = bindings.clone();
+            if (bind(atom, fact, extended)) {
+                join(rule, order, position + 1, seedIndex, extended, index, delta, derived);
+            }
+        }
+    }
+
+    private void evaluateBuiltin(PreparedAtom atom, OWLObject[] bindings, Runnable next) {
+        Object[] args = new Object[atom.slots.length];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = atom.slots[i] >= 0 ? RuleValues.toJava(bindings[atom.slots[i]]) : atom.builtinConstants[i];
+        }
+        if (SWRLBuiltins.isBinding(atom.builtin) && atom.slots[0] >= 0 && bindings[atom.slots[0]] == null) {
+            Object value = SWRLBuiltins.compute(atom.builtin, Arrays.copyOfRange(args, 1, args.length));
+            if (value != null) {
+                bindings[atom.slots[0]] = RuleValues.toLiteral(value, dataFactory);
+                next.run();
+                bindings[atom.slots[0]] = null;
+            }
+        } else if (SWRLBuiltins.test(atom.builtin, args)) {
+            next.run();
+        }
+    }
+
+    /**
+     * 将事实与原子匹配并写入变量绑定
+     */
+    private boolean bind(PreparedAtom atom, Fact fact, OWLObject[] bindings) {
+        if (atom.classAtom != fact.isClassFact()) {
+            return false;
+        }
+        for (int i = 0; i < atom.slots.length; i++) {
+            OWLObject value = i == 0 ? fact.getSubject() : fact.getObject();
+            if (atom.slots[i] < 0) {
+                if (!RuleValues.sameValue(atom.constants[i], value)) {
+                    return false;
+                }
+            } else if (bindings[atom.slots[i]] == null) {
+                bindings[atom.slots[i]] = value;
+            } else if (!RuleValues.sameValue(bindings[atom.slots[i]], value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Fact instantiate(PreparedAtom atom, OWLObject[] bindings) {
+        OWLObject subject = valueOf(atom, 0, bindings);
+        if (!(subject instanceof OWLNamedIndividual)) {
+            return null;
+        }
+        if (atom.classAtom) {
+            return Fact.classFact(atom.predicate, (OWLNamedIndividual) subject);
+        }
+        OWLObject object = valueOf(atom, 1, bindings);
+        return object == null ? null : Fact.propertyFact(atom.predicate, (OWLNamedIndividual) subject, object);
+    }
+
+    private OWLObject valueOf(PreparedAtom atom, int argument, OWLObject[] bindings) {
+        return atom.slots[argument] >= 0 ? bindings[atom.slots[argument]] : atom.constants[argument];
+    }
+
+    private void addWithSuperClasses(Fact fact, FactIndex index, List<Fact> added) {
+        if (index.add(fact)) {
+            added.add(fact);
+        }
+        if (fact.isClassFact()) {
+            for (IRI parent : superClasses.getOrDefault(fact.getPredicate(), Collections.emptySet())) {
+                Fact inherited = Fact.classFact(parent, fact.getSubject());
+                if (index.add(inherited)) {
+                    added.add(inherited);
+                }
+            }
+        }
+    }
+
+    // ========== 规则预处理 ==========
+
+    private PreparedRule prepare(LinkedRule rule, JoinPlanner joinPlanner, OWLOntology ontology) {
+        List<PreparedAtom> body = new ArrayList<>();
+        for (LinkedAtom atom : rule.getBody()) {
+            body.add(prepareAtom(atom));
+        }
+        List<PreparedAtom> head = new ArrayList<>();
+        for (LinkedAtom atom : rule.getHead()) {
+            head.add(prepareAtom(atom));
+        }
+
+        // 为每个可作为增量种子的原子取得连接顺序：种子在前，其余原子按基数统计估算的代价排列，内置函数在输入就绪后立即求值
+        Map<Integer, int[]> orders = new HashMap<>();
+        for (int k = 0; k < body.size(); k++) {
+            if (body.get(k).builtin == null) {
+                orders.put(k, joinPlanner.plan(ontology, rule, k));
+            }
+        }
+        return new PreparedRule(rule.getRuleCode(), body, head, rule.getVariableCount(), orders);
+    }
+
+    private PreparedAtom prepareAtom(LinkedAtom atom) {
+        int arity = atom.getArity();
+        int[] slots = new int[arity];
+        OWLObject[] constants = new OWLObject[arity];
+        Object[] builtinConstants = new Object[arity];
+        for (int i = 0; i < arity; i++) {
+            RuleTerm term = atom.getArgument(i);
+            slots[i] = term.isVariable() ? term.getSlot() : -1;
+            constants[i] = atom.getConstant(i);
+            if (!term.isVariable()) {
+                builtinConstants[i] = term.getType() == RuleTerm.TermType.LITERAL ? term.getValue() : term.getName();
+            }
+        }
+        return new PreparedAtom(atom, atom.getPredicate(), atom.getBuiltin(), atom.isClassAtom(),
+            slots, constants, builtinConstants);
+    }
+
+    private static final class PreparedRule {
+        final String ruleCode;
+        final List<PreparedAtom> body;
+        final List<PreparedAtom> head;
+        final int variableCount;
+        final Map<Integer, int[]> orders;
+
+        PreparedRule(String ruleCode, List<PreparedAtom> body, List<PreparedAtom> head,
+                     int variableCount, Map<Integer, int[]> orders) {
+            this.ruleCode = ruleCode;
+            this.body = body;
+            this.head = head;
+            this.variableCount = variableCount;
+            this.orders = orders;
+        }
+    }
+
+    private static final class PreparedAtom {
+        final LinkedAtom atom;
+        final IRI predicate;
+        final String builtin;
+        final boolean classAtom;
+        final int[] slots;
+        final OWLObject[] constants;
+        final Object[] builtinConstants;
+
+        PreparedAtom(LinkedAtom atom, IRI predicate, String builtin, boolean classAtom,
+                     int[] slots, OWLObject[] constants, Object[] builtinConstants) {
+            this.atom = atom;
+            this.predicate = predicate;
+            this.builtin = builtin;
+            this.classAtom = classAtom;
+            this.slots = slots;
+            this.constants = constants;
+            this.builtinConstants = builtinConstants;
+        }
+    }
+
+    /**
+     * 物化结果：完整事实索引、推导事实（事实 -> 规则代码）及每轮增量大小
+     */
+    static final class Materialization {
+        final FactIndex index;
+        final Map<Fact, String> inferences;
+        final List<Integer> deltaSizes;
+        final int baseFactCount;
+
+        Materialization(FactIndex index, Map<Fact, String> inferences, List<Integer> deltaSizes, int baseFactCount) {
+            this.index = index;
+            this.inferences = inferences;
+            this.deltaSizes = deltaSizes;
+            this.baseFactCount = baseFactCount;
+        }
+    }
+}
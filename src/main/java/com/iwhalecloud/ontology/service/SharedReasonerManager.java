@@ -0,0 +1,184 @@
+package com.iwhalecloud.ontology.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyChangeListener;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
+import org.semanticweb.owlapi.reasoner.structural.StructuralReasonerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 共享推理器管理
+ *
+ * 每个本体只创建一个缓冲模式（buffering）的结构推理器，经OntologyService.getReasoner()对外提供，
+ * 不再在每次使用时创建并销毁推理器。本体变更通过OWLOntologyChangeListener进入推理器的待处理队列，
+ * 监听器在变更到达后安排一次延迟刷新，延迟期内的多次变更合并为一次后台flush。
+ * 查询在读锁下执行，flush在写锁下执行；对外只提供加锁的推理器视图，不暴露底层推理器。
+ */
+@Service
+@Slf4j
+public class SharedReasonerManager {
+
+    @Value("${ontology.reasoner.flush-delay-ms:200}")
+    private long flushDelayMs = 200;
+
+    private final OWLReasonerFactory reasonerFactory = new StructuralReasonerFactory();
+    private final Map<OWLOntology, SharedReasoner> reasoners = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "reasoner-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 获取本体的共享推理器视图（首次调用时创建推理器）
+     * 视图的每次查询在读锁下执行，flush()转为加写锁的刷新，dispose()不会销毁共享推理器；
+     * 推理器处于缓冲模式，未flush的TBox变更可能尚未反映到类层次中
+     */
+    public OWLReasoner getReasoner(OWLOntology ontology) {
+        return shared(ontology).view;
+    }
+
+    /**
+     * 立即处理推理器中的待处理变更
+     */
+    public void flush(OWLOntology ontology) {
+        shared(ontology).flush();
+    }
+
+    /**
+     * 推理器使用统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("reasonerCount", reasoners.size());
+        statistics.put("flushDelayMs", flushDelayMs);
+        long flushCount = 0;
+        int pendingChanges = 0;
+        for (SharedReasoner shared : reasoners.values()) {
+            flushCount += shared.flushCount.get();
+            pendingChanges += shared.view.getPendingChanges().size();
+        }
+        statistics.put("flushCount", flushCount);
+        statistics.put("pendingChanges", pendingChanges);
+        return statistics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdownNow();
+        for (Map.Entry<OWLOntology, SharedReasoner> entry : reasoners.entrySet()) {
+            entry.getKey().getOWLOntologyManager().removeOntologyChangeListener(entry.getValue().listener);
+            entry.getValue().reasoner.dispose();
+        }
+        reasoners.clear();
+    }
+
+    private SharedReasoner shared(OWLOntology ontology) {
+        return reasoners.computeIfAbsent(ontology, this::create);
+    }
+
+    private SharedReasoner create(OWLOntology ontology) {
+        OWLReasoner reasoner = reasonerFactory.createReasoner(ontology);
+        SharedReasoner shared = new SharedReasoner(reasoner);
+        OWLOntologyChangeListener listener = changes -> {
+            for (OWLOntologyChange change : changes) {
+                if (change.getOntology() == ontology) {
+                    shared.scheduleFlush();
+                    return;
+                }
+            }
+        };
+        ontology.getOWLOntologyManager().addOntologyChangeListener(listener);
+        shared.listener = listener;
+        log.info("共享推理器创建成功: {}", reasoner.getClass().getSimpleName());
+        return shared;
+    }
+
+    private final class SharedReasoner {
+        final OWLReasoner reasoner;
+        final OWLReasoner view;
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        final AtomicBoolean flushScheduled = new AtomicBoolean();
+        final AtomicLong flushCount = new AtomicLong();
+        OWLOntologyChangeListener listener;
+
+        SharedReasoner(OWLReasoner reasoner) {
+            this.reasoner = reasoner;
+            this.view = (OWLReasoner) Proxy.newProxyInstance(
+                OWLReasoner.class.getClassLoader(), new Class<?>[] {OWLReasoner.class}, this::invoke);
+        }
+
+        /**
+         * 推理器视图的方法分派：查询加读锁转发，flush加写锁，dispose由管理器在关闭时统一执行
+         */
+        private Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "flush":
+                    flush();
+                    return null;
+                case "dispose":
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            lock.readLock().lock();
+            try {
+                return method.invoke(reasoner, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * 安排一次延迟刷新，已有待执行的刷新时不重复安排
+         */
+        void scheduleFlush() {
+            if (flushScheduled.compareAndSet(false, true)) {
+                try {
+                    flushExecutor.schedule(() -> {
+                        flushScheduled.set(false);
+                        flush();
+                    }, flushDelayMs, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    flushScheduled.set(false);
+                }
+            }
+        }
+
+        void flush() {
+            lock.writeLock().lock();
+            try {
+                if (!reasoner.getPendingChanges().isEmpty()) {
+                    reasoner.flush();
+                    flushCount.incrementAndGet();
+                    log.debug("共享推理器已刷新");
+                }
+            } catch (Exception e) {
+                log.warn("共享推理器刷新失败", e);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
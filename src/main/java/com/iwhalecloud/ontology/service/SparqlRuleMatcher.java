@@ -0,0 +1,175 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.LinkedRule;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.expr.ExprEvalException;
+import org.apache.jena.sparql.expr.ExprList;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.function.FunctionBase;
+import org.apache.jena.sparql.function.FunctionRegistry;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLObject;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SPARQL规则匹配器
+ *
+ * 配置 ontology.rule-engine.sparql-enabled=true 后，规则前提翻译为SPARQL（见 {@link SparqlRuleTranslator}）
+ * 在Jena数据集（TDB2或内存镜像，见 {@link JenaFactStore}）上执行，由Jena的BGP优化器决定连接顺序。
+ * 每条规则翻译、编译并优化一次，代数表达式按规则代码缓存，规则重载或类层次变化后重新翻译；
+ * 只有翻译器明确判定无法翻译的规则（{@link SparqlRuleTranslator.UntranslatableRuleException}）回退到
+ * {@link AntecedentMatcher}，并记录告警；翻译或查询中的其他异常向上抛出。
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SparqlRuleMatcher {
+
+    private final JenaFactStore jenaFactStore;
+
+    @Value("${ontology.rule-engine.sparql-enabled:false}")
+    private boolean enabled = false;
+
+    private final OWLDataFactory dataFactory = OWLManager.getOWLDataFactory();
+    private final Map<String, CachedQuery> queryCache = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void registerBuiltins() {
+        if (!enabled) {
+            return;
+        }
+        for (String builtin : SWRLBuiltins.names()) {
+            FunctionRegistry.get().put(SparqlRuleTranslator.TEST + builtin, uri -> new BuiltinFunction(builtin, false));
+            if (SWRLBuiltins.isBinding(builtin)) {
+                FunctionRegistry.get().put(SparqlRuleTranslator.COMPUTE + builtin, uri -> new BuiltinFunction(builtin, true));
+            }
+        }
+    }
+
+    /**
+     * 是否以SPARQL匹配指定本体上的规则
+     */
+    boolean isActive(OWLOntology ontology) {
+        return enabled && jenaFactStore.isAttached(ontology);
+    }
+
+    /**
+     * 查找满足规则前提的全部变量绑定
+     * @return 变量绑定列表（数组下标为变量槽位）；规则形状无法翻译为SPARQL时返回null
+     */
+    List<OWLObject[]> match(LinkedRule rule) {
+        Op op = plan(rule);
+        if (op == null) {
+            return null;
+        }
+        Var[] slots = new Var[rule.getVariableCount()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = SparqlRuleTranslator.slot(i);
+        }
+        return jenaFactStore.query(datasetGraph -> {
+            List<OWLObject[]> results = new ArrayList<>();
+            QueryIterator rows = Algebra.exec(op, datasetGraph);
+            try {
+                while (rows.hasNext()) {
+                    Binding row = rows.nextBinding();
+                    OWLObject[] bindings = new OWLObject[slots.length];
+                    for (int i = 0; i < slots.length; i++) {
+                        Node value = row.get(slots[i]);
+                        bindings[i] = value == null ? null : JenaFactStore.toOwl(value, dataFactory);
+                    }
+                    results.add(bindings);
+                }
+            } finally {
+                rows.close();
+            }
+            return results;
+        });
+    }
+
+    /**
+     * 获取规则的代数表达式：规则对象与类层次版本不变时复用缓存，临时表达式（无规则代码）不缓存
+     */
+    private Op plan(LinkedRule rule) {
+        long hierarchy = jenaFactStore.getHierarchyVersion();
+        CachedQuery cached = rule.getRuleCode() == null ? null : queryCache.get(rule.getRuleCode());
+        if (cached != null && cached.rule == rule && cached.hierarchyVersion == hierarchy) {
+            return cached.op;
+        }
+        Op op;
+        try {
+            op = SparqlRuleTranslator.translate(rule, jenaFactStore::subClassesOf, dataFactory);
+            log.debug("规则SPARQL代数: {}\n{}", rule.getRuleCode(), op);
+        } catch (SparqlRuleTranslator.UntranslatableRuleException e) {
+            log.warn("规则无法翻译为SPARQL，回退到索引连接匹配: {} - {}", rule.getRuleCode(), e.getMessage());
+            op = null;
+        }
+        if (rule.getRuleCode() != null) {
+            queryCache.put(rule.getRuleCode(), new CachedQuery(hierarchy, rule, op));
+        }
+        return op;
+    }
+
+    /**
+     * swrlb:内置函数的SPARQL扩展函数，参数和结果与 {@link AntecedentMatcher} 使用相同的Java值转换
+     */
+    private final class BuiltinFunction extends FunctionBase {
+        private final String builtin;
+        private final boolean compute;
+
+        BuiltinFunction(String builtin, boolean compute) {
+            this.builtin = builtin;
+            this.compute = compute;
+        }
+
+        @Override
+        public void checkBuild(String uri, ExprList args) {
+            // 参数个数在规则解析时已检查
+        }
+
+        @Override
+        public NodeValue exec(List<NodeValue> args) {
+            Object[] values = new Object[args.size()];
+            for (int i = 0; i < values.length; i++) {
+                Node node = args.get(i).asNode();
+                values[i] = node.isURI()
+                    ? IRI.create(node.getURI()).getShortForm()
+                    : RuleValues.toJava(JenaFactStore.toOwl(node, dataFactory));
+            }
+            if (!compute) {
+                return NodeValue.booleanReturn(SWRLBuiltins.test(builtin, values));
+            }
+            Object value = SWRLBuiltins.compute(builtin, values);
+            if (value == null) {
+                throw new ExprEvalException("内置函数无结果: swrlb:" + builtin);
+            }
+            return NodeValue.makeNode(JenaFactStore.toNode(RuleValues.toLiteral(value, dataFactory)));
+        }
+    }
+
+    private static final class CachedQuery {
+        final long hierarchyVersion;
+        final LinkedRule rule;
+        final Op op;
+
+        CachedQuery(long hierarchyVersion, LinkedRule rule, Op op) {
+            this.hierarchyVersion = hierarchyVersion;
+            this.rule = rule;
+            this.op = op;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.LinkedAtom;
+import com.iwhalecloud.ontology.model.LinkedRule;
+import com.iwhalecloud.ontology.model.RuleTerm;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.expr.*;
+import org.apache.jena.sparql.syntax.*;
+import org.apache.jena.vocabulary.RDF;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.OWLObject;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * SWRL前提到SPARQL的翻译器
+ *
+ * 规则前提是带内置函数过滤的合取模式，对应SPARQL的基本图模式（BGP）：
+ * 类原子翻译为 ?x rdf:type C（C有子类时用VALUES列出自身及全部子类），属性原子翻译为三元组模式，
+ * 所有三元组放在同一个BGP中，由Jena按数据集统计决定连接顺序。
+ * swrlb:内置函数翻译为对扩展函数（见 {@link SparqlRuleMatcher}）的调用：参数全部绑定的函数翻译为FILTER，
+ * 首个参数未被三元组绑定的计算类函数翻译为BIND（结果为空时由FILTER(BOUND)淘汰该行），
+ * 函数语义与 {@link AntecedentMatcher} 完全一致。
+ * 字符串常量直接作为三元组客体按RDF项匹配；其他字面量常量按语义值比较（忽略数值类型差异），翻译为变量加FILTER。
+ * 规则变量 ?vN 对应变量槽位N，查询结果按槽位还原为变量绑定。
+ */
+final class SparqlRuleTranslator {
+
+    /** 过滤函数命名空间：全部参数已绑定，返回是否成立 */
+    static final String TEST = "urn:swrlb:test:";
+    /** 计算函数命名空间：参数为首个参数之外的输入，返回计算结果 */
+    static final String COMPUTE = "urn:swrlb:compute:";
+
+    private SparqlRuleTranslator() {
+    }
+
+    /**
+     * 规则形状无法用SPARQL表达，调用方可回退到索引连接匹配；其他异常表示翻译器或Jena出错，不应回退
+     */
+    static final class UntranslatableRuleException extends RuntimeException {
+        UntranslatableRuleException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 翻译规则前提并编译、优化为代数表达式
+     * @param subClasses 类 -> 自身及全部子类
+     * @throws UntranslatableRuleException 规则形状无法用SPARQL表达（内置函数的输入变量无法被绑定）
+     */
+    static Op translate(LinkedRule rule, Function<IRI, Set<IRI>> subClasses, OWLDataFactory dataFactory) {
+        ElementGroup group = new ElementGroup();
+        ElementPathBlock patterns = new ElementPathBlock();
+        List<Element> valueTables = new ArrayList<>();
+        List<Expr> filters = new ArrayList<>();
+        Set<Integer> bound = new HashSet<>();
+        int fresh = 0;
+
+        for (LinkedAtom atom : rule.getBody()) {
+            if (atom.isBuiltin()) {
+                continue;
+            }
+            Node subject = term(atom, 0, bound);
+            if (atom.isClassAtom()) {
+                Set<IRI> classes = subClasses.apply(atom.getPredicate());
+                if (classes.size() == 1) {
+                    patterns.addTriple(Triple.create(subject, RDF.Nodes.type, uri(atom.getPredicate())));
+                } else {
+                    Var type = Var.alloc("c" + fresh++);
+                    ElementData table = new ElementData();
+                    table.add(type);
+                    classes.forEach(cls -> table.add(BindingFactory.binding(type, uri(cls))));
+                    valueTables.add(table);
+                    patterns.addTriple(Triple.create(subject, RDF.Nodes.type, type));
+                }
+                continue;
+            }
+            Node object;
+            OWLObject constant = atom.getArgument(1).isVariable() ? null : atom.getConstant(1);
+            if (constant instanceof OWLLiteral && !(RuleValues.toJava(constant) instanceof String)) {
+                Var value = Var.alloc("k" + fresh++);
+                object = value;
+                filters.add(call("equal", new ExprVar(value), NodeValue.makeNode(JenaFactStore.toNode(constant))));
+            } else {
+                object = term(atom, 1, bound);
+            }
+            patterns.addTriple(Triple.create(subject, uri(atom.getPredicate()), object));
+        }
+
+        valueTables.forEach(group::addElement);
+        group.addElement(patterns);
+
+        // 计算类函数按输入就绪的顺序翻译为BIND，每轮至少放置一个，否则规则无法翻译
+        List<LinkedAtom> pending = new ArrayList<>();
+        rule.getBody().stream().filter(LinkedAtom::isBuiltin).forEach(pending::add);
+        while (!pending.isEmpty()) {
+            boolean progress = false;
+            for (Iterator<LinkedAtom> it = pending.iterator(); it.hasNext(); ) {
+                LinkedAtom atom = it.next();
+                RuleTerm first = atom.getArgument(0);
+                boolean binds = SWRLBuiltins.isBinding(atom.getBuiltin()) && first.isVariable() && !bound.contains(first.getSlot());
+                if (!inputsBound(atom, binds ? 1 : 0, bound)) {
+                    continue;
+                }
+                if (binds) {
+                    ExprList inputs = arguments(atom, 1, dataFactory);
+                    Var result = slot(first.getSlot());
+                    group.addElement(new ElementBind(result, new E_Function(COMPUTE + atom.getBuiltin(), inputs)));
+                    filters.add(new E_Bound(new ExprVar(result)));
+                    bound.add(first.getSlot());
+                } else {
+                    filters.add(new E_Function(TEST + atom.getBuiltin(), arguments(atom, 0, dataFactory)));
+                }
+                it.remove();
+                progress = true;
+            }
+            if (!progress) {
+                throw new UntranslatableRuleException("内置函数的输入变量无法绑定: " + pending);
+            }
+        }
+        filters.forEach(filter -> group.addElementFilter(new ElementFilter(filter)));
+
+        Query query = new Query();
+        query.setQuerySelectType();
+        query.setDistinct(true);
+        query.setQueryPattern(group);
+        bound.stream().sorted().forEach(index -> query.addResultVar(slot(index)));
+        return Algebra.optimize(Algebra.compile(query));
+    }
+
+    /**
+     * 变量槽位对应的查询变量
+     */
+    static Var slot(int index) {
+        return Var.alloc("v" + index);
+    }
+
+    private static Node term(LinkedAtom atom, int index, Set<Integer> bound) {
+        RuleTerm term = atom.getArgument(index);
+        if (term.isVariable()) {
+            bound.add(term.getSlot());
+            return slot(term.getSlot());
+        }
+        return JenaFactStore.toNode(atom.getConstant(index));
+    }
+
+    private static boolean inputsBound(LinkedAtom atom, int from, Set<Integer> bound) {
+        for (int i = from; i < atom.getArity(); i++) {
+            RuleTerm term = atom.getArgument(i);
+            if (term.isVariable() && !bound.contains(term.getSlot())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 内置函数参数：变量引用查询变量，常量按 {@link AntecedentMatcher} 的取值方式（字面量取值、个体取限定名）
+     */
+    private static ExprList arguments(LinkedAtom atom, int from, OWLDataFactory dataFactory) {
+        ExprList args = new ExprList();
+        for (int i = from; i < atom.getArity(); i++) {
+            RuleTerm term = atom.getArgument(i);
+            if (term.isVariable()) {
+                args.add(new ExprVar(slot(term.getSlot())));
+            } else {
+                Object value = term.getType() == RuleTerm.TermType.LITERAL ? term.getValue() : term.getName();
+                args.add(NodeValue.makeNode(JenaFactStore.toNode(RuleValues.toLiteral(value, dataFactory))));
+            }
+        }
+        return args;
+    }
+
+    private static Expr call(String builtin, Expr... args) {
+        return new E_Function(TEST + builtin, new ExprList(Arrays.asList(args)));
+    }
+
+    private static Node uri(IRI iri) {
+        return NodeFactory.createURI(iri.toString());
+    }
+}
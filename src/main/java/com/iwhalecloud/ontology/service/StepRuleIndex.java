@@ -0,0 +1,153 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.BusinessRuleDefinition;
+import org.semanticweb.owlapi.model.IRI;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 步骤 -> 适用规则索引
+ *
+ * 每个规则集版本构建一次：内置的 {@link BusinessRuleDefinition} 按 applicableSteps 展开，
+ * 本体BusinessLogic规则按 {@link RuleSet} 的步骤索引展开（本体步骤 StepNN_ 对应步骤编号NN）。
+ * 每个步骤的规则按优先级降序（同优先级保持定义顺序）排好并冻结为不可变列表，
+ * 规则检查时按步骤编号直接取出，不再重建规则对象、过滤和排序。
+ */
+final class StepRuleIndex {
+
+    private static final Pattern STEP_NUMBER = Pattern.compile("^Step(\\d+)_");
+
+    private final long ruleSetVersion;
+    /** 下标为步骤编号 */
+    private final StepRules[] steps;
+
+    private StepRuleIndex(long ruleSetVersion, StepRules[] steps) {
+        this.ruleSetVersion = ruleSetVersion;
+        this.steps = steps;
+    }
+
+    /**
+     * @param definitions 内置业务规则定义，未启用的规则不进入索引
+     * @param ruleSet 本体规则集
+     */
+    static StepRuleIndex build(List<BusinessRuleDefinition> definitions, RuleSet ruleSet) {
+        Map<Integer, List<BusinessRuleDefinition>> definitionsByStep = new TreeMap<>();
+        for (BusinessRuleDefinition definition : definitions) {
+            if (!Boolean.TRUE.equals(definition.getEnabled()) || definition.getApplicableSteps() == null) {
+                continue;
+            }
+            for (Integer step : definition.getApplicableSteps()) {
+                definitionsByStep.computeIfAbsent(step, k -> new ArrayList<>()).add(definition);
+            }
+        }
+
+        Map<Integer, Set<String>> ontologyByStep = new TreeMap<>();
+        for (Map.Entry<IRI, List<String>> entry : ruleSet.getStepIndex().entrySet()) {
+            Matcher matcher = STEP_NUMBER.matcher(entry.getKey().getShortForm());
+            if (matcher.find()) {
+                ontologyByStep.computeIfAbsent(Integer.parseInt(matcher.group(1)), k -> new LinkedHashSet<>())
+                    .addAll(entry.getValue());
+            }
+        }
+
+        int maxStep = 0;
+        for (Integer step : definitionsByStep.keySet()) {
+            maxStep = Math.max(maxStep, step);
+        }
+        for (Integer step : ontologyByStep.keySet()) {
+            maxStep = Math.max(maxStep, step);
+        }
+        StepRules[] steps = new StepRules[maxStep + 1];
+        for (int step = 0; step <= maxStep; step++) {
+            List<BusinessRuleDefinition> stepDefinitions = new ArrayList<>(
+                definitionsByStep.getOrDefault(step, Collections.emptyList()));
+            stepDefinitions.sort(Comparator.comparingInt(BusinessRuleDefinition::getPriority).reversed());
+
+            List<Map<String, Object>> ontologyRules = new ArrayList<>();
+            for (String ruleCode : ontologyByStep.getOrDefault(step, Collections.emptySet())) {
+                Map<String, Object> rule = ruleSet.getRule(ruleCode);
+                if (rule != null) {
+                    ontologyRules.add(rule);
+                }
+            }
+            ontologyRules.sort(Comparator.comparingInt(StepRuleIndex::priorityOf).reversed());
+
+            steps[step] = new StepRules(List.copyOf(stepDefinitions), List.copyOf(ontologyRules),
+                describe(stepDefinitions, ontologyRules));
+        }
+        return new StepRuleIndex(ruleSet.getVersion(), steps);
+    }
+
+    long getRuleSetVersion() {
+        return ruleSetVersion;
+    }
+
+    /**
+     * 步骤适用的已启用内置规则（按优先级降序）
+     */
+    List<BusinessRuleDefinition> definitions(int step) {
+        return step >= 0 && step < steps.length ? steps[step].definitions : Collections.emptyList();
+    }
+
+    /**
+     * 步骤适用的本体规则元数据（按优先级降序）
+     */
+    List<Map<String, Object>> ontologyRules(int step) {
+        return step >= 0 && step < steps.length ? steps[step].ontologyRules : Collections.emptyList();
+    }
+
+    /**
+     * 步骤适用规则的展示信息：内置规则在前，本体规则在后，各自按优先级降序
+     */
+    List<Map<String, Object>> descriptions(int step) {
+        return step >= 0 && step < steps.length ? steps[step].descriptions : Collections.emptyList();
+    }
+
+    private static int priorityOf(Map<String, Object> rule) {
+        Object priority = rule.get("priority");
+        return priority instanceof Integer ? (Integer) priority : 0;
+    }
+
+    private static List<Map<String, Object>> describe(List<BusinessRuleDefinition> definitions,
+                                                      List<Map<String, Object>> ontologyRules) {
+        List<Map<String, Object>> descriptions = new ArrayList<>();
+        for (BusinessRuleDefinition rule : definitions) {
+            Map<String, Object> ruleInfo = new HashMap<>();
+            ruleInfo.put("ruleId", rule.getRuleId());
+            ruleInfo.put("ruleName", rule.getRuleName());
+            ruleInfo.put("description", rule.getDescription());
+            ruleInfo.put("category", rule.getCategory().name());
+            ruleInfo.put("priority", rule.getPriority());
+            ruleInfo.put("violationMessage", rule.getViolationMessage());
+            ruleInfo.put("checkAttributes", rule.getCheckAttributes());
+            ruleInfo.put("source", "builtin");
+            descriptions.add(Collections.unmodifiableMap(ruleInfo));
+        }
+        for (Map<String, Object> rule : ontologyRules) {
+            Map<String, Object> ruleInfo = new HashMap<>();
+            ruleInfo.put("ruleId", rule.get("ruleCode"));
+            ruleInfo.put("ruleName", rule.get("ruleName"));
+            ruleInfo.put("description", rule.get("description"));
+            ruleInfo.put("category", rule.get("ruleType"));
+            ruleInfo.put("priority", rule.get("priority"));
+            ruleInfo.put("source", "ontology");
+            descriptions.add(Collections.unmodifiableMap(ruleInfo));
+        }
+        return List.copyOf(descriptions);
+    }
+
+    private static final class StepRules {
+        final List<BusinessRuleDefinition> definitions;
+        final List<Map<String, Object>> ontologyRules;
+        final List<Map<String, Object>> descriptions;
+
+        StepRules(List<BusinessRuleDefinition> definitions, List<Map<String, Object>> ontologyRules,
+                  List<Map<String, Object>> descriptions) {
+            this.definitions = definitions;
+            this.ontologyRules = ontologyRules;
+            this.descriptions = descriptions;
+        }
+    }
+}
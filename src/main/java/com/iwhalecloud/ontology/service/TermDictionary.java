@@ -0,0 +1,88 @@
+package com.iwhalecloud.ontology.service;
+
+import org.semanticweb.owlapi.model.OWLObject;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 项字典
+ *
+ * 把事实中出现的谓词IRI、个体和字面量编码为从1开始的整数ID，0（{@link #NONE}）表示"无"（类事实的客体）。
+ * 字典只追加不删除，同一本体的各版本快照共享一个字典，快照重建时才换用新字典，被删除个体的编码随之回收。
+ * 配置了内存映射事实文件时，文件中的项占用 1..n 的ID，堆内只为之后新出现的项分配 n+1 开始的ID。
+ * 编码只在快照构建时（事实库串行）调用；查找和解码无锁，已发布快照中出现的ID总能解码。
+ */
+final class TermDictionary {
+
+    static final int NONE = 0;
+
+    private final MappedFacts mapped;
+    private final int mappedCount;
+    private final Map<OWLObject, Integer> ids = new ConcurrentHashMap<>();
+    private volatile OWLObject[] terms = new OWLObject[1024];
+    private int size;
+
+    TermDictionary() {
+        this(null);
+    }
+
+    TermDictionary(MappedFacts mapped) {
+        this.mapped = mapped;
+        this.mappedCount = mapped == null ? 0 : mapped.getTermCount();
+        this.size = mappedCount + 1;
+    }
+
+    /**
+     * 编码项，未出现过的项分配新ID
+     */
+    int encode(OWLObject term) {
+        if (mapped != null) {
+            int id = mapped.lookup(term);
+            if (id != NONE) {
+                return id;
+            }
+        }
+        return encodeLocal(term);
+    }
+
+    private synchronized int encodeLocal(OWLObject term) {
+        Integer id = ids.get(term);
+        if (id != null) {
+            return id;
+        }
+        OWLObject[] current = terms;
+        int index = size - mappedCount;
+        if (index == current.length) {
+            current = Arrays.copyOf(current, index * 2);
+        }
+        current[index] = term;
+        terms = current;
+        ids.put(term, size);
+        return size++;
+    }
+
+    /**
+     * 查找项的ID，不分配新ID
+     * @return 项未出现过时返回 {@link #NONE}
+     */
+    int lookup(OWLObject term) {
+        Integer id = ids.get(term);
+        if (id != null) {
+            return id;
+        }
+        return mapped == null ? NONE : mapped.lookup(term);
+    }
+
+    OWLObject decode(int id) {
+        return id <= mappedCount ? mapped.decode(id) : terms[id - mappedCount];
+    }
+
+    /**
+     * 已分配的ID数，ID为 1..size()
+     */
+    int size() {
+        return mappedCount + ids.size();
+    }
+}
@@ -0,0 +1,277 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.Fact;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.semanticweb.owlapi.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 版本化写时复制事实库
+ *
+ * 每个本体维护一个当前事实快照（{@link FactSnapshot}）。读取方（属性查询、规则前提匹配、批量推理）
+ * 取得快照后只读不可变数据，不加锁，也不会看到写入到一半的状态。
+ * 写入方照常修改OWLOntology，变更监听器在写入线程内把同一批变更应用到新版本上，
+ * 再以一次原子引用替换发布；发布在事实库内串行执行，版本号单调递增。
+ * SubClassOf或导入变更会改变类事实的传播，此时整体重建快照。
+ *
+ * 可选配置内存映射事实文件（ontology.fact-store.mapped-file）：文件中的事实作为只读基础层映射进来，
+ * 不占用堆内存，本体中的断言和运行期变更作为增量叠加在其上。文件由 {@link #exportMapped} 从当前快照导出，
+ * 只在本体IRI和类层次与导出时一致时使用。映射层中的事实不在本体中，删除它们不会产生变更事件，
+ * 由写入方经 {@link #publish} 与本体变更一起提交，作为删除标记记入快照增量（保存在内存中，重新导出后并入文件）。
+ */
+@Service
+@Slf4j
+public class VersionedFactStore {
+
+    @Value("${ontology.fact-store.mapped-file:}")
+    private String mappedFile = "";
+
+    private final Map<OWLOntology, VersionedFacts> stores = new ConcurrentHashMap<>();
+
+    /**
+     * 获取本体当前的事实快照（首次调用时从本体构建）
+     */
+    FactSnapshot snapshot(OWLOntology ontology) {
+        return store(ontology).current.get();
+    }
+
+    /**
+     * 应用一批本体变更，并在同一个快照版本中删除本体中不存在的断言（映射事实文件中的事实）
+     * 删除先于本批变更应用，替换映射层中的旧值时读取方不会同时看到新旧两个值，也不会看到两者都缺失的中间版本
+     * @param detached 要删除的、本体中不存在的断言
+     * @param changes 在写入线程内应用本体变更
+     */
+    void publish(OWLOntology ontology, Collection<Fact> detached, Runnable changes) {
+        VersionedFacts store = store(ontology);
+        synchronized (store) {
+            store.pending = detached.isEmpty() ? null : detached;
+            try {
+                changes.run();
+            } finally {
+                // 本批变更没有产生事件时，单独发布删除
+                if (store.pending != null) {
+                    store.onChanges(Collections.emptyList());
+                }
+            }
+        }
+    }
+
+    /**
+     * 本体当前的事实版本号
+     */
+    public long getVersion(OWLOntology ontology) {
+        return snapshot(ontology).getVersion();
+    }
+
+    /**
+     * 事实库统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("ontologyCount", stores.size());
+        long publishCount = 0;
+        long rebuildCount = 0;
+        for (VersionedFacts store : stores.values()) {
+            FactSnapshot snapshot = store.current.get();
+            statistics.put("version", snapshot.getVersion());
+            statistics.put("factCount", snapshot.getFactCount());
+            statistics.put("individualCount", snapshot.getIndividualCount());
+            statistics.put("termCount", snapshot.getTermCount());
+            statistics.put("mappedFile", store.mapped == null ? null : store.mapped.getFile().toString());
+            statistics.put("mappedFactCount", store.mapped == null ? 0 : store.mapped.getFactCount());
+            publishCount += store.publishCount.get();
+            rebuildCount += store.rebuildCount.get();
+        }
+        statistics.put("publishCount", publishCount);
+        statistics.put("rebuildCount", rebuildCount);
+        return statistics;
+    }
+
+    /**
+     * 将本体当前的事实快照导出为内存映射事实文件，下次启动时作为只读基础层映射
+     */
+    public Map<String, Object> exportMapped(OWLOntology ontology) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (mappedFile.isEmpty()) {
+            result.put("status", "error");
+            result.put("message", "未配置事实映射文件 ontology.fact-store.mapped-file");
+            return result;
+        }
+        FactSnapshot snapshot = snapshot(ontology);
+        long start = System.currentTimeMillis();
+        try {
+            long bytes = MappedFacts.write(snapshot, ontologyIRI(ontology), Paths.get(mappedFile));
+            result.put("status", "success");
+            result.put("file", mappedFile);
+            result.put("version", snapshot.getVersion());
+            result.put("factCount", snapshot.getFactCount());
+            result.put("termCount", snapshot.getTermCount());
+            result.put("bytes", bytes);
+            result.put("elapsedMs", System.currentTimeMillis() - start);
+            log.info("事实快照已导出为映射文件: {}, version={}, 事实数={}, {}字节",
+                mappedFile, snapshot.getVersion(), snapshot.getFactCount(), bytes);
+        } catch (IOException e) {
+            log.error("导出事实映射文件失败: {}", mappedFile, e);
+            result.put("status", "error");
+            result.put("message", e.getMessage());
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Map.Entry<OWLOntology, VersionedFacts> entry : stores.entrySet()) {
+            entry.getKey().getOWLOntologyManager().removeOntologyChangeListener(entry.getValue().listener);
+        }
+        stores.clear();
+    }
+
+    private VersionedFacts store(OWLOntology ontology) {
+        return stores.computeIfAbsent(ontology, this::create);
+    }
+
+    private VersionedFacts create(OWLOntology ontology) {
+        VersionedFacts store = new VersionedFacts(ontology, openMapped(ontology));
+        synchronized (store) {
+            // 先注册监听器再构建首个快照，构建期间到达的变更在构建完成后再应用（增删均为幂等）
+            OWLOntologyChangeListener listener = store::onChanges;
+            ontology.getOWLOntologyManager().addOntologyChangeListener(listener);
+            store.listener = listener;
+            store.current.set(FactSnapshot.of(ontology, store.versions.incrementAndGet(), store.mappedFor()));
+        }
+        FactSnapshot snapshot = store.current.get();
+        log.info("事实快照构建完成: version={}, 事实数={}, 个体数={}",
+            snapshot.getVersion(), snapshot.getFactCount(), snapshot.getIndividualCount());
+        return store;
+    }
+
+    /**
+     * 映射与本体对应的事实文件，未配置、不存在或不属于该本体时返回null
+     */
+    private MappedFacts openMapped(OWLOntology ontology) {
+        if (mappedFile.isEmpty() || !Files.exists(Paths.get(mappedFile))) {
+            return null;
+        }
+        Path file = Paths.get(mappedFile);
+        try {
+            MappedFacts mapped = MappedFacts.open(file, ontology.getOWLOntologyManager().getOWLDataFactory());
+            if (!mapped.matches(ontologyIRI(ontology), OntologyFacts.superClassClosure(ontology))) {
+                log.info("事实映射文件不属于本体 {} 或类层次已变化，不使用: {}", ontologyIRI(ontology), file);
+                return null;
+            }
+            log.info("已映射事实文件: {}, 事实数={}, 项数={}", file, mapped.getFactCount(), mapped.getTermCount());
+            return mapped;
+        } catch (IOException e) {
+            log.warn("映射事实文件失败，改为从本体构建: {}", file, e);
+            return null;
+        }
+    }
+
+    private static String ontologyIRI(OWLOntology ontology) {
+        return ontology.getOntologyID().getOntologyIRI().map(IRI::toString).orElse("");
+    }
+
+    private static final class VersionedFacts {
+        final OWLOntology ontology;
+        final MappedFacts mapped;
+        final AtomicReference<FactSnapshot> current = new AtomicReference<>();
+        final AtomicLong versions = new AtomicLong();
+        final AtomicLong publishCount = new AtomicLong();
+        final AtomicLong rebuildCount = new AtomicLong();
+        /** 已删除的映射层事实，重建快照时重新应用 */
+        final Set<Fact> retracted = new HashSet<>();
+        /** 随下一批变更一起删除的映射层事实 */
+        Collection<Fact> pending;
+        OWLOntologyChangeListener listener;
+
+        VersionedFacts(OWLOntology ontology, MappedFacts mapped) {
+            this.ontology = ontology;
+            this.mapped = mapped;
+        }
+
+        /**
+         * 当前类层次下可用的映射事实文件，类层次变化后映射文件中的类分区不再准确，不再使用
+         */
+        MappedFacts mappedFor() {
+            if (mapped == null || mapped.matches(ontologyIRI(ontology), OntologyFacts.superClassClosure(ontology))) {
+                return mapped;
+            }
+            log.warn("本体类层次已变化，事实映射文件不再使用，请重新导出: {}", mapped.getFile());
+            return null;
+        }
+
+        /**
+         * 将一批本体变更应用为一个新版本并发布
+         */
+        synchronized void onChanges(List<? extends OWLOntologyChange> changes) {
+            Set<OWLOntology> closure = ontology.getImportsClosure();
+            FactSnapshot.Builder builder = null;
+            boolean changed = false;
+            if (pending != null) {
+                builder = current.get().toBuilder();
+                for (Fact fact : pending) {
+                    if (builder.remove(fact)) {
+                        retracted.add(fact);
+                        changed = true;
+                    }
+                }
+                pending = null;
+            }
+            for (OWLOntologyChange change : changes) {
+                if (!closure.contains(change.getOntology()) && change.getOntology() != ontology) {
+                    continue;
+                }
+                if (change.isImportChange()
+                        || change.isAxiomChange() && change.getAxiom().isOfType(AxiomType.SUBCLASS_OF)) {
+                    rebuild();
+                    return;
+                }
+                if (!change.isAxiomChange()) {
+                    continue;
+                }
+                Optional<Fact> fact = OntologyFacts.fromAxiom(change.getAxiom());
+                if (fact.isPresent()) {
+                    if (builder == null) {
+                        builder = current.get().toBuilder();
+                    }
+                    if (change.isAddAxiom()) {
+                        retracted.remove(fact.get());
+                        changed |= builder.add(fact.get());
+                    } else {
+                        changed |= builder.remove(fact.get());
+                    }
+                }
+            }
+            if (changed) {
+                current.set(builder.build(versions.incrementAndGet()));
+                publishCount.incrementAndGet();
+            }
+        }
+
+        private void rebuild() {
+            MappedFacts base = mappedFor();
+            FactSnapshot snapshot = FactSnapshot.of(ontology, versions.incrementAndGet(), base);
+            if (base == null) {
+                retracted.clear();
+            } else if (!retracted.isEmpty()) {
+                FactSnapshot.Builder builder = snapshot.toBuilder();
+                retracted.forEach(builder::remove);
+                snapshot = builder.build(snapshot.getVersion());
+            }
+            current.set(snapshot);
+            rebuildCount.incrementAndGet();
+            log.info("本体类层次或导入变更，事实快照已重建: version={}", current.get().getVersion());
+        }
+    }
+}
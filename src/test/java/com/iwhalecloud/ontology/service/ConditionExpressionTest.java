@@ -0,0 +1,135 @@
+package com.iwhalecloud.ontology.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ConditionExpression 语法、类型检查与求值
+ */
+class ConditionExpressionTest {
+
+    @Test
+    void parenthesisWithDotsIsRange() {
+        ConditionExpression.Node node = ConditionExpression.compile("x in (1..5]");
+        ConditionExpression.Comparison range = single(node);
+        assertEquals(ConditionExpression.Comparison.Kind.RANGE, range.kind);
+        assertEquals(1.0, range.low);
+        assertFalse(range.lowInclusive);
+        assertEquals(5.0, range.high);
+        assertTrue(range.highInclusive);
+
+        assertFalse(node.test(Map.of("x", 1)));
+        assertTrue(node.test(Map.of("x", 1.5)));
+        assertTrue(node.test(Map.of("x", 5L)));
+        assertFalse(node.test(Map.of("x", 5.01)));
+    }
+
+    @Test
+    void parenthesisWithCommasIsList() {
+        ConditionExpression.Node node = ConditionExpression.compile("x in (1, 5)");
+        ConditionExpression.Comparison list = single(node);
+        assertEquals(ConditionExpression.Comparison.Kind.EQUALS, list.kind);
+        assertEquals(List.of(1.0, 5.0), List.copyOf(list.values));
+
+        assertTrue(node.test(Map.of("x", 1)));
+        assertTrue(node.test(Map.of("x", 5.0)));
+        assertFalse(node.test(Map.of("x", 3)));
+    }
+
+    @Test
+    void openEndedRanges() {
+        ConditionExpression.Comparison upper = single(ConditionExpression.compile("x in (..5]"));
+        assertEquals(Double.NEGATIVE_INFINITY, upper.low);
+        assertEquals(5.0, upper.high);
+        assertTrue(upper.highInclusive);
+
+        ConditionExpression.Node lower = ConditionExpression.compile("x in [2..)");
+        assertTrue(lower.test(Map.of("x", 2)));
+        assertTrue(lower.test(Map.of("x", 1e9)));
+        assertFalse(lower.test(Map.of("x", 1.99)));
+    }
+
+    @Test
+    void notInList() {
+        ConditionExpression.Node node = ConditionExpression.compile("custType not in ('BLACK', 'FRAUD')");
+        assertEquals(ConditionExpression.Comparison.Kind.NOT_EQUALS, single(node).kind);
+        assertTrue(node.test(Map.of("custType", "VIP")));
+        assertFalse(node.test(Map.of("custType", "FRAUD")));
+        assertFalse(node.test(Map.of()), "字段缺失时任何比较都不成立");
+    }
+
+    @Test
+    void numbersCompareByValueAndBooleansMatchStrings() {
+        ConditionExpression.Node zero = ConditionExpression.compile("x in (1, 2.5, -0)");
+        assertTrue(zero.test(Map.of("x", 0)));
+        assertTrue(zero.test(Map.of("x", -0.0)));
+        assertTrue(zero.test(Map.of("x", 2.5f)));
+        assertFalse(zero.test(Map.of("x", "1")));
+
+        ConditionExpression.Node flag = ConditionExpression.compile("flag = true");
+        assertTrue(flag.test(Map.of("flag", true)));
+        assertTrue(flag.test(Map.of("flag", "true")));
+        assertFalse(flag.test(Map.of("flag", false)));
+    }
+
+    @Test
+    void precedenceAndConnectives() {
+        ConditionExpression.Node node = ConditionExpression.compile(
+            "subscriptionCount > 1 AND (custType = 'VIP' OR NOT flag = true)");
+        Map<String, Object> context = new HashMap<>(Map.of("subscriptionCount", 2, "custType", "NORMAL", "flag", false));
+        assertTrue(node.test(context));
+        context.put("flag", true);
+        assertFalse(node.test(context));
+        context.put("custType", "VIP");
+        assertTrue(node.test(context));
+        context.put("subscriptionCount", 1);
+        assertFalse(node.test(context));
+
+        ConditionExpression.Node symbols = ConditionExpression.compile("a = 1 || b = 2 && !c = 3");
+        assertTrue(symbols.test(Map.of("a", 1)));
+        assertTrue(symbols.test(Map.of("b", 2, "c", 4)));
+        assertFalse(symbols.test(Map.of("b", 2, "c", 3)));
+    }
+
+    @Test
+    void rangeComparisonsRejectNonNumbers() {
+        ConditionExpression.Node node = ConditionExpression.compile("x >= 3");
+        assertTrue(node.test(Map.of("x", 3)));
+        assertFalse(node.test(Map.of("x", "5")), "上下文值不是数字时不成立");
+    }
+
+    @Test
+    void conjunctsOnlyForPureConjunctions() {
+        List<ConditionExpression.Comparison> comparisons =
+            ConditionExpression.conjuncts(ConditionExpression.compile("a > 1 AND (b = 2 AND c in [1..2])"));
+        assertNotNull(comparisons);
+        assertEquals(List.of("a", "b", "c"), comparisons.stream().map(c -> c.field).toList());
+
+        assertNull(ConditionExpression.conjuncts(ConditionExpression.compile("a > 1 OR b = 2")));
+        assertNull(ConditionExpression.conjuncts(ConditionExpression.compile("a > 1 AND NOT b = 2")));
+    }
+
+    @Test
+    void compileErrors() {
+        assertThrows(IllegalArgumentException.class, () -> ConditionExpression.compile(" "));
+        assertThrows(IllegalArgumentException.class, () -> ConditionExpression.compile("x > 'a'"));
+        assertThrows(IllegalArgumentException.class, () -> ConditionExpression.compile("x in ['a'..3]"));
+        assertThrows(IllegalArgumentException.class, () -> ConditionExpression.compile("x = 1 AND"));
+        assertThrows(IllegalArgumentException.class, () -> ConditionExpression.compile("(x = 1"));
+        assertThrows(IllegalArgumentException.class, () -> ConditionExpression.compile("x = 'open"));
+        assertThrows(IllegalArgumentException.class, () -> ConditionExpression.compile("x ~ 1"));
+        assertThrows(IllegalArgumentException.class, () -> ConditionExpression.compile("x = 1 y"));
+    }
+
+    private static ConditionExpression.Comparison single(ConditionExpression.Node node) {
+        List<ConditionExpression.Comparison> comparisons = ConditionExpression.conjuncts(node);
+        assertNotNull(comparisons);
+        assertEquals(1, comparisons.size());
+        return comparisons.get(0);
+    }
+}
@@ -0,0 +1,269 @@
+package com.iwhalecloud.ontology.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DecisionTable 列索引与逐行编译谓词的一致性、命中策略和结果格式
+ */
+class DecisionTableTest {
+
+    /** 取值覆盖各行的区间端点、端点两侧、枚举值、非数字和缺失 */
+    private static final Object[] VALUES = {null, -1, 0, -0.0, 1, 1.5, 2, 2.5, 3, 4, 5, 5.5, 7, 10, "VIP", "1", true, Double.NaN};
+
+    @Test
+    void rangeAndListWithParenthesesAreDistinguished() {
+        String expression = String.join("\n",
+            "HIT COLLECT",
+            "IF x in (1..3] THEN kind = 'range'",
+            "IF x in (1, 3) THEN kind = 'list'");
+        DecisionTable table = DecisionTable.parse("R1", expression);
+
+        assertEquals(List.of(2), matched(table, Map.of("x", 1)));
+        assertEquals(List.of(1), matched(table, Map.of("x", 2)));
+        assertEquals(List.of(1, 2), matched(table, Map.of("x", 3)));
+        assertEquals(List.of(), matched(table, Map.of("x", 3.5)));
+        assertAgreesWithConditions(expression, "x");
+    }
+
+    @Test
+    void rangeAndExclusionOnTheSameColumn() {
+        String expression = String.join("\n",
+            "HIT COLLECT",
+            "IF x > 1 AND x != 3 THEN a = 1",
+            "IF x != 2 AND x in [0..5) AND x <= 4 THEN a = 2",
+            "IF x in [1..5] AND x in (1, 5, 7) AND x != 5 THEN a = 3",
+            "IF x in (2, 4) AND x != 'VIP' THEN a = 4");
+        DecisionTable table = DecisionTable.parse("R1", expression);
+
+        assertEquals(List.of("x"), table.getInputs());
+        assertEquals(List.of(2, 3), matched(table, Map.of("x", 1)));
+        assertEquals(List.of(1, 4), matched(table, Map.of("x", 2)));
+        assertEquals(List.of(2), matched(table, Map.of("x", 3)));
+        assertEquals(List.of(1, 2, 4), matched(table, Map.of("x", 4)));
+        assertEquals(List.of(1), matched(table, Map.of("x", 5)));
+        assertAgreesWithConditions(expression, "x");
+    }
+
+    @Test
+    void residualRowsAreFilteredByCondition() {
+        String expression = String.join("\n",
+            "HIT COLLECT",
+            "IF x = 1 OR y = 'VIP' THEN a = 1",
+            "IF NOT x in [2..4] THEN a = 2",
+            "IF x >= 2 AND y = 'VIP' THEN a = 3");
+        DecisionTable table = DecisionTable.parse("R1", expression);
+
+        assertEquals(List.of(1, 2, 3), matched(table, Map.of("x", 5, "y", "VIP")));
+        assertEquals(List.of(), matched(table, Map.of("x", 3, "y", "1")));
+        assertAgreesWithConditions(expression, "x", "y");
+    }
+
+    @Test
+    void columnsFirstAppearingInLaterRowsAreAnyForEarlierRows() {
+        String expression = String.join("\n",
+            "HIT COLLECT",
+            "IF x > 1 THEN a = 1",
+            "IF y = 'VIP' THEN a = 2",
+            "IF x <= 3 AND z in (1, 2) THEN a = 3");
+        DecisionTable table = DecisionTable.parse("R1", expression);
+
+        assertEquals(List.of("x", "y", "z"), table.getInputs());
+        assertEquals(List.of(1), matched(table, Map.of("x", 5)));
+        assertEquals(List.of(1, 2), matched(table, Map.of("x", 2, "y", "VIP")));
+        assertEquals(List.of(1, 3), matched(table, Map.of("x", 2, "z", 1)));
+        assertEquals(List.of(2), matched(table, Map.of("y", "VIP", "z", 2)));
+        assertAgreesWithConditions(expression, "x", "y", "z");
+    }
+
+    @Test
+    void wildcardRowsMatchAnyInput() {
+        String expression = String.join("\n",
+            "HIT COLLECT",
+            "IF x in [1..2] THEN level = 'A'",
+            "IF - THEN level = 'B'",
+            "* THEN level = 'C'",
+            "IF y = 'VIP' THEN level = 'D'");
+        DecisionTable table = DecisionTable.parse("R1", expression);
+
+        assertEquals(List.of(2, 3), matched(table, Map.of()));
+        assertEquals(List.of(1, 2, 3), matched(table, Map.of("x", 1.5)));
+        assertEquals(List.of(2, 3, 4), matched(table, Map.of("x", 7, "y", "VIP")));
+        assertAgreesWithConditions(expression, "x", "y");
+
+        Map<String, Object> result = table.evaluate(null);
+        assertEquals(List.of(2, 3), result.get("matchedRows"));
+    }
+
+    @Test
+    void firstPolicyStopsAtFirstHit() {
+        DecisionTable table = DecisionTable.parse("R1", String.join("\n",
+            "IF x > 1 THEN level = 'A', score = 10",
+            "IF - THEN level = 'B'"));
+
+        Map<String, Object> result = table.evaluate(Map.of("x", 2));
+        assertEquals("FIRST", result.get("hitPolicy"));
+        assertEquals(List.of(1), result.get("matchedRows"));
+        assertEquals("level = 'A', score = 10", result.get("action"));
+        assertEquals(Map.of("level", "A", "score", 10L), result.get("outputs"));
+        assertFalse(result.containsKey("condition"));
+
+        assertEquals(List.of(2), table.evaluate(Map.of("x", 0)).get("matchedRows"));
+    }
+
+    @Test
+    void uniqueWithMultipleHitsIsAnError() {
+        DecisionTable table = DecisionTable.parse("R1", String.join("\n",
+            "HIT POLICY: UNIQUE",
+            "IF x > 1 THEN level = 'A'",
+            "IF x in [0..5] THEN level = 'B'",
+            "IF x = 10 THEN level = 'C'"));
+
+        Map<String, Object> conflict = table.evaluate(Map.of("x", 2));
+        assertEquals("error", conflict.get("status"));
+        assertEquals(true, conflict.get("conditionMet"));
+        assertEquals(false, conflict.get("actionExecuted"));
+        assertEquals(List.of(1, 2), conflict.get("matchedRows"));
+        assertEquals("UNIQUE命中策略下命中了多行: [1, 2]", conflict.get("message"));
+        assertFalse(conflict.containsKey("action"));
+
+        Map<String, Object> single = table.evaluate(Map.of("x", 0));
+        assertEquals("success", single.get("status"));
+        assertEquals("level = 'B'", single.get("action"));
+        assertEquals(Map.of("level", "B"), single.get("outputs"));
+    }
+
+    @Test
+    void collectReturnsListsInRowOrder() {
+        DecisionTable table = DecisionTable.parse("R1", String.join("\n",
+            "HIT COLLECT",
+            "IF x > 1 THEN level = 'A'",
+            "IF x > 2 THEN notify customer",
+            "IF x > 3 THEN level = 'C'"));
+
+        Map<String, Object> result = table.evaluate(Map.of("x", 2.5));
+        assertEquals("success", result.get("status"));
+        assertEquals(List.of(1, 2), result.get("matchedRows"));
+        assertEquals(List.of("level = 'A'", "notify customer"), result.get("action"));
+        assertEquals(List.of(Map.of("level", "A"), Map.of()), result.get("outputs"));
+        assertEquals("命中2行，执行动作: [level = 'A', notify customer]", result.get("message"));
+    }
+
+    @Test
+    void singleRowKeepsIfThenResultShape() {
+        DecisionTable table = DecisionTable.parse("R1", "IF subscriptionCount > 1 THEN selectionRequired = true");
+        assertEquals(1, table.getRowCount());
+
+        Map<String, Object> met = table.evaluate(Map.of("subscriptionCount", 2));
+        assertEquals("success", met.get("status"));
+        assertEquals("subscriptionCount > 1", met.get("condition"));
+        assertEquals(true, met.get("conditionMet"));
+        assertEquals(true, met.get("actionExecuted"));
+        assertEquals("selectionRequired = true", met.get("action"));
+        assertEquals(Map.of("selectionRequired", true), met.get("outputs"));
+        assertEquals("条件满足，执行动作: selectionRequired = true", met.get("message"));
+
+        Map<String, Object> notMet = table.evaluate(Map.of("subscriptionCount", 1));
+        assertEquals("success", notMet.get("status"));
+        assertEquals("subscriptionCount > 1", notMet.get("condition"));
+        assertEquals(false, notMet.get("conditionMet"));
+        assertEquals(false, notMet.get("actionExecuted"));
+        assertEquals("条件不满足", notMet.get("message"));
+        assertFalse(notMet.containsKey("action"));
+    }
+
+    @Test
+    void parseErrorsNameTheLine() {
+        IllegalArgumentException missingThen = assertThrows(IllegalArgumentException.class,
+            () -> DecisionTable.parse("R1", "# 注释\nIF x > 1 THEN a = 1\nIF x > 2"));
+        assertTrue(missingThen.getMessage().startsWith("第3行: "), missingThen.getMessage());
+
+        IllegalArgumentException lateHit = assertThrows(IllegalArgumentException.class,
+            () -> DecisionTable.parse("R1", "IF x > 1 THEN a = 1\nHIT COLLECT"));
+        assertEquals("第2行: 命中策略必须写在规则行之前", lateHit.getMessage());
+
+        assertThrows(IllegalArgumentException.class, () -> DecisionTable.parse("R1", "HIT ALL\n- THEN a = 1"));
+        assertThrows(IllegalArgumentException.class, () -> DecisionTable.parse("R1", "IF x > 'a' THEN a = 1"));
+        assertEquals("决策表没有规则行", assertThrows(IllegalArgumentException.class,
+            () -> DecisionTable.parse("R1", "HIT FIRST\n# 只有注释")).getMessage());
+        assertEquals("决策表表达式为空", assertThrows(IllegalArgumentException.class,
+            () -> DecisionTable.parse("R1", "  ")).getMessage());
+    }
+
+    @Test
+    void randomTablesAgreeWithCompiledConditions() {
+        String[] comparisons = {
+            "x > 1", "x >= 2", "x < 5", "x <= 3", "x in (1..3]", "x in [2..5)", "x in (..2]", "x in [3..)",
+            "x = 2", "x != 3", "x in (1, 5, 7)", "x not in (0, 4)", "x = 'VIP'", "x != true",
+            "y = 'VIP'", "y in (1, 2.5)", "y > 0", "y != 2",
+        };
+        Random random = new Random(42);
+        for (int round = 0; round < 300; round++) {
+            List<String> lines = new ArrayList<>();
+            lines.add("HIT COLLECT");
+            int rowCount = 1 + random.nextInt(8);
+            for (int row = 0; row < rowCount; row++) {
+                int terms = random.nextInt(4);
+                List<String> conjuncts = new ArrayList<>();
+                for (int i = 0; i < terms; i++) {
+                    conjuncts.add(comparisons[random.nextInt(comparisons.length)]);
+                }
+                String condition = conjuncts.isEmpty() ? (random.nextBoolean() ? "-" : "*")
+                    : random.nextInt(6) == 0 ? "NOT (" + String.join(" OR ", conjuncts) + ")"
+                    : String.join(" AND ", conjuncts);
+                lines.add("IF " + condition + " THEN row = " + (row + 1));
+            }
+            assertAgreesWithConditions(String.join("\n", lines), "x", "y");
+        }
+    }
+
+    /**
+     * 对全部取值组合，比较列索引命中的行（COLLECT）与逐行单独编译的条件谓词的结果
+     */
+    private static void assertAgreesWithConditions(String expression, String... fields) {
+        DecisionTable table = DecisionTable.parse("R1", expression);
+        assertEquals(DecisionTable.HitPolicy.COLLECT, table.getHitPolicy());
+        List<ConditionExpression.Node> conditions = new ArrayList<>();
+        for (String line : expression.split("\n")) {
+            if (line.startsWith("HIT")) {
+                continue;
+            }
+            String condition = line.substring(0, line.indexOf(" THEN")).replaceFirst("^IF ", "").trim();
+            conditions.add("-".equals(condition) || "*".equals(condition) ? null : ConditionExpression.compile(condition));
+        }
+        assertEquals(table.getRowCount(), conditions.size());
+
+        List<Map<String, Object>> contexts = new ArrayList<>();
+        contexts.add(new HashMap<>());
+        for (String field : fields) {
+            List<Map<String, Object>> expanded = new ArrayList<>();
+            for (Map<String, Object> context : contexts) {
+                for (Object value : VALUES) {
+                    Map<String, Object> copy = new HashMap<>(context);
+                    if (value != null) {
+                        copy.put(field, value);
+                    }
+                    expanded.add(copy);
+                }
+            }
+            contexts = expanded;
+        }
+        for (Map<String, Object> context : contexts) {
+            List<Integer> expected = new ArrayList<>();
+            for (int row = 0; row < conditions.size(); row++) {
+                if (conditions.get(row) == null || conditions.get(row).test(context)) {
+                    expected.add(row + 1);
+                }
+            }
+            assertEquals(expected, matched(table, context), () -> "context " + context);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Integer> matched(DecisionTable table, Map<String, Object> context) {
+        return (List<Integer>) table.evaluate(context).get("matchedRows");
+    }
+}
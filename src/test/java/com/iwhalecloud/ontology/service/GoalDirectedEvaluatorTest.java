@@ -0,0 +1,132 @@
+package com.iwhalecloud.ontology.service;
+
+import com.iwhalecloud.ontology.model.Fact;
+import com.iwhalecloud.ontology.model.LinkedRule;
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.io.InputStream;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 目标导向求值（magic-set改写）与半朴素前向物化对同一订单给出相同的答案
+ * 规则和流程步骤个体取自本体文件，订单事实在测试中构造
+ */
+class GoalDirectedEvaluatorTest {
+
+    private static final String BASE = "https://iwhalecloud.com/ontology/transfer#";
+    private static final String WORKFLOW = "https://iwhalecloud.com/ontology/transfer/workflow#";
+
+    private final OWLOntology ontology = loadOntology();
+    private final OWLDataFactory dataFactory = ontology.getOWLOntologyManager().getOWLDataFactory();
+    private final List<LinkedRule> rules = loadRules();
+    private final Map<IRI, Set<IRI>> superClasses = OntologyFacts.superClassClosure(ontology);
+    private final OWLNamedIndividual step01 = individual(WORKFLOW + "Step01_ListSourceCustomers");
+    private final OWLNamedIndividual step02 = individual(WORKFLOW + "Step02_VerifySourceCustomer");
+    private final OWLDataProperty operationResult = dataFactory.getOWLDataProperty(IRI.create(BASE + "operationResult"));
+
+    @Test
+    void blacklistedOrderMatchesForwardEvaluation() {
+        List<Fact> blacklisted = orderFacts("O1", "C1", true);
+        List<Fact> cleared = orderFacts("O2", "C2", false);
+
+        Set<Fact> forward = forward(blacklisted);
+        assertEquals(1, forward.size(), "黑名单客户在步骤二上推导出一个阻断结论");
+        assertEquals("客户处于黑名单，请解除黑名单后再进行过户操作",
+            ((OWLLiteral) forward.iterator().next().getObject()).getLiteral());
+
+        // 目标导向查询在包含两个订单的事实库上执行，只沿订单O1的可达范围求值
+        assertEquals(forward, goal("O1", blacklisted, cleared));
+    }
+
+    @Test
+    void clearedOrderMatchesForwardEvaluation() {
+        List<Fact> blacklisted = orderFacts("O1", "C1", true);
+        List<Fact> cleared = orderFacts("O2", "C2", false);
+
+        Set<Fact> forward = forward(cleared);
+        assertTrue(forward.isEmpty());
+        assertEquals(forward, goal("O2", blacklisted, cleared), "其他订单的黑名单客户不影响本订单的答案");
+    }
+
+    /**
+     * 本体事实 + 单个订单的事实做前向物化，取 operationResult(步骤二, ?result)
+     */
+    private Set<Fact> forward(List<Fact> order) {
+        List<Fact> facts = new ArrayList<>(OntologyFacts.extract(ontology));
+        facts.addAll(order);
+        SemiNaiveEvaluator evaluator = new SemiNaiveEvaluator(rules, superClasses, dataFactory, new JoinPlanner(), ontology);
+        return new HashSet<>(evaluator.materialize(facts).index.match(operationResult.getIRI(), step02, null));
+    }
+
+    /**
+     * 在全部订单的事实上，从订单和步骤二出发做目标导向查询
+     */
+    @SafeVarargs
+    private Set<Fact> goal(String orderId, List<Fact>... orders) {
+        FactIndex index = new FactIndex();
+        Map<OWLNamedIndividual, List<Fact>> bySubject = new HashMap<>();
+        List<Fact> facts = new ArrayList<>(OntologyFacts.extract(ontology));
+        Arrays.stream(orders).forEach(facts::addAll);
+        for (Fact fact : facts) {
+            index.add(fact);
+            bySubject.computeIfAbsent(fact.getSubject(), k -> new ArrayList<>()).add(fact);
+        }
+        ScopedFactSource source = ScopedFactSource.of(index, individual -> bySubject.getOrDefault(individual, List.of()),
+            List.of(individual(BASE + orderId), step02), ontology.getIndividualsInSignature(), 3);
+        GoalDirectedEvaluator.GoalResult result = new GoalDirectedEvaluator(rules, superClasses, dataFactory)
+            .query(source, operationResult, step02, null);
+        return new HashSet<>(result.answers);
+    }
+
+    /**
+     * 订单、源客户，以及步骤一输出该客户的断言
+     */
+    private List<Fact> orderFacts(String orderId, String customerId, boolean blacklisted) {
+        OWLNamedIndividual order = individual(BASE + orderId);
+        OWLNamedIndividual customer = individual(BASE + customerId);
+        return List.of(
+            Fact.classFact(IRI.create(BASE + "TransferOrder"), order),
+            Fact.propertyFact(IRI.create(BASE + "hasSourceCustomer"), order, customer),
+            Fact.classFact(IRI.create(BASE + "SourceCustomer"), customer),
+            Fact.propertyFact(IRI.create(BASE + "custId"), customer, dataFactory.getOWLLiteral(customerId)),
+            Fact.propertyFact(IRI.create(BASE + "custName"), customer, dataFactory.getOWLLiteral("客户" + customerId)),
+            Fact.propertyFact(IRI.create(BASE + "isBlacklisted"), customer, dataFactory.getOWLLiteral(blacklisted)),
+            Fact.propertyFact(IRI.create(BASE + "producesEntity"), step01, customer));
+    }
+
+    private OWLNamedIndividual individual(String iri) {
+        return dataFactory.getOWLNamedIndividual(IRI.create(iri));
+    }
+
+    private List<LinkedRule> loadRules() {
+        RuleLinker linker = new RuleLinker(ontology, BASE);
+        OWLClass businessLogic = dataFactory.getOWLClass(IRI.create(BASE + "BusinessLogic"));
+        return ontology.getClassAssertionAxioms(businessLogic).stream()
+            .map(axiom -> axiom.getIndividual().asOWLNamedIndividual())
+            .filter(rule -> "SWRL".equals(literal(rule, "logicType")))
+            .map(rule -> linker.link(SWRLExpressionParser.parse(literal(rule, "logicCode"), literal(rule, "logicExpression"))))
+            .filter(LinkedRule::isLinked)
+            .collect(Collectors.toList());
+    }
+
+    private String literal(OWLNamedIndividual individual, String property) {
+        return ontology.getDataPropertyAssertionAxioms(individual).stream()
+            .filter(axiom -> axiom.getProperty().asOWLDataProperty().getIRI().toString().equals(BASE + property))
+            .map(axiom -> axiom.getObject().getLiteral())
+            .findFirst()
+            .orElse(null);
+    }
+
+    private static OWLOntology loadOntology() {
+        try (InputStream in = GoalDirectedEvaluatorTest.class.getResourceAsStream("/owl/transfer_order_ontology.owl")) {
+            return OWLManager.createOWLOntologyManager().loadOntologyFromOntologyDocument(in);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
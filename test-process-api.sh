@@ -139,13 +139,31 @@ test_validate_prerequisites() {
 test_rollback() {
     print_header "测试7: 测试步骤回退(从步骤3回退到步骤1)"
     
-    ORDER_ID=$(cat /tmp/test_order_id.txt 2>/dev/null || echo "ORDER_TEST_001")
+    # 回退需要订单记录的当前步骤与fromStep一致，单独创建一个位于步骤3的订单
+    TIMESTAMP=$(date +%s)
+    ROLLBACK_ORDER="ORDER_ROLLBACK_${TIMESTAMP}"
+    
+    curl -s -X POST "${BASE_URL}/individuals" \
+        -H "Content-Type: application/json" \
+        -d "{
+            \"className\": \"TransferOrder\",
+            \"individualName\": \"${ROLLBACK_ORDER}\"
+        }" > /dev/null
+    
+    curl -s -X POST "${BASE_URL}/individuals/${ROLLBACK_ORDER}/data-property" \
+        -H "Content-Type: application/json" \
+        -d '{
+            "propertyName": "currentStepNumber",
+            "value": "3",
+            "datatype": "integer"
+        }' > /dev/null
+    
     print_info "POST ${BASE_URL}/process/rollback"
     
     curl -s -X POST "${BASE_URL}/process/rollback" \
         -H "Content-Type: application/json" \
         -d "{
-            \"orderId\": \"${ORDER_ID}\",
+            \"orderId\": \"${ROLLBACK_ORDER}\",
             \"fromStep\": 3,
             \"toStep\": 1
         }" | jq '.'